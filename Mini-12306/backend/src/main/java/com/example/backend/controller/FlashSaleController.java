@@ -0,0 +1,59 @@
+package com.example.backend.controller;
+
+import com.example.backend.dto.ApiResponse;
+import com.example.backend.dto.QueueTicketDTO;
+import com.example.backend.service.FlashSaleService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Set;
+
+/**
+ * 热门车次排队控制器
+ */
+@RestController
+@CrossOrigin(origins = "*")
+@RequestMapping("/api/flash-sale")
+public class FlashSaleController {
+
+    @Autowired
+    private FlashSaleService flashSaleService;
+
+    /**
+     * 查询排队状态
+     */
+    @GetMapping("/queue/{queueTicketId}")
+    public ApiResponse<QueueTicketDTO> getQueueTicket(@PathVariable String queueTicketId) {
+        QueueTicketDTO queueTicket = flashSaleService.getQueueTicket(queueTicketId);
+        if (queueTicket == null) {
+            return ApiResponse.error("排队号不存在或已过期");
+        }
+        return ApiResponse.success(queueTicket);
+    }
+
+    /**
+     * 查询热门车次
+     */
+    @GetMapping("/hot")
+    public ApiResponse<Set<String>> getHotSchedules() {
+        return ApiResponse.success(flashSaleService.getHotSchedules());
+    }
+
+    /**
+     * 标记热门车次，之后的购票请求进入排队
+     */
+    @PostMapping("/hot/{scheduleId}")
+    public ApiResponse<Boolean> markHot(@PathVariable String scheduleId) {
+        flashSaleService.markHot(scheduleId);
+        return ApiResponse.success(true, "已标记为热门车次");
+    }
+
+    /**
+     * 取消热门车次标记
+     */
+    @DeleteMapping("/hot/{scheduleId}")
+    public ApiResponse<Boolean> unmarkHot(@PathVariable String scheduleId) {
+        flashSaleService.unmarkHot(scheduleId);
+        return ApiResponse.success(true, "已取消热门车次标记");
+    }
+}
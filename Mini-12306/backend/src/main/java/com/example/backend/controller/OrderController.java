@@ -32,11 +32,21 @@ public class OrderController {
 
     /**
      * 查询用户订单列表
+     * 带 cursor 或 limit 参数时按下单时间倒序分页返回，cursor 为上一页返回的 nextCursor
      */
     @GetMapping("/user/{userId}")
-    public ApiResponse<List<OrderDTO>> getUserOrders(@PathVariable String userId) {
-        List<OrderDTO> orders = orderService.getUserOrders(userId);
-        return ApiResponse.success(orders);
+    public ApiResponse<?> getUserOrders(@PathVariable String userId,
+                                        @RequestParam(required = false) String cursor,
+                                        @RequestParam(required = false) Integer limit) {
+        if (cursor == null && limit == null) {
+            List<OrderDTO> orders = orderService.getUserOrders(userId);
+            return ApiResponse.success(orders);
+        }
+        try {
+            return ApiResponse.success(orderService.getUserOrderPage(userId, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ApiResponse.error(e.getMessage());
+        }
     }
 
     /**
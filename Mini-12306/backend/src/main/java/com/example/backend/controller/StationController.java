@@ -0,0 +1,37 @@
+package com.example.backend.controller;
+
+import com.example.backend.dto.ApiResponse;
+import com.example.backend.service.StationIndexService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * 车站控制器
+ */
+@RestController
+@CrossOrigin(origins = "*")
+@RequestMapping("/api/stations")
+public class StationController {
+
+    @Autowired
+    private StationIndexService stationIndexService;
+
+    /**
+     * 车站输入联想，支持站名、全拼、拼音首字母和错别字
+     */
+    @GetMapping("/suggest")
+    public ApiResponse<List<String>> suggest(@RequestParam String q,
+                                             @RequestParam(defaultValue = "10") int limit) {
+        return ApiResponse.success(stationIndexService.suggest(q, Math.min(limit, 50)));
+    }
+
+    /**
+     * 城市的全部车站
+     */
+    @GetMapping("/city")
+    public ApiResponse<List<String>> getCityStations(@RequestParam String name) {
+        return ApiResponse.success(stationIndexService.getCityStations(name));
+    }
+}
@@ -1,9 +1,14 @@
 package com.example.backend.controller;
 
 import com.example.backend.dto.*;
+import com.example.backend.service.FlashSaleService;
 import com.example.backend.service.TicketService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
 
 import java.util.List;
 
@@ -15,12 +20,28 @@ public class TicketController {
     @Autowired
     private TicketService ticketService;
 
+    @Autowired
+    private FlashSaleService flashSaleService;
+
     // 认证失败的测试ID（FAIL_ID_12345）
+    // 支付异步进行，订单状态为处理中；支付结果通过 WebSocket 推送，也可通过 /api/orders/{orderId} 查询
     @PostMapping("/tickets/buy")
     public ApiResponse<?> buyTicket(@RequestBody PurchaseRequestDTO purchaseRequest) {
         try {
-            OrderDTO orderDTO = ticketService.purchaseTicket(purchaseRequest);
-            return ApiResponse.success(orderDTO, "购票成功");
+            // 热门车次进入排队，通过排队号查询结果
+            return toResponse(flashSaleService.purchase(purchaseRequest));
+        } catch (IllegalArgumentException e) {
+            return ApiResponse.error(e.getMessage());
+        } catch (RuntimeException e) {
+            return ApiResponse.error("购票过程中发生错误：" + e.getMessage());
+        }
+    }
+
+    // 多位乘车人批量购票，一个订单一次支付
+    @PostMapping("/tickets/buy/batch")
+    public ApiResponse<?> buyTickets(@RequestBody BatchPurchaseRequestDTO purchaseRequest) {
+        try {
+            return toResponse(flashSaleService.purchase(purchaseRequest));
         } catch (IllegalArgumentException e) {
             return ApiResponse.error(e.getMessage());
         } catch (RuntimeException e) {
@@ -42,12 +63,18 @@ public class TicketController {
     }
 
     // 查询车票
+    // 带筛选、排序或分页参数（departAfter、seatType、sortBy、cursor、limit 等）时返回分页结果
     @GetMapping("/schedules/query")
-    public ApiResponse<List<TrainScheduleDTO>> querySchedules(
+    public ApiResponse<?> querySchedules(
             @RequestParam(required = false) String departureStation,
             @RequestParam(required = false) String arrivalStation,
-            @RequestParam(required = false) String departureDate) {
+            @RequestParam(required = false) String departureDate,
+            ScheduleFilterDTO filter) {
         try {
+            if (!filter.isEmpty()) {
+                return ApiResponse.success(ticketService.querySchedulePage(
+                        departureStation, arrivalStation, departureDate, filter));
+            }
             List<TrainScheduleDTO> schedules = ticketService.querySchedules(departureStation, arrivalStation, departureDate);
             return ApiResponse.success(schedules);
         } catch (IllegalArgumentException e) {
@@ -57,6 +84,56 @@ public class TicketController {
         }
     }
 
+    // 流式查询车票：每个车次组装完即推送，按 Accept 头返回 NDJSON 或 SSE，客户端读取慢时暂停查询
+    // 参数与 /schedules/query 相同，limit 为最多返回的条数
+    @GetMapping(value = "/schedules/stream",
+            produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<TrainScheduleDTO> streamSchedules(
+            @RequestParam(required = false) String departureStation,
+            @RequestParam(required = false) String arrivalStation,
+            @RequestParam(required = false) String departureDate,
+            ScheduleFilterDTO filter) {
+        try {
+            return ticketService.streamSchedules(departureStation, arrivalStation, departureDate, filter);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    // 查询中转换乘，直达车次无票或没有直达车次时使用
+    @GetMapping("/schedules/transfer")
+    public ApiResponse<List<TransferItineraryDTO>> queryTransfers(
+            @RequestParam String departureStation,
+            @RequestParam String arrivalStation,
+            @RequestParam String departureDate,
+            @RequestParam(defaultValue = "1") int maxTransfers,
+            @RequestParam(defaultValue = "duration") String sortBy) {
+        try {
+            return ApiResponse.success(ticketService.queryTransfers(
+                    departureStation, arrivalStation, departureDate, maxTransfers, sortBy));
+        } catch (IllegalArgumentException e) {
+            return ApiResponse.error(e.getMessage());
+        } catch (Exception e) {
+            return ApiResponse.error("查询中转车次时发生错误：" + e.getMessage());
+        }
+    }
+
+    // 余票日历：一段日期内每天的车次数、各座位类型是否有票和最低票价
+    @GetMapping("/schedules/calendar")
+    public ApiResponse<List<ScheduleCalendarDayDTO>> queryCalendar(
+            @RequestParam String departureStation,
+            @RequestParam String arrivalStation,
+            @RequestParam(required = false) String startDate,
+            @RequestParam(required = false) String endDate) {
+        try {
+            return ApiResponse.success(ticketService.queryCalendar(departureStation, arrivalStation, startDate, endDate));
+        } catch (IllegalArgumentException e) {
+            return ApiResponse.error(e.getMessage());
+        } catch (Exception e) {
+            return ApiResponse.error("查询余票日历时发生错误：" + e.getMessage());
+        }
+    }
+
     // 查询用户车票
     @GetMapping("/tickets/user/{userId}")
     public ApiResponse<List<TicketDTO>> getUserTickets(@PathVariable String userId) {
@@ -73,11 +150,18 @@ public class TicketController {
     public ApiResponse<?> changeTicket(@RequestBody ChangeTicketRequestDTO changeRequest) {
         try {
             ChangeTicketResponseDTO responseDTO = ticketService.changeTicket(changeRequest);
-            return ApiResponse.success(responseDTO, "改签成功");
+            return ApiResponse.success(responseDTO, responseDTO.getMessage());
         } catch (IllegalArgumentException e) {
             return ApiResponse.error(e.getMessage());
         } catch (RuntimeException e) {
             return ApiResponse.error("改签过程中发生错误：" + e.getMessage());
         }
     }
+
+    private static ApiResponse<?> toResponse(PurchaseResultDTO result) {
+        if (result.isQueued()) {
+            return ApiResponse.success(result.getQueueTicket(), "已进入排队");
+        }
+        return ApiResponse.success(result.getOrder(), result.getOrder().getMessage());
+    }
 }
\ No newline at end of file
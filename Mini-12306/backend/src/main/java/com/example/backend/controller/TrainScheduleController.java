@@ -1,14 +1,25 @@
 package com.example.backend.controller;
 
 import com.example.backend.dto.ApiResponse;
+import com.example.backend.dto.ScheduleFilterDTO;
+import com.example.backend.dto.ScheduleImportJobDTO;
+import com.example.backend.dto.ScheduleImportRowDTO;
 import com.example.backend.dto.TrainScheduleDTO;
 import com.example.backend.model.SeatTypeEntity;
 import com.example.backend.model.TrainScheduleEntity;
+import com.example.backend.service.ArchiveService;
+import com.example.backend.service.ScheduleImportService;
 import com.example.backend.service.TrainScheduleService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.List;
 
@@ -22,15 +33,29 @@ public class TrainScheduleController {
     @Autowired
     private TrainScheduleService trainScheduleService;
 
+    @Autowired
+    private ScheduleImportService scheduleImportService;
+
+    @Autowired
+    private ArchiveService archiveService;
+
     /**
-     * 查询列车时刻表
+     * 查询列车时刻表，带筛选、排序或分页参数时返回分页结果
      */
     @GetMapping
-    public ApiResponse<List<TrainScheduleDTO>> querySchedules(
+    public ApiResponse<?> querySchedules(
             @RequestParam(required = false) String departureStation,
             @RequestParam(required = false) String arrivalStation,
-            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate departureDate) {
-        
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate departureDate,
+            ScheduleFilterDTO filter) {
+        if (!filter.isEmpty()) {
+            try {
+                return ApiResponse.success(trainScheduleService.querySchedulePage(
+                        departureStation, arrivalStation, departureDate, filter));
+            } catch (IllegalArgumentException e) {
+                return ApiResponse.error(e.getMessage());
+            }
+        }
         List<TrainScheduleDTO> schedules = trainScheduleService.querySchedules(departureStation, arrivalStation, departureDate);
         return ApiResponse.success(schedules);
     }
@@ -93,6 +118,69 @@ public class TrainScheduleController {
         return ApiResponse.success(true, "删除成功");
     }
 
+    /**
+     * 重新加载车次的余票和票价（管理员功能），直接修改 seat_availability 后调用
+     */
+    @PostMapping("/{scheduleId}/inventory/reload")
+    public ApiResponse<Boolean> reloadInventory(@PathVariable String scheduleId) {
+        boolean success = trainScheduleService.reloadInventory(scheduleId);
+        if (!success) {
+            return ApiResponse.error("列车时刻表不存在");
+        }
+        
+        return ApiResponse.success(true, "重新加载成功");
+    }
+
+    /**
+     * 批量导入时刻表（管理员功能），JSON 数组，每个元素是一个车次在一段日期内的开行计划
+     */
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ApiResponse<ScheduleImportJobDTO> importSchedules(@RequestBody List<ScheduleImportRowDTO> rows) {
+        try {
+            return ApiResponse.success(scheduleImportService.submit(rows), "导入已开始");
+        } catch (IllegalArgumentException e) {
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+
+    /**
+     * 批量导入时刻表（管理员功能），上传 CSV 文件，列为：车次,出发站,到达站,出发时刻,到达时刻,开始日期,结束日期[,到达天数[,座位配置]]
+     */
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ApiResponse<ScheduleImportJobDTO> importSchedulesCsv(@RequestParam("file") MultipartFile file) {
+        if (file.isEmpty()) {
+            return ApiResponse.error("请选择要导入的文件");
+        }
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8))) {
+            return ApiResponse.success(scheduleImportService.submit(scheduleImportService.parseCsv(reader)), "导入已开始");
+        } catch (IllegalArgumentException e) {
+            return ApiResponse.error(e.getMessage());
+        } catch (IOException e) {
+            return ApiResponse.error("读取导入文件失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 查询导入进度和写入速度
+     */
+    @GetMapping("/import/{jobId}")
+    public ApiResponse<ScheduleImportJobDTO> getImportJob(@PathVariable String jobId) {
+        ScheduleImportJobDTO job = scheduleImportService.getJob(jobId);
+        if (job == null) {
+            return ApiResponse.error("导入任务不存在或已过期");
+        }
+        return ApiResponse.success(job);
+    }
+
+    /**
+     * 立即归档已发车超过保留天数的车次及其车票和订单（管理员功能），返回归档的车次数
+     */
+    @PostMapping("/archive")
+    public ApiResponse<Integer> archive() {
+        return ApiResponse.success(archiveService.archive(), "归档完成");
+    }
+
     /**
      * 获取所有座位类型
      */
@@ -101,4 +189,26 @@ public class TrainScheduleController {
         List<SeatTypeEntity> seatTypes = trainScheduleService.getAllSeatTypes();
         return ApiResponse.success(seatTypes);
     }
+
+    /**
+     * 添加座位类型（管理员功能）
+     */
+    @PostMapping("/seat-types")
+    public ApiResponse<Integer> addSeatType(@RequestBody SeatTypeEntity seatType) {
+        seatType.setId(null);
+        return ApiResponse.success(trainScheduleService.saveSeatType(seatType), "添加成功");
+    }
+
+    /**
+     * 修改座位类型（管理员功能）
+     */
+    @PutMapping("/seat-types/{seatTypeId}")
+    public ApiResponse<Integer> updateSeatType(@PathVariable Integer seatTypeId, @RequestBody SeatTypeEntity seatType) {
+        seatType.setId(seatTypeId);
+        Integer id = trainScheduleService.saveSeatType(seatType);
+        if (id == null) {
+            return ApiResponse.error("更新失败，座位类型不存在");
+        }
+        return ApiResponse.success(id, "更新成功");
+    }
 }
\ No newline at end of file
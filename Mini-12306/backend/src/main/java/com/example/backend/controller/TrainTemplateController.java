@@ -0,0 +1,80 @@
+package com.example.backend.controller;
+
+import com.example.backend.dto.ApiResponse;
+import com.example.backend.model.TrainTemplateEntity;
+import com.example.backend.service.TrainTemplateService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * 列车开行模板控制器（管理员功能）
+ */
+@RestController
+@CrossOrigin(origins = "*")
+@RequestMapping("/api/train-templates")
+public class TrainTemplateController {
+
+    @Autowired
+    private TrainTemplateService trainTemplateService;
+
+    /**
+     * 查询全部模板
+     */
+    @GetMapping
+    public ApiResponse<List<TrainTemplateEntity>> list() {
+        return ApiResponse.success(trainTemplateService.list());
+    }
+
+    /**
+     * 添加模板，座位配置为 {"座位类型": 座位数}，开行日历为7位0/1（周一至周日）
+     */
+    @PostMapping
+    public ApiResponse<String> create(@RequestBody TrainTemplateEntity template) {
+        try {
+            trainTemplateService.create(template);
+            return ApiResponse.success(template.getTrainNumber(), "添加成功");
+        } catch (IllegalArgumentException e) {
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+
+    /**
+     * 修改模板，只影响尚未生成车次的日期
+     */
+    @PutMapping("/{trainNumber}")
+    public ApiResponse<Boolean> update(@PathVariable String trainNumber, @RequestBody TrainTemplateEntity template) {
+        template.setTrainNumber(trainNumber);
+        try {
+            if (!trainTemplateService.update(template)) {
+                return ApiResponse.error("更新失败，车次模板不存在");
+            }
+            return ApiResponse.success(true, "更新成功");
+        } catch (IllegalArgumentException e) {
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+
+    /**
+     * 删除模板，已生成的车次保留
+     */
+    @DeleteMapping("/{trainNumber}")
+    public ApiResponse<Boolean> delete(@PathVariable String trainNumber) {
+        if (!trainTemplateService.delete(trainNumber)) {
+            return ApiResponse.error("删除失败，车次模板不存在");
+        }
+        return ApiResponse.success(true, "删除成功");
+    }
+
+    /**
+     * 立即生成某天的车次，返回新生成的车次数
+     */
+    @PostMapping("/materialize")
+    public ApiResponse<Integer> materialize(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        return ApiResponse.success(trainTemplateService.materialize(date), "生成完成");
+    }
+}
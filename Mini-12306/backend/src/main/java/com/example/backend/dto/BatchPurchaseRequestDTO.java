@@ -0,0 +1,13 @@
+package com.example.backend.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BatchPurchaseRequestDTO {
+    private String userId; // 用户ID
+    private String scheduleId; // 车次ID
+    private List<String> passengerIds; // 乘车人ID列表，每位乘车人一张车票
+    private String seatType; // e.g., "一等座", "二等座"
+}
@@ -0,0 +1,19 @@
+package com.example.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PurchaseResultDTO {
+    private OrderDTO order; // 直接购票时的订单
+    private QueueTicketDTO queueTicket; // 热门车次进入排队时的排队号
+
+    public boolean isQueued() {
+        return queueTicket != null;
+    }
+}
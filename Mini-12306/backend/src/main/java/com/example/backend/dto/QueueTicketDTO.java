@@ -0,0 +1,19 @@
+package com.example.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class QueueTicketDTO {
+    private String queueTicketId; // 排队号
+    private String scheduleId; // 车次ID
+    private String status; // 排队中、处理中、已下单、失败
+    private Integer position; // 前面等待的请求数，仅排队中有效
+    private String orderId; // 已下单时的订单ID
+    private String message;
+}
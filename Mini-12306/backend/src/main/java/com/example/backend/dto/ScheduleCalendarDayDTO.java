@@ -0,0 +1,20 @@
+package com.example.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScheduleCalendarDayDTO {
+    private LocalDate date;
+    private Integer trainCount; // 当天车次数
+    private Map<String, Boolean> seatAvailable; // 座位类型名称 -> 是否还有余票
+    private Double minPrice; // 当天最低票价，没有车次时为 null
+}
@@ -0,0 +1,40 @@
+package com.example.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.util.StringUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalTime;
+
+/**
+ * 车次查询的筛选、排序和分页参数，均为可选
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScheduleFilterDTO {
+    @DateTimeFormat(pattern = "HH:mm")
+    private LocalTime departAfter; // 最早出发时刻（含）
+    @DateTimeFormat(pattern = "HH:mm")
+    private LocalTime departBefore; // 最晚出发时刻（不含）
+    private Integer maxDurationMinutes; // 最长历时
+    private String seatType; // 只返回该座位类型有余票的车次
+    private BigDecimal maxPrice; // 最高票价，指定座位类型时按该座位类型的票价
+    private String sortBy; // departure（默认）、duration、price
+    private String cursor; // 上一页返回的 nextCursor
+    private Integer limit; // 每页条数
+
+    /**
+     * 没有任何筛选、排序和分页参数
+     */
+    public boolean isEmpty() {
+        return departAfter == null && departBefore == null && maxDurationMinutes == null
+                && !StringUtils.hasText(seatType) && maxPrice == null && !StringUtils.hasText(sortBy)
+                && !StringUtils.hasText(cursor) && limit == null;
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScheduleImportJobDTO {
+    private String jobId; // 导入任务ID
+    private String status; // 导入中、已完成、部分失败
+    private Integer totalSchedules; // 需要生成的车次数
+    private Integer importedSchedules; // 已写入的车次数
+    private Integer failedSchedules; // 写入失败的车次数
+    private Integer skippedSchedules; // 已存在而跳过的车次数
+    private Long seatRows; // 已写入的座位余票行数
+    private Long elapsedMillis;
+    private Double schedulesPerSecond; // 写入速度
+    private String message; // 首个失败原因
+}
@@ -0,0 +1,29 @@
+package com.example.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Map;
+
+/**
+ * 时刻表导入的一行：一个车次在一段日期内每天按相同时刻开行
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScheduleImportRowDTO {
+    private String trainNumber;
+    private String departureStation;
+    private String arrivalStation;
+    private LocalTime departureTime;
+    private LocalTime arrivalTime;
+    private Integer arrivalDays; // 到达日相对出发日的天数，为空时到达时刻早于出发时刻按次日到达
+    private LocalDate startDate; // 首个开行日期
+    private LocalDate endDate; // 最后开行日期（含）
+    private Map<String, Integer> seatConfig; // 座位类型名称 -> 座位数，为空时提供全部座位类型并使用默认座位数
+}
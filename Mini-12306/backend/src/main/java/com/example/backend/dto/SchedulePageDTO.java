@@ -0,0 +1,17 @@
+package com.example.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SchedulePageDTO {
+    private List<TrainScheduleDTO> items;
+    private String nextCursor; // 下一页游标，没有更多结果时为 null
+}
@@ -14,6 +14,7 @@ public class TicketDTO {
     private String ticketId;
     private TrainSchedule.ScheduleInfoDTO scheduleInfo; // 嵌套车次信息
     private String passengerName;
+    private String carriageNumber; // e.g., "03"
     private String seatNumber; // e.g., "03车08F座" [cite: 5]
     private String seatType;
     private Double pricePaid;
@@ -0,0 +1,21 @@
+package com.example.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransferItineraryDTO {
+    private List<TrainScheduleDTO> legs; // 按乘车顺序排列的各段车次
+    private List<String> transferStations; // 换乘站
+    private Integer transfers; // 换乘次数
+    private Long totalDurationMinutes; // 首段出发到末段到达的总时长
+    private Long waitMinutes; // 换乘等待总时长
+    private Double totalPrice; // 各段最低票价之和
+}
@@ -0,0 +1,16 @@
+package com.example.backend.event;
+
+/**
+ * 车次新增、修改或删除
+ */
+public class ScheduleChangedEvent {
+    private final String scheduleId;
+
+    public ScheduleChangedEvent(String scheduleId) {
+        this.scheduleId = scheduleId;
+    }
+
+    public String getScheduleId() {
+        return scheduleId;
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.backend.event;
+
+/**
+ * 车次余票变化：购票、退票、改签或取消占座
+ */
+public class SeatAvailabilityChangedEvent {
+    private final String scheduleId;
+
+    public SeatAvailabilityChangedEvent(String scheduleId) {
+        this.scheduleId = scheduleId;
+    }
+
+    public String getScheduleId() {
+        return scheduleId;
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.backend.mapper;
+
+import com.example.backend.model.OrderEntity;
+import com.example.backend.model.TicketEntity;
+import com.example.backend.model.TrainScheduleEntity;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 归档：把已发车的车次及其车票、订单移入按出发年月分区的归档表，并从归档表读取历史记录
+ */
+@Mapper
+public interface ArchiveMapper {
+
+    /**
+     * 出发时间早于 before 且没有待支付车票的车次，按出发时间从早到晚
+     */
+    @Select("SELECT ts.id FROM train_schedule ts WHERE ts.departure_time < #{before} " +
+            "AND NOT EXISTS (SELECT 1 FROM ticket t WHERE t.schedule_id = ts.id AND t.ticket_status = '待支付') " +
+            "ORDER BY ts.departure_time, ts.id LIMIT #{limit}")
+    List<String> selectArchivableScheduleIds(@Param("before") LocalDateTime before, @Param("limit") int limit);
+
+    /**
+     * 车次涉及的出发年月 yyyyMM
+     */
+    @Select("<script>" +
+            "SELECT DISTINCT YEAR(departure_time) * 100 + MONTH(departure_time) FROM train_schedule WHERE id IN " +
+            "<foreach collection='scheduleIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    List<Integer> selectMonths(@Param("scheduleIds") Collection<String> scheduleIds);
+
+    @Select("SELECT PARTITION_NAME FROM information_schema.PARTITIONS " +
+            "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = #{table}")
+    List<String> selectPartitionNames(@Param("table") String table);
+
+    /**
+     * 从 p_max 拆出 p{month} 分区，month 须大于已有分区的月份
+     */
+    @Update("ALTER TABLE ${table} REORGANIZE PARTITION p_max INTO " +
+            "(PARTITION p${month} VALUES LESS THAN (${bound}), PARTITION p_max VALUES LESS THAN MAXVALUE)")
+    void addPartition(@Param("table") String table, @Param("month") int month, @Param("bound") int bound);
+
+    /**
+     * 车票全部属于这批车次的订单
+     */
+    @Select("<script>" +
+            "SELECT DISTINCT t.order_id FROM ticket t WHERE t.schedule_id IN " +
+            "<foreach collection='scheduleIds' item='id' open='(' separator=',' close=')'>#{id}</foreach> " +
+            "AND NOT EXISTS (SELECT 1 FROM ticket o WHERE o.order_id = t.order_id AND o.schedule_id NOT IN " +
+            "<foreach collection='scheduleIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>)" +
+            "</script>")
+    List<String> selectOrderIds(@Param("scheduleIds") Collection<String> scheduleIds);
+
+    @Insert("<script>" +
+            "INSERT INTO train_schedule_archive (id, train_number, departure_station, arrival_station, departure_time, " +
+            "arrival_time, status, create_time, update_time, archive_month) " +
+            "SELECT id, train_number, departure_station, arrival_station, departure_time, arrival_time, status, " +
+            "create_time, update_time, YEAR(departure_time) * 100 + MONTH(departure_time) FROM train_schedule WHERE id IN " +
+            "<foreach collection='scheduleIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    int archiveSchedules(@Param("scheduleIds") Collection<String> scheduleIds);
+
+    @Insert("<script>" +
+            "INSERT INTO ticket_archive (id, user_id, order_id, schedule_id, passenger_id, seat_type_id, carriage_number, " +
+            "seat_number, ticket_type, price_paid, ticket_status, create_time, update_time, archive_month) " +
+            "SELECT t.id, t.user_id, t.order_id, t.schedule_id, t.passenger_id, t.seat_type_id, t.carriage_number, " +
+            "t.seat_number, t.ticket_type, t.price_paid, t.ticket_status, t.create_time, t.update_time, " +
+            "YEAR(ts.departure_time) * 100 + MONTH(ts.departure_time) " +
+            "FROM ticket t JOIN train_schedule ts ON ts.id = t.schedule_id WHERE t.schedule_id IN " +
+            "<foreach collection='scheduleIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    int archiveTickets(@Param("scheduleIds") Collection<String> scheduleIds);
+
+    /**
+     * 归档订单，分区取订单车票所属车次的出发年月
+     */
+    @Insert("<script>" +
+            "INSERT INTO order_archive (id, user_id, order_type, total_amount, payment_status, order_status, " +
+            "create_time, update_time, archive_month) " +
+            "SELECT o.id, o.user_id, o.order_type, o.total_amount, o.payment_status, o.order_status, o.create_time, " +
+            "o.update_time, (SELECT MIN(YEAR(ts.departure_time) * 100 + MONTH(ts.departure_time)) " +
+            "FROM ticket t JOIN train_schedule ts ON ts.id = t.schedule_id WHERE t.order_id = o.id) " +
+            "FROM `order` o WHERE o.id IN " +
+            "<foreach collection='orderIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    int archiveOrders(@Param("orderIds") Collection<String> orderIds);
+
+    @Delete("<script>" +
+            "DELETE FROM ticket WHERE schedule_id IN " +
+            "<foreach collection='scheduleIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    int deleteTickets(@Param("scheduleIds") Collection<String> scheduleIds);
+
+    @Delete("<script>" +
+            "DELETE FROM `order` WHERE id IN " +
+            "<foreach collection='orderIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    int deleteOrders(@Param("orderIds") Collection<String> orderIds);
+
+    @Delete("<script>" +
+            "DELETE FROM seat_availability WHERE schedule_id IN " +
+            "<foreach collection='scheduleIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    int deleteSeatAvailability(@Param("scheduleIds") Collection<String> scheduleIds);
+
+    @Delete("<script>" +
+            "DELETE FROM train_schedule WHERE id IN " +
+            "<foreach collection='scheduleIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    int deleteSchedules(@Param("scheduleIds") Collection<String> scheduleIds);
+
+    @Select("SELECT * FROM ticket_archive WHERE user_id = #{userId} ORDER BY create_time DESC")
+    List<TicketEntity> selectTicketsByUserId(@Param("userId") String userId);
+
+    @Select("<script>" +
+            "SELECT * FROM ticket_archive WHERE order_id IN " +
+            "<foreach collection='orderIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    List<TicketEntity> selectTicketsByOrderIds(@Param("orderIds") Collection<String> orderIds);
+
+    @Select("SELECT * FROM order_archive WHERE user_id = #{userId} ORDER BY create_time DESC")
+    List<OrderEntity> selectOrdersByUserId(@Param("userId") String userId);
+
+    /**
+     * 与 OrderMapper.selectUserOrderPage 条件和排序相同
+     */
+    @Select("<script>" +
+            "SELECT * FROM order_archive WHERE user_id = #{userId} " +
+            "<if test='afterTime != null'>" +
+            "AND (create_time &lt; #{afterTime} OR (create_time = #{afterTime} AND id &lt; #{afterId})) " +
+            "</if>" +
+            "ORDER BY create_time DESC, id DESC LIMIT #{limit}" +
+            "</script>")
+    List<OrderEntity> selectOrderPageByUserId(@Param("userId") String userId, @Param("afterTime") LocalDateTime afterTime,
+                                              @Param("afterId") String afterId, @Param("limit") int limit);
+
+    @Select("SELECT * FROM order_archive WHERE id = #{orderId} LIMIT 1")
+    OrderEntity selectOrderById(@Param("orderId") String orderId);
+
+    @Select("<script>" +
+            "SELECT * FROM train_schedule_archive WHERE id IN " +
+            "<foreach collection='scheduleIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    List<TrainScheduleEntity> selectSchedulesByIds(@Param("scheduleIds") Collection<String> scheduleIds);
+}
@@ -0,0 +1,67 @@
+package com.example.backend.mapper;
+
+import com.example.backend.model.InventoryLeaseEntity;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Mapper
+public interface InventoryLeaseMapper {
+
+    /**
+     * 创建租约行或续期已有的租约行，并锁定该行，额度不变
+     */
+    @Insert("INSERT INTO inventory_lease (node_id, schedule_id, seat_type_id, quantity, expires_at) " +
+            "VALUES (#{nodeId}, #{scheduleId}, #{seatTypeId}, 0, #{expiresAt}) " +
+            "ON DUPLICATE KEY UPDATE expires_at = VALUES(expires_at)")
+    int upsert(@Param("nodeId") String nodeId, @Param("scheduleId") String scheduleId,
+               @Param("seatTypeId") Integer seatTypeId, @Param("expiresAt") LocalDateTime expiresAt);
+
+    /**
+     * 调整租约额度，delta 为负数时表示归还
+     */
+    @Update("UPDATE inventory_lease SET quantity = quantity + #{delta} " +
+            "WHERE node_id = #{nodeId} AND schedule_id = #{scheduleId} AND seat_type_id = #{seatTypeId}")
+    int addQuantity(@Param("nodeId") String nodeId, @Param("scheduleId") String scheduleId,
+                    @Param("seatTypeId") Integer seatTypeId, @Param("delta") int delta);
+
+    /**
+     * 条件扣减租约额度：仅当 quantity >= count 时扣减
+     *
+     * @return 1 表示扣减成功，0 表示租约已被回收或额度不足
+     */
+    @Update("UPDATE inventory_lease SET quantity = quantity - #{count} " +
+            "WHERE node_id = #{nodeId} AND schedule_id = #{scheduleId} AND seat_type_id = #{seatTypeId} " +
+            "AND quantity >= #{count}")
+    int consume(@Param("nodeId") String nodeId, @Param("scheduleId") String scheduleId,
+                @Param("seatTypeId") Integer seatTypeId, @Param("count") int count);
+
+    @Select("SELECT quantity FROM inventory_lease " +
+            "WHERE node_id = #{nodeId} AND schedule_id = #{scheduleId} AND seat_type_id = #{seatTypeId}")
+    Integer selectQuantity(@Param("nodeId") String nodeId, @Param("scheduleId") String scheduleId,
+                           @Param("seatTypeId") Integer seatTypeId);
+
+    /**
+     * 续期实例的全部租约
+     */
+    @Update("UPDATE inventory_lease SET expires_at = #{expiresAt} WHERE node_id = #{nodeId}")
+    int renew(@Param("nodeId") String nodeId, @Param("expiresAt") LocalDateTime expiresAt);
+
+    /**
+     * 锁定并读取已过期的租约，须在事务中调用
+     */
+    @Select("SELECT * FROM inventory_lease WHERE expires_at < #{now} " +
+            "ORDER BY schedule_id, seat_type_id LIMIT #{limit} FOR UPDATE")
+    List<InventoryLeaseEntity> selectExpiredForUpdate(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    @Delete("DELETE FROM inventory_lease " +
+            "WHERE node_id = #{nodeId} AND schedule_id = #{scheduleId} AND seat_type_id = #{seatTypeId}")
+    int delete(@Param("nodeId") String nodeId, @Param("scheduleId") String scheduleId,
+               @Param("seatTypeId") Integer seatTypeId);
+}
@@ -2,8 +2,51 @@ package com.example.backend.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.example.backend.model.OrderEntity;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 
 @Mapper
 public interface OrderMapper extends BaseMapper<OrderEntity> {
-}
\ No newline at end of file
+
+    /**
+     * 批量结束处理中的订单，已完成或已取消的订单不受影响
+     */
+    @Update("<script>" +
+            "UPDATE `order` SET order_status = #{orderStatus}, payment_status = #{paymentStatus}, update_time = NOW() " +
+            "WHERE order_status = '处理中' AND id IN " +
+            "<foreach collection='orderIds' item='orderId' open='(' separator=',' close=')'>#{orderId}</foreach>" +
+            "</script>")
+    int finishProcessingOrders(@Param("orderIds") Collection<String> orderIds, @Param("orderStatus") String orderStatus,
+                               @Param("paymentStatus") String paymentStatus);
+
+    /**
+     * 批量插入订单，一条语句写入多行
+     */
+    @Insert("<script>" +
+            "INSERT INTO `order` (id, user_id, order_type, total_amount, payment_status, order_status, create_time, update_time) VALUES " +
+            "<foreach collection='orders' item='o' separator=','>" +
+            "(#{o.id}, #{o.userId}, #{o.orderType}, #{o.totalAmount}, #{o.paymentStatus}, #{o.orderStatus}, #{o.createTime}, #{o.updateTime})" +
+            "</foreach>" +
+            "</script>")
+    int insertBatch(@Param("orders") List<OrderEntity> orders);
+
+    /**
+     * 按 (下单时间, 订单ID) 倒序分页查询用户订单，afterTime 为空时从最新的订单开始
+     */
+    @Select("<script>" +
+            "SELECT * FROM `order` WHERE user_id = #{userId} " +
+            "<if test='afterTime != null'>" +
+            "AND (create_time &lt; #{afterTime} OR (create_time = #{afterTime} AND id &lt; #{afterId})) " +
+            "</if>" +
+            "ORDER BY create_time DESC, id DESC LIMIT #{limit}" +
+            "</script>")
+    List<OrderEntity> selectUserOrderPage(@Param("userId") String userId, @Param("afterTime") LocalDateTime afterTime,
+                                          @Param("afterId") String afterId, @Param("limit") int limit);
+}
@@ -0,0 +1,48 @@
+package com.example.backend.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.example.backend.model.PaymentJobEntity;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.List;
+
+@Mapper
+public interface PaymentJobMapper extends BaseMapper<PaymentJobEntity> {
+
+    /**
+     * 查询待派发的支付任务：待处理的任务，以及已有渠道结果、回调尚未完成的任务，按创建时间排序
+     */
+    @Select("SELECT * FROM payment_job WHERE status IN ('待处理', '渠道成功', '渠道失败') " +
+            "ORDER BY create_time LIMIT #{limit}")
+    List<PaymentJobEntity> selectPending(@Param("limit") int limit);
+
+    /**
+     * 领取待处理的任务，返回 0 表示任务已被其他节点领取
+     */
+    @Update("UPDATE payment_job SET status = '处理中', attempts = attempts + 1, update_time = NOW() " +
+            "WHERE id = #{id} AND status = '待处理'")
+    int claim(@Param("id") String id);
+
+    /**
+     * 领取需要重新执行回调的任务，按执行次数做条件更新，返回 0 表示任务已被其他节点领取或已结束
+     */
+    @Update("UPDATE payment_job SET attempts = attempts + 1, update_time = NOW() " +
+            "WHERE id = #{id} AND status IN ('渠道成功', '渠道失败') AND attempts = #{attempts}")
+    int claimCallback(@Param("id") String id, @Param("attempts") int attempts);
+
+    /**
+     * 保存支付渠道的处理结果（渠道成功、渠道失败），执行回调前调用
+     */
+    @Update("UPDATE payment_job SET status = #{status}, update_time = NOW() WHERE id = #{id} AND status = '处理中'")
+    int recordChannelResult(@Param("id") String id, @Param("status") String status);
+
+    /**
+     * 回调完成后记录任务结果，已结束的任务不受影响
+     */
+    @Update("UPDATE payment_job SET status = #{status}, update_time = NOW() " +
+            "WHERE id = #{id} AND status IN ('渠道成功', '渠道失败')")
+    int finish(@Param("id") String id, @Param("status") String status);
+}
@@ -0,0 +1,76 @@
+package com.example.backend.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.baomidou.mybatisplus.extension.handlers.JacksonTypeHandler;
+import com.example.backend.dto.TrainScheduleDTO;
+import com.example.backend.model.ScheduleReadModelEntity;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Result;
+import org.apache.ibatis.annotations.Results;
+import org.apache.ibatis.annotations.Select;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Mapper
+public interface ScheduleReadModelMapper extends BaseMapper<ScheduleReadModelEntity> {
+
+    /**
+     * 批量写入读模型，已存在的车次整行覆盖
+     */
+    @Insert("<script>" +
+            "INSERT INTO schedule_read_model (schedule_id, train_number, departure_station, arrival_station, " +
+            "departure_time, arrival_time, duration_minutes, seat_availability, base_price, status, update_time) VALUES " +
+            "<foreach collection='rows' item='r' separator=','>" +
+            "(#{r.scheduleId}, #{r.trainNumber}, #{r.departureStation}, #{r.arrivalStation}, #{r.departureTime}, " +
+            "#{r.arrivalTime}, #{r.durationMinutes}, " +
+            "#{r.seatAvailability, typeHandler=com.baomidou.mybatisplus.extension.handlers.JacksonTypeHandler}, " +
+            "#{r.basePrice, typeHandler=com.baomidou.mybatisplus.extension.handlers.JacksonTypeHandler}, " +
+            "#{r.status}, NOW())" +
+            "</foreach>" +
+            " ON DUPLICATE KEY UPDATE train_number = VALUES(train_number), " +
+            "departure_station = VALUES(departure_station), arrival_station = VALUES(arrival_station), " +
+            "departure_time = VALUES(departure_time), arrival_time = VALUES(arrival_time), " +
+            "duration_minutes = VALUES(duration_minutes), seat_availability = VALUES(seat_availability), " +
+            "base_price = VALUES(base_price), status = VALUES(status), update_time = NOW()" +
+            "</script>")
+    int upsertBatch(@Param("rows") List<ScheduleReadModelEntity> rows);
+
+    /**
+     * 按出发站、到达站和出发时间范围查询，直接返回车次查询结果
+     *
+     * 一次 idx_route_time 索引范围扫描，座位类型、余票和票价取自同一行；车站列表为空、时间为空时不限制。
+     */
+    @Select("<script>" +
+            "SELECT schedule_id, train_number, departure_station, arrival_station, " +
+            "departure_time AS departure_date_time, arrival_time AS arrival_date_time, duration_minutes, " +
+            "seat_availability, base_price, status FROM schedule_read_model" +
+            "<where>" +
+            "<if test='departureStations.size() > 0'>departure_station IN " +
+            "<foreach collection='departureStations' item='s' open='(' separator=',' close=')'>#{s}</foreach></if>" +
+            "<if test='arrivalStations.size() > 0'> AND arrival_station IN " +
+            "<foreach collection='arrivalStations' item='s' open='(' separator=',' close=')'>#{s}</foreach></if>" +
+            "<if test='departFrom != null'> AND departure_time &gt;= #{departFrom}</if>" +
+            "<if test='departTo != null'> AND departure_time &lt; #{departTo}</if>" +
+            "</where>" +
+            " ORDER BY departure_time, schedule_id" +
+            "</script>")
+    @Results({
+            @Result(column = "seat_availability", property = "seatAvailability", typeHandler = JacksonTypeHandler.class),
+            @Result(column = "base_price", property = "basePrice", typeHandler = JacksonTypeHandler.class)
+    })
+    List<TrainScheduleDTO> search(@Param("departureStations") List<String> departureStations,
+                                  @Param("arrivalStations") List<String> arrivalStations,
+                                  @Param("departFrom") LocalDateTime departFrom,
+                                  @Param("departTo") LocalDateTime departTo);
+
+    /**
+     * 删除车次已不存在的行
+     */
+    @Delete("DELETE m FROM schedule_read_model m LEFT JOIN train_schedule ts ON ts.id = m.schedule_id " +
+            "WHERE ts.id IS NULL")
+    int deleteOrphans();
+}
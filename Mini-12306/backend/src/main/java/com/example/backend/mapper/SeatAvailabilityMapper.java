@@ -1,9 +1,92 @@
 package com.example.backend.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.example.backend.model.SeatAvailabilityDelta;
 import com.example.backend.model.SeatAvailabilityEntity;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.Collection;
+import java.util.List;
 
 @Mapper
 public interface SeatAvailabilityMapper extends BaseMapper<SeatAvailabilityEntity> {
-}
\ No newline at end of file
+
+    /**
+     * 批量回写余票增量，一条语句更新多行
+     */
+    @Update("<script>" +
+            "UPDATE seat_availability SET available_count = available_count + CASE " +
+            "<foreach collection='deltas' item='d'>" +
+            "WHEN schedule_id = #{d.scheduleId} AND seat_type_id = #{d.seatTypeId} THEN #{d.delta} " +
+            "</foreach>" +
+            "ELSE 0 END, update_time = NOW() WHERE " +
+            "<foreach collection='deltas' item='d' open='(' separator=' OR ' close=')'>" +
+            "(schedule_id = #{d.scheduleId} AND seat_type_id = #{d.seatTypeId})" +
+            "</foreach>" +
+            "</script>")
+    int applyAvailabilityDeltas(@Param("deltas") List<SeatAvailabilityDelta> deltas);
+
+    /**
+     * 条件扣减余票：仅当 available_count >= count 时扣减
+     *
+     * @return 更新行数，1 表示扣减成功，0 表示余票不足或记录不存在
+     */
+    @Update("UPDATE seat_availability SET available_count = available_count - #{count}, update_time = NOW() " +
+            "WHERE schedule_id = #{scheduleId} AND seat_type_id = #{seatTypeId} AND available_count >= #{count}")
+    int reserveSeats(@Param("scheduleId") String scheduleId, @Param("seatTypeId") Integer seatTypeId, @Param("count") int count);
+
+    /**
+     * 一次查询多个车次的余票和票价
+     */
+    @Select("<script>" +
+            "SELECT * FROM seat_availability WHERE schedule_id IN " +
+            "<foreach collection='scheduleIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    List<SeatAvailabilityEntity> selectByScheduleIds(@Param("scheduleIds") Collection<String> scheduleIds);
+
+    /**
+     * 锁定并读取余票数，须在事务中调用
+     */
+    @Select("SELECT available_count FROM seat_availability " +
+            "WHERE schedule_id = #{scheduleId} AND seat_type_id = #{seatTypeId} FOR UPDATE")
+    Integer selectAvailableCountForUpdate(@Param("scheduleId") String scheduleId, @Param("seatTypeId") Integer seatTypeId);
+
+    /**
+     * 归还余票
+     */
+    @Update("UPDATE seat_availability SET available_count = available_count + #{count}, update_time = NOW() " +
+            "WHERE schedule_id = #{scheduleId} AND seat_type_id = #{seatTypeId}")
+    int releaseSeats(@Param("scheduleId") String scheduleId, @Param("seatTypeId") Integer seatTypeId, @Param("count") int count);
+
+    /**
+     * 一条语句条件扣减多个 (车次, 座位类型) 的余票，delta 为需要扣减的数量（正数）
+     *
+     * 只有余票充足的行会被更新，返回行数小于请求数时调用方需回滚事务
+     */
+    @Update("<script>" +
+            "UPDATE seat_availability SET available_count = available_count - CASE " +
+            "<foreach collection='requests' item='r'>" +
+            "WHEN schedule_id = #{r.scheduleId} AND seat_type_id = #{r.seatTypeId} THEN #{r.delta} " +
+            "</foreach>" +
+            "ELSE 0 END, update_time = NOW() WHERE " +
+            "<foreach collection='requests' item='r' open='(' separator=' OR ' close=')'>" +
+            "(schedule_id = #{r.scheduleId} AND seat_type_id = #{r.seatTypeId} AND available_count &gt;= #{r.delta})" +
+            "</foreach>" +
+            "</script>")
+    int reserveSeatsBatch(@Param("requests") List<SeatAvailabilityDelta> requests);
+
+    /**
+     * 批量插入座位余票，一条语句写入多行
+     */
+    @Insert("<script>" +
+            "INSERT INTO seat_availability (schedule_id, seat_type_id, available_count, total_count, price, create_time, update_time) VALUES " +
+            "<foreach collection='availabilities' item='a' separator=','>" +
+            "(#{a.scheduleId}, #{a.seatTypeId}, #{a.availableCount}, #{a.totalCount}, #{a.price}, #{a.createTime}, #{a.updateTime})" +
+            "</foreach>" +
+            "</script>")
+    int insertBatch(@Param("availabilities") List<SeatAvailabilityEntity> availabilities);
+}
@@ -0,0 +1,54 @@
+package com.example.backend.mapper;
+
+import com.example.backend.model.SeatClaimEntity;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Mapper
+public interface SeatClaimMapper {
+
+    /**
+     * 占用座位，座位已被占用时不写入
+     *
+     * @return 1 表示占用成功，0 表示座位已被其他车票占用
+     */
+    @Insert("INSERT IGNORE INTO seat_claim (schedule_id, seat_type_id, carriage_number, seat_number, ticket_id, create_time) " +
+            "VALUES (#{scheduleId}, #{seatTypeId}, #{carriageNumber}, #{seatNumber}, #{ticketId}, NOW())")
+    int insertIgnore(SeatClaimEntity claim);
+
+    /**
+     * 查询车次某座位类型下已占用的座位
+     */
+    @Select("SELECT carriage_number, seat_number FROM seat_claim " +
+            "WHERE schedule_id = #{scheduleId} AND seat_type_id = #{seatTypeId}")
+    List<SeatClaimEntity> selectClaims(@Param("scheduleId") String scheduleId, @Param("seatTypeId") Integer seatTypeId);
+
+    /**
+     * 释放车票占用的座位，只删除该车票自己的占用记录
+     */
+    @Delete("DELETE FROM seat_claim WHERE schedule_id = #{scheduleId} AND seat_type_id = #{seatTypeId} " +
+            "AND carriage_number = #{carriageNumber} AND seat_number = #{seatNumber} AND ticket_id = #{ticketId}")
+    int delete(SeatClaimEntity claim);
+
+    /**
+     * 删除早于指定时间且没有对应有效车票的占用记录（写入车票前实例宕机、或车票已退改但未释放）
+     */
+    @Delete("DELETE FROM seat_claim WHERE schedule_id = #{scheduleId} AND seat_type_id = #{seatTypeId} " +
+            "AND create_time < #{before} AND ticket_id NOT IN (SELECT id FROM ticket " +
+            "WHERE schedule_id = #{scheduleId} AND seat_type_id = #{seatTypeId} " +
+            "AND ticket_status IN ('待支付', '已支付', '已出票', '已检票'))")
+    int deleteStale(@Param("scheduleId") String scheduleId, @Param("seatTypeId") Integer seatTypeId,
+                    @Param("before") LocalDateTime before);
+
+    /**
+     * 删除车次的全部占用记录（车次删除或归档时调用）
+     */
+    @Delete("DELETE FROM seat_claim WHERE schedule_id = #{scheduleId}")
+    int deleteBySchedule(@Param("scheduleId") String scheduleId);
+}
@@ -0,0 +1,9 @@
+package com.example.backend.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.example.backend.model.StationEntity;
+import org.apache.ibatis.annotations.Mapper;
+
+@Mapper
+public interface StationMapper extends BaseMapper<StationEntity> {
+}
@@ -2,8 +2,78 @@ package com.example.backend.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.example.backend.model.TicketEntity;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.Collection;
+import java.util.List;
 
 @Mapper
 public interface TicketMapper extends BaseMapper<TicketEntity> {
-}
\ No newline at end of file
+
+    /**
+     * 查询车次某座位类型下仍占用座位的车票（仅车厢号和座位号）
+     */
+    @Select("SELECT id, carriage_number, seat_number FROM ticket " +
+            "WHERE schedule_id = #{scheduleId} AND seat_type_id = #{seatTypeId} " +
+            "AND ticket_status IN ('待支付', '已支付', '已出票', '已检票')")
+    List<TicketEntity> selectOccupiedSeats(@Param("scheduleId") String scheduleId, @Param("seatTypeId") Integer seatTypeId);
+
+    /**
+     * 查询并锁定订单下待支付的车票
+     */
+    @Select("<script>" +
+            "SELECT * FROM ticket WHERE ticket_status = '待支付' AND order_id IN " +
+            "<foreach collection='orderIds' item='orderId' open='(' separator=',' close=')'>#{orderId}</foreach> " +
+            "FOR UPDATE" +
+            "</script>")
+    List<TicketEntity> selectPendingByOrderIdsForUpdate(@Param("orderIds") Collection<String> orderIds);
+
+    /**
+     * 查询所有待支付车票的订单ID和创建时间（启动时恢复占座）
+     */
+    @Select("SELECT order_id, MIN(create_time) AS create_time FROM ticket WHERE ticket_status = '待支付' GROUP BY order_id")
+    List<TicketEntity> selectPendingOrders();
+
+    /**
+     * 条件更新订单下车票状态，仅更新当前状态为 fromStatus 的车票
+     */
+    @Update("UPDATE ticket SET ticket_status = #{toStatus}, update_time = NOW() " +
+            "WHERE order_id = #{orderId} AND ticket_status = #{fromStatus}")
+    int updateStatusByOrderId(@Param("orderId") String orderId, @Param("fromStatus") String fromStatus, @Param("toStatus") String toStatus);
+
+    /**
+     * 条件更新单张车票状态，仅当前状态在 fromStatuses 中时更新
+     */
+    @Update("<script>" +
+            "UPDATE ticket SET ticket_status = #{toStatus}, update_time = NOW() WHERE id = #{ticketId} AND ticket_status IN " +
+            "<foreach collection='fromStatuses' item='status' open='(' separator=',' close=')'>#{status}</foreach>" +
+            "</script>")
+    int updateStatusIfIn(@Param("ticketId") String ticketId, @Param("fromStatuses") Collection<String> fromStatuses,
+                         @Param("toStatus") String toStatus);
+
+    /**
+     * 批量更新车票状态
+     */
+    @Update("<script>" +
+            "UPDATE ticket SET ticket_status = #{toStatus}, update_time = NOW() WHERE id IN " +
+            "<foreach collection='ticketIds' item='ticketId' open='(' separator=',' close=')'>#{ticketId}</foreach>" +
+            "</script>")
+    int updateStatusByIds(@Param("ticketIds") Collection<String> ticketIds, @Param("toStatus") String toStatus);
+
+    /**
+     * 批量插入车票，一条语句写入多行
+     */
+    @Insert("<script>" +
+            "INSERT INTO ticket (id, user_id, order_id, schedule_id, passenger_id, seat_type_id, carriage_number, " +
+            "seat_number, ticket_type, price_paid, ticket_status, create_time, update_time) VALUES " +
+            "<foreach collection='tickets' item='t' separator=','>" +
+            "(#{t.id}, #{t.userId}, #{t.orderId}, #{t.scheduleId}, #{t.passengerId}, #{t.seatTypeId}, #{t.carriageNumber}, " +
+            "#{t.seatNumber}, #{t.ticketType}, #{t.pricePaid}, #{t.ticketStatus}, #{t.createTime}, #{t.updateTime})" +
+            "</foreach>" +
+            "</script>")
+    int insertBatch(@Param("tickets") List<TicketEntity> tickets);
+}
@@ -1,9 +1,118 @@
 package com.example.backend.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.example.backend.model.ScheduleCalendarRow;
+import com.example.backend.model.SchedulePageQuery;
+import com.example.backend.model.ScheduleSearchRow;
 import com.example.backend.model.TrainScheduleEntity;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 
 @Mapper
 public interface TrainScheduleMapper extends BaseMapper<TrainScheduleEntity> {
-}
\ No newline at end of file
+
+    // 余票日历的连接和筛选条件，按座位类型聚合和按天汇总共用
+    String CALENDAR_FROM = "FROM train_schedule ts JOIN seat_availability sa ON sa.schedule_id = ts.id " +
+            "WHERE ts.departure_station IN " +
+            "<foreach collection='departureStations' item='s' open='(' separator=',' close=')'>#{s}</foreach> " +
+            "AND ts.arrival_station IN " +
+            "<foreach collection='arrivalStations' item='s' open='(' separator=',' close=')'>#{s}</foreach> " +
+            "AND ts.departure_time &gt;= #{from} AND ts.departure_time &lt; #{to} ";
+
+    /**
+     * 所有车次涉及的车站，去重
+     */
+    @Select("SELECT departure_station FROM train_schedule UNION SELECT arrival_station FROM train_schedule")
+    List<String> selectDistinctStations();
+
+    /**
+     * 车次分页查询：按座位类型余票、票价、出发时刻和历时筛选，按出发时间、历时或最低票价排序，
+     * 以 (排序键, 车次ID) 为游标取下一页
+     *
+     * 座位类型和票价条件作用在关联的 seat_availability 行上，min_price 为满足条件的最低票价
+     */
+    @Select("<script>" +
+            "SELECT ts.*, TIMESTAMPDIFF(MINUTE, ts.departure_time, ts.arrival_time) AS duration_minutes, " +
+            "MIN(sa.price) AS min_price " +
+            "FROM train_schedule ts JOIN seat_availability sa ON sa.schedule_id = ts.id " +
+            "<if test='q.seatTypeId != null'>AND sa.seat_type_id = #{q.seatTypeId} AND sa.available_count &gt; 0 </if>" +
+            "<if test='q.maxPrice != null'>AND sa.price &lt;= #{q.maxPrice} </if>" +
+            "<where>" +
+            "<if test='q.departureStations != null and q.departureStations.size() > 0'>" +
+            "AND ts.departure_station IN " +
+            "<foreach collection='q.departureStations' item='s' open='(' separator=',' close=')'>#{s}</foreach> " +
+            "</if>" +
+            "<if test='q.arrivalStations != null and q.arrivalStations.size() > 0'>" +
+            "AND ts.arrival_station IN " +
+            "<foreach collection='q.arrivalStations' item='s' open='(' separator=',' close=')'>#{s}</foreach> " +
+            "</if>" +
+            "<if test='q.departFrom != null'>AND ts.departure_time &gt;= #{q.departFrom} </if>" +
+            "<if test='q.departTo != null'>AND ts.departure_time &lt; #{q.departTo} </if>" +
+            "<if test='q.departAfter != null'>AND TIME(ts.departure_time) &gt;= #{q.departAfter} </if>" +
+            "<if test='q.departBefore != null'>AND TIME(ts.departure_time) &lt; #{q.departBefore} </if>" +
+            "<if test='q.maxDurationMinutes != null'>" +
+            "AND TIMESTAMPDIFF(MINUTE, ts.departure_time, ts.arrival_time) &lt;= #{q.maxDurationMinutes} " +
+            "</if>" +
+            "<if test=\"q.sortBy == 'departure' and q.afterId != null\">" +
+            "AND (ts.departure_time &gt; #{q.afterDepartureTime} " +
+            "OR (ts.departure_time = #{q.afterDepartureTime} AND ts.id &gt; #{q.afterId})) " +
+            "</if>" +
+            "<if test=\"q.sortBy == 'duration' and q.afterId != null\">" +
+            "AND (TIMESTAMPDIFF(MINUTE, ts.departure_time, ts.arrival_time) &gt; #{q.afterDuration} " +
+            "OR (TIMESTAMPDIFF(MINUTE, ts.departure_time, ts.arrival_time) = #{q.afterDuration} AND ts.id &gt; #{q.afterId})) " +
+            "</if>" +
+            "</where>" +
+            "GROUP BY ts.id " +
+            "<if test=\"q.sortBy == 'price' and q.afterId != null\">" +
+            "HAVING MIN(sa.price) &gt; #{q.afterPrice} OR (MIN(sa.price) = #{q.afterPrice} AND ts.id &gt; #{q.afterId}) " +
+            "</if>" +
+            "<choose>" +
+            "<when test=\"q.sortBy == 'duration'\">ORDER BY duration_minutes, ts.id </when>" +
+            "<when test=\"q.sortBy == 'price'\">ORDER BY min_price, ts.id </when>" +
+            "<otherwise>ORDER BY ts.departure_time, ts.id </otherwise>" +
+            "</choose>" +
+            "LIMIT #{q.fetchSize}" +
+            "</script>")
+    List<ScheduleSearchRow> selectSchedulePage(@Param("q") SchedulePageQuery query);
+
+    /**
+     * 余票日历：按 (出发日期, 座位类型) 聚合车次数、余票合计和最低票价，
+     * 另为每天返回一条 seat_type_id 为 NULL 的汇总行，其车次数为当天不同车次的总数
+     */
+    @Select("<script>" +
+            "SELECT DATE(ts.departure_time) AS departure_date, sa.seat_type_id, " +
+            "COUNT(DISTINCT ts.id) AS train_count, SUM(sa.available_count) AS available_count, " +
+            "MIN(sa.price) AS min_price " +
+            CALENDAR_FROM +
+            "GROUP BY DATE(ts.departure_time), sa.seat_type_id " +
+            "UNION ALL " +
+            "SELECT DATE(ts.departure_time) AS departure_date, NULL AS seat_type_id, " +
+            "COUNT(DISTINCT ts.id) AS train_count, SUM(sa.available_count) AS available_count, " +
+            "MIN(sa.price) AS min_price " +
+            CALENDAR_FROM +
+            "GROUP BY DATE(ts.departure_time)" +
+            "</script>")
+    List<ScheduleCalendarRow> selectCalendar(@Param("departureStations") Collection<String> departureStations,
+                                             @Param("arrivalStations") Collection<String> arrivalStations,
+                                             @Param("from") LocalDateTime from,
+                                             @Param("to") LocalDateTime to);
+
+    /**
+     * 批量插入车次，一条语句写入多行
+     */
+    @Insert("<script>" +
+            "INSERT INTO train_schedule (id, train_number, departure_station, arrival_station, departure_time, arrival_time, " +
+            "status, create_time, update_time) VALUES " +
+            "<foreach collection='schedules' item='s' separator=','>" +
+            "(#{s.id}, #{s.trainNumber}, #{s.departureStation}, #{s.arrivalStation}, #{s.departureTime}, #{s.arrivalTime}, " +
+            "#{s.status}, #{s.createTime}, #{s.updateTime})" +
+            "</foreach>" +
+            "</script>")
+    int insertBatch(@Param("schedules") List<TrainScheduleEntity> schedules);
+}
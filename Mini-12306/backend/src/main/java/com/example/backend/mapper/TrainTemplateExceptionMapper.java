@@ -0,0 +1,17 @@
+package com.example.backend.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.example.backend.model.TrainTemplateExceptionEntity;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+
+@Mapper
+public interface TrainTemplateExceptionMapper extends BaseMapper<TrainTemplateExceptionEntity> {
+
+    /**
+     * 记录停开的车次，已记录时忽略
+     */
+    @Insert("INSERT IGNORE INTO train_template_exception (schedule_id, train_number, run_date, create_time) " +
+            "VALUES (#{scheduleId}, #{trainNumber}, #{runDate}, NOW())")
+    int insertIgnore(TrainTemplateExceptionEntity exception);
+}
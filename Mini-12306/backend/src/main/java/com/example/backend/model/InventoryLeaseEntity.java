@@ -0,0 +1,25 @@
+package com.example.backend.model;
+
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 余票租约：某个实例从 seat_availability 租用、尚未售出的额度
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@TableName("inventory_lease")
+public class InventoryLeaseEntity {
+    private String nodeId;
+    private String scheduleId;
+    private Integer seatTypeId;
+    private Integer quantity;
+    private LocalDateTime expiresAt;
+}
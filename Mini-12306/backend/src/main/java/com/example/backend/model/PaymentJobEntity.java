@@ -0,0 +1,30 @@
+package com.example.backend.model;
+
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@TableName("payment_job")
+public class PaymentJobEntity {
+    @TableId
+    private String id;
+    private String jobType; // 支付、退款、退回
+    private String orderId;
+    private String ticketId; // 退款的车票ID，改签支付时为原车票ID
+    private String userId;
+    private BigDecimal amount;
+    private String status; // 待处理、处理中、渠道成功、渠道失败、成功、失败
+    private Integer attempts; // 执行次数，重新执行回调时用于领取任务
+    private LocalDateTime createTime;
+    private LocalDateTime updateTime;
+}
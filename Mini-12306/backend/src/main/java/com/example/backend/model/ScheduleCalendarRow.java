@@ -0,0 +1,26 @@
+package com.example.backend.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * 余票日历聚合行：某天某座位类型的车次数、余票合计和最低票价
+ *
+ * seatTypeId 为 null 的是当天汇总行，车次数为当天不同车次的总数
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScheduleCalendarRow {
+    private LocalDate departureDate;
+    private Integer seatTypeId;
+    private Integer trainCount;
+    private Integer availableCount;
+    private BigDecimal minPrice;
+}
@@ -0,0 +1,38 @@
+package com.example.backend.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+
+/**
+ * 车次分页查询条件：按 (排序键, 车次ID) 做游标分页，after* 为上一页最后一条的排序键
+ */
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class SchedulePageQuery {
+    private List<String> departureStations;
+    private List<String> arrivalStations;
+    private LocalDateTime departFrom;
+    private LocalDateTime departTo;
+    // 未指定日期时按一天中的时刻筛选
+    private LocalTime departAfter;
+    private LocalTime departBefore;
+    private Integer maxDurationMinutes;
+    private Integer seatTypeId;
+    private BigDecimal maxPrice;
+    private String sortBy;
+    private String afterId;
+    private LocalDateTime afterDepartureTime;
+    private Long afterDuration;
+    private BigDecimal afterPrice;
+    // 多取一条用于判断是否还有下一页
+    private int fetchSize;
+}
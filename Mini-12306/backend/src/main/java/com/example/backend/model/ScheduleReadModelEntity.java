@@ -0,0 +1,39 @@
+package com.example.backend.model;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import com.baomidou.mybatisplus.extension.handlers.JacksonTypeHandler;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * 车次查询读模型：一行即一个车次，各座位类型的余票和票价以 JSON 保存在同一行
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@TableName(value = "schedule_read_model", autoResultMap = true)
+public class ScheduleReadModelEntity {
+    @TableId(type = IdType.INPUT)
+    private String scheduleId;
+    private String trainNumber;
+    private String departureStation;
+    private String arrivalStation;
+    private LocalDateTime departureTime;
+    private LocalDateTime arrivalTime;
+    private Long durationMinutes;
+    @TableField(typeHandler = JacksonTypeHandler.class)
+    private Map<String, Integer> seatAvailability;
+    @TableField(typeHandler = JacksonTypeHandler.class)
+    private Map<String, Double> basePrice;
+    private String status;
+    private LocalDateTime updateTime;
+}
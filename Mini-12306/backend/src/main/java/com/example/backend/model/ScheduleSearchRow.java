@@ -0,0 +1,18 @@
+package com.example.backend.model;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * 分页查询返回的车次，附带历时和满足条件的最低票价，用于生成下一页游标
+ */
+@Data
+@NoArgsConstructor
+@EqualsAndHashCode(callSuper = true)
+public class ScheduleSearchRow extends TrainScheduleEntity {
+    private Long durationMinutes;
+    private BigDecimal minPrice;
+}
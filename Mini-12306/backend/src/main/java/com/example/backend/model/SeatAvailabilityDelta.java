@@ -0,0 +1,17 @@
+package com.example.backend.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 余票增量：回写 seat_availability 时使用，delta 为负表示售出，为正表示释放
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SeatAvailabilityDelta {
+    private String scheduleId;
+    private Integer seatTypeId;
+    private Integer delta;
+}
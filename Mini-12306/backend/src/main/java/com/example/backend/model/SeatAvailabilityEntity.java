@@ -22,6 +22,7 @@ public class SeatAvailabilityEntity {
     private String scheduleId;
     private Integer seatTypeId;
     private Integer availableCount;
+    private Integer totalCount;
     private BigDecimal price;
     private LocalDateTime createTime;
     private LocalDateTime updateTime;
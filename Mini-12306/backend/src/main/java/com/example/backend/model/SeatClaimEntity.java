@@ -0,0 +1,26 @@
+package com.example.backend.model;
+
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 座位占用记录：(车次, 座位类型, 车厢号, 座位号) 唯一，多个实例分配座位时以此为准
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@TableName("seat_claim")
+public class SeatClaimEntity {
+    private String scheduleId;
+    private Integer seatTypeId;
+    private String carriageNumber;
+    private String seatNumber;
+    private String ticketId;
+    private LocalDateTime createTime;
+}
@@ -0,0 +1,20 @@
+package com.example.backend.model;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@TableName("station")
+public class StationEntity {
+    @TableId(value = "name", type = IdType.INPUT)
+    private String name;
+    private String city;
+}
@@ -0,0 +1,35 @@
+package com.example.backend.model;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@TableName("train_template")
+public class TrainTemplateEntity {
+    @TableId(value = "train_number", type = IdType.INPUT)
+    private String trainNumber;
+    private String departureStation;
+    private String arrivalStation;
+    private LocalTime departureTime;
+    private LocalTime arrivalTime;
+    private Integer arrivalDays; // 到达日相对出发日的天数
+    private String seatConfig; // 座位类型名称 -> 座位数（JSON），为空时提供全部座位类型
+    private LocalDate startDate;
+    private LocalDate endDate; // 为空表示长期开行
+    private String runDays; // 周一至周日是否开行，如 1111100
+    private String status; // 启用、停用
+    private LocalDateTime createTime;
+    private LocalDateTime updateTime;
+}
@@ -0,0 +1,28 @@
+package com.example.backend.model;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 模板车次停开记录：按模板生成后被删除的车次，之后不再生成
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@TableName("train_template_exception")
+public class TrainTemplateExceptionEntity {
+    @TableId(type = IdType.INPUT)
+    private String scheduleId;
+    private String trainNumber;
+    private LocalDate runDate;
+    private LocalDateTime createTime;
+}
@@ -0,0 +1,234 @@
+package com.example.backend.service;
+
+import com.example.backend.mapper.ArchiveMapper;
+import com.example.backend.model.OrderEntity;
+import com.example.backend.model.TicketEntity;
+import com.example.backend.model.TrainScheduleEntity;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 历史数据归档
+ *
+ * 出发超过 retain-days 天的车次连同其车票和订单，分批移入按出发年月分区的归档表，
+ * 在线表只保留近期和未来的车次，查询和购票使用的索引不随历史数据增长。
+ * 每批在一个事务中先写归档表再删除在线表的行；新月份的分区在事务开始前创建（DDL 会隐式提交）。
+ *
+ * 用户的车票和订单查询在在线表之外再读取归档表，调用方无需区分。
+ */
+@Slf4j
+@Service
+public class ArchiveService {
+
+    private static final String[] ARCHIVE_TABLES = {"train_schedule_archive", "order_archive", "ticket_archive"};
+
+    @Autowired
+    private ArchiveMapper archiveMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private SeatInventoryService seatInventoryService;
+
+    @Autowired
+    private SeatAllocationService seatAllocationService;
+
+    @Autowired
+    private ScheduleSearchService scheduleSearchService;
+
+    @Autowired
+    private ScheduleCalendarService scheduleCalendarService;
+
+    @Autowired
+    private TransferSearchService transferSearchService;
+
+    @Autowired
+    private StationIndexService stationIndexService;
+
+    @Autowired
+    private ScheduleReadModelService scheduleReadModelService;
+
+    // 关闭时不归档，历史查询也不读取归档表
+    @Value("${app.archive.enabled:true}")
+    private boolean enabled;
+
+    // 出发超过该天数的车次才归档
+    @Value("${app.archive.retain-days:30}")
+    private int retainDays;
+
+    // 每个事务归档的车次数
+    @Value("${app.archive.batch-size:200}")
+    private int batchSize;
+
+    // 归档表 -> 已有的最大分区月份
+    private final Map<String, Integer> maxPartitions = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    /**
+     * 归档出发超过保留天数的车次，多节点部署时只在一个节点开启
+     *
+     * @return 归档的车次数
+     */
+    @Scheduled(cron = "${app.archive.cron:0 30 3 * * *}")
+    public int archive() {
+        if (!enabled || !running.compareAndSet(false, true)) {
+            return 0;
+        }
+        int total = 0;
+        try {
+            LocalDateTime before = LocalDate.now().minusDays(retainDays).atStartOfDay();
+            while (true) {
+                List<String> scheduleIds = archiveMapper.selectArchivableScheduleIds(before, batchSize);
+                if (scheduleIds.isEmpty()) {
+                    break;
+                }
+                archiveBatch(scheduleIds);
+                total += scheduleIds.size();
+                if (scheduleIds.size() < batchSize) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            log.error("历史数据归档失败: archived={}", total, e);
+        } finally {
+            running.set(false);
+        }
+        if (total > 0) {
+            scheduleSearchService.invalidate();
+            scheduleCalendarService.invalidate();
+            stationIndexService.refreshAfterCommit();
+            log.info("历史数据归档完成: schedules={}", total);
+        }
+        return total;
+    }
+
+    /**
+     * 用户已归档的车票，按购票时间倒序
+     */
+    public List<TicketEntity> findUserTickets(String userId) {
+        return enabled ? archiveMapper.selectTicketsByUserId(userId) : Collections.emptyList();
+    }
+
+    /**
+     * 用户已归档的订单，按下单时间倒序
+     */
+    public List<OrderEntity> findUserOrders(String userId) {
+        return enabled ? archiveMapper.selectOrdersByUserId(userId) : Collections.emptyList();
+    }
+
+    /**
+     * 用户已归档的订单中排在 (afterTime, afterId) 之后的一页，排序与在线订单分页相同
+     */
+    public List<OrderEntity> findUserOrderPage(String userId, LocalDateTime afterTime, String afterId, int limit) {
+        return enabled ? archiveMapper.selectOrderPageByUserId(userId, afterTime, afterId, limit) : Collections.emptyList();
+    }
+
+    public OrderEntity findOrder(String orderId) {
+        return enabled ? archiveMapper.selectOrderById(orderId) : null;
+    }
+
+    public List<TicketEntity> findTicketsByOrderIds(Collection<String> orderIds) {
+        return enabled && !orderIds.isEmpty()
+                ? archiveMapper.selectTicketsByOrderIds(orderIds) : Collections.emptyList();
+    }
+
+    /**
+     * 在线表中查不到的车次从归档表补齐
+     */
+    public void fillSchedules(Map<String, TrainScheduleEntity> scheduleMap, Collection<String> scheduleIds) {
+        if (!enabled) {
+            return;
+        }
+        List<String> missing = new ArrayList<>();
+        for (String scheduleId : scheduleIds) {
+            if (!scheduleMap.containsKey(scheduleId)) {
+                missing.add(scheduleId);
+            }
+        }
+        if (!missing.isEmpty()) {
+            for (TrainScheduleEntity schedule : archiveMapper.selectSchedulesByIds(missing)) {
+                scheduleMap.put(schedule.getId(), schedule);
+            }
+        }
+    }
+
+    private void archiveBatch(List<String> scheduleIds) {
+        ensurePartitions(archiveMapper.selectMonths(scheduleIds));
+        Integer tickets = transactionTemplate.execute(status -> {
+            List<String> orderIds = archiveMapper.selectOrderIds(scheduleIds);
+            archiveMapper.archiveSchedules(scheduleIds);
+            int archivedTickets = archiveMapper.archiveTickets(scheduleIds);
+            if (!orderIds.isEmpty()) {
+                archiveMapper.archiveOrders(orderIds);
+            }
+            // 外键顺序：车票 -> 订单 -> 余票 -> 车次
+            archiveMapper.deleteTickets(scheduleIds);
+            if (!orderIds.isEmpty()) {
+                archiveMapper.deleteOrders(orderIds);
+            }
+            archiveMapper.deleteSeatAvailability(scheduleIds);
+            archiveMapper.deleteSchedules(scheduleIds);
+            return archivedTickets;
+        });
+        for (String scheduleId : scheduleIds) {
+            seatInventoryService.evict(scheduleId);
+            seatAllocationService.evict(scheduleId);
+        }
+        transferSearchService.onSchedulesRemoved(scheduleIds);
+        // 车次已不存在，刷新即删除读模型中的行
+        scheduleReadModelService.refresh(scheduleIds);
+        log.debug("归档一批车次: schedules={}, tickets={}", scheduleIds.size(), tickets);
+    }
+
+    /**
+     * 为新月份创建分区，月份须按从早到晚的顺序出现；早于已有分区的月份落入已有分区
+     */
+    private void ensurePartitions(List<Integer> months) {
+        List<Integer> sorted = new ArrayList<>(months);
+        Collections.sort(sorted);
+        for (String table : ARCHIVE_TABLES) {
+            int max = maxPartitions.computeIfAbsent(table, this::loadMaxPartition);
+            try {
+                for (int month : sorted) {
+                    if (month > max) {
+                        YearMonth next = YearMonth.of(month / 100, month % 100).plusMonths(1);
+                        archiveMapper.addPartition(table, month, next.getYear() * 100 + next.getMonthValue());
+                        max = month;
+                        maxPartitions.put(table, max);
+                    }
+                }
+            } catch (RuntimeException e) {
+                // 下次重新读取实际分区
+                maxPartitions.remove(table);
+                throw e;
+            }
+        }
+    }
+
+    private int loadMaxPartition(String table) {
+        int max = 0;
+        for (String name : archiveMapper.selectPartitionNames(table)) {
+            if (name != null && name.matches("p\\d{6}")) {
+                max = Math.max(max, Integer.parseInt(name.substring(1)));
+            }
+        }
+        return max;
+    }
+}
@@ -0,0 +1,341 @@
+package com.example.backend.service;
+
+import com.example.backend.dto.BatchPurchaseRequestDTO;
+import com.example.backend.dto.OrderDTO;
+import com.example.backend.dto.PurchaseRequestDTO;
+import com.example.backend.dto.PurchaseResultDTO;
+import com.example.backend.dto.QueueTicketDTO;
+import com.example.backend.model.SeatTypeEntity;
+import com.example.backend.util.TokenBucket;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 热门车次排队购票
+ *
+ * 标记为热门的车次，购票请求先进入该车次的先进先出队列并立即返回排队号，
+ * 由后台线程按令牌桶速率逐个放行，放行速率与数据库处理能力匹配。
+ * 排队的座位数超过剩余余票时直接拒绝新请求。排队位置和结果通过 WebSocket 推送，也可轮询查询。
+ * 所有购票入口（接口、智能助手）都通过 purchase 提交，热门车次不会绕过排队直接购票。
+ */
+@Slf4j
+@Service
+public class FlashSaleService {
+
+    @Autowired
+    private TicketService ticketService;
+
+    @Autowired
+    private SeatInventoryService seatInventoryService;
+
+    @Autowired
+    private SeatTypeCache seatTypeCache;
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Autowired
+    private TrainTemplateService trainTemplateService;
+
+    // 启动时标记为热门的车次，逗号分隔
+    @Value("${app.flash-sale.hot-schedules:}")
+    private String initialHotSchedules;
+
+    // 每秒放行的购票请求数
+    @Value("${app.flash-sale.permits-per-second:20}")
+    private double permitsPerSecond;
+
+    @Value("${app.flash-sale.burst:20}")
+    private int burst;
+
+    // 同时执行购票的线程数，应小于数据库连接池大小
+    @Value("${app.flash-sale.workers:4}")
+    private int workers;
+
+    // 结束的排队号保留时间
+    @Value("${app.flash-sale.result-ttl-seconds:600}")
+    private long resultTtlSeconds;
+
+    private final Set<String> hotSchedules = ConcurrentHashMap.newKeySet();
+
+    // 车次ID -> 排队队列，取消热门标记后队列中已有的请求仍会处理完，排空后移除
+    private final Map<String, ScheduleQueue> queues = new ConcurrentHashMap<>();
+
+    // 排队号 -> 排队请求
+    private final Map<String, QueueEntry> entries = new ConcurrentHashMap<>();
+
+    private TokenBucket tokenBucket;
+
+    private ThreadPoolExecutor executor;
+
+    private Thread dispatcher;
+
+    private volatile boolean running = true;
+
+    @PostConstruct
+    public void start() {
+        if (StringUtils.hasText(initialHotSchedules)) {
+            for (String scheduleId : initialHotSchedules.split(",")) {
+                if (StringUtils.hasText(scheduleId)) {
+                    hotSchedules.add(scheduleId.trim());
+                }
+            }
+        }
+        tokenBucket = new TokenBucket(permitsPerSecond, burst);
+        // 没有空闲线程时由调度线程等待，队列中的请求不会被提前取出
+        executor = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "flash-sale-worker");
+                    thread.setDaemon(true);
+                    return thread;
+                }, (runnable, pool) -> {
+                    try {
+                        pool.getQueue().put(runnable);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+        dispatcher = new Thread(this::dispatch, "flash-sale-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        dispatcher.interrupt();
+        executor.shutdownNow();
+    }
+
+    public boolean isHot(String scheduleId) {
+        return scheduleId != null && hotSchedules.contains(scheduleId);
+    }
+
+    public void markHot(String scheduleId) {
+        hotSchedules.add(scheduleId);
+    }
+
+    public void unmarkHot(String scheduleId) {
+        hotSchedules.remove(scheduleId);
+    }
+
+    public Set<String> getHotSchedules() {
+        return hotSchedules;
+    }
+
+    /**
+     * 单人购票：热门车次进入排队，其他车次直接购票
+     */
+    public PurchaseResultDTO purchase(PurchaseRequestDTO request) {
+        if (!isHot(request.getScheduleId())) {
+            return PurchaseResultDTO.builder().order(ticketService.purchaseTicket(request)).build();
+        }
+        BatchPurchaseRequestDTO batchRequest = new BatchPurchaseRequestDTO();
+        batchRequest.setUserId(request.getUserId());
+        batchRequest.setScheduleId(request.getScheduleId());
+        batchRequest.setPassengerIds(List.of(request.getPassengerId()));
+        batchRequest.setSeatType(request.getSeatType());
+        return PurchaseResultDTO.builder().queueTicket(enqueue(batchRequest)).build();
+    }
+
+    /**
+     * 多位乘车人购票：热门车次进入排队，其他车次直接购票
+     */
+    public PurchaseResultDTO purchase(BatchPurchaseRequestDTO request) {
+        if (isHot(request.getScheduleId())) {
+            return PurchaseResultDTO.builder().queueTicket(enqueue(request)).build();
+        }
+        return PurchaseResultDTO.builder().order(ticketService.purchaseTickets(request)).build();
+    }
+
+    /**
+     * 购票请求排队
+     *
+     * @return 排队号及当前位置
+     * @throws IllegalArgumentException 座位类型无效或车次不提供该座位类型时
+     * @throws RuntimeException 排队的座位数已超过剩余余票时
+     */
+    public QueueTicketDTO enqueue(BatchPurchaseRequestDTO request) {
+        int count = request.getPassengerIds() != null ? request.getPassengerIds().size() : 0;
+        if (count == 0) {
+            throw new IllegalArgumentException("请选择乘车人。");
+        }
+        trainTemplateService.ensureMaterialized(request.getScheduleId());
+        SeatTypeEntity seatType = seatTypeCache.getByName(request.getSeatType());
+        if (seatType == null || !seatInventoryService.isOffered(request.getScheduleId(), seatType.getId())) {
+            throw new IllegalArgumentException("该车次不提供座位类型：" + request.getSeatType());
+        }
+
+        int remaining = seatInventoryService.getAvailableCount(request.getScheduleId(), seatType.getId());
+        QueueEntry entry = new QueueEntry(UUID.randomUUID().toString().replace("-", ""), request,
+                seatType.getId(), count);
+        // 在映射锁内入队，与移除空队列互斥
+        ScheduleQueue queue = queues.compute(request.getScheduleId(), (scheduleId, existing) -> {
+            ScheduleQueue scheduleQueue = existing != null ? existing : new ScheduleQueue();
+            AtomicInteger queuedSeats = scheduleQueue.queuedSeats.computeIfAbsent(entry.seatTypeId,
+                    k -> new AtomicInteger());
+            if (queuedSeats.get() + count > remaining) {
+                throw new RuntimeException("余票不足，排队人数已超过剩余票数。");
+            }
+            queuedSeats.addAndGet(count);
+            entry.sequence = scheduleQueue.enqueued.incrementAndGet();
+            scheduleQueue.pending.add(entry);
+            return scheduleQueue;
+        });
+        entries.put(entry.id, entry);
+        return toDTO(entry, queue);
+    }
+
+    /**
+     * 查询排队状态
+     */
+    public QueueTicketDTO getQueueTicket(String queueTicketId) {
+        QueueEntry entry = entries.get(queueTicketId);
+        if (entry == null) {
+            return null;
+        }
+        return toDTO(entry, queues.get(entry.request.getScheduleId()));
+    }
+
+    /**
+     * 定时向排队中的用户推送当前位置，清理过期的排队结果和已取消热门标记的空队列
+     */
+    @Scheduled(fixedDelayString = "${app.flash-sale.position-push-interval-ms:2000}")
+    public void pushPositions() {
+        long expireBefore = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(resultTtlSeconds);
+        entries.values().removeIf(entry -> entry.finishedAt > 0 && entry.finishedAt < expireBefore);
+        for (String scheduleId : queues.keySet()) {
+            queues.computeIfPresent(scheduleId,
+                    (id, queue) -> !isHot(id) && queue.pending.isEmpty() ? null : queue);
+        }
+
+        for (ScheduleQueue queue : queues.values()) {
+            for (QueueEntry entry : queue.pending) {
+                push(entry, toDTO(entry, queue));
+            }
+        }
+    }
+
+    /**
+     * 调度线程：轮流从各车次队列取出请求，获得令牌后交给工作线程执行
+     */
+    private void dispatch() {
+        while (running) {
+            try {
+                boolean dispatched = false;
+                for (ScheduleQueue queue : queues.values()) {
+                    QueueEntry entry = queue.pending.peek();
+                    if (entry == null) {
+                        continue;
+                    }
+                    tokenBucket.acquire();
+                    queue.pending.poll();
+                    queue.dequeued.incrementAndGet();
+                    entry.status = "处理中";
+                    // 交给工作线程后不再计入排队座位数，购票扣减的余票由 getAvailableCount 反映
+                    queue.queuedSeats.get(entry.seatTypeId).addAndGet(-entry.count);
+                    executor.execute(() -> process(entry, queue));
+                    dispatched = true;
+                }
+                if (!dispatched) {
+                    TimeUnit.MILLISECONDS.sleep(20);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("排队请求调度失败", e);
+            }
+        }
+    }
+
+    private void process(QueueEntry entry, ScheduleQueue queue) {
+        try {
+            OrderDTO order = ticketService.purchaseTickets(entry.request);
+            entry.orderId = order.getOrderId();
+            entry.message = order.getMessage();
+            entry.status = "已下单";
+        } catch (Exception e) {
+            entry.message = e.getMessage();
+            entry.status = "失败";
+        } finally {
+            entry.finishedAt = System.currentTimeMillis();
+        }
+        push(entry, toDTO(entry, queue));
+    }
+
+    private void push(QueueEntry entry, QueueTicketDTO dto) {
+        Map<String, Object> componentData = new HashMap<>();
+        componentData.put("queueTicket", dto);
+        notificationService.push(entry.request.getUserId(), "queue_status", componentData);
+    }
+
+    private QueueTicketDTO toDTO(QueueEntry entry, ScheduleQueue queue) {
+        Integer position = null;
+        if ("排队中".equals(entry.status) && queue != null) {
+            position = (int) Math.max(0, entry.sequence - queue.dequeued.get() - 1);
+        }
+        return QueueTicketDTO.builder()
+                .queueTicketId(entry.id)
+                .scheduleId(entry.request.getScheduleId())
+                .status(entry.status)
+                .position(position)
+                .orderId(entry.orderId)
+                .message(entry.message)
+                .build();
+    }
+
+    /**
+     * 单个车次的排队队列
+     */
+    private static final class ScheduleQueue {
+        private final Queue<QueueEntry> pending = new ConcurrentLinkedQueue<>();
+        // 已入队和已出队的请求数，两者之差即排队位置
+        private final AtomicLong enqueued = new AtomicLong();
+        private final AtomicLong dequeued = new AtomicLong();
+        // 座位类型ID -> 排队中尚未交给工作线程的座位数
+        private final Map<Integer, AtomicInteger> queuedSeats = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * 排队请求
+     */
+    private static final class QueueEntry {
+        private final String id;
+        private final BatchPurchaseRequestDTO request;
+        private final Integer seatTypeId;
+        private final int count;
+        private long sequence;
+        private volatile String status = "排队中";
+        private volatile String orderId;
+        private volatile String message;
+        private volatile long finishedAt;
+
+        private QueueEntry(String id, BatchPurchaseRequestDTO request, Integer seatTypeId, int count) {
+            this.id = id;
+            this.request = request;
+            this.seatTypeId = seatTypeId;
+            this.count = count;
+        }
+    }
+}
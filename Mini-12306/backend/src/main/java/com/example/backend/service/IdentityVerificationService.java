@@ -1,18 +1,178 @@
 package com.example.backend.service;
 
+import com.example.backend.util.TtlCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 身份核验服务
+ *
+ * 核验结果按 (姓名, 身份证号) 缓存，通过和未通过分别设置有效期；同一身份同时只发起一次远程核验。
+ * 添加或修改乘车人时在后台预先核验，购票时通常直接命中缓存。
+ * 缓存命中情况和远程核验耗时通过 Micrometer 指标导出。
+ */
+@Slf4j
 @Service
 public class IdentityVerificationService {
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.identity.cache-max-size:10000}")
+    private int cacheMaxSize;
+
+    @Value("${app.identity.cache-ttl-seconds:86400}")
+    private long cacheTtlSeconds;
+
+    // 未通过的结果有效期较短，便于信息更正后重新核验
+    @Value("${app.identity.negative-cache-ttl-seconds:60}")
+    private long negativeCacheTtlSeconds;
+
+    @Value("${app.identity.preverify-workers:2}")
+    private int preverifyWorkers;
+
+    @Value("${app.identity.verify-workers:8}")
+    private int verifyWorkers;
+
+    private TtlCache<String, Boolean> cache;
+
+    // 正在进行的远程核验，相同身份的请求等待同一结果
+    private final Map<String, CompletableFuture<Boolean>> inFlight = new ConcurrentHashMap<>();
+
+    private ThreadPoolExecutor preverifyExecutor;
+
+    private ThreadPoolExecutor verifyExecutor;
+
+    private Counter cacheHits;
+
+    private Counter cacheMisses;
+
+    private Timer remoteTimer;
+
+    @PostConstruct
+    public void init() {
+        cache = new TtlCache<>(cacheMaxSize);
+        // 预核验只是优化，队列满时直接丢弃
+        preverifyExecutor = new ThreadPoolExecutor(preverifyWorkers, preverifyWorkers, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(500), runnable -> {
+                    Thread thread = new Thread(runnable, "identity-preverify");
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.DiscardPolicy());
+        // 并行核验在调用方等待结果，队列满时由调用线程直接执行
+        verifyExecutor = new ThreadPoolExecutor(verifyWorkers, verifyWorkers, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(1000), runnable -> {
+                    Thread thread = new Thread(runnable, "identity-verify");
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+
+        cacheHits = Counter.builder("identity.verification.cache").tag("result", "hit")
+                .description("身份核验缓存命中次数").register(meterRegistry);
+        cacheMisses = Counter.builder("identity.verification.cache").tag("result", "miss")
+                .description("身份核验缓存未命中次数").register(meterRegistry);
+        remoteTimer = Timer.builder("identity.verification.remote")
+                .description("远程身份核验耗时").register(meterRegistry);
+        Gauge.builder("identity.verification.cache.size", cache, TtlCache::size)
+                .description("身份核验缓存条目数").register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        preverifyExecutor.shutdownNow();
+        verifyExecutor.shutdownNow();
+    }
+
     /**
-     * 模拟身份验证服务
+     * 核验身份，优先使用缓存结果
      * 
      * @param name 乘客姓名
      * @param idCardNumber 乘客身份证号
      * @return 验证结果是否通过
      */
     public boolean verifyIdentity(String name, String idCardNumber) {
+        Boolean cached = cache.get(key(name, idCardNumber));
+        if (cached != null) {
+            cacheHits.increment();
+            return cached;
+        }
+        cacheMisses.increment();
+        return load(name, idCardNumber);
+    }
+
+    /**
+     * 异步核验身份，缓存命中时直接返回已完成的结果，用于多位乘车人并行核验
+     */
+    public CompletableFuture<Boolean> verifyIdentityAsync(String name, String idCardNumber) {
+        Boolean cached = cache.get(key(name, idCardNumber));
+        if (cached != null) {
+            cacheHits.increment();
+            return CompletableFuture.completedFuture(cached);
+        }
+        cacheMisses.increment();
+        return CompletableFuture.supplyAsync(() -> load(name, idCardNumber), verifyExecutor);
+    }
+
+    /**
+     * 后台预先核验身份，结果写入缓存
+     */
+    public void preverify(String name, String idCardNumber) {
+        if (cache.get(key(name, idCardNumber)) != null) {
+            return;
+        }
+        preverifyExecutor.execute(() -> {
+            try {
+                load(name, idCardNumber);
+            } catch (Exception e) {
+                log.warn("预核验身份失败: name={}", name, e);
+            }
+        });
+    }
+
+    private boolean load(String name, String idCardNumber) {
+        String key = key(name, idCardNumber);
+        CompletableFuture<Boolean> created = new CompletableFuture<>();
+        CompletableFuture<Boolean> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+        try {
+            boolean verified = remoteTimer.record(() -> callRemote(name, idCardNumber));
+            cache.put(key, verified, TimeUnit.SECONDS.toMillis(verified ? cacheTtlSeconds : negativeCacheTtlSeconds));
+            created.complete(verified);
+            return verified;
+        } catch (RuntimeException e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, created);
+        }
+    }
+
+    /**
+     * 模拟远程身份验证服务
+     */
+    private boolean callRemote(String name, String idCardNumber) {
         System.out.println("模拟身份认证服务：正在验证 " + name + " (" + idCardNumber + ")");
         try {
             Thread.sleep(500); // 模拟网络延迟
@@ -27,4 +187,8 @@ public class IdentityVerificationService {
         System.out.println("模拟身份认证服务：验证成功 for " + name);
         return true;
     }
-}
\ No newline at end of file
+
+    private static String key(String name, String idCardNumber) {
+        return name + ":" + idCardNumber;
+    }
+}
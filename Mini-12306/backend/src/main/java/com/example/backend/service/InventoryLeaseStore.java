@@ -0,0 +1,57 @@
+package com.example.backend.service;
+
+import java.time.LocalDateTime;
+
+/**
+ * 余票租约的共享存储
+ *
+ * 多个实例从同一份余票中租用额度，存储需保证并发租用时不超出余票。
+ * 每个实例的租约按 (实例, 车次, 座位类型) 持久化尚未售出的额度，实例宕机后由其他实例在租约过期时归还。
+ */
+public interface InventoryLeaseStore {
+
+    /**
+     * 从共享余票中租用额度，与余票扣减在同一事务中记入本实例的租约
+     *
+     * @param requested 希望租用的数量
+     * @param expiresAt 租约过期时间
+     * @return 实际租到的数量，余票不足时少于请求数，无余票或记录不存在时为0
+     */
+    int acquire(String nodeId, String scheduleId, Integer seatTypeId, int requested, LocalDateTime expiresAt);
+
+    /**
+     * 归还未售出的额度，与租约扣减在同一事务中加回余票
+     */
+    void giveBack(String nodeId, String scheduleId, Integer seatTypeId, int count);
+
+    /**
+     * 从租约中扣减已售出的数量，须在写入车票的事务中调用
+     *
+     * @return 租约额度足够返回true；租约已过期被回收或额度不足时返回false
+     */
+    boolean consume(String nodeId, String scheduleId, Integer seatTypeId, int count);
+
+    /**
+     * 退回已售出的座位，须在更新车票状态的事务中调用
+     *
+     * @return 退回到本实例租约返回true；本实例没有该租约时直接加回余票，返回false
+     */
+    boolean restore(String nodeId, String scheduleId, Integer seatTypeId, int count);
+
+    /**
+     * 租约中记录的额度，租约不存在时返回0
+     */
+    int getQuantity(String nodeId, String scheduleId, Integer seatTypeId);
+
+    /**
+     * 续期实例的全部租约
+     */
+    void renew(String nodeId, LocalDateTime expiresAt);
+
+    /**
+     * 将已过期租约（实例宕机或长时间未续期）中的额度加回余票并删除租约
+     *
+     * @return 回收的租约数
+     */
+    int reclaimExpired(LocalDateTime now);
+}
@@ -0,0 +1,54 @@
+package com.example.backend.service;
+
+import com.example.backend.dto.ChatSessionDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 用户通知服务
+ *
+ * 通过用户已连接的 WebSocket 会话推送通知组件；用户不在线时不推送，可通过订单接口查询结果。
+ */
+@Slf4j
+@Service
+public class NotificationService {
+
+    @Autowired
+    private ChatSessionService chatSessionService;
+
+    /**
+     * 向用户推送通知
+     *
+     * @param type 通知类型：success、error、info
+     */
+    public void notifyUser(String userId, String type, String title, String message, String orderId) {
+        Map<String, Object> componentData = new HashMap<>();
+        componentData.put("type", type);
+        componentData.put("title", title);
+        componentData.put("message", message);
+        componentData.put("orderId", orderId);
+        push(userId, "notification", componentData);
+    }
+
+    /**
+     * 向用户已连接的会话推送组件
+     */
+    public void push(String userId, String componentType, Map<String, Object> componentData) {
+        for (ChatSessionDTO session : chatSessionService.getUserSessions(userId)) {
+            WebSocketSession webSocketSession = chatSessionService.getWebSocketSession(session.getSessionId());
+            if (webSocketSession == null || !webSocketSession.isOpen()) {
+                continue;
+            }
+            try {
+                chatSessionService.sendComponentToSession(session.getSessionId(), componentType, componentData);
+            } catch (Exception e) {
+                log.warn("推送通知失败: userId={}, sessionId={}", userId, session.getSessionId(), e);
+            }
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.backend.service;
 
 import com.example.backend.dto.OrderDTO;
+import com.example.backend.dto.OrderPageDTO;
 import com.example.backend.model.OrderEntity;
 
 import java.util.List;
@@ -26,6 +27,17 @@ public interface OrderService {
      */
     List<OrderDTO> getUserOrders(String userId);
     
+    /**
+     * 按下单时间倒序分页查询用户订单
+     * 
+     * @param userId 用户ID
+     * @param cursor 上一页返回的 nextCursor，为空时查询第一页
+     * @param limit 每页条数，为空时使用默认值
+     * @return 当前页的订单和下一页游标
+     * @throws IllegalArgumentException 游标无效时
+     */
+    OrderPageDTO getUserOrderPage(String userId, String cursor, Integer limit);
+    
     /**
      * 创建订单
      * 
@@ -0,0 +1,87 @@
+package com.example.backend.service;
+
+import com.example.backend.mapper.PaymentJobMapper;
+import com.example.backend.model.PaymentJobEntity;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+
+/**
+ * 支付任务完成回调
+ *
+ * 根据支付渠道的处理结果确认或释放占座，并将结果推送给用户。
+ * 支付完成时占座已失效的订单，写入一条退回任务，由支付网关定时派发。
+ */
+@Slf4j
+@Service
+public class PaymentCallbackService {
+
+    @Autowired
+    private TicketHoldService ticketHoldService;
+
+    @Autowired
+    private PaymentJobMapper paymentJobMapper;
+
+    @Autowired
+    private NotificationService notificationService;
+
+    public void onCompleted(PaymentJobEntity job, boolean success) {
+        switch (job.getJobType()) {
+            case "支付" -> onPaymentCompleted(job, success);
+            case "退款" -> onRefundCompleted(job, success);
+            case "退回" -> {
+                if (!success) {
+                    log.error("支付退回失败，需人工处理: orderId={}, amount={}", job.getOrderId(), job.getAmount());
+                }
+            }
+            default -> log.warn("未知的支付任务类型: jobId={}, type={}", job.getId(), job.getJobType());
+        }
+    }
+
+    private void onPaymentCompleted(PaymentJobEntity job, boolean success) {
+        if (!success) {
+            ticketHoldService.cancel(job.getOrderId());
+            notificationService.notifyUser(job.getUserId(), "error", "支付失败", "支付失败，订单已取消。", job.getOrderId());
+            return;
+        }
+        if (ticketHoldService.confirm(job.getOrderId(), job.getTicketId())) {
+            notificationService.notifyUser(job.getUserId(), "success", "支付成功",
+                    job.getTicketId() != null ? "改签成功，请妥善保管您的车票信息。" : "恭喜您，车票购买成功！请妥善保管您的车票信息。",
+                    job.getOrderId());
+            return;
+        }
+
+        // 占座已超时释放或改签原车票状态已变化：退回已支付款项
+        // 退回任务ID由支付任务ID派生，回调重复执行时不会重复退回
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            paymentJobMapper.insert(PaymentJobEntity.builder()
+                    .id("R" + job.getId())
+                    .jobType("退回")
+                    .orderId(job.getOrderId())
+                    .userId(job.getUserId())
+                    .amount(job.getAmount())
+                    .status("待处理")
+                    .attempts(0)
+                    .createTime(now)
+                    .updateTime(now)
+                    .build());
+        } catch (DuplicateKeyException e) {
+            log.info("退回任务已存在: orderId={}", job.getOrderId());
+        }
+        notificationService.notifyUser(job.getUserId(), "error", "订单已取消",
+                "支付超时，订单已取消，款项将原路退回。", job.getOrderId());
+    }
+
+    private void onRefundCompleted(PaymentJobEntity job, boolean success) {
+        if (success) {
+            notificationService.notifyUser(job.getUserId(), "success", "退款成功", "退款已原路退回。", job.getOrderId());
+        } else {
+            log.error("退款失败，需人工处理: ticketId={}, amount={}", job.getTicketId(), job.getAmount());
+            notificationService.notifyUser(job.getUserId(), "error", "退款失败", "退款处理失败，请联系客服。", job.getOrderId());
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.backend.service;
+
+import com.example.backend.model.PaymentJobEntity;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 异步支付网关
+ *
+ * 支付和退款以任务形式提交：任务先写入 payment_job 表，再由有界线程池调用支付渠道，
+ * 完成后由 PaymentCallbackService 更新订单和车票并通知用户。
+ */
+public interface PaymentGateway {
+
+    /**
+     * 提交支付任务
+     *
+     * 在事务中调用时，任务随事务一起保存，事务提交后才开始执行；事务回滚则任务取消。
+     *
+     * @param job 支付任务，需设置任务类型、订单ID、用户ID和金额
+     * @return 支付渠道的处理结果，完成回调执行后才完成
+     */
+    CompletableFuture<Boolean> submit(PaymentJobEntity job);
+}
@@ -1,10 +1,29 @@
 package com.example.backend.service;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 模拟支付渠道
+ *
+ * 由 PaymentGateway 在工作线程中调用，延迟和失败率可配置，便于离线压测支付流程。
+ */
 @Service
 public class PaymentService {
 
+    // 支付处理延迟
+    @Value("${app.payment.latency-ms:1500}")
+    private long paymentLatencyMs;
+
+    // 退款处理延迟
+    @Value("${app.payment.refund-latency-ms:1000}")
+    private long refundLatencyMs;
+
+    // 失败率，0 ~ 1
+    @Value("${app.payment.failure-rate:0}")
+    private double failureRate;
 
     /**
      * 模拟处理支付
@@ -15,13 +34,9 @@ public class PaymentService {
      */
     public boolean processPayment(String orderId, double amount) {
         System.out.println("模拟支付服务：订单 " + orderId + " 正在支付金额：" + amount);
-        try {
-            Thread.sleep(1500); // 模拟支付处理的网络延迟
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
+        simulateLatency(paymentLatencyMs); // 模拟支付处理的网络延迟
    
-        boolean success = true;
+        boolean success = ThreadLocalRandom.current().nextDouble() >= failureRate;
 
         if (success) {
             System.out.println("模拟支付服务：订单 " + orderId + " 支付成功");
@@ -40,12 +55,26 @@ public class PaymentService {
      */
     public boolean processRefund(String ticketId, double amount) {
         System.out.println("模拟支付服务：车票 " + ticketId + " 正在退款金额：" + amount);
+        simulateLatency(refundLatencyMs); // 模拟网络延迟
+
+        boolean success = ThreadLocalRandom.current().nextDouble() >= failureRate;
+
+        if (success) {
+            System.out.println("模拟支付服务：车票 " + ticketId + " 退款成功");
+        } else {
+            System.out.println("模拟支付服务：车票 " + ticketId + " 退款失败");
+        }
+        return success;
+    }
+
+    private void simulateLatency(long millis) {
+        if (millis <= 0) {
+            return;
+        }
         try {
-            Thread.sleep(1000); // 模拟网络延迟
+            Thread.sleep(millis);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         }
-        System.out.println("模拟支付服务：车票 " + ticketId + " 退款成功");
-        return true; // 演示用：假设退款处理始终成功
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,206 @@
+package com.example.backend.service;
+
+import com.example.backend.dto.ScheduleCalendarDayDTO;
+import com.example.backend.mapper.TrainScheduleMapper;
+import com.example.backend.model.ScheduleCalendarRow;
+import com.example.backend.model.SeatTypeEntity;
+import com.example.backend.util.TtlCache;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 余票日历
+ *
+ * 一次返回某出发站、到达站在一段日期内每天的车次数、各座位类型是否有票和最低票价，
+ * 用户不必逐天查询。聚合用一条按 (日期, 座位类型) 分组的查询完成，结果按 (站对, 月份) 缓存；
+ * 缓存未命中的月份合并为一次查询。站名可以是城市名。
+ *
+ * 是否有票取自数据库中的余票，缓存有效期较短，与实时余票可能有短暂差异，下单前以车次查询为准。
+ */
+@Service
+public class ScheduleCalendarService {
+
+    @Autowired
+    private TrainScheduleMapper trainScheduleMapper;
+
+    @Autowired
+    private SeatTypeCache seatTypeCache;
+
+    @Autowired
+    private StationIndexService stationIndexService;
+
+    // 一次查询的最大天数
+    @Value("${app.calendar.max-days:62}")
+    private int maxDays;
+
+    @Value("${app.calendar.max-size:1000}")
+    private int cacheMaxSize;
+
+    @Value("${app.calendar.ttl-seconds:60}")
+    private long cacheTtlSeconds;
+
+    // (出发站, 到达站, 月份) -> 该月的聚合行
+    private TtlCache<String, List<ScheduleCalendarRow>> cache;
+
+    @PostConstruct
+    public void init() {
+        cache = new TtlCache<>(cacheMaxSize);
+    }
+
+    /**
+     * 查询 [startDate, endDate] 每天的车次数、各座位类型是否有票和最低票价，没有车次的日期也返回
+     *
+     * @throws IllegalArgumentException 站名为空或日期范围无效时
+     */
+    public List<ScheduleCalendarDayDTO> getCalendar(String departureStation, String arrivalStation,
+                                                    LocalDate startDate, LocalDate endDate) {
+        if (!StringUtils.hasText(departureStation) || !StringUtils.hasText(arrivalStation)) {
+            throw new IllegalArgumentException("请输入出发站和到达站。");
+        }
+        if (endDate.isBefore(startDate)) {
+            throw new IllegalArgumentException("结束日期不能早于开始日期。");
+        }
+        if (ChronoUnit.DAYS.between(startDate, endDate) >= maxDays) {
+            throw new IllegalArgumentException("一次最多查询" + maxDays + "天。");
+        }
+        List<String> departureStations = stationIndexService.expand(departureStation);
+        List<String> arrivalStations = stationIndexService.expand(arrivalStation);
+        String pair = String.join(",", departureStations) + "|" + String.join(",", arrivalStations);
+
+        Map<YearMonth, List<ScheduleCalendarRow>> months = new LinkedHashMap<>();
+        List<YearMonth> missing = new ArrayList<>();
+        for (YearMonth month = YearMonth.from(startDate); !month.isAfter(YearMonth.from(endDate)); month = month.plusMonths(1)) {
+            List<ScheduleCalendarRow> rows = cache.get(pair + "|" + month);
+            if (rows != null) {
+                months.put(month, rows);
+            } else {
+                missing.add(month);
+            }
+        }
+        if (!missing.isEmpty()) {
+            load(pair, departureStations, arrivalStations, missing, months);
+        }
+
+        Map<LocalDate, List<ScheduleCalendarRow>> byDate = new HashMap<>();
+        for (List<ScheduleCalendarRow> rows : months.values()) {
+            for (ScheduleCalendarRow row : rows) {
+                byDate.computeIfAbsent(row.getDepartureDate(), k -> new ArrayList<>()).add(row);
+            }
+        }
+        List<ScheduleCalendarDayDTO> result = new ArrayList<>();
+        for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
+            result.add(toDay(date, byDate.getOrDefault(date, Collections.emptyList())));
+        }
+        return result;
+    }
+
+    /**
+     * 清空日历缓存（车次增删改时调用）
+     */
+    public void invalidate() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.clear();
+                }
+            });
+        } else {
+            cache.clear();
+        }
+    }
+
+    /**
+     * 清空包含该车次的日历月份：出发站、到达站在条目的车站中，且为出发日期所在月份
+     *
+     * 单个车次新增时调用，不影响其他线路和月份的缓存
+     */
+    public void invalidate(String departureStation, String arrivalStation, LocalDate departureDate) {
+        String month = YearMonth.from(departureDate).toString();
+        Runnable evict = () -> cache.removeIf(key -> {
+            String[] parts = key.split("\\|", -1);
+            return Arrays.asList(parts[0].split(",")).contains(departureStation)
+                    && Arrays.asList(parts[1].split(",")).contains(arrivalStation)
+                    && parts[2].equals(month);
+        });
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict.run();
+                }
+            });
+        } else {
+            evict.run();
+        }
+    }
+
+    /**
+     * 一次查询覆盖全部未命中的月份，按月拆分后放入缓存
+     */
+    private void load(String pair, List<String> departureStations, List<String> arrivalStations,
+                      List<YearMonth> missing, Map<YearMonth, List<ScheduleCalendarRow>> months) {
+        YearMonth first = missing.get(0);
+        YearMonth last = missing.get(missing.size() - 1);
+        List<ScheduleCalendarRow> rows = trainScheduleMapper.selectCalendar(departureStations, arrivalStations,
+                first.atDay(1).atStartOfDay(), last.plusMonths(1).atDay(1).atStartOfDay());
+
+        Map<YearMonth, List<ScheduleCalendarRow>> byMonth = new HashMap<>();
+        for (ScheduleCalendarRow row : rows) {
+            byMonth.computeIfAbsent(YearMonth.from(row.getDepartureDate()), k -> new ArrayList<>()).add(row);
+        }
+        long ttlMillis = TimeUnit.SECONDS.toMillis(cacheTtlSeconds);
+        for (YearMonth month = first; !month.isAfter(last); month = month.plusMonths(1)) {
+            List<ScheduleCalendarRow> monthRows = Collections.unmodifiableList(
+                    byMonth.getOrDefault(month, Collections.emptyList()));
+            cache.put(pair + "|" + month, monthRows, ttlMillis);
+            months.put(month, monthRows);
+        }
+    }
+
+    /**
+     * 车次数取当天汇总行，余票和最低票价取各座位类型的聚合行
+     */
+    private ScheduleCalendarDayDTO toDay(LocalDate date, List<ScheduleCalendarRow> rows) {
+        int trainCount = 0;
+        BigDecimal minPrice = null;
+        Map<String, Boolean> seatAvailable = new LinkedHashMap<>();
+        for (ScheduleCalendarRow row : rows) {
+            if (row.getSeatTypeId() == null) {
+                trainCount = row.getTrainCount();
+                continue;
+            }
+            if (row.getMinPrice() != null && (minPrice == null || row.getMinPrice().compareTo(minPrice) < 0)) {
+                minPrice = row.getMinPrice();
+            }
+            SeatTypeEntity seatType = seatTypeCache.getById(row.getSeatTypeId());
+            if (seatType != null) {
+                seatAvailable.put(seatType.getName(), row.getAvailableCount() != null && row.getAvailableCount() > 0);
+            }
+        }
+        return ScheduleCalendarDayDTO.builder()
+                .date(date)
+                .trainCount(trainCount)
+                .seatAvailable(seatAvailable)
+                .minPrice(minPrice != null ? minPrice.doubleValue() : null)
+                .build();
+    }
+}
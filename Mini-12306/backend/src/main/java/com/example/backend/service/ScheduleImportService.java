@@ -0,0 +1,512 @@
+package com.example.backend.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.example.backend.dto.ScheduleImportJobDTO;
+import com.example.backend.dto.ScheduleImportRowDTO;
+import com.example.backend.mapper.SeatAvailabilityMapper;
+import com.example.backend.mapper.TrainScheduleMapper;
+import com.example.backend.model.SeatAvailabilityEntity;
+import com.example.backend.model.SeatTypeEntity;
+import com.example.backend.model.TrainScheduleEntity;
+import com.example.backend.util.EntityConverter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * 时刻表批量导入
+ *
+ * 每行是一个车次在一段日期内的开行计划，按天展开为车次和座位余票行。车次ID与开行模板相同为 车次号_yyyyMMdd，
+ * 已存在的车次跳过，重复导入同一文件不会生成重复车次；同一次导入中车次和开行日期重叠的行整批拒绝。
+ * 展开后的车次按 chunk-size 分块，由工作线程并行生成实体，每块在一个事务中用多行 INSERT 写入，
+ * 一块失败只回滚该块，其余块继续导入。导入在后台进行，进度和写入速度通过任务ID查询。
+ * 全部写完后再统一刷新车次查询缓存、余票日历、车站索引和中转车站图。
+ */
+@Slf4j
+@Service
+public class ScheduleImportService {
+
+    private static final String STATUS_RUNNING = "导入中";
+    private static final String STATUS_DONE = "已完成";
+    private static final String STATUS_PARTIAL = "部分失败";
+    private static final String STATUS_FAILED = "失败";
+
+    @Autowired
+    private TrainScheduleMapper trainScheduleMapper;
+
+    @Autowired
+    private SeatAvailabilityMapper seatAvailabilityMapper;
+
+    @Autowired
+    private SeatTypeCache seatTypeCache;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ScheduleSearchService scheduleSearchService;
+
+    @Autowired
+    private ScheduleCalendarService scheduleCalendarService;
+
+    @Autowired
+    private TransferSearchService transferSearchService;
+
+    @Autowired
+    private StationIndexService stationIndexService;
+
+    @Autowired
+    private ScheduleReadModelService scheduleReadModelService;
+
+    // 并行写入的线程数，应小于数据库连接池大小
+    @Value("${app.schedule-import.workers:4}")
+    private int workers;
+
+    // 每个事务写入的车次数，座位余票行按同样的行数分条插入
+    @Value("${app.schedule-import.chunk-size:500}")
+    private int chunkSize;
+
+    // 单行最多展开的开行天数
+    @Value("${app.schedule-import.max-days:120}")
+    private long maxDays;
+
+    // 一次导入最多生成的车次数
+    @Value("${app.schedule-import.max-schedules:500000}")
+    private long maxSchedules;
+
+    // 结束的导入任务保留时间
+    @Value("${app.schedule-import.result-ttl-seconds:3600}")
+    private long resultTtlSeconds;
+
+    // 任务ID -> 导入任务
+    private final Map<String, ImportJob> jobs = new ConcurrentHashMap<>();
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void start() {
+        // 队列满时提交线程等待，展开的车次不会全部堆积在内存中
+        executor = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(workers),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "schedule-import-worker");
+                    thread.setDaemon(true);
+                    return thread;
+                }, (runnable, pool) -> {
+                    try {
+                        pool.getQueue().put(runnable);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 校验后在后台开始导入
+     *
+     * @return 导入任务，通过任务ID查询进度
+     * @throws IllegalArgumentException 内容为空、没有座位类型或某一行无效时，整批不导入
+     */
+    public ScheduleImportJobDTO submit(List<ScheduleImportRowDTO> rows) {
+        if (rows == null || rows.isEmpty()) {
+            throw new IllegalArgumentException("导入内容为空");
+        }
+        List<SeatTypeEntity> seatTypes = seatTypeCache.getAll();
+        if (seatTypes.isEmpty()) {
+            throw new IllegalArgumentException("座位类型不存在，请先添加座位类型");
+        }
+        long total = 0;
+        Map<String, List<Integer>> rowsByTrain = new HashMap<>();
+        for (int i = 0; i < rows.size(); i++) {
+            ScheduleImportRowDTO row = rows.get(i);
+            total += validate(row, i + 1);
+            List<Integer> sameTrain = rowsByTrain.computeIfAbsent(row.getTrainNumber().trim(), k -> new ArrayList<>());
+            for (int other : sameTrain) {
+                if (overlaps(rows.get(other), row)) {
+                    throw new IllegalArgumentException("第" + (i + 1) + "行与第" + (other + 1) + "行的车次和开行日期重复");
+                }
+            }
+            sameTrain.add(i);
+        }
+        if (total > maxSchedules) {
+            throw new IllegalArgumentException("一次最多导入" + maxSchedules + "个车次，本次为" + total);
+        }
+
+        ImportJob job = new ImportJob(UUID.randomUUID().toString().replace("-", ""), (int) total);
+        jobs.put(job.id, job);
+        Thread coordinator = new Thread(() -> run(job, rows, seatTypes), "schedule-import-" + job.id.substring(0, 8));
+        coordinator.setDaemon(true);
+        coordinator.start();
+        return toDTO(job);
+    }
+
+    /**
+     * 查询导入进度
+     */
+    public ScheduleImportJobDTO getJob(String jobId) {
+        ImportJob job = jobs.get(jobId);
+        return job != null ? toDTO(job) : null;
+    }
+
+    /**
+     * 解析 CSV：车次,出发站,到达站,出发时刻,到达时刻,开始日期,结束日期[,到达天数[,座位配置]]
+     *
+     * 时刻为 HH:mm，日期为 yyyy-MM-dd，座位配置为 座位类型:座位数，多个以分号分隔，如 一等座:50;二等座:500；
+     * 首行为表头时跳过，空行忽略
+     *
+     * @throws IllegalArgumentException 某一行格式错误时，消息中带行号
+     */
+    public List<ScheduleImportRowDTO> parseCsv(BufferedReader reader) throws IOException {
+        List<ScheduleImportRowDTO> rows = new ArrayList<>();
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (lineNumber == 1 && line.startsWith("\uFEFF")) {
+                line = line.substring(1);
+            }
+            if (!StringUtils.hasText(line)) {
+                continue;
+            }
+            String[] cells = line.split(",", -1);
+            if (rows.isEmpty() && isHeader(cells[0].trim())) {
+                continue;
+            }
+            if (cells.length < 7 || cells.length > 9) {
+                throw new IllegalArgumentException("第" + lineNumber + "行应为7至9列，实际为" + cells.length + "列");
+            }
+            try {
+                rows.add(ScheduleImportRowDTO.builder()
+                        .trainNumber(cells[0].trim())
+                        .departureStation(cells[1].trim())
+                        .arrivalStation(cells[2].trim())
+                        .departureTime(LocalTime.parse(cells[3].trim()))
+                        .arrivalTime(LocalTime.parse(cells[4].trim()))
+                        .startDate(LocalDate.parse(cells[5].trim()))
+                        .endDate(LocalDate.parse(cells[6].trim()))
+                        .arrivalDays(cells.length >= 8 && StringUtils.hasText(cells[7])
+                                ? Integer.valueOf(cells[7].trim()) : null)
+                        .seatConfig(cells.length == 9 ? parseSeatConfig(cells[8]) : null)
+                        .build());
+            } catch (DateTimeParseException | IllegalArgumentException e) {
+                throw new IllegalArgumentException("第" + lineNumber + "行格式错误：" + e.getMessage());
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * 定时清理过期的导入任务
+     */
+    @Scheduled(fixedDelayString = "${app.schedule-import.cleanup-interval-ms:60000}")
+    public void cleanup() {
+        long expireBefore = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(resultTtlSeconds);
+        jobs.values().removeIf(job -> job.finishedAt > 0 && job.finishedAt < expireBefore);
+    }
+
+    private boolean isHeader(String firstCell) {
+        return "trainNumber".equalsIgnoreCase(firstCell) || "车次".equals(firstCell);
+    }
+
+    /**
+     * 解析 座位类型:座位数;... ，为空时返回null
+     */
+    private static Map<String, Integer> parseSeatConfig(String cell) {
+        if (!StringUtils.hasText(cell)) {
+            return null;
+        }
+        Map<String, Integer> seatConfig = new LinkedHashMap<>();
+        for (String entry : cell.split(";")) {
+            if (!StringUtils.hasText(entry)) {
+                continue;
+            }
+            String[] parts = entry.split(":", -1);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("座位配置应为 座位类型:座位数，多个以分号分隔");
+            }
+            seatConfig.put(parts[0].trim(), Integer.valueOf(parts[1].trim()));
+        }
+        return seatConfig;
+    }
+
+    private static boolean overlaps(ScheduleImportRowDTO a, ScheduleImportRowDTO b) {
+        return !a.getStartDate().isAfter(b.getEndDate()) && !b.getStartDate().isAfter(a.getEndDate());
+    }
+
+    /**
+     * 校验一行，返回展开后的车次数
+     */
+    private long validate(ScheduleImportRowDTO row, int rowNumber) {
+        if (row == null || !StringUtils.hasText(row.getTrainNumber())
+                || !StringUtils.hasText(row.getDepartureStation()) || !StringUtils.hasText(row.getArrivalStation())
+                || row.getDepartureTime() == null || row.getArrivalTime() == null
+                || row.getStartDate() == null || row.getEndDate() == null) {
+            throw new IllegalArgumentException("第" + rowNumber + "行缺少必填字段");
+        }
+        if (row.getDepartureStation().trim().equals(row.getArrivalStation().trim())) {
+            throw new IllegalArgumentException("第" + rowNumber + "行出发站和到达站相同");
+        }
+        if (row.getEndDate().isBefore(row.getStartDate())) {
+            throw new IllegalArgumentException("第" + rowNumber + "行结束日期早于开始日期");
+        }
+        long days = ChronoUnit.DAYS.between(row.getStartDate(), row.getEndDate()) + 1;
+        if (days > maxDays) {
+            throw new IllegalArgumentException("第" + rowNumber + "行开行天数超过" + maxDays + "天");
+        }
+        if (row.getArrivalDays() != null && row.getArrivalDays() < 0) {
+            throw new IllegalArgumentException("第" + rowNumber + "行到达天数不能为负数");
+        }
+        LocalDate date = row.getStartDate();
+        if (!arrivalTime(row, date).isAfter(date.atTime(row.getDepartureTime()))) {
+            throw new IllegalArgumentException("第" + rowNumber + "行到达时间不晚于出发时间");
+        }
+        if (row.getSeatConfig() != null) {
+            for (Map.Entry<String, Integer> entry : row.getSeatConfig().entrySet()) {
+                if (seatTypeCache.getByName(entry.getKey()) == null) {
+                    throw new IllegalArgumentException("第" + rowNumber + "行座位类型不存在：" + entry.getKey());
+                }
+                if (entry.getValue() == null || entry.getValue() <= 0) {
+                    throw new IllegalArgumentException("第" + rowNumber + "行座位数必须大于0：" + entry.getKey());
+                }
+            }
+        }
+        return days;
+    }
+
+    private LocalDateTime arrivalTime(ScheduleImportRowDTO row, LocalDate date) {
+        int arrivalDays = row.getArrivalDays() != null ? row.getArrivalDays()
+                : (row.getArrivalTime().isAfter(row.getDepartureTime()) ? 0 : 1);
+        return date.plusDays(arrivalDays).atTime(row.getArrivalTime());
+    }
+
+    /**
+     * 协调线程：按天展开并分块交给工作线程，全部完成后刷新缓存和索引
+     */
+    private void run(ImportJob job, List<ScheduleImportRowDTO> rows, List<SeatTypeEntity> seatTypes) {
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        List<Slot> chunk = new ArrayList<>(chunkSize);
+        try {
+            for (ScheduleImportRowDTO row : rows) {
+                for (LocalDate date = row.getStartDate(); !date.isAfter(row.getEndDate()); date = date.plusDays(1)) {
+                    chunk.add(new Slot(row, date));
+                    if (chunk.size() == chunkSize) {
+                        List<Slot> slots = chunk;
+                        futures.add(CompletableFuture.runAsync(() -> writeChunk(job, slots, seatTypes, true), executor));
+                        chunk = new ArrayList<>(chunkSize);
+                    }
+                }
+            }
+            if (!chunk.isEmpty()) {
+                List<Slot> slots = chunk;
+                futures.add(CompletableFuture.runAsync(() -> writeChunk(job, slots, seatTypes, true), executor));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } catch (Exception e) {
+            log.error("时刻表导入中断: jobId={}", job.id, e);
+            job.error.compareAndSet(null, "导入中断：" + e.getMessage());
+        }
+
+        if (job.imported.get() > 0) {
+            scheduleSearchService.invalidate();
+            scheduleCalendarService.invalidate();
+            stationIndexService.refreshAfterCommit();
+            transferSearchService.rebuild();
+        }
+        job.finishedAt = System.currentTimeMillis();
+        ScheduleImportJobDTO result = toDTO(job);
+        log.info("时刻表导入结束: jobId={}, status={}, imported={}, failed={}, elapsedMillis={}, perSecond={}",
+                job.id, result.getStatus(), result.getImportedSchedules(), result.getFailedSchedules(),
+                result.getElapsedMillis(), result.getSchedulesPerSecond());
+    }
+
+    /**
+     * 生成一块车次和座位余票行，在一个事务中写入，已存在的车次跳过
+     *
+     * @param retry 其他导入或开行模板同时生成导致主键冲突时是否重新检查后再写一次
+     */
+    private void writeChunk(ImportJob job, List<Slot> slots, List<SeatTypeEntity> seatTypes, boolean retry) {
+        Map<String, Slot> byScheduleId = new LinkedHashMap<>();
+        for (Slot slot : slots) {
+            byScheduleId.put(TrainTemplateService.scheduleId(slot.row.getTrainNumber().trim(), slot.date), slot);
+        }
+        for (TrainScheduleEntity existing : trainScheduleMapper.selectList(new QueryWrapper<TrainScheduleEntity>()
+                .select("id").in("id", byScheduleId.keySet()))) {
+            byScheduleId.remove(existing.getId());
+        }
+        int skipped = slots.size() - byScheduleId.size();
+        if (byScheduleId.isEmpty()) {
+            job.skipped.addAndGet(skipped);
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<TrainScheduleEntity> schedules = new ArrayList<>(byScheduleId.size());
+        List<SeatAvailabilityEntity> availabilities = new ArrayList<>(byScheduleId.size() * seatTypes.size());
+        for (Map.Entry<String, Slot> entry : byScheduleId.entrySet()) {
+            String scheduleId = entry.getKey();
+            Slot slot = entry.getValue();
+            ScheduleImportRowDTO row = slot.row;
+            schedules.add(TrainScheduleEntity.builder()
+                    .id(scheduleId)
+                    .trainNumber(row.getTrainNumber().trim())
+                    .departureStation(row.getDepartureStation().trim())
+                    .arrivalStation(row.getArrivalStation().trim())
+                    .departureTime(slot.date.atTime(row.getDepartureTime()))
+                    .arrivalTime(arrivalTime(row, slot.date))
+                    .status("正常")
+                    .createTime(now)
+                    .updateTime(now)
+                    .build());
+            availabilities.addAll(seatAvailabilities(row, scheduleId, seatTypes, now));
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                trainScheduleMapper.insertBatch(schedules);
+                for (int from = 0; from < availabilities.size(); from += chunkSize) {
+                    seatAvailabilityMapper.insertBatch(
+                            availabilities.subList(from, Math.min(from + chunkSize, availabilities.size())));
+                }
+            });
+        } catch (DuplicateKeyException e) {
+            if (retry) {
+                log.info("车次已由其他请求生成，重新检查: jobId={}", job.id);
+                writeChunk(job, slots, seatTypes, false);
+                return;
+            }
+            fail(job, schedules.size(), skipped, e);
+            return;
+        } catch (Exception e) {
+            fail(job, schedules.size(), skipped, e);
+            return;
+        }
+        job.imported.addAndGet(schedules.size());
+        job.skipped.addAndGet(skipped);
+        job.seatRows.addAndGet(availabilities.size());
+        scheduleReadModelService.markDirty(
+                schedules.stream().map(TrainScheduleEntity::getId).collect(Collectors.toList()));
+    }
+
+    private void fail(ImportJob job, int size, int skipped, Exception e) {
+        log.error("时刻表导入分块写入失败: jobId={}, size={}", job.id, size, e);
+        job.failed.addAndGet(size);
+        job.skipped.addAndGet(skipped);
+        job.error.compareAndSet(null, e.getMessage());
+    }
+
+    /**
+     * 按该行的座位配置生成余票行，未配置时提供全部座位类型并使用默认座位数
+     */
+    private List<SeatAvailabilityEntity> seatAvailabilities(ScheduleImportRowDTO row, String scheduleId,
+                                                            List<SeatTypeEntity> seatTypes, LocalDateTime now) {
+        List<SeatAvailabilityEntity> result = new ArrayList<>();
+        if (row.getSeatConfig() == null || row.getSeatConfig().isEmpty()) {
+            for (SeatTypeEntity seatType : seatTypes) {
+                result.add(EntityConverter.newSeatAvailability(scheduleId, seatType, now));
+            }
+            return result;
+        }
+        row.getSeatConfig().forEach((name, count) -> {
+            SeatTypeEntity seatType = seatTypeCache.getByName(name);
+            if (seatType != null) {
+                SeatAvailabilityEntity availability = EntityConverter.newSeatAvailability(scheduleId, seatType, now);
+                availability.setAvailableCount(count);
+                availability.setTotalCount(count);
+                result.add(availability);
+            }
+        });
+        return result;
+    }
+
+    private ScheduleImportJobDTO toDTO(ImportJob job) {
+        long end = job.finishedAt > 0 ? job.finishedAt : System.currentTimeMillis();
+        long elapsed = Math.max(end - job.startedAt, 1);
+        int imported = job.imported.get();
+        int failed = job.failed.get();
+        int skipped = job.skipped.get();
+        String status;
+        if (job.finishedAt == 0) {
+            status = STATUS_RUNNING;
+        } else if (failed == 0 && imported + skipped == job.total) {
+            status = STATUS_DONE;
+        } else {
+            status = imported > 0 ? STATUS_PARTIAL : STATUS_FAILED;
+        }
+        return ScheduleImportJobDTO.builder()
+                .jobId(job.id)
+                .status(status)
+                .totalSchedules(job.total)
+                .importedSchedules(imported)
+                .failedSchedules(failed)
+                .skippedSchedules(skipped)
+                .seatRows(job.seatRows.get())
+                .elapsedMillis(elapsed)
+                .schedulesPerSecond(Math.round(imported * 1000.0 / elapsed * 10) / 10.0)
+                .message(job.error.get())
+                .build();
+    }
+
+    /**
+     * 某一行在某一天的开行
+     */
+    private static final class Slot {
+        final ScheduleImportRowDTO row;
+        final LocalDate date;
+
+        Slot(ScheduleImportRowDTO row, LocalDate date) {
+            this.row = row;
+            this.date = date;
+        }
+    }
+
+    private static final class ImportJob {
+        final String id;
+        final int total;
+        final long startedAt = System.currentTimeMillis();
+        final AtomicInteger imported = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        final AtomicInteger skipped = new AtomicInteger();
+        final AtomicLong seatRows = new AtomicLong();
+        final AtomicReference<String> error = new AtomicReference<>();
+        volatile long finishedAt;
+
+        ImportJob(String id, int total) {
+            this.id = id;
+            this.total = total;
+        }
+    }
+}
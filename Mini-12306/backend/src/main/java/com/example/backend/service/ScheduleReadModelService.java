@@ -0,0 +1,230 @@
+package com.example.backend.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.example.backend.dto.TrainScheduleDTO;
+import com.example.backend.event.SeatAvailabilityChangedEvent;
+import com.example.backend.mapper.ScheduleReadModelMapper;
+import com.example.backend.mapper.SeatAvailabilityMapper;
+import com.example.backend.mapper.TrainScheduleMapper;
+import com.example.backend.model.ScheduleReadModelEntity;
+import com.example.backend.model.SeatAvailabilityEntity;
+import com.example.backend.model.SeatTypeEntity;
+import com.example.backend.model.TrainScheduleEntity;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * 车次查询读模型
+ *
+ * schedule_read_model 中每个车次一行，保存站名、时间、历时以及各座位类型的余票和票价（JSON），
+ * 按出发站、到达站查询时是一次 idx_route_time 索引范围扫描，行直接映射为查询结果，无需再查座位或转换。
+ * 查询结果由 ScheduleSearchService 缓存，并以当前库存的余票覆盖。
+ *
+ * 启动时全量构建；之后增量维护：车次增删改在事务提交后由 ScheduleSearchService 调用 onScheduleChanged
+ * 立即更新该行，再清空查询缓存；余票变化只记下车次，由定时任务合并后批量更新。
+ */
+@Slf4j
+@Service
+public class ScheduleReadModelService {
+
+    @Autowired
+    private ScheduleReadModelMapper scheduleReadModelMapper;
+
+    @Autowired
+    private TrainScheduleMapper trainScheduleMapper;
+
+    @Autowired
+    private SeatAvailabilityMapper seatAvailabilityMapper;
+
+    @Autowired
+    private SeatInventoryService seatInventoryService;
+
+    @Autowired
+    private SeatTypeCache seatTypeCache;
+
+    // 关闭时车次查询直接关联车次表和余票表
+    @Value("${app.read-model.enabled:true}")
+    private boolean enabled;
+
+    // 全量构建和批量刷新时每批的车次数
+    @Value("${app.read-model.batch-size:500}")
+    private int batchSize;
+
+    // 余票有变化、等待刷新的车次
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean ready;
+
+    /**
+     * 启动时按车次ID分批全量构建，并删除车次已不存在的行
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        String afterId = "";
+        int total = 0;
+        while (true) {
+            List<TrainScheduleEntity> schedules = trainScheduleMapper.selectList(new LambdaQueryWrapper<TrainScheduleEntity>()
+                    .gt(TrainScheduleEntity::getId, afterId)
+                    .orderByAsc(TrainScheduleEntity::getId)
+                    .last("LIMIT " + batchSize));
+            if (!schedules.isEmpty()) {
+                write(schedules);
+                total += schedules.size();
+                afterId = schedules.get(schedules.size() - 1).getId();
+            }
+            if (schedules.size() < batchSize) {
+                break;
+            }
+        }
+        int removed = scheduleReadModelMapper.deleteOrphans();
+        ready = true;
+        log.info("车次读模型构建完成: schedules={}, removed={}", total, removed);
+    }
+
+    /**
+     * 读模型已启用且构建完成
+     */
+    public boolean isReady() {
+        return enabled && ready;
+    }
+
+    /**
+     * 车次增删改：立即更新该车次的行，事务提交后由 ScheduleSearchService 在清空查询缓存前调用
+     */
+    public void onScheduleChanged(String scheduleId) {
+        if (enabled) {
+            refresh(Collections.singletonList(scheduleId));
+        }
+    }
+
+    /**
+     * 余票变化：记下车次，等待定时刷新
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSeatAvailabilityChanged(SeatAvailabilityChangedEvent event) {
+        if (enabled) {
+            dirty.add(event.getScheduleId());
+        }
+    }
+
+    /**
+     * 批量导入的车次：记下车次，等待定时刷新
+     */
+    public void markDirty(Collection<String> scheduleIds) {
+        if (enabled) {
+            dirty.addAll(scheduleIds);
+        }
+    }
+
+    /**
+     * 批量刷新余票有变化的车次，失败的车次留待下次重试
+     */
+    @Scheduled(fixedDelayString = "${app.read-model.refresh-interval-ms:500}")
+    public void refreshDirty() {
+        if (dirty.isEmpty()) {
+            return;
+        }
+        List<String> scheduleIds = new ArrayList<>(dirty);
+        dirty.removeAll(scheduleIds);
+        for (int from = 0; from < scheduleIds.size(); from += batchSize) {
+            List<String> batch = scheduleIds.subList(from, Math.min(from + batchSize, scheduleIds.size()));
+            try {
+                refresh(batch);
+            } catch (Exception e) {
+                log.error("车次读模型刷新失败，将在下次重试: size={}", batch.size(), e);
+                dirty.addAll(batch);
+            }
+        }
+    }
+
+    /**
+     * 重新生成指定车次的行，车次已删除时删除对应的行
+     */
+    public void refresh(Collection<String> scheduleIds) {
+        List<TrainScheduleEntity> schedules = trainScheduleMapper.selectList(
+                new LambdaQueryWrapper<TrainScheduleEntity>().in(TrainScheduleEntity::getId, scheduleIds));
+        Set<String> deleted = new HashSet<>(scheduleIds);
+        for (TrainScheduleEntity schedule : schedules) {
+            deleted.remove(schedule.getId());
+        }
+        if (!deleted.isEmpty()) {
+            scheduleReadModelMapper.delete(new LambdaQueryWrapper<ScheduleReadModelEntity>()
+                    .in(ScheduleReadModelEntity::getScheduleId, deleted));
+        }
+        if (!schedules.isEmpty()) {
+            write(schedules);
+        }
+    }
+
+    /**
+     * 按出发站、到达站和出发日期查询车次，结果按出发时间排序；车站列表为空时不限制
+     */
+    public List<TrainScheduleDTO> search(List<String> departureStations, List<String> arrivalStations,
+                                         LocalDate departureDate) {
+        return scheduleReadModelMapper.search(departureStations, arrivalStations,
+                departureDate != null ? departureDate.atStartOfDay() : null,
+                departureDate != null ? departureDate.plusDays(1).atStartOfDay() : null);
+    }
+
+    /**
+     * 组装车次的行并批量写入，余票取当前库存，座位类型以名称为键
+     */
+    private void write(List<TrainScheduleEntity> schedules) {
+        List<String> scheduleIds = schedules.stream().map(TrainScheduleEntity::getId).collect(Collectors.toList());
+        Map<String, Map<Integer, Integer>> liveCounts = seatInventoryService.getAvailableCounts(scheduleIds);
+        Map<String, Map<String, Integer>> seatAvailability = new HashMap<>();
+        Map<String, Map<String, Double>> basePrice = new HashMap<>();
+        for (SeatAvailabilityEntity availability : seatAvailabilityMapper.selectByScheduleIds(scheduleIds)) {
+            SeatTypeEntity seatType = seatTypeCache.getById(availability.getSeatTypeId());
+            if (seatType == null) {
+                continue;
+            }
+            Integer count = liveCounts.getOrDefault(availability.getScheduleId(), Collections.emptyMap())
+                    .get(availability.getSeatTypeId());
+            seatAvailability.computeIfAbsent(availability.getScheduleId(), k -> new HashMap<>())
+                    .put(seatType.getName(), count != null ? count : availability.getAvailableCount());
+            basePrice.computeIfAbsent(availability.getScheduleId(), k -> new HashMap<>())
+                    .put(seatType.getName(), availability.getPrice().doubleValue());
+        }
+
+        List<ScheduleReadModelEntity> rows = new ArrayList<>(schedules.size());
+        for (TrainScheduleEntity schedule : schedules) {
+            rows.add(ScheduleReadModelEntity.builder()
+                    .scheduleId(schedule.getId())
+                    .trainNumber(schedule.getTrainNumber())
+                    .departureStation(schedule.getDepartureStation())
+                    .arrivalStation(schedule.getArrivalStation())
+                    .departureTime(schedule.getDepartureTime())
+                    .arrivalTime(schedule.getArrivalTime())
+                    .durationMinutes(Duration.between(schedule.getDepartureTime(), schedule.getArrivalTime()).toMinutes())
+                    // 座位类型可能被删除，整行覆盖
+                    .seatAvailability(seatAvailability.getOrDefault(schedule.getId(), Collections.emptyMap()))
+                    .basePrice(basePrice.getOrDefault(schedule.getId(), Collections.emptyMap()))
+                    .status(schedule.getStatus())
+                    .build());
+        }
+        scheduleReadModelMapper.upsertBatch(rows);
+    }
+}
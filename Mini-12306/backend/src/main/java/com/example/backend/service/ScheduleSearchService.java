@@ -0,0 +1,450 @@
+package com.example.backend.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.example.backend.dto.ScheduleFilterDTO;
+import com.example.backend.dto.SchedulePageDTO;
+import com.example.backend.dto.TrainScheduleDTO;
+import com.example.backend.event.ScheduleChangedEvent;
+import com.example.backend.mapper.SeatAvailabilityMapper;
+import com.example.backend.mapper.TrainScheduleMapper;
+import com.example.backend.model.SchedulePageQuery;
+import com.example.backend.model.ScheduleSearchRow;
+import com.example.backend.model.SeatAvailabilityEntity;
+import com.example.backend.model.SeatTypeEntity;
+import com.example.backend.model.TrainScheduleEntity;
+import com.example.backend.util.EntityConverter;
+import com.example.backend.util.TtlCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 车次查询
+ *
+ * 购票和时刻表接口共用的查询流程：先按条件查出车次，再用一条 IN 查询取回全部车次的余票，
+ * 在内存中按车次分组后转换为 DTO。
+ *
+ * 出发站和到达站可以填城市名，展开为该城市的全部车站后用一条 IN 查询（走 idx_stations 索引）取回，
+ * 结果按出发时间排序，如"北京 -> 上海"同时返回北京南、北京西出发到上海虹桥的车次。
+ *
+ * 查询结果中不常变化的部分（车次和票价）按 (出发站, 到达站, 日期) 缓存，没有车次的组合也缓存为空结果；
+ * 余票数不缓存，每次查询从 SeatInventoryService 读取当前值覆盖，购票、退票、改签后立即可见。
+ * 车次增删改时清空缓存。读模型构建完成后缓存未命中时改为查询读模型（见 ScheduleReadModelService），
+ * 一次索引范围扫描直接得到 DTO；读模型中的余票可能滞后，同样以当前余票覆盖。
+ *
+ * 带筛选、排序或分页参数的查询不走缓存，条件和排序在 SQL 中执行，按 (排序键, 车次ID) 游标分页。
+ * 流式查询沿用同样的游标逐页读取，按需查询下一页，内存中最多保留一两页。
+ */
+@Service
+public class ScheduleSearchService {
+
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final Set<String> SORT_KEYS = Set.of("departure", "duration", "price");
+
+    @Autowired
+    private TrainScheduleMapper trainScheduleMapper;
+
+    @Autowired
+    private SeatTypeCache seatTypeCache;
+
+    @Autowired
+    private SeatAvailabilityMapper seatAvailabilityMapper;
+
+    @Autowired
+    private SeatInventoryService seatInventoryService;
+
+    @Autowired
+    private StationIndexService stationIndexService;
+
+    @Autowired
+    private ScheduleReadModelService scheduleReadModelService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.search-cache.max-size:1000}")
+    private int cacheMaxSize;
+
+    @Value("${app.search-cache.ttl-seconds:300}")
+    private long cacheTtlSeconds;
+
+    // 无车次结果的有效期较短，新增车次通常会清空缓存，这里只是兜底
+    @Value("${app.search-cache.negative-ttl-seconds:60}")
+    private long negativeCacheTtlSeconds;
+
+    // 流式查询每次从数据库取出的车次数
+    @Value("${app.search-stream.page-size:50}")
+    private int streamPageSize;
+
+    // 缓存的 DTO 只读，覆盖余票时复制
+    private TtlCache<String, List<TrainScheduleDTO>> cache;
+
+    private Counter cacheHits;
+
+    private Counter cacheMisses;
+
+    @PostConstruct
+    public void init() {
+        cache = new TtlCache<>(cacheMaxSize);
+        cacheHits = Counter.builder("schedule.search.cache").tag("result", "hit")
+                .description("车次查询缓存命中次数").register(meterRegistry);
+        cacheMisses = Counter.builder("schedule.search.cache").tag("result", "miss")
+                .description("车次查询缓存未命中次数").register(meterRegistry);
+        Gauge.builder("schedule.search.cache.size", cache, TtlCache::size)
+                .description("车次查询缓存条目数").register(meterRegistry);
+    }
+
+    /**
+     * 按出发站、到达站和出发日期查询车次，条件为空时不限制；站名可以是城市名
+     */
+    public List<TrainScheduleDTO> search(String departureStation, String arrivalStation, LocalDate departureDate) {
+        // 先规范站名并展开城市，"北京南站"、"bjn" 等写法命中同一缓存条目
+        List<String> departureStations = stationIndexService.expand(departureStation);
+        List<String> arrivalStations = stationIndexService.expand(arrivalStation);
+        String key = cacheKey(departureStations, arrivalStations, departureDate);
+        List<TrainScheduleDTO> cached = cache.get(key);
+        if (cached != null) {
+            cacheHits.increment();
+        } else {
+            cacheMisses.increment();
+            cached = load(departureStations, arrivalStations, departureDate);
+            cache.put(key, cached, TimeUnit.SECONDS.toMillis(cached.isEmpty() ? negativeCacheTtlSeconds : cacheTtlSeconds));
+        }
+        return overlay(cached);
+    }
+
+    /**
+     * 分页查询车次：筛选和排序在 SQL 中执行，游标为上一页返回的 nextCursor
+     *
+     * @throws IllegalArgumentException 排序方式、座位类型或游标无效时
+     */
+    public SchedulePageDTO searchPage(String departureStation, String arrivalStation, LocalDate departureDate,
+                                      ScheduleFilterDTO filter) {
+        int pageSize = filter.getLimit() != null ? Math.max(1, Math.min(filter.getLimit(), MAX_PAGE_SIZE)) : DEFAULT_PAGE_SIZE;
+        SchedulePageQuery query = buildPageQuery(departureStation, arrivalStation, departureDate, filter, pageSize + 1);
+
+        List<ScheduleSearchRow> rows = trainScheduleMapper.selectSchedulePage(query);
+        String nextCursor = null;
+        if (rows.size() > pageSize) {
+            rows = rows.subList(0, pageSize);
+            nextCursor = encodeCursor(query.getSortBy(), rows.get(pageSize - 1));
+        }
+        List<TrainScheduleEntity> schedules = new ArrayList<>(rows);
+        return SchedulePageDTO.builder()
+                .items(overlay(withAvailabilities(schedules)))
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    /**
+     * 流式查询车次：按页从数据库取出，每页组装完即逐条发出，下游消费完当前页后才查询下一页
+     *
+     * 条件与分页查询相同，filter 中的 limit 为最多返回的条数，cursor 可从分页查询的位置继续。
+     *
+     * @throws IllegalArgumentException 排序方式、座位类型或游标无效时，在订阅前抛出
+     */
+    public Flux<TrainScheduleDTO> stream(String departureStation, String arrivalStation, LocalDate departureDate,
+                                         ScheduleFilterDTO filter) {
+        SchedulePageQuery first = buildPageQuery(departureStation, arrivalStation, departureDate, filter, streamPageSize);
+        // generate 只在下游请求时调用，查询在有界弹性线程池上执行，不占用请求线程
+        Flux<TrainScheduleDTO> result = Flux.<List<TrainScheduleDTO>, SchedulePageQuery>generate(() -> first, (query, sink) -> {
+                    List<ScheduleSearchRow> rows = trainScheduleMapper.selectSchedulePage(query);
+                    List<TrainScheduleEntity> schedules = new ArrayList<>(rows);
+                    sink.next(overlay(withAvailabilities(schedules)));
+                    if (rows.size() < streamPageSize) {
+                        sink.complete();
+                        return query;
+                    }
+                    return nextPageQuery(query, rows.get(rows.size() - 1));
+                })
+                .concatMapIterable(items -> items, 1)
+                .subscribeOn(Schedulers.boundedElastic());
+        return filter.getLimit() != null ? result.take(Math.max(0, filter.getLimit())) : result;
+    }
+
+    private static SchedulePageQuery nextPageQuery(SchedulePageQuery query, ScheduleSearchRow last) {
+        SchedulePageQuery next = query.toBuilder().afterId(last.getId()).build();
+        switch (query.getSortBy()) {
+            case "duration":
+                next.setAfterDuration(last.getDurationMinutes());
+                break;
+            case "price":
+                next.setAfterPrice(last.getMinPrice());
+                break;
+            default:
+                next.setAfterDepartureTime(last.getDepartureTime());
+        }
+        return next;
+    }
+
+    /**
+     * 校验筛选参数并生成查询条件，fetchSize 为一次查询的行数
+     */
+    private SchedulePageQuery buildPageQuery(String departureStation, String arrivalStation, LocalDate departureDate,
+                                             ScheduleFilterDTO filter, int fetchSize) {
+        String sortBy = StringUtils.hasText(filter.getSortBy()) ? filter.getSortBy() : "departure";
+        if (!SORT_KEYS.contains(sortBy)) {
+            throw new IllegalArgumentException("不支持的排序方式：" + sortBy);
+        }
+        SchedulePageQuery query = SchedulePageQuery.builder()
+                .departureStations(stationIndexService.expand(departureStation))
+                .arrivalStations(stationIndexService.expand(arrivalStation))
+                .maxDurationMinutes(filter.getMaxDurationMinutes())
+                .maxPrice(filter.getMaxPrice())
+                .sortBy(sortBy)
+                .fetchSize(fetchSize)
+                .build();
+        if (departureDate != null) {
+            // 指定日期时出发时刻条件并入时间范围，可以使用出发时间索引
+            query.setDepartFrom(filter.getDepartAfter() != null
+                    ? departureDate.atTime(filter.getDepartAfter()) : departureDate.atStartOfDay());
+            query.setDepartTo(filter.getDepartBefore() != null
+                    ? departureDate.atTime(filter.getDepartBefore()) : departureDate.plusDays(1).atStartOfDay());
+        } else {
+            query.setDepartAfter(filter.getDepartAfter());
+            query.setDepartBefore(filter.getDepartBefore());
+        }
+        if (StringUtils.hasText(filter.getSeatType())) {
+            SeatTypeEntity seatType = seatTypeCache.getByName(filter.getSeatType());
+            if (seatType == null) {
+                throw new IllegalArgumentException("座位类型不存在：" + filter.getSeatType());
+            }
+            query.setSeatTypeId(seatType.getId());
+        }
+        if (StringUtils.hasText(filter.getCursor())) {
+            applyCursor(query, filter.getCursor());
+        }
+        return query;
+    }
+
+    /**
+     * 游标内容为 "排序方式|排序键|车次ID" 的 Base64 编码
+     */
+    private static String encodeCursor(String sortBy, ScheduleSearchRow last) {
+        String key;
+        switch (sortBy) {
+            case "duration":
+                key = String.valueOf(last.getDurationMinutes());
+                break;
+            case "price":
+                key = last.getMinPrice().toPlainString();
+                break;
+            default:
+                key = last.getDepartureTime().toString();
+        }
+        String raw = sortBy + "|" + key + "|" + last.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void applyCursor(SchedulePageQuery query, String cursor) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", 3);
+            if (parts.length != 3 || !parts[0].equals(query.getSortBy())) {
+                throw new IllegalArgumentException("分页游标无效，请重新查询。");
+            }
+            switch (parts[0]) {
+                case "duration":
+                    query.setAfterDuration(Long.parseLong(parts[1]));
+                    break;
+                case "price":
+                    query.setAfterPrice(new BigDecimal(parts[1]));
+                    break;
+                default:
+                    query.setAfterDepartureTime(LocalDateTime.parse(parts[1]));
+            }
+            query.setAfterId(parts[2]);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("分页游标无效，请重新查询。");
+        }
+    }
+
+    /**
+     * 根据ID查询车次，不存在时返回null
+     */
+    public TrainScheduleDTO getById(String scheduleId) {
+        TrainScheduleEntity schedule = trainScheduleMapper.selectById(scheduleId);
+        if (schedule == null) {
+            return null;
+        }
+        return overlay(withAvailabilities(Collections.singletonList(schedule))).get(0);
+    }
+
+    /**
+     * 批量查询车次，不存在的ID被忽略
+     */
+    public List<TrainScheduleDTO> findByIds(List<String> scheduleIds) {
+        if (scheduleIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<TrainScheduleEntity> schedules = trainScheduleMapper.selectList(
+                new LambdaQueryWrapper<TrainScheduleEntity>().in(TrainScheduleEntity::getId, scheduleIds));
+        return overlay(withAvailabilities(schedules));
+    }
+
+    /**
+     * 清空查询缓存（车次增删改时调用）
+     */
+    public void invalidate() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // 事务提交后再清空，避免提交前的查询把旧数据重新放回缓存
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.clear();
+                }
+            });
+        } else {
+            cache.clear();
+        }
+    }
+
+    /**
+     * 清空包含该车次的查询结果：出发站、到达站在条目的车站中（或条目不限车站），且日期相同（或条目不限日期）
+     *
+     * 单个车次新增时调用，不影响其他线路的缓存
+     */
+    public void invalidate(String departureStation, String arrivalStation, LocalDate departureDate) {
+        String date = departureDate.toString();
+        Runnable evict = () -> cache.removeIf(key -> {
+            String[] parts = key.split("\\|", -1);
+            return containsStation(parts[0], departureStation) && containsStation(parts[1], arrivalStation)
+                    && (parts[2].isEmpty() || parts[2].equals(date));
+        });
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict.run();
+                }
+            });
+        } else {
+            evict.run();
+        }
+    }
+
+    private static boolean containsStation(String stations, String station) {
+        return stations.isEmpty() || Arrays.asList(stations.split(",")).contains(station);
+    }
+
+    /**
+     * 车次增删改提交后先更新读模型再清空缓存，避免缓存未命中时读到读模型中的旧行
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onScheduleChanged(ScheduleChangedEvent event) {
+        scheduleReadModelService.onScheduleChanged(event.getScheduleId());
+        cache.clear();
+    }
+
+    private List<TrainScheduleDTO> load(List<String> departureStations, List<String> arrivalStations,
+                                        LocalDate departureDate) {
+        if (scheduleReadModelService.isReady()) {
+            // 读模型中的余票可能滞后，不用于初始化内存库存
+            return Collections.unmodifiableList(
+                    scheduleReadModelService.search(departureStations, arrivalStations, departureDate));
+        }
+        QueryWrapper<TrainScheduleEntity> queryWrapper = new QueryWrapper<>();
+        stationCondition(queryWrapper, "departure_station", departureStations);
+        stationCondition(queryWrapper, "arrival_station", arrivalStations);
+        if (departureDate != null) {
+            queryWrapper.ge("departure_time", departureDate.atStartOfDay());
+            queryWrapper.lt("departure_time", departureDate.plusDays(1).atStartOfDay());
+        }
+        // 多个车站的结果合并后按出发时间排列
+        queryWrapper.orderByAsc("departure_time", "id");
+        return withAvailabilities(trainScheduleMapper.selectList(queryWrapper));
+    }
+
+    private static void stationCondition(QueryWrapper<TrainScheduleEntity> queryWrapper, String column,
+                                         List<String> stations) {
+        if (stations.size() == 1) {
+            queryWrapper.eq(column, stations.get(0));
+        } else if (stations.size() > 1) {
+            queryWrapper.in(column, stations);
+        }
+    }
+
+    /**
+     * 一条 IN 查询取回全部车次的座位类型和票价，按车次分组后转换为 DTO，保持车次顺序
+     */
+    private List<TrainScheduleDTO> withAvailabilities(List<TrainScheduleEntity> schedules) {
+        if (schedules.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> scheduleIds = schedules.stream().map(TrainScheduleEntity::getId).collect(Collectors.toList());
+        List<SeatAvailabilityEntity> rows = seatAvailabilityMapper.selectByScheduleIds(scheduleIds);
+        // 顺带初始化内存库存，随后的余票覆盖无需再查库
+        seatInventoryService.preload(rows);
+        Map<String, List<SeatAvailabilityEntity>> availabilityBySchedule = new HashMap<>();
+        for (SeatAvailabilityEntity availability : rows) {
+            availabilityBySchedule.computeIfAbsent(availability.getScheduleId(), k -> new ArrayList<>()).add(availability);
+        }
+        List<TrainScheduleDTO> result = new ArrayList<>(schedules.size());
+        for (TrainScheduleEntity schedule : schedules) {
+            result.add(EntityConverter.toTrainScheduleDTO(schedule,
+                    availabilityBySchedule.getOrDefault(schedule.getId(), Collections.emptyList()), seatTypeCache::getById));
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * 以当前余票覆盖查询时的余票数，返回副本，不修改缓存中的 DTO
+     */
+    private List<TrainScheduleDTO> overlay(List<TrainScheduleDTO> schedules) {
+        if (schedules.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<String, Map<Integer, Integer>> liveCounts = seatInventoryService.getAvailableCounts(
+                schedules.stream().map(TrainScheduleDTO::getScheduleId).collect(Collectors.toList()));
+
+        List<TrainScheduleDTO> result = new ArrayList<>(schedules.size());
+        for (TrainScheduleDTO cached : schedules) {
+            Map<String, Integer> seatAvailability = new HashMap<>(cached.getSeatAvailability());
+            Map<Integer, Integer> counts = liveCounts.get(cached.getScheduleId());
+            if (counts != null) {
+                for (Map.Entry<Integer, Integer> count : counts.entrySet()) {
+                    SeatTypeEntity seatType = seatTypeCache.getById(count.getKey());
+                    // 只覆盖车次提供的座位类型
+                    if (seatType != null && seatAvailability.containsKey(seatType.getName())) {
+                        seatAvailability.put(seatType.getName(), count.getValue());
+                    }
+                }
+            }
+            result.add(cached.toBuilder().seatAvailability(seatAvailability).build());
+        }
+        return result;
+    }
+
+    private static String cacheKey(List<String> departureStations, List<String> arrivalStations,
+                                   LocalDate departureDate) {
+        return String.join(",", departureStations) + "|" + String.join(",", arrivalStations) + "|"
+                + (departureDate != null ? departureDate : "");
+    }
+}
@@ -0,0 +1,275 @@
+package com.example.backend.service;
+
+import com.example.backend.mapper.OrderMapper;
+import com.example.backend.mapper.TicketMapper;
+import com.example.backend.model.OrderEntity;
+import com.example.backend.model.SeatAvailabilityDelta;
+import com.example.backend.model.TicketEntity;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 按车次定序执行购票、退票和改签
+ *
+ * 每个命令分三步：prepare 预占内存中的余票和座位，write 在事务中写库，提交失败时 undo 归还预占。
+ * database 库存模式下余票扣减是数据库写操作，命令在 write 中登记，由批次事务合并为一条条件 UPDATE。
+ *
+ * direct 模式下命令在调用线程上逐个执行，每个命令一个事务。
+ * sequencer 模式下同一车次的命令进入该车次的信箱，任一时刻只有一个线程处理该信箱，
+ * 每次取出一批命令在同一个事务中提交：订单和车票批量插入，该车次的余票变化合并为一条更新语句。
+ * 批次提交失败时逐条重新执行，单个命令失败不影响同批次的其他命令。
+ */
+@Slf4j
+@Service
+public class ScheduleSequencer {
+
+    @Autowired
+    private OrderMapper orderMapper;
+
+    @Autowired
+    private TicketMapper ticketMapper;
+
+    @Autowired
+    private SeatInventoryService seatInventoryService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // 执行模式：direct（调用线程直接执行）或 sequencer（按车次定序批量提交）
+    @Value("${app.ticket.execution-mode:direct}")
+    private String mode;
+
+    @Value("${app.ticket.sequencer-batch-size:50}")
+    private int batchSize;
+
+    // 处理信箱的线程数，应小于数据库连接池大小
+    @Value("${app.ticket.sequencer-workers:4}")
+    private int workers;
+
+    // 单个车次信箱中等待的命令上限
+    @Value("${app.ticket.sequencer-mailbox-capacity:1000}")
+    private int mailboxCapacity;
+
+    private final Map<String, Mailbox> mailboxes = new ConcurrentHashMap<>();
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void start() {
+        if (isSequencerMode()) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(workers, runnable -> {
+                Thread thread = new Thread(runnable, "schedule-sequencer-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 执行命令并等待提交完成
+     *
+     * @param scheduleId 命令所属车次，sequencer 模式下同一车次的命令串行执行
+     * @throws RuntimeException 命令执行失败时抛出其原始异常
+     */
+    public void execute(String scheduleId, Command command) {
+        if (!isSequencerMode()) {
+            process(null, Collections.singletonList(command));
+        } else {
+            mailboxes.computeIfAbsent(scheduleId, Mailbox::new).submit(command);
+        }
+        try {
+            command.future.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    private boolean isSequencerMode() {
+        return "sequencer".equalsIgnoreCase(mode);
+    }
+
+    /**
+     * 预占、提交一批命令，提交失败时逐条重试
+     */
+    private void process(String scheduleId, List<Command> commands) {
+        List<Command> prepared = new ArrayList<>(commands.size());
+        for (Command command : commands) {
+            try {
+                command.prepare();
+                prepared.add(command);
+            } catch (RuntimeException e) {
+                command.future.completeExceptionally(e);
+            }
+        }
+        if (prepared.isEmpty()) {
+            return;
+        }
+
+        try {
+            commit(scheduleId, prepared);
+        } catch (RuntimeException e) {
+            prepared.forEach(Command::undo);
+            if (prepared.size() == 1) {
+                prepared.get(0).future.completeExceptionally(e);
+                return;
+            }
+            log.warn("批次提交失败，逐条重试: scheduleId={}, size={}", scheduleId, prepared.size(), e);
+            for (Command command : prepared) {
+                process(scheduleId, Collections.singletonList(command));
+            }
+            return;
+        }
+        prepared.forEach(command -> command.future.complete(null));
+    }
+
+    private void commit(String scheduleId, List<Command> commands) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Batch batch = new Batch();
+            for (Command command : commands) {
+                command.write(batch);
+            }
+            // 余票不足时整批回滚，由调用方逐条重试
+            if (!batch.reservations.isEmpty()
+                    && !seatInventoryService.tryReserveAll(new ArrayList<>(batch.reservations.values()))) {
+                throw new RuntimeException("所选车次座位余票不足。");
+            }
+            if (!batch.orders.isEmpty()) {
+                orderMapper.insertBatch(batch.orders);
+            }
+            if (!batch.tickets.isEmpty()) {
+                ticketMapper.insertBatch(batch.tickets);
+            }
+            // 该车次的余票变化随批次一起提交
+            if (scheduleId != null) {
+                seatInventoryService.flush(scheduleId);
+            }
+        });
+    }
+
+    /**
+     * 车次信箱：命令排队，同一时刻最多一个线程处理
+     */
+    private final class Mailbox {
+        private final String scheduleId;
+        private final Queue<Command> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private Mailbox(String scheduleId) {
+            this.scheduleId = scheduleId;
+        }
+
+        private void submit(Command command) {
+            if (size.incrementAndGet() > mailboxCapacity) {
+                size.decrementAndGet();
+                throw new RuntimeException("系统繁忙，请稍后重试。");
+            }
+            queue.add(command);
+            trySchedule();
+        }
+
+        private void trySchedule() {
+            if (!queue.isEmpty() && scheduled.compareAndSet(false, true)) {
+                executor.execute(this::drain);
+            }
+        }
+
+        /**
+         * 取出一批命令处理，处理完后让出线程，其他车次的信箱得以轮流执行
+         */
+        private void drain() {
+            try {
+                List<Command> batch = new ArrayList<>(batchSize);
+                Command command;
+                while (batch.size() < batchSize && (command = queue.poll()) != null) {
+                    batch.add(command);
+                }
+                size.addAndGet(-batch.size());
+                if (!batch.isEmpty()) {
+                    process(scheduleId, batch);
+                }
+            } catch (Exception e) {
+                log.error("车次命令处理失败: scheduleId={}", scheduleId, e);
+            } finally {
+                scheduled.set(false);
+                trySchedule();
+            }
+        }
+    }
+
+    /**
+     * 定序执行的命令
+     */
+    public abstract static class Command {
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        /**
+         * 在事务外预占余票和座位，失败时需自行归还已预占的部分并抛出异常
+         */
+        protected void prepare() {
+        }
+
+        /**
+         * 在批次事务中写库，新建的订单和车票加入批次统一插入
+         */
+        protected abstract void write(Batch batch);
+
+        /**
+         * 批次提交失败时归还 prepare 预占的资源
+         */
+        protected void undo() {
+        }
+    }
+
+    /**
+     * 一个批次中待批量插入的订单和车票，以及需要在批次事务中预占的余票
+     */
+    public static final class Batch {
+        private final List<OrderEntity> orders = new ArrayList<>();
+        private final List<TicketEntity> tickets = new ArrayList<>();
+        // scheduleId:seatTypeId -> 预占数量，同一行合并为一项
+        private final Map<String, SeatAvailabilityDelta> reservations = new LinkedHashMap<>();
+
+        public void addOrder(OrderEntity order) {
+            orders.add(order);
+        }
+
+        public void addTickets(List<TicketEntity> tickets) {
+            this.tickets.addAll(tickets);
+        }
+
+        public void reserve(String scheduleId, Integer seatTypeId, int count) {
+            SeatAvailabilityDelta reservation = reservations.computeIfAbsent(scheduleId + ":" + seatTypeId,
+                    k -> new SeatAvailabilityDelta(scheduleId, seatTypeId, 0));
+            reservation.setDelta(reservation.getDelta() + count);
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package com.example.backend.service;
+
+import com.example.backend.mapper.SeatAvailabilityMapper;
+import com.example.backend.mapper.SeatClaimMapper;
+import com.example.backend.mapper.TicketMapper;
+import com.example.backend.model.SeatAvailabilityEntity;
+import com.example.backend.model.SeatClaimEntity;
+import com.example.backend.model.SeatTypeEntity;
+import com.example.backend.model.TicketEntity;
+import com.example.backend.util.SeatBitmap;
+import com.example.backend.util.SeatLayout;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 座位分配服务
+ *
+ * 每个 (车次, 座位类型) 维护一张座位位图，首次使用时按该座位类型的总座位数、已售车票和座位占用记录构建。
+ * 位图只用于在本地挑选候选座位，座位以 seat_claim 表的主键为准：多个实例共享数据库时，
+ * 候选座位已被其他实例占用则标记为占用后换一个座位重试。调用方需先通过 SeatInventoryService 预占余票。
+ */
+@Slf4j
+@Service
+public class SeatAllocationService {
+
+    @Autowired
+    private TicketMapper ticketMapper;
+
+    @Autowired
+    private SeatAvailabilityMapper seatAvailabilityMapper;
+
+    @Autowired
+    private SeatClaimMapper seatClaimMapper;
+
+    @Autowired
+    private SeatTypeCache seatTypeCache;
+
+    // 超过该时长仍没有对应有效车票的占用记录视为失效，加载座位图时清理
+    @Value("${app.seat.claim-stale-minutes:10}")
+    private long claimStaleMinutes;
+
+    // 座位图：scheduleId:seatTypeId -> 座位位图
+    private final Map<String, SeatMap> seatMaps = new ConcurrentHashMap<>();
+
+    /**
+     * 为车票分配座位，写入车厢号和座位号
+     *
+     * 车票须已设置ID。在事务中调用时，若事务回滚则自动释放座位。
+     */
+    public void allocate(TicketEntity ticket, SeatTypeEntity seatType) {
+        SeatMap seatMap = getSeatMap(ticket.getScheduleId(), seatType);
+        boolean reloaded = false;
+        while (true) {
+            int seat = seatMap.bitmap.allocate();
+            if (seat < 0) {
+                if (reloaded) {
+                    throw new RuntimeException("座位分配失败，所选车次无空余座位。");
+                }
+                // 其他实例释放的座位在本地仍标记为占用，按数据库重建一次座位图
+                seatMap = reload(ticket.getScheduleId(), seatType);
+                reloaded = true;
+                continue;
+            }
+            SeatClaimEntity claim = SeatClaimEntity.builder()
+                    .scheduleId(ticket.getScheduleId())
+                    .seatTypeId(seatType.getId())
+                    .carriageNumber(seatMap.carriageNumber(seat))
+                    .seatNumber(seatMap.layout.seatNumber(seat))
+                    .ticketId(ticket.getId())
+                    .build();
+            if (seatClaimMapper.insertIgnore(claim) == 0) {
+                // 座位已被其他实例占用，保留本地占用标记
+                continue;
+            }
+            ticket.setCarriageNumber(claim.getCarriageNumber());
+            ticket.setSeatNumber(claim.getSeatNumber());
+            registerRollbackRelease(seatMap, seat);
+            return;
+        }
+    }
+
+    /**
+     * 释放车票占用的座位
+     *
+     * 在事务中调用时，占用记录随事务删除，位图待事务提交后才释放。
+     */
+    public void release(TicketEntity ticket) {
+        if (ticket.getCarriageNumber() == null || ticket.getSeatNumber() == null) {
+            return;
+        }
+        seatClaimMapper.delete(SeatClaimEntity.builder()
+                .scheduleId(ticket.getScheduleId())
+                .seatTypeId(ticket.getSeatTypeId())
+                .carriageNumber(ticket.getCarriageNumber())
+                .seatNumber(ticket.getSeatNumber())
+                .ticketId(ticket.getId())
+                .build());
+
+        SeatMap seatMap = seatMaps.get(key(ticket.getScheduleId(), ticket.getSeatTypeId()));
+        if (seatMap == null) {
+            // 座位图尚未加载，加载时会按占用记录重建
+            return;
+        }
+        int seat = seatMap.indexOf(ticket);
+        if (seat < 0) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    seatMap.bitmap.release(seat);
+                }
+            });
+        } else {
+            seatMap.bitmap.release(seat);
+        }
+    }
+
+    /**
+     * 移除车次的座位图和座位占用记录（车次删除或归档时调用）
+     */
+    public void evict(String scheduleId) {
+        seatClaimMapper.deleteBySchedule(scheduleId);
+        seatMaps.keySet().removeIf(key -> key.startsWith(scheduleId + ":"));
+    }
+
+    private void registerRollbackRelease(SeatMap seatMap, int seat) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        seatMap.bitmap.release(seat);
+                    }
+                }
+            });
+        }
+    }
+
+    private SeatMap getSeatMap(String scheduleId, SeatTypeEntity seatType) {
+        String key = key(scheduleId, seatType.getId());
+        SeatMap seatMap = seatMaps.get(key);
+        if (seatMap != null) {
+            return seatMap;
+        }
+        SeatMap loaded = load(scheduleId, seatType);
+        SeatMap existing = seatMaps.putIfAbsent(key, loaded);
+        return existing != null ? existing : loaded;
+    }
+
+    private SeatMap reload(String scheduleId, SeatTypeEntity seatType) {
+        SeatMap loaded = load(scheduleId, seatType);
+        seatMaps.put(key(scheduleId, seatType.getId()), loaded);
+        return loaded;
+    }
+
+    /**
+     * 按总座位数、已占用座位的车票和座位占用记录构建座位图
+     *
+     * 容量不能由当前余票推算：租约模式下其他节点租走或之后才租到的额度都不在本地余票中。
+     */
+    private SeatMap load(String scheduleId, SeatTypeEntity seatType) {
+        SeatLayout layout = SeatLayout.forSeatType(seatType.getName());
+        seatClaimMapper.deleteStale(scheduleId, seatType.getId(), LocalDateTime.now().minusMinutes(claimStaleMinutes));
+        List<TicketEntity> occupied = ticketMapper.selectOccupiedSeats(scheduleId, seatType.getId());
+        List<SeatClaimEntity> claims = seatClaimMapper.selectClaims(scheduleId, seatType.getId());
+
+        List<SeatAvailabilityEntity> availabilities = seatAvailabilityMapper.selectByScheduleIds(List.of(scheduleId));
+        int capacity = availabilities.stream()
+                .filter(availability -> seatType.getId().equals(availability.getSeatTypeId()))
+                .map(SeatAvailabilityEntity::getTotalCount)
+                .findFirst()
+                .orElse(occupied.size());
+        int firstCarriage = firstCarriage(availabilities, seatType.getId());
+        SeatMap seatMap = new SeatMap(layout, firstCarriage,
+                new SeatBitmap(layout.carriagesFor(capacity), layout.getSeatsPerCarriage()));
+        // 最后一节车厢中超出总座位数的部分不可分配
+        for (int seat = capacity; seat < seatMap.bitmap.getCarriageCount() * layout.getSeatsPerCarriage(); seat++) {
+            seatMap.bitmap.occupy(seat);
+        }
+
+        int unplaced = 0;
+        for (TicketEntity ticket : occupied) {
+            int seat = seatMap.indexOf(ticket);
+            if (seat < 0 || !seatMap.bitmap.occupy(seat)) {
+                unplaced++;
+            }
+        }
+        // 其他实例已占用但车票尚未写入的座位，以及车票已占用的座位，重复占用时忽略
+        for (SeatClaimEntity claim : claims) {
+            int seat = seatMap.parse(claim.getCarriageNumber(), claim.getSeatNumber());
+            if (seat >= 0) {
+                seatMap.bitmap.occupy(seat);
+            }
+        }
+        // 历史数据中座位号缺失或冲突的车票，任意占用一个空位以保证剩余座位数与余票一致
+        for (int i = 0; i < unplaced; i++) {
+            seatMap.bitmap.allocate();
+        }
+        log.info("加载座位图: scheduleId={}, seatType={}, carriages={}-{}, occupied={}, claims={}",
+                scheduleId, seatType.getName(), firstCarriage, firstCarriage + seatMap.bitmap.getCarriageCount() - 1,
+                occupied.size(), claims.size());
+        return seatMap;
+    }
+
+    /**
+     * 车次各座位类型按布局顺序依次占用连续的车厢，计算指定座位类型的起始车厢号
+     *
+     * 只依赖各座位类型的总座位数，所有实例得到相同的车厢范围，且范围互不重叠。
+     */
+    private int firstCarriage(List<SeatAvailabilityEntity> availabilities, Integer seatTypeId) {
+        List<SeatAvailabilityEntity> ordered = new ArrayList<>(availabilities);
+        ordered.sort(Comparator.comparing((SeatAvailabilityEntity availability) -> layoutOf(availability).ordinal())
+                .thenComparing(SeatAvailabilityEntity::getSeatTypeId));
+        int carriage = 1;
+        for (SeatAvailabilityEntity availability : ordered) {
+            if (seatTypeId.equals(availability.getSeatTypeId())) {
+                break;
+            }
+            carriage += layoutOf(availability).carriagesFor(availability.getTotalCount());
+        }
+        return carriage;
+    }
+
+    private SeatLayout layoutOf(SeatAvailabilityEntity availability) {
+        SeatTypeEntity seatType = seatTypeCache.getById(availability.getSeatTypeId());
+        return SeatLayout.forSeatType(seatType != null ? seatType.getName() : "");
+    }
+
+    private static String key(String scheduleId, Integer seatTypeId) {
+        return scheduleId + ":" + seatTypeId;
+    }
+
+    private static final class SeatMap {
+        private final SeatLayout layout;
+        private final int firstCarriage;
+        private final SeatBitmap bitmap;
+
+        private SeatMap(SeatLayout layout, int firstCarriage, SeatBitmap bitmap) {
+            this.layout = layout;
+            this.firstCarriage = firstCarriage;
+            this.bitmap = bitmap;
+        }
+
+        private String carriageNumber(int seat) {
+            return layout.carriageNumber(firstCarriage, seat);
+        }
+
+        private int indexOf(TicketEntity ticket) {
+            return parse(ticket.getCarriageNumber(), ticket.getSeatNumber());
+        }
+
+        private int parse(String carriageNumber, String seatNumber) {
+            int seat = layout.parse(firstCarriage, carriageNumber, seatNumber);
+            return seat < bitmap.getCarriageCount() * bitmap.getSeatsPerCarriage() ? seat : -1;
+        }
+    }
+}
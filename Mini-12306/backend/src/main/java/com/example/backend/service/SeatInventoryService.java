@@ -0,0 +1,623 @@
+package com.example.backend.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.example.backend.mapper.SeatAvailabilityMapper;
+import com.example.backend.model.SeatAvailabilityDelta;
+import com.example.backend.model.SeatAvailabilityEntity;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 内存余票引擎
+ *
+ * 以 (scheduleId, seatTypeId) 为键维护原子计数器，购票/退票/改签通过 CAS 扣减和归还余票，
+ * 余票变化以增量形式累积，由定时任务批量回写 seat_availability 表。
+ *
+ * 多个实例共享同一数据库时应使用 database 模式：每次扣减直接执行带余票条件的 UPDATE，
+ * 由数据库保证不超卖。lease 模式下各实例从数据库租用一段余票额度，在本地额度内扣减，
+ * 见 SeatLeaseService。
+ */
+@Slf4j
+@Service
+public class SeatInventoryService {
+
+    // 已移除的库存桶保留的时长，期间并发操作留下的增量仍会回写
+    private static final long RETIRED_GRACE_MILLIS = 10_000;
+
+    @Autowired
+    private SeatAvailabilityMapper seatAvailabilityMapper;
+
+    @Autowired
+    private SeatLeaseService seatLeaseService;
+
+    @Value("${app.inventory.flush-batch-size:200}")
+    private int flushBatchSize;
+
+    // 库存模式：memory（内存扣减，异步回写）、database（条件 UPDATE 直接扣减）或 lease（租用额度本地扣减）
+    @Value("${app.inventory.mode:memory}")
+    private String mode;
+
+    // 库存桶：scheduleId:seatTypeId -> 余票计数
+    private final Map<String, InventoryBucket> buckets = new ConcurrentHashMap<>();
+
+    // 已整车次加载的库存桶：scheduleId -> 该车次全部座位类型的库存桶
+    private final Map<String, List<InventoryBucket>> scheduleBuckets = new ConcurrentHashMap<>();
+
+    // 已移除的库存桶 -> 移除时间，定时回写继续收取移除前后并发操作留下的增量
+    private final Map<InventoryBucket, Long> retiredBuckets = new ConcurrentHashMap<>();
+
+    /**
+     * 该车次是否提供指定座位类型
+     */
+    public boolean isOffered(String scheduleId, Integer seatTypeId) {
+        if (isDatabaseMode() || isLeaseMode()) {
+            return selectAvailability(scheduleId, seatTypeId) != null;
+        }
+        return getBucket(scheduleId, seatTypeId) != null;
+    }
+
+    /**
+     * 获取票价，车次不提供该座位类型时返回null
+     *
+     * memory 模式读取库存桶，其他模式直接查询数据库，不创建库存桶。
+     */
+    public BigDecimal getPrice(String scheduleId, Integer seatTypeId) {
+        if (isDatabaseMode() || isLeaseMode()) {
+            SeatAvailabilityEntity availability = selectAvailability(scheduleId, seatTypeId);
+            return availability != null ? availability.getPrice() : null;
+        }
+        InventoryBucket bucket = getBucket(scheduleId, seatTypeId);
+        return bucket != null ? bucket.price : null;
+    }
+
+    /**
+     * 获取当前余票数，车次不提供该座位类型时返回0
+     */
+    public int getAvailableCount(String scheduleId, Integer seatTypeId) {
+        if (isDatabaseMode()) {
+            SeatAvailabilityEntity availability = selectAvailability(scheduleId, seatTypeId);
+            return availability != null ? availability.getAvailableCount() : 0;
+        }
+        if (isLeaseMode()) {
+            // 数据库中未被租用的余票加上本节点的额度，不含其他节点持有的额度
+            SeatAvailabilityEntity availability = selectAvailability(scheduleId, seatTypeId);
+            return availability != null
+                    ? availability.getAvailableCount() + seatLeaseService.getLocalQuota(scheduleId, seatTypeId) : 0;
+        }
+        InventoryBucket bucket = getBucket(scheduleId, seatTypeId);
+        return bucket != null ? bucket.available.get() : 0;
+    }
+
+    /**
+     * 批量获取多个车次的当前余票
+     *
+     * memory 模式下直接读取内存库存桶，首次访问的车次用一条 IN 查询加载；
+     * 其他模式用一条 IN 查询读取数据库余票，lease 模式再加上本节点的额度。
+     *
+     * @return scheduleId -> (seatTypeId -> 余票数)
+     */
+    public Map<String, Map<Integer, Integer>> getAvailableCounts(Collection<String> scheduleIds) {
+        Map<String, Map<Integer, Integer>> result = new HashMap<>();
+        if (scheduleIds.isEmpty()) {
+            return result;
+        }
+        if (isDatabaseMode() || isLeaseMode()) {
+            for (SeatAvailabilityEntity availability : seatAvailabilityMapper.selectByScheduleIds(scheduleIds)) {
+                int count = availability.getAvailableCount();
+                if (isLeaseMode()) {
+                    count += seatLeaseService.getLocalQuota(availability.getScheduleId(), availability.getSeatTypeId());
+                }
+                result.computeIfAbsent(availability.getScheduleId(), k -> new HashMap<>())
+                        .put(availability.getSeatTypeId(), count);
+            }
+            return result;
+        }
+        List<String> missing = new ArrayList<>();
+        for (String scheduleId : scheduleIds) {
+            if (!scheduleBuckets.containsKey(scheduleId)) {
+                missing.add(scheduleId);
+            }
+        }
+        if (!missing.isEmpty()) {
+            preload(seatAvailabilityMapper.selectByScheduleIds(missing));
+        }
+        for (String scheduleId : scheduleIds) {
+            List<InventoryBucket> loaded = scheduleBuckets.get(scheduleId);
+            if (loaded == null) {
+                continue;
+            }
+            Map<Integer, Integer> counts = new HashMap<>();
+            for (InventoryBucket bucket : loaded) {
+                counts.put(bucket.seatTypeId, bucket.available.get());
+            }
+            result.put(scheduleId, counts);
+        }
+        return result;
+    }
+
+    /**
+     * 用已查出的余票行初始化内存库存桶，已存在的库存桶保持不变
+     *
+     * @param availabilities 须包含所涉车次的全部座位类型
+     */
+    public void preload(List<SeatAvailabilityEntity> availabilities) {
+        if (isDatabaseMode() || isLeaseMode()) {
+            return;
+        }
+        Map<String, List<InventoryBucket>> loaded = new HashMap<>();
+        List<String> evicting = new ArrayList<>();
+        for (SeatAvailabilityEntity availability : availabilities) {
+            InventoryBucket created = new InventoryBucket(availability.getScheduleId(), availability.getSeatTypeId(),
+                    availability.getAvailableCount(), availability.getPrice());
+            InventoryBucket existing = buckets.putIfAbsent(
+                    key(availability.getScheduleId(), availability.getSeatTypeId()), created);
+            if (existing != null && existing.retired) {
+                evicting.add(availability.getScheduleId());
+            }
+            loaded.computeIfAbsent(availability.getScheduleId(), k -> new ArrayList<>())
+                    .add(existing != null ? existing : created);
+        }
+        // 正在移除的车次不记录，下次访问重新加载
+        loaded.keySet().removeAll(evicting);
+        scheduleBuckets.putAll(loaded);
+    }
+
+    /**
+     * 预占余票
+     *
+     * 在事务中调用时，若事务回滚则自动归还。
+     *
+     * @return 余票充足并扣减成功返回true，否则返回false
+     */
+    public boolean tryReserve(String scheduleId, Integer seatTypeId, int count) {
+        if (isDatabaseMode()) {
+            return seatAvailabilityMapper.reserveSeats(scheduleId, seatTypeId, count) == 1;
+        }
+        if (isLeaseMode()) {
+            if (!seatLeaseService.tryReserve(scheduleId, seatTypeId, count)) {
+                return false;
+            }
+            onRollback(() -> seatLeaseService.release(scheduleId, seatTypeId, count));
+            return true;
+        }
+        while (true) {
+            InventoryBucket bucket = getBucket(scheduleId, seatTypeId);
+            if (bucket == null) {
+                return false;
+            }
+            boolean reserved = bucket.tryReserve(count);
+            if (bucket.retired) {
+                // 库存桶正在被移除，撤销后在新的库存桶上重试
+                if (reserved) {
+                    bucket.adjust(count);
+                }
+                Thread.yield();
+                continue;
+            }
+            if (!reserved) {
+                return false;
+            }
+            onRollback(() -> releaseToBucket(scheduleId, seatTypeId, count));
+            return true;
+        }
+    }
+
+    /**
+     * 确认 tryReserve 预占的余票已售出，须在写入车票的事务中调用
+     *
+     * lease 模式下从本节点持久化的租约中扣减，节点宕机后回收的额度不含已售出的座位；其他模式预占时已生效，无需处理。
+     */
+    public void confirm(String scheduleId, Integer seatTypeId, int count) {
+        if (isLeaseMode()) {
+            seatLeaseService.confirm(scheduleId, seatTypeId, count);
+        }
+    }
+
+    /**
+     * 撤销 tryReserve 的预占（预占后未能提交时调用），立即归还
+     */
+    public void cancelReserve(String scheduleId, Integer seatTypeId, int count) {
+        if (isDatabaseMode()) {
+            seatAvailabilityMapper.releaseSeats(scheduleId, seatTypeId, count);
+            return;
+        }
+        if (isLeaseMode()) {
+            seatLeaseService.release(scheduleId, seatTypeId, count);
+            return;
+        }
+        releaseToBucket(scheduleId, seatTypeId, count);
+    }
+
+    /**
+     * 归还已售出的余票（退票、改签、取消）
+     *
+     * 在事务中调用时，待事务提交后才归还，避免退票回滚前座位被再次售出。
+     * lease 模式下随事务退回本节点持久化的租约，提交后加入本地额度。
+     */
+    public void release(String scheduleId, Integer seatTypeId, int count) {
+        if (isDatabaseMode()) {
+            seatAvailabilityMapper.releaseSeats(scheduleId, seatTypeId, count);
+            return;
+        }
+        if (isLeaseMode()) {
+            seatLeaseService.restore(scheduleId, seatTypeId, count);
+            return;
+        }
+        afterCommit(() -> releaseToBucket(scheduleId, seatTypeId, count));
+    }
+
+    /**
+     * 一次预占多个 (车次, 座位类型) 的余票，全部成功或全部不预占
+     *
+     * database 模式下用一条条件 UPDATE 扣减全部行，部分行余票不足时抛出异常，
+     * 由外层事务回滚已扣减的行，因此必须在事务中调用。
+     *
+     * @param requests delta 为各自需要预占的数量
+     * @return 全部预占成功返回true
+     * @throws RuntimeException database 模式下部分行余票不足时抛出，以回滚已执行的扣减
+     * @throws IllegalStateException database 模式下不在事务中调用时
+     */
+    public boolean tryReserveAll(List<SeatAvailabilityDelta> requests) {
+        if (requests.isEmpty()) {
+            return true;
+        }
+        if (isDatabaseMode()) {
+            if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+                throw new IllegalStateException("批量预占余票须在事务中调用");
+            }
+            int updated = seatAvailabilityMapper.reserveSeatsBatch(requests);
+            if (updated == 0) {
+                return false;
+            }
+            if (updated < requests.size()) {
+                throw new RuntimeException("所选车次座位余票不足。");
+            }
+            return true;
+        }
+        if (isLeaseMode()) {
+            for (int i = 0; i < requests.size(); i++) {
+                SeatAvailabilityDelta request = requests.get(i);
+                if (!seatLeaseService.tryReserve(request.getScheduleId(), request.getSeatTypeId(), request.getDelta())) {
+                    for (int j = 0; j < i; j++) {
+                        SeatAvailabilityDelta reserved = requests.get(j);
+                        seatLeaseService.release(reserved.getScheduleId(), reserved.getSeatTypeId(), reserved.getDelta());
+                    }
+                    return false;
+                }
+            }
+            for (SeatAvailabilityDelta request : requests) {
+                onRollback(() -> seatLeaseService.release(
+                        request.getScheduleId(), request.getSeatTypeId(), request.getDelta()));
+            }
+            return true;
+        }
+        while (true) {
+            List<InventoryBucket> reserved = new ArrayList<>(requests.size());
+            boolean retry = false;
+            for (SeatAvailabilityDelta request : requests) {
+                InventoryBucket bucket = getBucket(request.getScheduleId(), request.getSeatTypeId());
+                boolean ok = bucket != null && bucket.tryReserve(request.getDelta());
+                if (ok) {
+                    reserved.add(bucket);
+                }
+                if (!ok || bucket.retired) {
+                    retry = bucket != null && bucket.retired;
+                    // 归还已预占的部分
+                    for (int i = 0; i < reserved.size(); i++) {
+                        reserved.get(i).adjust(requests.get(i).getDelta());
+                    }
+                    break;
+                }
+            }
+            if (retry) {
+                Thread.yield();
+                continue;
+            }
+            if (reserved.size() < requests.size()) {
+                return false;
+            }
+            for (SeatAvailabilityDelta request : requests) {
+                onRollback(() -> releaseToBucket(request.getScheduleId(), request.getSeatTypeId(), request.getDelta()));
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 预占余票是否为数据库写操作
+     *
+     * database 模式下预占即条件 UPDATE，调用方应在写库事务中用 tryReserveAll 合并执行；其他模式在内存中预占。
+     */
+    public boolean reservesInTransaction() {
+        return isDatabaseMode();
+    }
+
+    /**
+     * 移除车次的内存库存（车次删除时调用），尚未回写的增量先写入数据库
+     *
+     * 先标记库存桶为已移除，并发的扣减和归还会在新的库存桶上重试；回写后再从表中移除，
+     * 之后首次访问从数据库重新加载，读到的余票已包含移除前的全部增量。
+     */
+    public void evict(String scheduleId) {
+        List<InventoryBucket> evicted = new ArrayList<>();
+        for (InventoryBucket bucket : buckets.values()) {
+            if (bucket.scheduleId.equals(scheduleId)) {
+                bucket.retired = true;
+                evicted.add(bucket);
+            }
+        }
+        List<SeatAvailabilityDelta> batch = new ArrayList<>();
+        for (InventoryBucket bucket : evicted) {
+            int delta = bucket.pendingDelta.getAndSet(0);
+            if (delta != 0) {
+                batch.add(new SeatAvailabilityDelta(bucket.scheduleId, bucket.seatTypeId, delta));
+            }
+        }
+        if (!batch.isEmpty()) {
+            writeBack(batch);
+        }
+        long now = System.currentTimeMillis();
+        for (InventoryBucket bucket : evicted) {
+            buckets.remove(key(bucket.scheduleId, bucket.seatTypeId), bucket);
+            retiredBuckets.put(bucket, now);
+        }
+        scheduleBuckets.remove(scheduleId);
+        if (isLeaseMode()) {
+            seatLeaseService.evict(scheduleId);
+        }
+    }
+
+    /**
+     * 重新加载车次的余票和票价，seat_availability 被直接修改后调用
+     *
+     * 在事务中调用时待事务提交后执行。memory 模式下移除库存桶，下次访问从数据库加载；
+     * 其他模式每次读取数据库，无需处理。
+     */
+    public void reload(String scheduleId) {
+        if (isDatabaseMode() || isLeaseMode()) {
+            return;
+        }
+        afterCommit(() -> evict(scheduleId));
+    }
+
+    /**
+     * 定时批量回写余票增量
+     */
+    @Scheduled(fixedDelayString = "${app.inventory.flush-interval-ms:200}")
+    public void flush() {
+        List<SeatAvailabilityDelta> batch = new ArrayList<>();
+        for (InventoryBucket bucket : buckets.values()) {
+            int delta = bucket.pendingDelta.getAndSet(0);
+            if (delta != 0) {
+                batch.add(new SeatAvailabilityDelta(bucket.scheduleId, bucket.seatTypeId, delta));
+            }
+            if (batch.size() >= flushBatchSize) {
+                writeBack(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        // 已移除的库存桶没有新增量且超过宽限期后丢弃
+        long expired = System.currentTimeMillis() - RETIRED_GRACE_MILLIS;
+        for (Map.Entry<InventoryBucket, Long> entry : retiredBuckets.entrySet()) {
+            InventoryBucket bucket = entry.getKey();
+            int delta = bucket.pendingDelta.getAndSet(0);
+            if (delta != 0) {
+                batch.add(new SeatAvailabilityDelta(bucket.scheduleId, bucket.seatTypeId, delta));
+            } else if (entry.getValue() < expired) {
+                retiredBuckets.remove(bucket);
+            }
+        }
+        if (!batch.isEmpty()) {
+            writeBack(batch);
+        }
+    }
+
+    /**
+     * 回写单个车次的余票增量
+     *
+     * 在事务中调用时随事务提交，事务回滚则把增量放回桶中。
+     */
+    public void flush(String scheduleId) {
+        if (isDatabaseMode() || isLeaseMode()) {
+            return;
+        }
+        List<SeatAvailabilityDelta> batch = new ArrayList<>();
+        List<InventoryBucket> flushed = new ArrayList<>();
+        for (InventoryBucket bucket : buckets.values()) {
+            if (!bucket.scheduleId.equals(scheduleId)) {
+                continue;
+            }
+            int delta = bucket.pendingDelta.getAndSet(0);
+            if (delta != 0) {
+                batch.add(new SeatAvailabilityDelta(bucket.scheduleId, bucket.seatTypeId, delta));
+                flushed.add(bucket);
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            writeBack(batch);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    for (int i = 0; i < flushed.size(); i++) {
+                        flushed.get(i).pendingDelta.addAndGet(batch.get(i).getDelta());
+                    }
+                }
+            }
+        });
+        seatAvailabilityMapper.applyAvailabilityDeltas(batch);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private void writeBack(List<SeatAvailabilityDelta> batch) {
+        try {
+            seatAvailabilityMapper.applyAvailabilityDeltas(batch);
+        } catch (Exception e) {
+            log.error("余票回写失败，将在下次重试: size={}", batch.size(), e);
+            // 回写失败的增量放回桶中，下次定时任务重试
+            for (SeatAvailabilityDelta delta : batch) {
+                InventoryBucket bucket = buckets.get(key(delta.getScheduleId(), delta.getSeatTypeId()));
+                if (bucket == null) {
+                    // 库存桶已移除，放回任一已移除的桶中继续重试
+                    bucket = retiredBuckets.keySet().stream()
+                            .filter(b -> b.scheduleId.equals(delta.getScheduleId())
+                                    && b.seatTypeId.equals(delta.getSeatTypeId()))
+                            .findFirst().orElse(null);
+                }
+                if (bucket != null) {
+                    bucket.pendingDelta.addAndGet(delta.getDelta());
+                }
+            }
+        }
+    }
+
+    private InventoryBucket getBucket(String scheduleId, Integer seatTypeId) {
+        String key = key(scheduleId, seatTypeId);
+        InventoryBucket bucket = buckets.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+        // 首次访问时从数据库加载，避免在 computeIfAbsent 中执行查询
+        SeatAvailabilityEntity availability = selectAvailability(scheduleId, seatTypeId);
+        if (availability == null) {
+            return null;
+        }
+        InventoryBucket loaded = new InventoryBucket(scheduleId, seatTypeId,
+                availability.getAvailableCount(), availability.getPrice());
+        InventoryBucket existing = buckets.putIfAbsent(key, loaded);
+        return existing != null ? existing : loaded;
+    }
+
+    /**
+     * 归还到当前的库存桶；库存桶在归还期间被移除时撤销后重试，增量不会留在已移除的桶中
+     */
+    private void releaseToBucket(String scheduleId, Integer seatTypeId, int count) {
+        while (true) {
+            InventoryBucket bucket = getBucket(scheduleId, seatTypeId);
+            if (bucket == null) {
+                return;
+            }
+            bucket.adjust(count);
+            if (!bucket.retired) {
+                return;
+            }
+            bucket.adjust(-count);
+            Thread.yield();
+        }
+    }
+
+    /**
+     * 事务未提交时归还预占的余票
+     */
+    private void onRollback(Runnable release) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        release.run();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * 在事务中调用时待事务提交后执行，否则立即执行
+     */
+    private void afterCommit(Runnable release) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    release.run();
+                }
+            });
+        } else {
+            release.run();
+        }
+    }
+
+    private SeatAvailabilityEntity selectAvailability(String scheduleId, Integer seatTypeId) {
+        return seatAvailabilityMapper.selectOne(
+                new QueryWrapper<SeatAvailabilityEntity>()
+                        .eq("schedule_id", scheduleId)
+                        .eq("seat_type_id", seatTypeId)
+        );
+    }
+
+    private boolean isDatabaseMode() {
+        return "database".equalsIgnoreCase(mode);
+    }
+
+    private boolean isLeaseMode() {
+        return "lease".equalsIgnoreCase(mode);
+    }
+
+    private static String key(String scheduleId, Integer seatTypeId) {
+        return scheduleId + ":" + seatTypeId;
+    }
+
+    /**
+     * 单个 (车次, 座位类型) 的库存桶
+     */
+    private static final class InventoryBucket {
+        private final String scheduleId;
+        private final Integer seatTypeId;
+        private final BigDecimal price;
+        private final AtomicInteger available;
+        // 尚未回写数据库的增量
+        private final AtomicInteger pendingDelta = new AtomicInteger();
+        // 已标记移除，之后的操作应在新的库存桶上重试
+        private volatile boolean retired;
+
+        private InventoryBucket(String scheduleId, Integer seatTypeId, int available, BigDecimal price) {
+            this.scheduleId = scheduleId;
+            this.seatTypeId = seatTypeId;
+            this.price = price;
+            this.available = new AtomicInteger(available);
+        }
+
+        private boolean tryReserve(int count) {
+            while (true) {
+                int current = available.get();
+                if (current < count) {
+                    return false;
+                }
+                if (available.compareAndSet(current, current - count)) {
+                    pendingDelta.addAndGet(-count);
+                    return true;
+                }
+            }
+        }
+
+        private void adjust(int count) {
+            available.addAndGet(count);
+            pendingDelta.addAndGet(count);
+        }
+    }
+}
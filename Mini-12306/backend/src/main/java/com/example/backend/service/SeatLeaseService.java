@@ -0,0 +1,334 @@
+package com.example.backend.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * 本节点余票租约
+ *
+ * 多实例部署时，每个节点按 (车次, 座位类型) 从 seat_availability 中租用一段余票额度，
+ * 在本地额度内售票不访问数据库，额度不足时再租下一段。
+ * 租约大小按本节点最近的售票速率调整，售得快的节点一次租得多；
+ * 租约到期后归还超出下一段租约大小的额度，不再售票的节点归还全部额度，供其他节点租用。
+ *
+ * 租约同时记录在 inventory_lease 表中：租用、归还与余票增减在同一事务中，售出在写入车票的事务中扣减，
+ * 表中额度始终等于本节点尚未售出的部分。节点定时续期，宕机后租约过期，由任一节点把剩余额度加回余票。
+ */
+@Slf4j
+@Service
+public class SeatLeaseService {
+
+    @Autowired
+    private InventoryLeaseStore leaseStore;
+
+    @Value("${app.inventory.lease-min-size:10}")
+    private int minLeaseSize;
+
+    @Value("${app.inventory.lease-max-size:200}")
+    private int maxLeaseSize;
+
+    // 租约有效期，到期后归还多余额度；表中的租约超过该时长未续期视为节点已宕机
+    @Value("${app.inventory.lease-ttl-ms:30000}")
+    private long leaseTtlMillis;
+
+    @Value("${app.inventory.mode:memory}")
+    private String mode;
+
+    // 租约大小按售票速率覆盖的时长计算
+    @Value("${app.inventory.lease-horizon-ms:5000}")
+    private long leaseHorizonMillis;
+
+    // 速率平滑系数，越大越偏向最近一次采样
+    private static final double RATE_SMOOTHING = 0.5;
+
+    // 低于该速率（张/秒）视为不再售票
+    private static final double IDLE_RATE = 0.01;
+
+    private LongSupplier clock = System::currentTimeMillis;
+
+    // 本进程的租约标识，重启后旧租约由过期回收归还
+    private final String nodeId = UUID.randomUUID().toString().replace("-", "");
+
+    // scheduleId:seatTypeId -> 本节点租约
+    private final Map<String, Lease> leases = new ConcurrentHashMap<>();
+
+    /**
+     * 从本地额度预占余票，额度不足时先向数据库续租
+     *
+     * @return 本地额度加上可租到的余票足够时返回true
+     */
+    public boolean tryReserve(String scheduleId, Integer seatTypeId, int count) {
+        Lease lease = leases.computeIfAbsent(key(scheduleId, seatTypeId),
+                k -> new Lease(scheduleId, seatTypeId, clock.getAsLong()));
+        if (lease.tryTake(count)) {
+            return true;
+        }
+        // 同一租约同一时刻只有一个线程续租，其余线程等待后直接使用新额度
+        synchronized (lease) {
+            if (lease.tryTake(count)) {
+                return true;
+            }
+            int shortage = count - lease.quota.get();
+            long now = clock.getAsLong();
+            int granted = leaseStore.acquire(nodeId, scheduleId, seatTypeId,
+                    Math.max(shortage, nextLeaseSize(lease)), toDateTime(now + leaseTtlMillis));
+            if (granted <= 0) {
+                return false;
+            }
+            lease.quota.addAndGet(granted);
+            lease.expireAt = now + leaseTtlMillis;
+            if (lease.tryTake(count)) {
+                return true;
+            }
+            // 租到的额度仍不够本次预占，立即归还，不留在本节点等租约到期
+            giveBack(lease, Math.max(0, lease.quota.get() - granted));
+            return false;
+        }
+    }
+
+    /**
+     * 撤销尚未提交的预占，归还到本地额度
+     */
+    public void release(String scheduleId, Integer seatTypeId, int count) {
+        Lease lease = leases.get(key(scheduleId, seatTypeId));
+        if (lease != null) {
+            lease.quota.addAndGet(count);
+        } else {
+            leaseStore.giveBack(nodeId, scheduleId, seatTypeId, count);
+        }
+    }
+
+    /**
+     * 确认已售出：从表中的租约扣减，须在写入车票的事务中调用
+     *
+     * 租约已被回收（节点长时间未续期）时抛出异常回滚事务，下次定时任务按表中的租约重新同步本地额度。
+     */
+    public void confirm(String scheduleId, Integer seatTypeId, int count) {
+        if (leaseStore.consume(nodeId, scheduleId, seatTypeId, count)) {
+            return;
+        }
+        Lease lease = leases.get(key(scheduleId, seatTypeId));
+        if (lease != null) {
+            lease.stale = true;
+        }
+        throw new RuntimeException("余票租约已失效，请重试。");
+    }
+
+    /**
+     * 退回已售出的座位，须在更新车票状态的事务中调用
+     *
+     * 本节点持有该租约时退回租约，事务提交后加入本地额度；否则直接加回余票。
+     */
+    public void restore(String scheduleId, Integer seatTypeId, int count) {
+        if (!leaseStore.restore(nodeId, scheduleId, seatTypeId, count)) {
+            return;
+        }
+        Lease lease = leases.get(key(scheduleId, seatTypeId));
+        if (lease != null) {
+            afterCommit(() -> lease.quota.addAndGet(count));
+        }
+    }
+
+    /**
+     * 本节点尚未售出的额度
+     */
+    public int getLocalQuota(String scheduleId, Integer seatTypeId) {
+        Lease lease = leases.get(key(scheduleId, seatTypeId));
+        return lease != null ? lease.quota.get() : 0;
+    }
+
+    /**
+     * 归还车次的全部额度并移除租约（车次删除时调用）
+     */
+    public void evict(String scheduleId) {
+        leases.values().removeIf(lease -> {
+            if (!lease.scheduleId.equals(scheduleId)) {
+                return false;
+            }
+            giveBack(lease, 0);
+            return true;
+        });
+    }
+
+    /**
+     * 定时续期表中的租约，更新各租约的售票速率，归还到期租约中的多余额度
+     */
+    @Scheduled(fixedDelayString = "${app.inventory.lease-check-interval-ms:1000}")
+    public void renew() {
+        long now = clock.getAsLong();
+        if (!leases.isEmpty()) {
+            try {
+                leaseStore.renew(nodeId, toDateTime(now + leaseTtlMillis));
+            } catch (Exception e) {
+                log.error("余票租约续期失败: nodeId={}", nodeId, e);
+            }
+        }
+        for (Lease lease : leases.values()) {
+            if (lease.stale) {
+                resync(lease);
+            }
+            lease.sampleRate(now);
+            if (now < lease.expireAt) {
+                continue;
+            }
+            // 仍在售票的节点保留下一段租约大小的额度，空闲节点全部归还
+            int keep = lease.rate >= IDLE_RATE ? nextLeaseSize(lease) : 0;
+            giveBack(lease, keep);
+            lease.expireAt = now + leaseTtlMillis;
+        }
+    }
+
+    /**
+     * 定时回收已过期的租约，任一节点执行均可
+     */
+    @Scheduled(fixedDelayString = "${app.inventory.lease-sweep-interval-ms:10000}")
+    public void reclaimExpired() {
+        if (!"lease".equalsIgnoreCase(mode)) {
+            return;
+        }
+        try {
+            leaseStore.reclaimExpired(toDateTime(clock.getAsLong()));
+        } catch (Exception e) {
+            log.error("回收过期余票租约失败", e);
+        }
+    }
+
+    /**
+     * 停机时归还全部额度
+     */
+    @PreDestroy
+    public void returnAll() {
+        for (Lease lease : leases.values()) {
+            giveBack(lease, 0);
+        }
+    }
+
+    /**
+     * 下一段租约大小：按平滑后的售票速率覆盖 leaseHorizonMillis，限制在最小和最大租约之间
+     */
+    int nextLeaseSize(Lease lease) {
+        int size = (int) Math.ceil(lease.rate * leaseHorizonMillis / 1000.0);
+        return Math.max(minLeaseSize, Math.min(maxLeaseSize, size));
+    }
+
+    /**
+     * 归还超出 keep 的额度
+     */
+    private void giveBack(Lease lease, int keep) {
+        int surplus;
+        while (true) {
+            int current = lease.quota.get();
+            surplus = current - keep;
+            if (surplus <= 0) {
+                return;
+            }
+            if (lease.quota.compareAndSet(current, keep)) {
+                break;
+            }
+        }
+        try {
+            leaseStore.giveBack(nodeId, lease.scheduleId, lease.seatTypeId, surplus);
+        } catch (Exception e) {
+            log.error("归还余票租约失败，额度保留在本节点: scheduleId={}, seatTypeId={}, count={}",
+                    lease.scheduleId, lease.seatTypeId, surplus, e);
+            lease.quota.addAndGet(surplus);
+        }
+    }
+
+    /**
+     * 本地额度按表中的租约重新同步
+     */
+    private void resync(Lease lease) {
+        synchronized (lease) {
+            try {
+                lease.quota.set(leaseStore.getQuantity(nodeId, lease.scheduleId, lease.seatTypeId));
+                lease.stale = false;
+            } catch (Exception e) {
+                log.error("同步余票租约失败: scheduleId={}, seatTypeId={}", lease.scheduleId, lease.seatTypeId, e);
+            }
+        }
+    }
+
+    private LocalDateTime toDateTime(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static String key(String scheduleId, Integer seatTypeId) {
+        return scheduleId + ":" + seatTypeId;
+    }
+
+    /**
+     * 单个 (车次, 座位类型) 的本地租约
+     */
+    static final class Lease {
+        private final String scheduleId;
+        private final Integer seatTypeId;
+        // 已租用尚未售出的额度
+        private final AtomicInteger quota = new AtomicInteger();
+        // 上次采样以来售出的张数
+        private final AtomicInteger sold = new AtomicInteger();
+        private volatile long expireAt;
+        // 表中的租约已被回收，本地额度待重新同步
+        private volatile boolean stale;
+        private volatile long sampledAt;
+        // 平滑后的售票速率，张/秒
+        private volatile double rate;
+
+        private Lease(String scheduleId, Integer seatTypeId, long now) {
+            this.scheduleId = scheduleId;
+            this.seatTypeId = seatTypeId;
+            this.sampledAt = now;
+        }
+
+        private boolean tryTake(int count) {
+            while (true) {
+                int current = quota.get();
+                if (current < count) {
+                    return false;
+                }
+                if (quota.compareAndSet(current, current - count)) {
+                    sold.addAndGet(count);
+                    return true;
+                }
+            }
+        }
+
+        private void sampleRate(long now) {
+            long elapsed = now - sampledAt;
+            if (elapsed <= 0) {
+                return;
+            }
+            double current = sold.getAndSet(0) * 1000.0 / elapsed;
+            rate = RATE_SMOOTHING * current + (1 - RATE_SMOOTHING) * rate;
+            sampledAt = now;
+        }
+    }
+}
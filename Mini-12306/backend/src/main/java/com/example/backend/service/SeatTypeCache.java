@@ -0,0 +1,127 @@
+package com.example.backend.service;
+
+import com.example.backend.mapper.SeatTypeMapper;
+import com.example.backend.model.SeatTypeEntity;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 座位类型缓存
+ *
+ * seat_type 几乎不变，启动时整表加载为不可变快照：按ID下标的数组和按名称、编码的映射。
+ * 修改座位类型后整体重建快照并替换引用，读取无锁。返回的实体为共享对象，调用方不应修改。
+ */
+@Slf4j
+@Service
+public class SeatTypeCache {
+
+    @Autowired
+    private SeatTypeMapper seatTypeMapper;
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    /**
+     * 重新加载全部座位类型
+     */
+    @PostConstruct
+    public void refresh() {
+        snapshot = new Snapshot(seatTypeMapper.selectList(null));
+    }
+
+    /**
+     * 在事务中修改座位类型后调用，事务提交后刷新
+     */
+    public void refreshAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    refresh();
+                }
+            });
+        } else {
+            refresh();
+        }
+    }
+
+    /**
+     * 定时重新加载，兜底直接修改数据库的情况
+     */
+    @Scheduled(fixedDelayString = "${app.seat-type.refresh-interval-ms:300000}",
+            initialDelayString = "${app.seat-type.refresh-interval-ms:300000}")
+    public void scheduledRefresh() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            log.warn("刷新座位类型缓存失败，继续使用旧快照", e);
+        }
+    }
+
+    public SeatTypeEntity getById(Integer id) {
+        SeatTypeEntity[] byId = snapshot.byId;
+        return id != null && id >= 0 && id < byId.length ? byId[id] : null;
+    }
+
+    public SeatTypeEntity getByName(String name) {
+        return name != null ? snapshot.byName.get(name) : null;
+    }
+
+    public SeatTypeEntity getByCode(String code) {
+        return code != null ? snapshot.byCode.get(code) : null;
+    }
+
+    /**
+     * 全部座位类型，按ID排序，不可修改
+     */
+    public List<SeatTypeEntity> getAll() {
+        return snapshot.all;
+    }
+
+    /**
+     * 不可变快照
+     */
+    private static final class Snapshot {
+        private static final Snapshot EMPTY = new Snapshot(Collections.emptyList());
+
+        private final List<SeatTypeEntity> all;
+        private final SeatTypeEntity[] byId;
+        private final Map<String, SeatTypeEntity> byName;
+        private final Map<String, SeatTypeEntity> byCode;
+
+        private Snapshot(List<SeatTypeEntity> seatTypes) {
+            int maxId = -1;
+            for (SeatTypeEntity seatType : seatTypes) {
+                maxId = Math.max(maxId, seatType.getId());
+            }
+            SeatTypeEntity[] byId = new SeatTypeEntity[maxId + 1];
+            Map<String, SeatTypeEntity> byName = new HashMap<>();
+            Map<String, SeatTypeEntity> byCode = new HashMap<>();
+            for (SeatTypeEntity seatType : seatTypes) {
+                byId[seatType.getId()] = seatType;
+                byName.put(seatType.getName(), seatType);
+                byCode.put(seatType.getCode(), seatType);
+            }
+            List<SeatTypeEntity> all = new ArrayList<>(seatTypes.size());
+            for (SeatTypeEntity seatType : byId) {
+                if (seatType != null) {
+                    all.add(seatType);
+                }
+            }
+            this.all = Collections.unmodifiableList(all);
+            this.byId = byId;
+            this.byName = Map.copyOf(byName);
+            this.byCode = Map.copyOf(byCode);
+        }
+    }
+}
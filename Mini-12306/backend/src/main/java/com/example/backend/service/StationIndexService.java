@@ -0,0 +1,291 @@
+package com.example.backend.service;
+
+import com.example.backend.mapper.StationMapper;
+import com.example.backend.mapper.TrainScheduleMapper;
+import com.example.backend.model.StationEntity;
+import com.example.backend.util.PinyinUtils;
+import com.example.backend.util.PrefixTrie;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 车站名称索引
+ *
+ * 全部车站按名称、全拼和拼音首字母建立前缀树，按单字和相邻两字建立倒排索引做模糊匹配。
+ * 用于输入联想，并在查询车次前把用户或 AI 助手输入的站名规范为库中的站名，
+ * 如"北京南站" -> "北京南"、"bjn" -> "北京南"。
+ *
+ * 同时维护城市 -> 车站的对应关系，按城市查询时展开为该城市的全部车站，如"北京" -> [北京南, 北京西]。
+ * 车站所属城市取自 station 表，未登记的车站按站名去掉"东南西北"后缀推断。
+ *
+ * 索引为不可变快照，车站变化时整体重建后替换。
+ */
+@Slf4j
+@Service
+public class StationIndexService {
+
+    // 匹配方式的基础得分，名称匹配优先于拼音匹配，前缀匹配优先于模糊匹配
+    private static final int SCORE_EXACT = 100;
+    private static final int SCORE_NAME_PREFIX = 80;
+    private static final int SCORE_PINYIN_EXACT = 70;
+    private static final int SCORE_PINYIN_PREFIX = 60;
+    private static final int SCORE_FUZZY = 50;
+
+    // 站名末尾表示方位的字，去掉后即为城市名
+    private static final String DIRECTION_SUFFIXES = "东南西北";
+
+    @Autowired
+    private TrainScheduleMapper trainScheduleMapper;
+
+    @Autowired
+    private StationMapper stationMapper;
+
+    // 模糊匹配的最低相似度（0 ~ 1），低于该值不作为联想结果
+    @Value("${app.station.suggest-threshold:0.3}")
+    private double suggestThreshold;
+
+    // 查询前规范站名时模糊匹配的最低相似度
+    @Value("${app.station.normalize-threshold:0.5}")
+    private double normalizeThreshold;
+
+    private volatile Index index = new Index(Collections.emptyList(), Collections.emptyMap());
+
+    /**
+     * 启动时构建索引
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        List<String> stations = trainScheduleMapper.selectDistinctStations();
+        Map<String, String> stationCities = new HashMap<>();
+        for (StationEntity station : stationMapper.selectList(null)) {
+            stationCities.put(station.getName(), station.getCity());
+        }
+        Index current = new Index(stations, stationCities);
+        index = current;
+        log.info("车站索引构建完成: stations={}, cities={}", current.stations.size(), current.cities.size());
+    }
+
+    /**
+     * 车次增删改后调用，事务提交后重建索引
+     */
+    public void refreshAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    rebuild();
+                }
+            });
+        } else {
+            rebuild();
+        }
+    }
+
+    /**
+     * 输入联想：按名称、全拼、首字母前缀和模糊匹配返回车站，得分高的在前
+     */
+    public List<String> suggest(String query, int limit) {
+        String key = normalizeKey(query);
+        if (key.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        Map<String, Double> scores = index.match(key, limit, suggestThreshold);
+        List<String> result = new ArrayList<>(scores.keySet());
+        result.sort(Comparator.comparingDouble((String station) -> -scores.get(station))
+                .thenComparingInt(String::length)
+                .thenComparing(Comparator.naturalOrder()));
+        return result.size() > limit ? result.subList(0, limit) : result;
+    }
+
+    /**
+     * 把输入的站名规范为库中的站名
+     *
+     * @return 唯一确定的车站名；无法确定时原样返回，由查询自然返回空结果
+     */
+    public String normalize(String station) {
+        if (!StringUtils.hasText(station)) {
+            return station;
+        }
+        String key = normalizeKey(station);
+        Index current = index;
+        if (current.stations.contains(key)) {
+            return key;
+        }
+        Map<String, Double> scores = current.match(key, 2, normalizeThreshold);
+        String best = null;
+        double bestScore = 0;
+        boolean tie = false;
+        for (Map.Entry<String, Double> entry : scores.entrySet()) {
+            if (entry.getValue() > bestScore) {
+                best = entry.getKey();
+                bestScore = entry.getValue();
+                tie = false;
+            } else if (entry.getValue() == bestScore) {
+                tie = true;
+            }
+        }
+        return best != null && !tie ? best : station.trim();
+    }
+
+    /**
+     * 把输入展开为查询用的车站集合
+     *
+     * 输入为城市名时返回该城市的全部车站，否则返回规范后的单个站名；输入为空时返回空列表
+     */
+    public List<String> expand(String input) {
+        if (!StringUtils.hasText(input)) {
+            return Collections.emptyList();
+        }
+        List<String> cityStations = index.cities.get(normalizeKey(input));
+        return cityStations != null ? cityStations : Collections.singletonList(normalize(input));
+    }
+
+    /**
+     * 城市的全部车站，按站名排序；不是已知城市时返回空列表
+     */
+    public List<String> getCityStations(String city) {
+        return index.cities.getOrDefault(normalizeKey(city), Collections.emptyList());
+    }
+
+    /**
+     * 是否为库中的车站
+     */
+    public boolean isStation(String station) {
+        return station != null && index.stations.contains(station);
+    }
+
+    /**
+     * 去除首尾空白和"站"后缀，字母转小写
+     */
+    private static String normalizeKey(String query) {
+        if (query == null) {
+            return "";
+        }
+        String key = query.trim().toLowerCase(Locale.ROOT);
+        if (key.length() > 1 && key.endsWith("站")) {
+            key = key.substring(0, key.length() - 1);
+        }
+        return key;
+    }
+
+    /**
+     * 未登记车站的所属城市：去掉末尾的方位字，如"济南西" -> "济南"；两字站名不处理
+     */
+    static String deriveCity(String station) {
+        int last = station.length() - 1;
+        if (station.length() > 2 && DIRECTION_SUFFIXES.indexOf(station.charAt(last)) >= 0) {
+            return station.substring(0, last);
+        }
+        return station;
+    }
+
+    /**
+     * 不可变的索引快照
+     */
+    private static final class Index {
+        private final Set<String> stations;
+        // 城市 -> 该城市的车站，只含有车次的车站
+        private final Map<String, List<String>> cities;
+        private final PrefixTrie<String> names = new PrefixTrie<>();
+        // 全拼和首字母
+        private final PrefixTrie<String> pinyins = new PrefixTrie<>();
+        // 单字和相邻两字 -> 含有该片段的车站
+        private final Map<String, List<String>> grams = new HashMap<>();
+        private final Map<String, Integer> gramCounts = new HashMap<>();
+
+        private Index(Collection<String> stationNames, Map<String, String> stationCities) {
+            Set<String> stations = new HashSet<>();
+            Map<String, List<String>> cities = new HashMap<>();
+            for (String station : stationNames) {
+                if (!StringUtils.hasText(station) || !stations.add(station)) {
+                    continue;
+                }
+                names.put(station, station);
+                for (String pinyin : PinyinUtils.fullPinyin(station)) {
+                    pinyins.put(pinyin, station);
+                }
+                for (String initials : PinyinUtils.initials(station)) {
+                    pinyins.put(initials, station);
+                }
+                String city = stationCities.getOrDefault(station, deriveCity(station));
+                cities.computeIfAbsent(city, k -> new ArrayList<>()).add(station);
+                Set<String> stationGrams = grams(station);
+                gramCounts.put(station, stationGrams.size());
+                for (String gram : stationGrams) {
+                    grams.computeIfAbsent(gram, k -> new ArrayList<>()).add(station);
+                }
+            }
+            this.stations = Collections.unmodifiableSet(stations);
+            for (Map.Entry<String, List<String>> entry : cities.entrySet()) {
+                entry.getValue().sort(Comparator.naturalOrder());
+                entry.setValue(Collections.unmodifiableList(entry.getValue()));
+            }
+            this.cities = cities;
+        }
+
+        /**
+         * 车站 -> 得分，前缀匹配最多取 limit 个，模糊匹配只保留相似度不低于 threshold 的
+         */
+        private Map<String, Double> match(String key, int limit, double threshold) {
+            Map<String, Double> scores = new LinkedHashMap<>();
+            if (stations.contains(key)) {
+                scores.put(key, (double) SCORE_EXACT);
+            }
+            for (String station : names.getByPrefix(key, limit)) {
+                scores.putIfAbsent(station, (double) SCORE_NAME_PREFIX);
+            }
+            for (String station : pinyins.getExact(key)) {
+                scores.putIfAbsent(station, (double) SCORE_PINYIN_EXACT);
+            }
+            for (String station : pinyins.getByPrefix(key, limit)) {
+                scores.putIfAbsent(station, (double) SCORE_PINYIN_PREFIX);
+            }
+
+            // 模糊匹配：按共有片段数计算 Dice 相似度
+            Set<String> keyGrams = grams(key);
+            Map<String, Integer> shared = new HashMap<>();
+            for (String gram : keyGrams) {
+                for (String station : grams.getOrDefault(gram, Collections.emptyList())) {
+                    shared.merge(station, 1, Integer::sum);
+                }
+            }
+            for (Map.Entry<String, Integer> entry : shared.entrySet()) {
+                double similarity = 2.0 * entry.getValue() / (keyGrams.size() + gramCounts.get(entry.getKey()));
+                if (similarity >= threshold) {
+                    scores.putIfAbsent(entry.getKey(), SCORE_FUZZY * similarity);
+                }
+            }
+            return scores;
+        }
+
+        private static Set<String> grams(String text) {
+            Set<String> result = new HashSet<>();
+            for (int i = 0; i < text.length(); i++) {
+                result.add(text.substring(i, i + 1));
+                if (i + 1 < text.length()) {
+                    result.add(text.substring(i, i + 2));
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.example.backend.service;
+
+import com.example.backend.event.SeatAvailabilityChangedEvent;
+import com.example.backend.mapper.OrderMapper;
+import com.example.backend.mapper.TicketMapper;
+import com.example.backend.model.OrderEntity;
+import com.example.backend.model.TicketEntity;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 待支付占座管理
+ *
+ * 购票第一阶段提交待支付的订单和车票后登记占座，第二阶段支付完成时确认或释放。
+ * 超时未支付的占座由后台线程通过 DelayQueue 批量取消，余票经 SeatInventoryService 归还。
+ */
+@Slf4j
+@Service
+public class TicketHoldService {
+
+    @Autowired
+    private TicketMapper ticketMapper;
+
+    @Autowired
+    private OrderMapper orderMapper;
+
+    @Autowired
+    private SeatInventoryService seatInventoryService;
+
+    @Autowired
+    private SeatAllocationService seatAllocationService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${app.ticket.hold-ttl-seconds:900}")
+    private long holdTtlSeconds;
+
+    @Value("${app.ticket.hold-sweep-batch-size:200}")
+    private int sweepBatchSize;
+
+    private final DelayQueue<Hold> holds = new DelayQueue<>();
+
+    // 仍在等待支付的订单，确认或释放后移除，过期时据此跳过已处理的订单
+    private final Set<String> pendingOrders = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean running = true;
+
+    private Thread sweeper;
+
+    @PostConstruct
+    public void start() {
+        sweeper = new Thread(this::sweep, "ticket-hold-sweeper");
+        sweeper.setDaemon(true);
+        sweeper.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        sweeper.interrupt();
+    }
+
+    /**
+     * 启动时恢复数据库中尚未支付的占座
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverPendingHolds() {
+        List<TicketEntity> pending = ticketMapper.selectPendingOrders();
+        for (TicketEntity ticket : pending) {
+            LocalDateTime createTime = ticket.getCreateTime() != null ? ticket.getCreateTime() : LocalDateTime.now();
+            register(ticket.getOrderId(), createTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        }
+        if (!pending.isEmpty()) {
+            log.info("恢复待支付占座: count={}", pending.size());
+        }
+    }
+
+    /**
+     * 登记占座，超过有效期未支付将自动取消
+     */
+    public void register(String orderId) {
+        register(orderId, System.currentTimeMillis());
+    }
+
+    /**
+     * 确认支付：待支付车票转为已支付，订单转为已完成
+     *
+     * @param originalTicketId 改签时的原车票ID，购票时为null
+     * @return 占座仍有效并确认成功返回true；占座已过期或已释放返回false，调用方需退款
+     */
+    public boolean confirm(String orderId, String originalTicketId) {
+        pendingOrders.remove(orderId);
+        Boolean confirmed = transactionTemplate.execute(status -> {
+            if (ticketMapper.updateStatusByOrderId(orderId, "待支付", "已支付") == 0) {
+                // 回调重复执行时订单已在上次确认
+                OrderEntity order = orderMapper.selectById(orderId);
+                return order != null && "已完成".equals(order.getOrderStatus())
+                        && "支付成功".equals(order.getPaymentStatus());
+            }
+            if (originalTicketId != null) {
+                // 改签：原车票转为已改签并释放原座位
+                if (ticketMapper.updateStatusIfIn(originalTicketId, List.of("已支付", "已出票"), "已改签") == 0) {
+                    status.setRollbackOnly();
+                    return false;
+                }
+                TicketEntity originalTicket = ticketMapper.selectById(originalTicketId);
+                seatInventoryService.release(originalTicket.getScheduleId(), originalTicket.getSeatTypeId(), 1);
+                seatAllocationService.release(originalTicket);
+                eventPublisher.publishEvent(new SeatAvailabilityChangedEvent(originalTicket.getScheduleId()));
+            }
+            orderMapper.finishProcessingOrders(Collections.singletonList(orderId), "已完成", "支付成功");
+            return true;
+        });
+        if (!Boolean.TRUE.equals(confirmed)) {
+            // 确认失败时占座可能仍存在（如改签原票状态已变化），直接释放
+            release(Collections.singletonList(orderId), "支付成功");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 支付失败：立即释放占座
+     */
+    public void cancel(String orderId) {
+        cancel(orderId, "支付失败");
+    }
+
+    /**
+     * 取消订单下待支付的车票并释放占座
+     *
+     * @return 取消的车票数
+     */
+    public int cancel(String orderId, String paymentStatus) {
+        pendingOrders.remove(orderId);
+        return release(Collections.singletonList(orderId), paymentStatus);
+    }
+
+    private void register(String orderId, long createTimeMillis) {
+        pendingOrders.add(orderId);
+        holds.put(new Hold(orderId, createTimeMillis + TimeUnit.SECONDS.toMillis(holdTtlSeconds)));
+    }
+
+    /**
+     * 后台线程：取出已过期的占座，批量取消
+     */
+    private void sweep() {
+        while (running) {
+            try {
+                List<Hold> expired = new ArrayList<>();
+                expired.add(holds.take());
+                holds.drainTo(expired, sweepBatchSize - 1);
+                List<String> orderIds = expired.stream()
+                        .map(hold -> hold.orderId)
+                        .filter(pendingOrders::remove)
+                        .collect(Collectors.toList());
+                if (!orderIds.isEmpty()) {
+                    int released = release(orderIds, "未支付");
+                    log.info("取消超时未支付订单: orders={}, tickets={}", orderIds.size(), released);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("取消超时未支付订单失败", e);
+            }
+        }
+    }
+
+    /**
+     * 在一个事务中取消订单下仍待支付的车票并归还余票和座位
+     *
+     * @return 取消的车票数
+     */
+    private int release(List<String> orderIds, String paymentStatus) {
+        Integer released = transactionTemplate.execute(status -> {
+            List<TicketEntity> tickets = ticketMapper.selectPendingByOrderIdsForUpdate(orderIds);
+            if (tickets.isEmpty()) {
+                return 0;
+            }
+            ticketMapper.updateStatusByIds(
+                    tickets.stream().map(TicketEntity::getId).collect(Collectors.toList()), "已取消");
+            orderMapper.finishProcessingOrders(
+                    tickets.stream().map(TicketEntity::getOrderId).distinct().collect(Collectors.toList()),
+                    "已取消", paymentStatus);
+
+            // 按 (车次, 座位类型) 合并后归还余票，事务提交后生效
+            Map<String, List<TicketEntity>> grouped = new HashMap<>();
+            for (TicketEntity ticket : tickets) {
+                grouped.computeIfAbsent(ticket.getScheduleId() + ":" + ticket.getSeatTypeId(), k -> new ArrayList<>())
+                        .add(ticket);
+                seatAllocationService.release(ticket);
+            }
+            for (List<TicketEntity> group : grouped.values()) {
+                TicketEntity first = group.get(0);
+                seatInventoryService.release(first.getScheduleId(), first.getSeatTypeId(), group.size());
+                eventPublisher.publishEvent(new SeatAvailabilityChangedEvent(first.getScheduleId()));
+            }
+            return tickets.size();
+        });
+        return released != null ? released : 0;
+    }
+
+    /**
+     * 占座到期项
+     */
+    private static final class Hold implements Delayed {
+        private final String orderId;
+        private final long expireAtMillis;
+
+        private Hold(String orderId, long expireAtMillis) {
+            this.orderId = orderId;
+            this.expireAtMillis = expireAtMillis;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(expireAtMillis - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(expireAtMillis, ((Hold) other).expireAtMillis);
+        }
+    }
+}
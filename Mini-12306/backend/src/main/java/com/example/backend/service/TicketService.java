@@ -1,6 +1,8 @@
 package com.example.backend.service;
 
 import com.example.backend.dto.*;
+import reactor.core.publisher.Flux;
+
 import java.util.List;
 
 /**
@@ -18,39 +20,89 @@ public interface TicketService {
      */
     List<TrainScheduleDTO> querySchedules(String departureStation, String arrivalStation, String departureDateStr);
 
+    /**
+     * 分页查询车次时刻表，筛选和排序在数据库中执行
+     * @param filter 筛选、排序和分页参数
+     * @return 一页车次及下一页游标
+     */
+    SchedulePageDTO querySchedulePage(String departureStation, String arrivalStation, String departureDateStr,
+                                      ScheduleFilterDTO filter);
+
+    /**
+     * 流式查询车次时刻表，每个车次组装完即发出
+     * @param filter 筛选和排序参数，limit 为最多返回的条数
+     * @throws IllegalArgumentException 参数格式错误时，在订阅前抛出
+     */
+    Flux<TrainScheduleDTO> streamSchedules(String departureStation, String arrivalStation, String departureDateStr,
+                                           ScheduleFilterDTO filter);
+
+    /**
+     * 查询中转换乘行程
+     * @param departureStation 出发站
+     * @param arrivalStation 到达站
+     * @param departureDateStr 首段出发日期 (YYYY-MM-DD)
+     * @param maxTransfers 最多换乘次数，1 或 2
+     * @param sortBy 排序方式：duration 按总时长，price 按总票价
+     * @return 按排序方式排列的换乘行程
+     * @throws IllegalArgumentException 参数缺失或格式错误时
+     */
+    List<TransferItineraryDTO> queryTransfers(String departureStation, String arrivalStation, String departureDateStr,
+                                              int maxTransfers, String sortBy);
+
+    /**
+     * 查询余票日历
+     * @param startDateStr 开始日期 (可选, YYYY-MM-DD)，默认今天
+     * @param endDateStr 结束日期 (可选, YYYY-MM-DD)，默认从开始日期起共 30 天
+     * @return 每天的车次数、各座位类型是否有票和最低票价
+     * @throws IllegalArgumentException 参数缺失或格式错误时
+     */
+    List<ScheduleCalendarDayDTO> queryCalendar(String departureStation, String arrivalStation,
+                                               String startDateStr, String endDateStr);
+
     /**
      * 购买火车票业务流程实现
      * 
      * 完整流程：
      * 1. 查询车次信息并验证座位类型
      * 2. 验证乘客身份信息
-     * 3. 检查余票并锁定车票
-     * 4. 创建订单和车票（初始状态为待支付）
-     * 5. 调用支付服务进行支付
-     * 6. 根据支付结果更新订单和车票状态
+     * 3. 预占余票和座位，创建订单和车票（初始状态为待支付）
+     * 4. 提交异步支付任务，立即返回处理中的订单
+     * 5. 支付成功则确认占座，支付失败则释放占座并推送结果；超时未支付的占座自动取消
      * 
      * @param request 购票请求DTO，包含用户信息、车次信息和座位类型等
      * @return 订单DTO，包含订单信息和车票详情
      * @throws IllegalArgumentException 当车次不存在或座位类型无效时
-     * @throws RuntimeException 当身份验证失败、余票不足或支付失败时
+     * @throws RuntimeException 当身份验证失败或余票不足时
      */
     OrderDTO purchaseTicket(PurchaseRequestDTO request);
 
+    /**
+     * 为多位乘车人购买同一车次的车票，生成一个订单
+     *
+     * 一次预占全部座位，并行核验乘车人身份，按订单总额发起一次支付，车票批量写入。
+     *
+     * @param request 批量购票请求DTO，包含用户信息、车次信息、座位类型和乘车人列表
+     * @return 订单DTO，包含订单信息和全部车票详情
+     * @throws IllegalArgumentException 当车次不存在、座位类型无效或乘车人列表不合法时
+     * @throws RuntimeException 当身份验证失败或余票不足时
+     */
+    OrderDTO purchaseTickets(BatchPurchaseRequestDTO request);
+
     /**
      * 退票业务流程实现
      * 
      * 完整流程：
      * 1. 查询车票信息和订单信息
      * 2. 检查退票条件（车票状态是否符合退票要求）
-     * 3. 调用支付服务处理退款
-     * 4. 更新车票状态和订单状态
-     * 5. 释放座位资源（增加余票数量）
+     * 3. 更新车票状态和订单状态
+     * 4. 释放座位资源（增加余票数量）
+     * 5. 提交异步退款任务，退款结果推送给用户
      * 
      * @param request 退票请求DTO，包含用户ID和车票ID
      * @return 退票响应DTO，包含退票结果信息
      * @throws IllegalArgumentException 当车票不存在时
      * @throws IllegalStateException 当订单不存在时（数据不一致）
-     * @throws RuntimeException 当不符合退票条件或退款处理失败时
+     * @throws RuntimeException 当不符合退票条件时
      */
     RefundResponseDTO refundTicket(RefundRequestDTO request);
 
@@ -62,14 +114,13 @@ public interface TicketService {
      * 2. 查询新车次信息
      * 3. 验证新座位类型
      * 4. 检查新车次余票
-     * 5. 处理差价支付
-     * 6. 创建新车票
-     * 7. 更新原车票状态
+     * 5. 创建新车票
+     * 6. 无差价时直接更新原车票状态；有差价时提交异步支付任务，支付成功后更新原车票状态
      * 
      * @param request 改签请求DTO，包含原车票ID、新车次ID和新座位类型等
      * @return 改签响应DTO，包含改签结果信息
      * @throws IllegalArgumentException 当车票不存在或新车次不存在时
-     * @throws RuntimeException 当不符合改签条件、余票不足或支付失败时
+     * @throws RuntimeException 当不符合改签条件或余票不足时
      */
     ChangeTicketResponseDTO changeTicket(ChangeTicketRequestDTO request);
 
@@ -1,5 +1,7 @@
 package com.example.backend.service;
 
+import com.example.backend.dto.ScheduleFilterDTO;
+import com.example.backend.dto.SchedulePageDTO;
 import com.example.backend.dto.TrainScheduleDTO;
 import com.example.backend.model.SeatTypeEntity;
 import com.example.backend.model.TrainScheduleEntity;
@@ -21,6 +23,15 @@ public interface TrainScheduleService {
      * @return 列车时刻表列表
      */
     List<TrainScheduleDTO> querySchedules(String departureStation, String arrivalStation, LocalDate departureDate);
+
+    /**
+     * 分页查询列车时刻表，筛选和排序在数据库中执行
+     *
+     * @param filter 筛选、排序和分页参数
+     * @return 一页列车时刻表及下一页游标
+     */
+    SchedulePageDTO querySchedulePage(String departureStation, String arrivalStation, LocalDate departureDate,
+                                      ScheduleFilterDTO filter);
     
     /**
      * 根据ID查询列车时刻表
@@ -55,10 +66,26 @@ public interface TrainScheduleService {
      */
     boolean deleteSchedule(String scheduleId);
     
+    /**
+     * 重新加载车次的余票和票价，直接修改 seat_availability 后调用
+     * 
+     * @param scheduleId 时刻表ID
+     * @return 车次存在返回true，否则返回false
+     */
+    boolean reloadInventory(String scheduleId);
+    
     /**
      * 获取所有座位类型
      * 
      * @return 座位类型列表
      */
     List<SeatTypeEntity> getAllSeatTypes();
+
+    /**
+     * 添加或修改座位类型
+     *
+     * @param seatType 座位类型，ID为空时新增
+     * @return 座位类型ID，修改的座位类型不存在时返回null
+     */
+    Integer saveSeatType(SeatTypeEntity seatType);
 }
\ No newline at end of file
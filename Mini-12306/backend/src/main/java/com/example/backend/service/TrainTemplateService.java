@@ -0,0 +1,502 @@
+package com.example.backend.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.example.backend.mapper.SeatAvailabilityMapper;
+import com.example.backend.mapper.TrainScheduleMapper;
+import com.example.backend.mapper.TrainTemplateExceptionMapper;
+import com.example.backend.mapper.TrainTemplateMapper;
+import com.example.backend.model.SeatAvailabilityEntity;
+import com.example.backend.model.SeatTypeEntity;
+import com.example.backend.model.TrainScheduleEntity;
+import com.example.backend.model.TrainTemplateEntity;
+import com.example.backend.model.TrainTemplateExceptionEntity;
+import com.example.backend.util.EntityConverter;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 列车开行模板
+ *
+ * 模板记录车次的站点、时刻、座位配置和开行日历，train_schedule 中只保存近期的车次：
+ * 滚动任务每天生成未来 days-ahead 天的车次，更远的日期在首次查询或购票时按需生成，
+ * 最远到 max-days-ahead 天（预售期）。车次ID为 车次号_yyyyMMdd，生成时已存在的车次跳过，可重复执行。
+ *
+ * 模板修改只影响尚未生成的日期，已生成的车次（可能已有售票）保持不变。
+ * 删除已生成的车次时记录停开（train_template_exception），之后任何节点都不会再次生成该车次。
+ *
+ * 按车次ID购票时只生成该车次，并只清理该线路、该日期的查询和日历缓存，读模型等待定时刷新，
+ * 车站索引仅在出现新车站时重建。
+ */
+@Slf4j
+@Service
+public class TrainTemplateService {
+
+    public static final String STATUS_ENABLED = "启用";
+    public static final String STATUS_DISABLED = "停用";
+
+    private static final String ALL_DAYS = "1111111";
+
+    private static final DateTimeFormatter ID_DATE = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private static final TypeReference<LinkedHashMap<String, Integer>> SEAT_CONFIG_TYPE = new TypeReference<>() {
+    };
+
+    @Autowired
+    private TrainTemplateMapper trainTemplateMapper;
+
+    @Autowired
+    private TrainTemplateExceptionMapper trainTemplateExceptionMapper;
+
+    @Autowired
+    private TrainScheduleMapper trainScheduleMapper;
+
+    @Autowired
+    private SeatAvailabilityMapper seatAvailabilityMapper;
+
+    @Autowired
+    private SeatTypeCache seatTypeCache;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ScheduleSearchService scheduleSearchService;
+
+    @Autowired
+    private ScheduleCalendarService scheduleCalendarService;
+
+    @Autowired
+    private TransferSearchService transferSearchService;
+
+    @Autowired
+    private StationIndexService stationIndexService;
+
+    @Autowired
+    private ScheduleReadModelService scheduleReadModelService;
+
+    @Value("${app.train-template.enabled:true}")
+    private boolean enabled;
+
+    // 滚动任务提前生成的天数（含当天）
+    @Value("${app.train-template.days-ahead:7}")
+    private int daysAhead;
+
+    // 查询或购票时最远按需生成到今天之后多少天
+    @Value("${app.train-template.max-days-ahead:30}")
+    private int maxDaysAhead;
+
+    // 每条 INSERT 写入的行数
+    @Value("${app.train-template.batch-size:500}")
+    private int batchSize;
+
+    // 车次号 -> 模板
+    private volatile Map<String, TrainTemplateEntity> templates = Collections.emptyMap();
+
+    // 已按当前模板生成过的日期，模板变更后清空
+    private final Set<LocalDate> materializedDates = ConcurrentHashMap.newKeySet();
+
+    // 按车次ID单独生成过（或已存在）的车次，日期 -> 车次ID，避免每次购票都查询是否存在
+    private final Map<LocalDate, Set<String>> materializedSchedules = new ConcurrentHashMap<>();
+
+    /**
+     * 启动时加载模板并生成未来几天的车次
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        reload();
+        materializeAhead();
+    }
+
+    /**
+     * 滚动生成今天起 days-ahead 天的车次
+     */
+    @Scheduled(cron = "${app.train-template.materialize-cron:0 10 0 * * *}")
+    public void materializeAhead() {
+        if (!enabled || templates.isEmpty()) {
+            return;
+        }
+        LocalDate today = LocalDate.now();
+        materializedDates.removeIf(date -> date.isBefore(today));
+        materializedSchedules.keySet().removeIf(date -> date.isBefore(today));
+        trainTemplateExceptionMapper.delete(new QueryWrapper<TrainTemplateExceptionEntity>().lt("run_date", today));
+        int created = 0;
+        for (int i = 0; i < daysAhead; i++) {
+            created += materialize(today.plusDays(i));
+        }
+        log.info("按开行模板生成车次: days={}, created={}", daysAhead, created);
+    }
+
+    /**
+     * 查询某天前调用，该天的车次尚未生成时按模板生成
+     */
+    public void ensureMaterialized(LocalDate date) {
+        ensureMaterialized(date, date);
+    }
+
+    /**
+     * 查询一段日期前调用，只生成今天到预售期内的日期
+     */
+    public void ensureMaterialized(LocalDate from, LocalDate to) {
+        if (!enabled || from == null || templates.isEmpty()) {
+            return;
+        }
+        LocalDate today = LocalDate.now();
+        LocalDate last = today.plusDays(maxDaysAhead);
+        LocalDate end = to != null && to.isBefore(last) ? to : last;
+        for (LocalDate date = from.isBefore(today) ? today : from; !date.isAfter(end); date = date.plusDays(1)) {
+            if (!materializedDates.contains(date)) {
+                materialize(date);
+            }
+        }
+    }
+
+    /**
+     * 按车次ID购票或查询前调用，ID对应模板的某个开行日且尚未生成时只生成该车次
+     */
+    public void ensureMaterialized(String scheduleId) {
+        if (!enabled || scheduleId == null) {
+            return;
+        }
+        TrainTemplateEntity template = templateOf(scheduleId);
+        LocalDate date = runDateOf(scheduleId);
+        if (template == null || date == null) {
+            return;
+        }
+        LocalDate today = LocalDate.now();
+        if (materializedDates.contains(date)
+                || materializedSchedules.getOrDefault(date, Collections.emptySet()).contains(scheduleId)
+                || date.isBefore(today) || date.isAfter(today.plusDays(maxDaysAhead)) || !runsOn(template, date)) {
+            return;
+        }
+        List<String> created = write(Collections.singletonList(template), date, true);
+        materializedSchedules.computeIfAbsent(date, k -> ConcurrentHashMap.newKeySet()).add(scheduleId);
+        if (created.isEmpty()) {
+            return;
+        }
+        scheduleSearchService.invalidate(template.getDepartureStation(), template.getArrivalStation(), date);
+        scheduleCalendarService.invalidate(template.getDepartureStation(), template.getArrivalStation(), date);
+        transferSearchService.onSchedulesAdded(created);
+        if (!stationIndexService.isStation(template.getDepartureStation())
+                || !stationIndexService.isStation(template.getArrivalStation())) {
+            stationIndexService.refreshAfterCommit();
+        }
+        scheduleReadModelService.markDirty(created);
+    }
+
+    /**
+     * 删除车次时在同一事务中调用：按模板生成的车次记录停开，之后生成时跳过；其他车次不处理
+     */
+    public void recordDeletion(String scheduleId) {
+        TrainTemplateEntity template = templateOf(scheduleId);
+        LocalDate date = runDateOf(scheduleId);
+        if (template == null || date == null) {
+            return;
+        }
+        trainTemplateExceptionMapper.insertIgnore(TrainTemplateExceptionEntity.builder()
+                .scheduleId(scheduleId)
+                .trainNumber(template.getTrainNumber())
+                .runDate(date)
+                .build());
+    }
+
+    /**
+     * 生成某天全部开行的车次，已存在的跳过
+     *
+     * @return 新生成的车次数
+     */
+    public synchronized int materialize(LocalDate date) {
+        if (materializedDates.contains(date)) {
+            return 0;
+        }
+        List<TrainTemplateEntity> running = templates.values().stream()
+                .filter(template -> runsOn(template, date))
+                .collect(Collectors.toList());
+        List<String> created = write(running, date, true);
+        materializedDates.add(date);
+        // 此前按车次ID单独生成的车次可能还在等待读模型定时刷新，随本次一起同步更新
+        Set<String> single = materializedSchedules.remove(date);
+        List<String> refreshing = new ArrayList<>(created);
+        if (single != null) {
+            refreshing.addAll(single);
+        }
+        if (!created.isEmpty()) {
+            scheduleSearchService.invalidate();
+            scheduleCalendarService.invalidate();
+            transferSearchService.onSchedulesAdded(created);
+            stationIndexService.refreshAfterCommit();
+        }
+        if (!refreshing.isEmpty()) {
+            if (scheduleReadModelService.isReady()) {
+                // 按需生成后紧接着就要查询，读模型同步更新
+                scheduleReadModelService.refresh(refreshing);
+            } else {
+                scheduleReadModelService.markDirty(refreshing);
+            }
+        }
+        return created.size();
+    }
+
+    public List<TrainTemplateEntity> list() {
+        return trainTemplateMapper.selectList(new LambdaQueryWrapper<TrainTemplateEntity>()
+                .orderByAsc(TrainTemplateEntity::getTrainNumber));
+    }
+
+    /**
+     * 新增模板
+     *
+     * @throws IllegalArgumentException 模板无效或车次号已存在时
+     */
+    public void create(TrainTemplateEntity template) {
+        validate(template);
+        if (trainTemplateMapper.selectById(template.getTrainNumber()) != null) {
+            throw new IllegalArgumentException("车次模板已存在：" + template.getTrainNumber());
+        }
+        trainTemplateMapper.insert(template);
+        reload();
+    }
+
+    /**
+     * 修改模板，只影响尚未生成的日期
+     *
+     * @return 模板不存在时返回false
+     * @throws IllegalArgumentException 模板无效时
+     */
+    public boolean update(TrainTemplateEntity template) {
+        validate(template);
+        if (trainTemplateMapper.updateById(template) == 0) {
+            return false;
+        }
+        reload();
+        return true;
+    }
+
+    /**
+     * 删除模板，已生成的车次保留
+     */
+    public boolean delete(String trainNumber) {
+        if (trainTemplateMapper.deleteById(trainNumber) == 0) {
+            return false;
+        }
+        reload();
+        return true;
+    }
+
+    /**
+     * 重新加载模板，之后按需生成时重新检查各日期
+     */
+    public synchronized void reload() {
+        templates = trainTemplateMapper.selectList(null).stream()
+                .collect(Collectors.toMap(TrainTemplateEntity::getTrainNumber, Function.identity()));
+        materializedDates.clear();
+        materializedSchedules.clear();
+    }
+
+    public static String scheduleId(String trainNumber, LocalDate date) {
+        return trainNumber + "_" + date.format(ID_DATE);
+    }
+
+    /**
+     * 车次ID对应的模板，ID不是 车次号_yyyyMMdd 格式或没有该车次号的模板时返回null
+     */
+    private TrainTemplateEntity templateOf(String scheduleId) {
+        int separator = scheduleId.lastIndexOf('_');
+        return separator > 0 ? templates.get(scheduleId.substring(0, separator)) : null;
+    }
+
+    /**
+     * 车次ID中的开行日期，无法解析时返回null
+     */
+    private static LocalDate runDateOf(String scheduleId) {
+        try {
+            return LocalDate.parse(scheduleId.substring(scheduleId.lastIndexOf('_') + 1), ID_DATE);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private boolean runsOn(TrainTemplateEntity template, LocalDate date) {
+        return STATUS_ENABLED.equals(template.getStatus())
+                && !date.isBefore(template.getStartDate())
+                && (template.getEndDate() == null || !date.isAfter(template.getEndDate()))
+                && template.getRunDays().charAt(date.getDayOfWeek().getValue() - 1) == '1';
+    }
+
+    /**
+     * 写入模板在某天的车次和座位余票行，已存在或已停开的车次跳过；缓存和索引由调用方按范围更新
+     *
+     * @param retry 其他节点同时生成导致主键冲突时是否重新检查后再写一次
+     * @return 新生成的车次ID
+     */
+    private List<String> write(List<TrainTemplateEntity> running, LocalDate date, boolean retry) {
+        if (running.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<String, TrainTemplateEntity> byScheduleId = new LinkedHashMap<>();
+        for (TrainTemplateEntity template : running) {
+            byScheduleId.put(scheduleId(template.getTrainNumber(), date), template);
+        }
+        for (TrainScheduleEntity existing : trainScheduleMapper.selectList(new QueryWrapper<TrainScheduleEntity>()
+                .select("id").in("id", byScheduleId.keySet()))) {
+            byScheduleId.remove(existing.getId());
+        }
+        if (!byScheduleId.isEmpty()) {
+            for (TrainTemplateExceptionEntity exception : trainTemplateExceptionMapper.selectList(
+                    new QueryWrapper<TrainTemplateExceptionEntity>().select("schedule_id")
+                            .in("schedule_id", byScheduleId.keySet()))) {
+                byScheduleId.remove(exception.getScheduleId());
+            }
+        }
+        if (byScheduleId.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<TrainScheduleEntity> schedules = new ArrayList<>(byScheduleId.size());
+        List<SeatAvailabilityEntity> availabilities = new ArrayList<>();
+        byScheduleId.forEach((scheduleId, template) -> {
+            schedules.add(TrainScheduleEntity.builder()
+                    .id(scheduleId)
+                    .trainNumber(template.getTrainNumber())
+                    .departureStation(template.getDepartureStation())
+                    .arrivalStation(template.getArrivalStation())
+                    .departureTime(date.atTime(template.getDepartureTime()))
+                    .arrivalTime(date.plusDays(template.getArrivalDays()).atTime(template.getArrivalTime()))
+                    .status("正常")
+                    .createTime(now)
+                    .updateTime(now)
+                    .build());
+            availabilities.addAll(seatAvailabilities(template, scheduleId, now));
+        });
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                for (int from = 0; from < schedules.size(); from += batchSize) {
+                    trainScheduleMapper.insertBatch(schedules.subList(from, Math.min(from + batchSize, schedules.size())));
+                }
+                for (int from = 0; from < availabilities.size(); from += batchSize) {
+                    seatAvailabilityMapper.insertBatch(
+                            availabilities.subList(from, Math.min(from + batchSize, availabilities.size())));
+                }
+            });
+        } catch (DuplicateKeyException e) {
+            if (!retry) {
+                throw e;
+            }
+            log.info("车次已由其他请求生成，重新检查: date={}", date);
+            return write(running, date, false);
+        }
+
+        return new ArrayList<>(byScheduleId.keySet());
+    }
+
+    /**
+     * 按模板的座位配置生成余票行，未配置时提供全部座位类型并使用默认座位数
+     */
+    private List<SeatAvailabilityEntity> seatAvailabilities(TrainTemplateEntity template, String scheduleId,
+                                                            LocalDateTime now) {
+        List<SeatAvailabilityEntity> result = new ArrayList<>();
+        Map<String, Integer> seatConfig = parseSeatConfig(template.getSeatConfig());
+        if (seatConfig.isEmpty()) {
+            for (SeatTypeEntity seatType : seatTypeCache.getAll()) {
+                result.add(EntityConverter.newSeatAvailability(scheduleId, seatType, now));
+            }
+            return result;
+        }
+        seatConfig.forEach((name, count) -> {
+            SeatTypeEntity seatType = seatTypeCache.getByName(name);
+            if (seatType != null) {
+                SeatAvailabilityEntity availability = EntityConverter.newSeatAvailability(scheduleId, seatType, now);
+                availability.setAvailableCount(count);
+                availability.setTotalCount(count);
+                result.add(availability);
+            }
+        });
+        return result;
+    }
+
+    private Map<String, Integer> parseSeatConfig(String seatConfig) {
+        if (!StringUtils.hasText(seatConfig)) {
+            return Collections.emptyMap();
+        }
+        try {
+            return objectMapper.readValue(seatConfig, SEAT_CONFIG_TYPE);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("座位配置格式错误，应为 {\"座位类型\": 座位数}");
+        }
+    }
+
+    /**
+     * 校验模板并补全默认值
+     */
+    private void validate(TrainTemplateEntity template) {
+        if (template == null || !StringUtils.hasText(template.getTrainNumber())
+                || !StringUtils.hasText(template.getDepartureStation())
+                || !StringUtils.hasText(template.getArrivalStation())
+                || template.getDepartureTime() == null || template.getArrivalTime() == null
+                || template.getStartDate() == null) {
+            throw new IllegalArgumentException("车次号、出发站、到达站、出发时刻、到达时刻和开行起始日期不能为空");
+        }
+        if (template.getDepartureStation().equals(template.getArrivalStation())) {
+            throw new IllegalArgumentException("出发站和到达站不能相同");
+        }
+        if (template.getEndDate() != null && template.getEndDate().isBefore(template.getStartDate())) {
+            throw new IllegalArgumentException("开行截止日期早于起始日期");
+        }
+        if (template.getArrivalDays() == null) {
+            template.setArrivalDays(template.getArrivalTime().isAfter(template.getDepartureTime()) ? 0 : 1);
+        }
+        if (template.getArrivalDays() < 0 || (template.getArrivalDays() == 0
+                && !template.getArrivalTime().isAfter(template.getDepartureTime()))) {
+            throw new IllegalArgumentException("到达时间必须晚于出发时间");
+        }
+        if (template.getRunDays() == null) {
+            template.setRunDays(ALL_DAYS);
+        }
+        if (!template.getRunDays().matches("[01]{7}") || !template.getRunDays().contains("1")) {
+            throw new IllegalArgumentException("开行日历应为7位0/1，依次表示周一至周日");
+        }
+        if (template.getStatus() == null) {
+            template.setStatus(STATUS_ENABLED);
+        }
+        if (!STATUS_ENABLED.equals(template.getStatus()) && !STATUS_DISABLED.equals(template.getStatus())) {
+            throw new IllegalArgumentException("模板状态应为启用或停用");
+        }
+        for (Map.Entry<String, Integer> entry : parseSeatConfig(template.getSeatConfig()).entrySet()) {
+            if (seatTypeCache.getByName(entry.getKey()) == null) {
+                throw new IllegalArgumentException("无效的座位类型：" + entry.getKey());
+            }
+            if (entry.getValue() == null || entry.getValue() <= 0) {
+                throw new IllegalArgumentException("座位数必须大于0：" + entry.getKey());
+            }
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package com.example.backend.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.example.backend.dto.TrainScheduleDTO;
+import com.example.backend.dto.TransferItineraryDTO;
+import com.example.backend.mapper.SeatAvailabilityMapper;
+import com.example.backend.mapper.TrainScheduleMapper;
+import com.example.backend.model.SeatAvailabilityEntity;
+import com.example.backend.model.TrainScheduleEntity;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Collectors;
+
+/**
+ * 中转换乘查询
+ *
+ * 在内存中维护按时间展开的车站图：每个车次是一条从出发站出发时刻到到达站到达时刻的边，
+ * 每个车站的出发边按出发时间排序。查询时以出发站当天的每个车次为起点并行展开，
+ * 在到达站按最短换乘时间和最长等待时间截取后续车次，找出经 1~2 次换乘到达目的站的行程。
+ *
+ * 启动时全量加载，车次增删改后只更新对应的边。
+ */
+@Slf4j
+@Service
+public class TransferSearchService {
+
+    // 按总时长或总票价排序
+    public static final String SORT_BY_DURATION = "duration";
+    public static final String SORT_BY_PRICE = "price";
+
+    private static final Comparator<Leg> BY_DEPARTURE =
+            Comparator.comparing((Leg leg) -> leg.departure).thenComparing(leg -> leg.scheduleId);
+
+    @Autowired
+    private TrainScheduleMapper trainScheduleMapper;
+
+    @Autowired
+    private SeatAvailabilityMapper seatAvailabilityMapper;
+
+    @Autowired
+    private ScheduleSearchService scheduleSearchService;
+
+    @Autowired
+    private StationIndexService stationIndexService;
+
+    // 同站换乘的最短间隔
+    @Value("${app.transfer.min-connection-minutes:20}")
+    private long minConnectionMinutes;
+
+    // 换乘站的最长等待时间
+    @Value("${app.transfer.max-wait-minutes:360}")
+    private long maxWaitMinutes;
+
+    @Value("${app.transfer.max-results:20}")
+    private int maxResults;
+
+    // 车次ID -> 边
+    private final Map<String, Leg> legs = new ConcurrentHashMap<>();
+
+    // 车站 -> 从该站出发的边，按出发时间排序
+    private final Map<String, NavigableSet<Leg>> departures = new ConcurrentHashMap<>();
+
+    /**
+     * 启动时全量构建车站图
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        Map<String, BigDecimal> minPrices = new HashMap<>();
+        for (SeatAvailabilityEntity availability : seatAvailabilityMapper.selectList(null)) {
+            minPrices.merge(availability.getScheduleId(), availability.getPrice(), BigDecimal::min);
+        }
+        legs.clear();
+        departures.clear();
+        List<TrainScheduleEntity> schedules = trainScheduleMapper.selectList(null);
+        for (TrainScheduleEntity schedule : schedules) {
+            put(schedule, minPrices.get(schedule.getId()));
+        }
+        log.info("中转换乘车站图构建完成: stations={}, schedules={}", departures.size(), legs.size());
+    }
+
+    /**
+     * 车次新增、修改或删除后调用，事务提交后重新加载该车次的边
+     */
+    public void onScheduleChanged(String scheduleId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    reload(scheduleId);
+                }
+            });
+        } else {
+            reload(scheduleId);
+        }
+    }
+
+    /**
+     * 批量新增的车次（如按开行模板生成）在提交后调用，两条查询加载全部边
+     */
+    public void onSchedulesAdded(Collection<String> scheduleIds) {
+        if (scheduleIds.isEmpty()) {
+            return;
+        }
+        try {
+            Map<String, BigDecimal> minPrices = new HashMap<>();
+            for (SeatAvailabilityEntity availability : seatAvailabilityMapper.selectByScheduleIds(scheduleIds)) {
+                minPrices.merge(availability.getScheduleId(), availability.getPrice(), BigDecimal::min);
+            }
+            for (TrainScheduleEntity schedule : trainScheduleMapper.selectList(
+                    new LambdaQueryWrapper<TrainScheduleEntity>().in(TrainScheduleEntity::getId, scheduleIds))) {
+                put(schedule, minPrices.get(schedule.getId()));
+            }
+        } catch (Exception e) {
+            log.error("更新中转换乘车站图失败: size={}", scheduleIds.size(), e);
+        }
+    }
+
+    /**
+     * 批量移除的车次（如归档）在提交后调用
+     */
+    public void onSchedulesRemoved(Collection<String> scheduleIds) {
+        for (String scheduleId : scheduleIds) {
+            remove(scheduleId);
+        }
+    }
+
+    /**
+     * 查询经 1~maxTransfers 次换乘的行程
+     *
+     * @param maxTransfers 最多换乘次数，1 或 2
+     * @param sortBy duration 按总时长，price 按各段最低票价之和
+     * @throws IllegalArgumentException 出发站和到达站相同或参数无效时
+     */
+    public List<TransferItineraryDTO> search(String departureStation, String arrivalStation, LocalDate departureDate,
+                                             int maxTransfers, String sortBy) {
+        if (departureStation == null || arrivalStation == null || departureDate == null) {
+            throw new IllegalArgumentException("请指定出发站、到达站和出发日期。");
+        }
+        String from = stationIndexService.normalize(departureStation);
+        String to = stationIndexService.normalize(arrivalStation);
+        if (from.equals(to)) {
+            throw new IllegalArgumentException("出发站和到达站不能相同。");
+        }
+        if (maxTransfers < 1 || maxTransfers > 2) {
+            throw new IllegalArgumentException("换乘次数只支持 1 或 2 次。");
+        }
+        Comparator<Itinerary> order = SORT_BY_PRICE.equalsIgnoreCase(sortBy)
+                ? Comparator.comparing((Itinerary it) -> it.totalPrice).thenComparingLong(it -> it.totalMinutes)
+                : Comparator.comparingLong((Itinerary it) -> it.totalMinutes).thenComparing(it -> it.totalPrice);
+
+        // 以出发站当天的每个车次为起点并行展开
+        List<Itinerary> found = departuresBetween(from,
+                departureDate.atStartOfDay(), departureDate.plusDays(1).atStartOfDay().minusNanos(1))
+                .parallelStream()
+                .filter(first -> !first.arrivalStation.equals(to))
+                .flatMap(first -> {
+                    List<Itinerary> out = new ArrayList<>();
+                    List<Leg> path = new ArrayList<>(maxTransfers + 1);
+                    path.add(first);
+                    expand(path, from, to, maxTransfers + 1, out);
+                    return out.stream();
+                })
+                .sorted(order)
+                .limit(maxResults)
+                .collect(Collectors.toList());
+        return toDTOs(found);
+    }
+
+    /**
+     * 深度优先展开：从当前末段的到达站继续换乘，不经过已到过的车站
+     */
+    private void expand(List<Leg> path, String origin, String destination, int maxLegs, List<Itinerary> out) {
+        Leg last = path.get(path.size() - 1);
+        LocalDateTime earliest = last.arrival.plusMinutes(minConnectionMinutes);
+        LocalDateTime latest = last.arrival.plusMinutes(maxWaitMinutes);
+        boolean finalLeg = path.size() + 1 == maxLegs;
+        for (Leg next : departuresBetween(last.arrivalStation, earliest, latest)) {
+            if (next.arrivalStation.equals(destination)) {
+                path.add(next);
+                out.add(new Itinerary(new ArrayList<>(path)));
+                path.remove(path.size() - 1);
+            } else if (!finalLeg && !visited(path, origin, next.arrivalStation)) {
+                path.add(next);
+                expand(path, origin, destination, maxLegs, out);
+                path.remove(path.size() - 1);
+            }
+        }
+    }
+
+    private static boolean visited(List<Leg> path, String origin, String station) {
+        if (origin.equals(station)) {
+            return true;
+        }
+        for (Leg leg : path) {
+            if (leg.arrivalStation.equals(station)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Set<Leg> departuresBetween(String station, LocalDateTime from, LocalDateTime to) {
+        NavigableSet<Leg> stationDepartures = departures.get(station);
+        if (stationDepartures == null) {
+            return Collections.emptySet();
+        }
+        return stationDepartures.subSet(Leg.probe(from, ""), true, Leg.probe(to, "\uffff"), true);
+    }
+
+    private void reload(String scheduleId) {
+        try {
+            TrainScheduleEntity schedule = trainScheduleMapper.selectById(scheduleId);
+            if (schedule == null) {
+                remove(scheduleId);
+                return;
+            }
+            BigDecimal minPrice = null;
+            for (SeatAvailabilityEntity availability :
+                    seatAvailabilityMapper.selectByScheduleIds(Collections.singletonList(scheduleId))) {
+                minPrice = minPrice == null ? availability.getPrice() : minPrice.min(availability.getPrice());
+            }
+            put(schedule, minPrice);
+        } catch (Exception e) {
+            log.error("更新中转换乘车站图失败: scheduleId={}", scheduleId, e);
+        }
+    }
+
+    private synchronized void put(TrainScheduleEntity schedule, BigDecimal minPrice) {
+        remove(schedule.getId());
+        if (schedule.getDepartureTime() == null || schedule.getArrivalTime() == null) {
+            return;
+        }
+        Leg leg = new Leg(schedule.getId(), schedule.getDepartureStation(), schedule.getArrivalStation(),
+                schedule.getDepartureTime(), schedule.getArrivalTime(), minPrice != null ? minPrice : BigDecimal.ZERO);
+        legs.put(leg.scheduleId, leg);
+        departures.computeIfAbsent(leg.departureStation, k -> new ConcurrentSkipListSet<>(BY_DEPARTURE)).add(leg);
+    }
+
+    private synchronized void remove(String scheduleId) {
+        Leg old = legs.remove(scheduleId);
+        if (old != null) {
+            NavigableSet<Leg> stationDepartures = departures.get(old.departureStation);
+            if (stationDepartures != null) {
+                stationDepartures.remove(old);
+            }
+        }
+    }
+
+    /**
+     * 转换为 DTO，各段车次的余票用一次批量查询取回
+     */
+    private List<TransferItineraryDTO> toDTOs(List<Itinerary> itineraries) {
+        if (itineraries.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Set<String> scheduleIds = new LinkedHashSet<>();
+        for (Itinerary itinerary : itineraries) {
+            for (Leg leg : itinerary.legs) {
+                scheduleIds.add(leg.scheduleId);
+            }
+        }
+        Map<String, TrainScheduleDTO> schedules = scheduleSearchService.findByIds(new ArrayList<>(scheduleIds)).stream()
+                .collect(Collectors.toMap(TrainScheduleDTO::getScheduleId, dto -> dto));
+
+        List<TransferItineraryDTO> result = new ArrayList<>(itineraries.size());
+        for (Itinerary itinerary : itineraries) {
+            List<TrainScheduleDTO> legDTOs = new ArrayList<>(itinerary.legs.size());
+            List<String> transferStations = new ArrayList<>();
+            for (int i = 0; i < itinerary.legs.size(); i++) {
+                Leg leg = itinerary.legs.get(i);
+                TrainScheduleDTO dto = schedules.get(leg.scheduleId);
+                if (dto == null) {
+                    // 车次在查询期间被删除
+                    legDTOs = null;
+                    break;
+                }
+                legDTOs.add(dto);
+                if (i > 0) {
+                    transferStations.add(leg.departureStation);
+                }
+            }
+            if (legDTOs == null) {
+                continue;
+            }
+            result.add(TransferItineraryDTO.builder()
+                    .legs(legDTOs)
+                    .transferStations(transferStations)
+                    .transfers(transferStations.size())
+                    .totalDurationMinutes(itinerary.totalMinutes)
+                    .waitMinutes(itinerary.waitMinutes)
+                    .totalPrice(itinerary.totalPrice.doubleValue())
+                    .build());
+        }
+        return result;
+    }
+
+    /**
+     * 车站图中的边：一个车次从出发站到到达站
+     */
+    private static final class Leg {
+        private final String scheduleId;
+        private final String departureStation;
+        private final String arrivalStation;
+        private final LocalDateTime departure;
+        private final LocalDateTime arrival;
+        private final BigDecimal minPrice;
+
+        private Leg(String scheduleId, String departureStation, String arrivalStation,
+                    LocalDateTime departure, LocalDateTime arrival, BigDecimal minPrice) {
+            this.scheduleId = scheduleId;
+            this.departureStation = departureStation;
+            this.arrivalStation = arrivalStation;
+            this.departure = departure;
+            this.arrival = arrival;
+            this.minPrice = minPrice;
+        }
+
+        /**
+         * 按出发时间截取子集时使用的边界
+         */
+        private static Leg probe(LocalDateTime departure, String scheduleId) {
+            return new Leg(scheduleId, null, null, departure, null, null);
+        }
+    }
+
+    /**
+     * 候选行程
+     */
+    private static final class Itinerary {
+        private final List<Leg> legs;
+        private final long totalMinutes;
+        private final long waitMinutes;
+        private final BigDecimal totalPrice;
+
+        private Itinerary(List<Leg> legs) {
+            this.legs = legs;
+            Leg first = legs.get(0);
+            Leg last = legs.get(legs.size() - 1);
+            this.totalMinutes = Duration.between(first.departure, last.arrival).toMinutes();
+            long wait = 0;
+            BigDecimal price = BigDecimal.ZERO;
+            for (int i = 0; i < legs.size(); i++) {
+                price = price.add(legs.get(i).minPrice);
+                if (i > 0) {
+                    wait += Duration.between(legs.get(i - 1).arrival, legs.get(i).departure).toMinutes();
+                }
+            }
+            this.waitMinutes = wait;
+            this.totalPrice = price;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.backend.service.impl;
+
+import com.example.backend.mapper.InventoryLeaseMapper;
+import com.example.backend.mapper.SeatAvailabilityMapper;
+import com.example.backend.model.InventoryLeaseEntity;
+import com.example.backend.service.InventoryLeaseStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 基于 seat_availability 和 inventory_lease 表的租约存储
+ *
+ * 加锁顺序统一为先租约行、后余票行，与购票事务中扣减租约、退票加回余票的顺序一致。
+ */
+@Slf4j
+@Service
+public class InventoryLeaseStoreImpl implements InventoryLeaseStore {
+
+    // 单次回收的最大租约数
+    private static final int RECLAIM_BATCH_SIZE = 100;
+
+    @Autowired
+    private SeatAvailabilityMapper seatAvailabilityMapper;
+
+    @Autowired
+    private InventoryLeaseMapper inventoryLeaseMapper;
+
+    // 租约独立于调用方事务提交，购票事务回滚时额度退回本地租约而不是数据库
+    @Override
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public int acquire(String nodeId, String scheduleId, Integer seatTypeId, int requested, LocalDateTime expiresAt) {
+        inventoryLeaseMapper.upsert(nodeId, scheduleId, seatTypeId, expiresAt);
+        Integer available = seatAvailabilityMapper.selectAvailableCountForUpdate(scheduleId, seatTypeId);
+        if (available == null || available <= 0) {
+            return 0;
+        }
+        int granted = Math.min(available, requested);
+        seatAvailabilityMapper.reserveSeats(scheduleId, seatTypeId, granted);
+        inventoryLeaseMapper.addQuantity(nodeId, scheduleId, seatTypeId, granted);
+        return granted;
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void giveBack(String nodeId, String scheduleId, Integer seatTypeId, int count) {
+        inventoryLeaseMapper.addQuantity(nodeId, scheduleId, seatTypeId, -count);
+        seatAvailabilityMapper.releaseSeats(scheduleId, seatTypeId, count);
+    }
+
+    @Override
+    public boolean consume(String nodeId, String scheduleId, Integer seatTypeId, int count) {
+        return inventoryLeaseMapper.consume(nodeId, scheduleId, seatTypeId, count) == 1;
+    }
+
+    @Override
+    public boolean restore(String nodeId, String scheduleId, Integer seatTypeId, int count) {
+        if (inventoryLeaseMapper.addQuantity(nodeId, scheduleId, seatTypeId, count) == 1) {
+            return true;
+        }
+        seatAvailabilityMapper.releaseSeats(scheduleId, seatTypeId, count);
+        return false;
+    }
+
+    @Override
+    public int getQuantity(String nodeId, String scheduleId, Integer seatTypeId) {
+        Integer quantity = inventoryLeaseMapper.selectQuantity(nodeId, scheduleId, seatTypeId);
+        return quantity != null ? quantity : 0;
+    }
+
+    @Override
+    public void renew(String nodeId, LocalDateTime expiresAt) {
+        inventoryLeaseMapper.renew(nodeId, expiresAt);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public int reclaimExpired(LocalDateTime now) {
+        List<InventoryLeaseEntity> expired = inventoryLeaseMapper.selectExpiredForUpdate(now, RECLAIM_BATCH_SIZE);
+        for (InventoryLeaseEntity lease : expired) {
+            if (lease.getQuantity() > 0) {
+                seatAvailabilityMapper.releaseSeats(lease.getScheduleId(), lease.getSeatTypeId(), lease.getQuantity());
+            }
+            inventoryLeaseMapper.delete(lease.getNodeId(), lease.getScheduleId(), lease.getSeatTypeId());
+            log.info("回收过期余票租约: nodeId={}, scheduleId={}, seatTypeId={}, quantity={}",
+                    lease.getNodeId(), lease.getScheduleId(), lease.getSeatTypeId(), lease.getQuantity());
+        }
+        return expired.size();
+    }
+}
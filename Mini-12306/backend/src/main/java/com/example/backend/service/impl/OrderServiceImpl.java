@@ -2,10 +2,10 @@ package com.example.backend.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.example.backend.dto.OrderDTO;
+import com.example.backend.dto.OrderPageDTO;
 import com.example.backend.dto.TicketDTO;
 import com.example.backend.mapper.OrderMapper;
 import com.example.backend.mapper.PassengerMapper;
-import com.example.backend.mapper.SeatTypeMapper;
 import com.example.backend.mapper.TicketMapper;
 import com.example.backend.mapper.TrainScheduleMapper;
 import com.example.backend.model.OrderEntity;
@@ -13,16 +13,35 @@ import com.example.backend.model.PassengerEntity;
 import com.example.backend.model.SeatTypeEntity;
 import com.example.backend.model.TicketEntity;
 import com.example.backend.model.TrainScheduleEntity;
+import com.example.backend.service.ArchiveService;
 import com.example.backend.service.OrderService;
+import com.example.backend.service.SeatTypeCache;
+import com.example.backend.service.TicketHoldService;
 import com.example.backend.util.EntityConverter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 /**
@@ -31,6 +50,14 @@ import java.util.stream.Collectors;
 @Service
 public class OrderServiceImpl implements OrderService {
 
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+
+    // 分页顺序：下单时间倒序，相同时按订单ID倒序
+    private static final Comparator<OrderEntity> PAGE_ORDER = Comparator
+            .comparing(OrderEntity::getCreateTime, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(OrderEntity::getId, Comparator.reverseOrder());
+
     @Autowired
     private OrderMapper orderMapper;
     
@@ -41,150 +68,181 @@ public class OrderServiceImpl implements OrderService {
     private TrainScheduleMapper trainScheduleMapper;
     
     @Autowired
-    private SeatTypeMapper seatTypeMapper;
+    private SeatTypeCache seatTypeCache;
     
     @Autowired
     private PassengerMapper passengerMapper;
 
+    @Autowired
+    private TicketHoldService ticketHoldService;
+
+    @Autowired
+    private ArchiveService archiveService;
+
+    // 并行读取车票、车次和乘车人的线程数，每个线程占用一个数据库连接
+    @Value("${app.order.query-workers:4}")
+    private int queryWorkers;
+
+    private ThreadPoolExecutor queryExecutor;
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        // 队列满时由调用线程执行，查询不会被拒绝
+        queryExecutor = new ThreadPoolExecutor(queryWorkers, queryWorkers, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queryWorkers * 16), runnable -> {
+                    Thread thread = new Thread(runnable, "order-query-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    public void stop() {
+        queryExecutor.shutdown();
+    }
+
     /**
-     * 根据订单ID查询订单
+     * 根据订单ID查询订单，在线表中没有时查询归档表
      */
     @Override
     public OrderDTO getOrderById(String orderId) {
         // 查询订单
         OrderEntity order = orderMapper.selectById(orderId);
-        if (order == null) {
-            return null;
+        List<TicketEntity> tickets;
+        if (order != null) {
+            // 查询订单关联的车票
+            tickets = ticketMapper.selectList(
+                    new LambdaQueryWrapper<TicketEntity>().eq(TicketEntity::getOrderId, orderId)
+            );
+        } else {
+            order = archiveService.findOrder(orderId);
+            if (order == null) {
+                return null;
+            }
+            tickets = archiveService.findTicketsByOrderIds(Collections.singletonList(orderId));
         }
-        
-        // 查询订单关联的车票
-        List<TicketEntity> tickets = ticketMapper.selectList(
-                new LambdaQueryWrapper<TicketEntity>().eq(TicketEntity::getOrderId, orderId)
-        );
-        
-        if (tickets.isEmpty()) {
-            return EntityConverter.toOrderDTO(order, new ArrayList<>(), null);
-        }
-        
-        // 查询车票关联的车次和座位类型
-        List<String> scheduleIds = tickets.stream()
-                .map(TicketEntity::getScheduleId)
-                .distinct()
-                .collect(Collectors.toList());
-        
-        List<TrainScheduleEntity> schedules = trainScheduleMapper.selectList(
-                new LambdaQueryWrapper<TrainScheduleEntity>().in(TrainScheduleEntity::getId, scheduleIds)
-        );
-        Map<String, TrainScheduleEntity> scheduleMap = schedules.stream()
-                .collect(Collectors.toMap(TrainScheduleEntity::getId, schedule -> schedule));
-        
-        List<Integer> seatTypeIds = tickets.stream()
-                .map(TicketEntity::getSeatTypeId)
-                .distinct()
-                .collect(Collectors.toList());
-        
-        List<SeatTypeEntity> seatTypes = seatTypeMapper.selectList(
-                new LambdaQueryWrapper<SeatTypeEntity>().in(SeatTypeEntity::getId, seatTypeIds)
-        );
-        Map<Integer, SeatTypeEntity> seatTypeMap = seatTypes.stream()
-                .collect(Collectors.toMap(SeatTypeEntity::getId, seatType -> seatType));
-        
-        // 获取所有相关的乘车人信息
-        List<String> passengerIds = tickets.stream()
-                .map(TicketEntity::getPassengerId)
-                .collect(Collectors.toList());
-        List<PassengerEntity> passengers = passengerMapper.selectList(
-                new LambdaQueryWrapper<PassengerEntity>().in(PassengerEntity::getId, passengerIds)
-        );
-        Map<String, PassengerEntity> passengerMap = passengers.stream()
-                .collect(Collectors.toMap(PassengerEntity::getId, passenger -> passenger));
-        
-        // 转换为DTO
-        List<TicketDTO> ticketDTOs = tickets.stream()
-                .map(ticket -> {
-                    TrainScheduleEntity schedule = scheduleMap.get(ticket.getScheduleId());
-                    SeatTypeEntity seatType = seatTypeMap.get(ticket.getSeatTypeId());
-                    PassengerEntity passenger = passengerMap.get(ticket.getPassengerId());
-                    return EntityConverter.toTicketDTO(ticket, schedule, seatType, passenger != null ? passenger.getName() : "未知乘车人");
-                })
-                .collect(Collectors.toList());
-        
-        return EntityConverter.toOrderDTO(order, ticketDTOs, null);
+        return toOrderDTOs(Collections.singletonList(order), tickets).get(0);
     }
 
     /**
-     * 查询用户订单列表
+     * 查询用户订单列表，包含已归档的订单
      */
     @Override
     public List<OrderDTO> getUserOrders(String userId) {
-        // 查询用户订单
-        List<OrderEntity> orders = orderMapper.selectList(
+        CompletableFuture<List<OrderEntity>> archivedOrders =
+                CompletableFuture.supplyAsync(() -> archiveService.findUserOrders(userId), queryExecutor);
+        List<OrderEntity> orders = new ArrayList<>(orderMapper.selectList(
                 new LambdaQueryWrapper<OrderEntity>()
                         .eq(OrderEntity::getUserId, userId)
                         .orderByDesc(OrderEntity::getCreateTime)
-        );
-        
+        ));
+        Set<String> liveOrderIds = orders.stream()
+                .map(OrderEntity::getId)
+                .collect(Collectors.toSet());
+        orders.addAll(archivedOrders.join());
+        orders.sort(PAGE_ORDER);
+        return toOrderDTOs(orders, loadTickets(orders, liveOrderIds));
+    }
+
+    /**
+     * 按下单时间倒序分页查询用户订单，包含已归档的订单
+     *
+     * 在线表和归档表各按 (下单时间, 订单ID) 取出游标之后的一页，合并后截取，
+     * 车票、车次和乘车人只查询当前页涉及的记录。
+     */
+    @Override
+    public OrderPageDTO getUserOrderPage(String userId, String cursor, Integer limit) {
+        int pageSize = limit != null ? Math.max(1, Math.min(limit, MAX_PAGE_SIZE)) : DEFAULT_PAGE_SIZE;
+        OrderEntity after = StringUtils.hasText(cursor) ? decodeCursor(cursor) : new OrderEntity();
+
+        // 多取一条判断是否还有下一页
+        CompletableFuture<List<OrderEntity>> archivedOrders = CompletableFuture.supplyAsync(() -> archiveService
+                .findUserOrderPage(userId, after.getCreateTime(), after.getId(), pageSize + 1), queryExecutor);
+        List<OrderEntity> orders = new ArrayList<>(orderMapper.selectUserOrderPage(
+                userId, after.getCreateTime(), after.getId(), pageSize + 1));
+        Set<String> liveOrderIds = orders.stream()
+                .map(OrderEntity::getId)
+                .collect(Collectors.toSet());
+        orders.addAll(archivedOrders.join());
+        orders.sort(PAGE_ORDER);
+
+        String nextCursor = null;
+        if (orders.size() > pageSize) {
+            orders = orders.subList(0, pageSize);
+            nextCursor = encodeCursor(orders.get(pageSize - 1));
+        }
+        return OrderPageDTO.builder()
+                .items(toOrderDTOs(orders, loadTickets(orders, liveOrderIds)))
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    /**
+     * 读取订单的车票：在线订单查询车票表，归档表中可能有任一订单已归档的车票，两者并行查询
+     */
+    private List<TicketEntity> loadTickets(List<OrderEntity> orders, Set<String> liveIds) {
         if (orders.isEmpty()) {
             return new ArrayList<>();
         }
-        
-        // 查询订单关联的车票
         List<String> orderIds = orders.stream()
                 .map(OrderEntity::getId)
                 .collect(Collectors.toList());
-        
-        List<TicketEntity> tickets = ticketMapper.selectList(
-                new LambdaQueryWrapper<TicketEntity>()
-                        .in(TicketEntity::getOrderId, orderIds)
-        );
-        
-        Map<String, List<TicketEntity>> ticketMap = tickets.stream()
-                .collect(Collectors.groupingBy(TicketEntity::getOrderId));
-        
-        // 查询车票关联的车次和座位类型
+        List<String> liveOrderIds = orderIds.stream()
+                .filter(liveIds::contains)
+                .collect(Collectors.toList());
+        CompletableFuture<List<TicketEntity>> archivedTickets =
+                CompletableFuture.supplyAsync(() -> archiveService.findTicketsByOrderIds(orderIds), queryExecutor);
+        List<TicketEntity> tickets = new ArrayList<>();
+        if (!liveOrderIds.isEmpty()) {
+            tickets.addAll(ticketMapper.selectList(
+                    new LambdaQueryWrapper<TicketEntity>().in(TicketEntity::getOrderId, liveOrderIds)
+            ));
+        }
+        tickets.addAll(archivedTickets.join());
+        return tickets;
+    }
+
+    /**
+     * 转换为DTO：车次和乘车人各一次批量查询，两者并行执行，座位类型取自缓存
+     */
+    private List<OrderDTO> toOrderDTOs(List<OrderEntity> orders, List<TicketEntity> tickets) {
         List<String> scheduleIds = tickets.stream()
                 .map(TicketEntity::getScheduleId)
                 .distinct()
                 .collect(Collectors.toList());
-        
-        List<TrainScheduleEntity> schedules = scheduleIds.isEmpty() ? 
-                new ArrayList<>() : trainScheduleMapper.selectList(
-                        new LambdaQueryWrapper<TrainScheduleEntity>().in(TrainScheduleEntity::getId, scheduleIds)
-                );
-        Map<String, TrainScheduleEntity> scheduleMap = schedules.stream()
-                .collect(Collectors.toMap(TrainScheduleEntity::getId, schedule -> schedule));
-        
-        List<Integer> seatTypeIds = tickets.stream()
-                .map(TicketEntity::getSeatTypeId)
-                .distinct()
-                .collect(Collectors.toList());
-        
-        List<SeatTypeEntity> seatTypes = seatTypeIds.isEmpty() ? 
-                new ArrayList<>() : seatTypeMapper.selectList(
-                        new LambdaQueryWrapper<SeatTypeEntity>().in(SeatTypeEntity::getId, seatTypeIds)
-                );
-        Map<Integer, SeatTypeEntity> seatTypeMap = seatTypes.stream()
-                .collect(Collectors.toMap(SeatTypeEntity::getId, seatType -> seatType));
-        
-        // 转换为DTO
-        // 获取所有相关的乘车人信息
-        List<String> allPassengerIds = tickets.stream()
+        List<String> passengerIds = tickets.stream()
                 .map(TicketEntity::getPassengerId)
+                .distinct()
                 .collect(Collectors.toList());
-        List<PassengerEntity> allPassengers = passengerMapper.selectList(
-                new LambdaQueryWrapper<PassengerEntity>().in(PassengerEntity::getId, allPassengerIds)
-        );
-        Map<String, PassengerEntity> allPassengerMap = allPassengers.stream()
-                .collect(Collectors.toMap(PassengerEntity::getId, passenger -> passenger));
-        
+
+        CompletableFuture<Map<String, PassengerEntity>> passengers = passengerIds.isEmpty()
+                ? CompletableFuture.completedFuture(Collections.emptyMap())
+                : CompletableFuture.supplyAsync(() -> passengerMapper.selectList(
+                        new LambdaQueryWrapper<PassengerEntity>().in(PassengerEntity::getId, passengerIds)
+                ).stream().collect(Collectors.toMap(PassengerEntity::getId, passenger -> passenger)), queryExecutor);
+
+        // 在线表中查不到的车次从归档表补齐
+        Map<String, TrainScheduleEntity> scheduleMap = new HashMap<>();
+        if (!scheduleIds.isEmpty()) {
+            for (TrainScheduleEntity schedule : trainScheduleMapper.selectList(
+                    new LambdaQueryWrapper<TrainScheduleEntity>().in(TrainScheduleEntity::getId, scheduleIds))) {
+                scheduleMap.put(schedule.getId(), schedule);
+            }
+            archiveService.fillSchedules(scheduleMap, scheduleIds);
+        }
+        Map<String, PassengerEntity> passengerMap = passengers.join();
+
+        Map<String, List<TicketEntity>> ticketMap = tickets.stream()
+                .collect(Collectors.groupingBy(TicketEntity::getOrderId));
         return orders.stream()
                 .map(order -> {
                     List<TicketEntity> orderTickets = ticketMap.getOrDefault(order.getId(), new ArrayList<>());
                     List<TicketDTO> ticketDTOs = orderTickets.stream()
                             .map(ticket -> {
                                 TrainScheduleEntity schedule = scheduleMap.get(ticket.getScheduleId());
-                                SeatTypeEntity seatType = seatTypeMap.get(ticket.getSeatTypeId());
-                                PassengerEntity passenger = allPassengerMap.get(ticket.getPassengerId());
+                                SeatTypeEntity seatType = seatTypeCache.getById(ticket.getSeatTypeId());
+                                PassengerEntity passenger = passengerMap.get(ticket.getPassengerId());
                                 return EntityConverter.toTicketDTO(ticket, schedule, seatType, passenger != null ? passenger.getName() : "未知乘车人");
                             })
                             .collect(Collectors.toList());
@@ -194,6 +252,32 @@ public class OrderServiceImpl implements OrderService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * 游标内容为 "下单时间|订单ID" 的 Base64 编码
+     */
+    private static String encodeCursor(OrderEntity last) {
+        String raw = last.getCreateTime() + "|" + last.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析游标，返回只含下单时间和订单ID的上一页最后一个订单
+     */
+    private static OrderEntity decodeCursor(String cursor) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", 2);
+            if (parts.length != 2 || parts[1].isEmpty()) {
+                throw new IllegalArgumentException("分页游标无效，请重新查询。");
+            }
+            return OrderEntity.builder()
+                    .createTime(LocalDateTime.parse(parts[0]))
+                    .id(parts[1])
+                    .build();
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("分页游标无效，请重新查询。");
+        }
+    }
+
     /**
      * 创建订单
      */
@@ -248,6 +332,11 @@ public class OrderServiceImpl implements OrderService {
         if ("已完成".equals(order.getOrderStatus()) || "已取消".equals(order.getOrderStatus())) {
             return false;
         }
+
+        // 待支付车票释放占座并归还余票
+        if (ticketHoldService.cancel(orderId, "未支付") > 0) {
+            return true;
+        }
         
         // 更新订单状态
         order.setOrderStatus("已取消");
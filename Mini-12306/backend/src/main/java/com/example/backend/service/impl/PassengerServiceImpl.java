@@ -8,6 +8,7 @@ import com.example.backend.model.PassengerEntity;
 import com.example.backend.model.TicketEntity;
 import com.example.backend.service.PassengerService;
 import com.example.backend.service.FileUploadService;
+import com.example.backend.service.IdentityVerificationService;
 import com.example.backend.util.EntityConverter;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -35,6 +36,9 @@ public class PassengerServiceImpl implements PassengerService {
     
     @Autowired
     private FileUploadService fileUploadService;
+
+    @Autowired
+    private IdentityVerificationService identityVerificationService;
     
     @Override
     @Transactional
@@ -60,6 +64,9 @@ public class PassengerServiceImpl implements PassengerService {
         );
         
         passengerMapper.insert(passenger);
+
+        // 后台预先核验身份，购票时直接使用核验结果
+        identityVerificationService.preverify(passenger.getName(), passenger.getIdCard());
         return entityConverter.convertToPassengerDTO(passenger);
     }
     
@@ -108,6 +115,9 @@ public class PassengerServiceImpl implements PassengerService {
         passenger.setIsDefault(request.getIsDefault() != null ? request.getIsDefault() : false);
         
         passengerMapper.updateById(passenger);
+
+        // 后台预先核验身份，购票时直接使用核验结果
+        identityVerificationService.preverify(passenger.getName(), passenger.getIdCard());
         return entityConverter.convertToPassengerDTO(passenger);
     }
     
@@ -0,0 +1,183 @@
+package com.example.backend.service.impl;
+
+import com.example.backend.mapper.PaymentJobMapper;
+import com.example.backend.model.PaymentJobEntity;
+import com.example.backend.service.PaymentCallbackService;
+import com.example.backend.service.PaymentGateway;
+import com.example.backend.service.PaymentService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 异步支付网关实现
+ *
+ * 任务执行顺序：领取任务（待处理 → 处理中）→ 调用支付渠道 → 保存渠道结果（渠道成功/渠道失败）
+ * → 执行完成回调 → 记录任务结果（成功/失败）。领取是条件更新，多个节点同时派发同一任务时只有一个执行。
+ * 回调失败或进程在回调后退出时，任务停留在渠道结果状态，重新派发时只重新执行回调，不再调用支付渠道；
+ * 回调按订单和车票状态做条件更新，重复执行不会产生副作用。
+ * 停留在处理中的任务（调用渠道期间进程退出）不会自动重新执行，需与支付渠道对账后处理。
+ * 线程池队列已满时任务保留在数据库中，由定时任务稍后重新派发。
+ */
+@Slf4j
+@Service
+public class PaymentGatewayImpl implements PaymentGateway {
+
+    @Autowired
+    private PaymentJobMapper paymentJobMapper;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private PaymentCallbackService paymentCallbackService;
+
+    @Value("${app.payment.workers:8}")
+    private int workers;
+
+    @Value("${app.payment.queue-capacity:1000}")
+    private int queueCapacity;
+
+    @Value("${app.payment.dispatch-batch-size:200}")
+    private int dispatchBatchSize;
+
+    private ThreadPoolExecutor executor;
+
+    // 已提交或正在执行的任务，定时派发时跳过
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "payment-worker-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        // 未执行的任务仍为待处理状态，重启后重新派发
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> submit(PaymentJobEntity job) {
+        LocalDateTime now = LocalDateTime.now();
+        job.setId(UUID.randomUUID().toString().replace("-", ""));
+        job.setStatus("待处理");
+        job.setAttempts(0);
+        job.setCreateTime(now);
+        job.setUpdateTime(now);
+
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        inFlight.add(job.getId());
+        paymentJobMapper.insert(job);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) {
+                        dispatch(job, future);
+                    } else {
+                        inFlight.remove(job.getId());
+                        future.completeExceptionally(new RuntimeException("支付任务未提交：" + job.getOrderId()));
+                    }
+                }
+            });
+        } else {
+            dispatch(job, future);
+        }
+        return future;
+    }
+
+    /**
+     * 定时派发待处理的任务：启动时恢复的任务、线程池满时未派发的任务、回调中补提交的任务以及回调失败的任务
+     */
+    @Scheduled(fixedDelayString = "${app.payment.dispatch-interval-ms:5000}")
+    public void dispatchPending() {
+        List<PaymentJobEntity> pending = paymentJobMapper.selectPending(dispatchBatchSize);
+        for (PaymentJobEntity job : pending) {
+            if (inFlight.add(job.getId())) {
+                dispatch(job, new CompletableFuture<>());
+            }
+        }
+    }
+
+    private void dispatch(PaymentJobEntity job, CompletableFuture<Boolean> future) {
+        try {
+            executor.execute(() -> execute(job, future));
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(job.getId());
+            log.warn("支付任务队列已满，稍后重新派发: jobId={}, type={}", job.getId(), job.getJobType());
+        }
+    }
+
+    private void execute(PaymentJobEntity job, CompletableFuture<Boolean> future) {
+        try {
+            boolean success;
+            if ("待处理".equals(job.getStatus())) {
+                if (paymentJobMapper.claim(job.getId()) == 0) {
+                    future.completeExceptionally(new IllegalStateException("支付任务已被其他节点执行：" + job.getId()));
+                    return;
+                }
+                success = callChannel(job);
+                if (paymentJobMapper.recordChannelResult(job.getId(), success ? "渠道成功" : "渠道失败") == 0) {
+                    log.error("保存支付渠道结果失败，需与支付渠道核对: jobId={}, success={}", job.getId(), success);
+                    future.completeExceptionally(new IllegalStateException("支付任务状态已变化：" + job.getId()));
+                    return;
+                }
+            } else {
+                // 已有渠道结果：只重新执行回调
+                success = "渠道成功".equals(job.getStatus());
+                if (paymentJobMapper.claimCallback(job.getId(), job.getAttempts()) == 0) {
+                    future.completeExceptionally(new IllegalStateException("支付任务已被其他节点执行：" + job.getId()));
+                    return;
+                }
+            }
+            paymentCallbackService.onCompleted(job, success);
+            paymentJobMapper.finish(job.getId(), success ? "成功" : "失败");
+            future.complete(success);
+        } catch (Exception e) {
+            // 回调失败时任务保持渠道结果状态，等待下次派发时重新执行回调
+            log.error("支付任务执行失败: jobId={}", job.getId(), e);
+            future.completeExceptionally(e);
+        } finally {
+            inFlight.remove(job.getId());
+        }
+    }
+
+    private boolean callChannel(PaymentJobEntity job) {
+        try {
+            return "支付".equals(job.getJobType())
+                    ? paymentService.processPayment(job.getOrderId(), job.getAmount().doubleValue())
+                    : paymentService.processRefund(job.getTicketId() != null ? job.getTicketId() : job.getOrderId(),
+                    job.getAmount().doubleValue());
+        } catch (Exception e) {
+            log.error("调用支付渠道失败: jobId={}", job.getId(), e);
+            return false;
+        }
+    }
+}
@@ -1,36 +1,50 @@
 package com.example.backend.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
-import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.example.backend.dto.*;
+import com.example.backend.event.SeatAvailabilityChangedEvent;
 import com.example.backend.mapper.*;
 import com.example.backend.model.*;
+import com.example.backend.service.ArchiveService;
 import com.example.backend.service.IdentityVerificationService;
-import com.example.backend.service.PaymentService;
+import com.example.backend.service.PaymentGateway;
+import com.example.backend.service.ScheduleCalendarService;
+import com.example.backend.service.ScheduleSearchService;
+import com.example.backend.service.ScheduleSequencer;
+import com.example.backend.service.SeatAllocationService;
+import com.example.backend.service.SeatInventoryService;
+import com.example.backend.service.SeatTypeCache;
+import com.example.backend.service.TicketHoldService;
 import com.example.backend.service.TicketService;
+import com.example.backend.service.TrainTemplateService;
+import com.example.backend.service.TransferSearchService;
 import com.example.backend.util.EntityConverter;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 public class TicketServiceImpl implements TicketService {
 
+    // 单个订单最多购买的车票数
+    private static final int MAX_PASSENGERS_PER_ORDER = 5;
+
     @Autowired
     private TrainScheduleMapper trainScheduleMapper;
     
     @Autowired
-    private SeatTypeMapper seatTypeMapper;
-    
-    @Autowired
-    private SeatAvailabilityMapper seatAvailabilityMapper;
+    private SeatTypeCache seatTypeCache;
     
     @Autowired
     private OrderMapper orderMapper;
@@ -42,110 +56,205 @@ public class TicketServiceImpl implements TicketService {
     private PassengerMapper passengerMapper;
     
     @Autowired
-    private PaymentService paymentService;
+    private PaymentGateway paymentGateway;
 
     @Autowired
     private IdentityVerificationService identityVerificationService;
 
+    @Autowired
+    private SeatInventoryService seatInventoryService;
+
+    @Autowired
+    private SeatAllocationService seatAllocationService;
+
+    @Autowired
+    private TicketHoldService ticketHoldService;
+
+    @Autowired
+    private ScheduleSequencer scheduleSequencer;
+
+    @Autowired
+    private ScheduleSearchService scheduleSearchService;
+
+    @Autowired
+    private TransferSearchService transferSearchService;
+
+    @Autowired
+    private ScheduleCalendarService scheduleCalendarService;
+
+    @Autowired
+    private TrainTemplateService trainTemplateService;
+
+    @Autowired
+    private ArchiveService archiveService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     /**
      * 查询车次时刻表
      */
     @Override
     public List<TrainScheduleDTO> querySchedules(String departureStation, String arrivalStation, String departureDateStr) {
-        LocalDate departureDate = null;
-        if (StringUtils.hasText(departureDateStr)) {
-            try {
-                departureDate = LocalDate.parse(departureDateStr);
-            } catch (Exception e) {
-                throw new IllegalArgumentException("日期格式错误，请使用 YYYY-MM-DD 格式。");
-            }
-        }
+        LocalDate departureDate = parseDate(departureDateStr);
+        trainTemplateService.ensureMaterialized(departureDate);
+        return scheduleSearchService.search(departureStation, arrivalStation, departureDate);
+    }
 
-        // 构建查询条件
-        QueryWrapper<TrainScheduleEntity> queryWrapper = new QueryWrapper<>();
-        if (StringUtils.hasText(departureStation)) {
-            queryWrapper.eq("departure_station", departureStation);
-        }
-        if (StringUtils.hasText(arrivalStation)) {
-            queryWrapper.eq("arrival_station", arrivalStation);
-        }
+    /**
+     * 分页查询车次
+     */
+    @Override
+    public SchedulePageDTO querySchedulePage(String departureStation, String arrivalStation, String departureDateStr,
+                                             ScheduleFilterDTO filter) {
+        LocalDate departureDate = parseDate(departureDateStr);
+        trainTemplateService.ensureMaterialized(departureDate);
+        return scheduleSearchService.searchPage(departureStation, arrivalStation, departureDate, filter);
+    }
+
+    /**
+     * 流式查询车次
+     */
+    @Override
+    public Flux<TrainScheduleDTO> streamSchedules(String departureStation, String arrivalStation, String departureDateStr,
+                                                  ScheduleFilterDTO filter) {
+        LocalDate departureDate = parseDate(departureDateStr);
+        trainTemplateService.ensureMaterialized(departureDate);
+        return scheduleSearchService.stream(departureStation, arrivalStation, departureDate, filter);
+    }
+
+    /**
+     * 查询中转换乘行程
+     */
+    @Override
+    public List<TransferItineraryDTO> queryTransfers(String departureStation, String arrivalStation, String departureDateStr,
+                                                     int maxTransfers, String sortBy) {
+        LocalDate departureDate = parseDate(departureDateStr);
         if (departureDate != null) {
-            queryWrapper.ge("departure_time", departureDate.atStartOfDay());
-            queryWrapper.lt("departure_time", departureDate.plusDays(1).atStartOfDay());
+            // 换乘的后续车次可能在次日
+            trainTemplateService.ensureMaterialized(departureDate, departureDate.plusDays(1));
         }
+        return transferSearchService.search(departureStation, arrivalStation, departureDate, maxTransfers, sortBy);
+    }
 
-        // 查询车次
-        List<TrainScheduleEntity> schedules = trainScheduleMapper.selectList(queryWrapper);
-        if (schedules.isEmpty()) {
-            return Collections.emptyList();
+    /**
+     * 查询余票日历
+     */
+    @Override
+    public List<ScheduleCalendarDayDTO> queryCalendar(String departureStation, String arrivalStation,
+                                                      String startDateStr, String endDateStr) {
+        LocalDate startDate = parseDate(startDateStr);
+        if (startDate == null) {
+            startDate = LocalDate.now();
         }
-
-        // 获取所有座位类型
-        List<SeatTypeEntity> seatTypes = seatTypeMapper.selectList(null);
-
-        // 查询每个车次的座位可用性
-        List<TrainScheduleDTO> result = new ArrayList<>();
-        for (TrainScheduleEntity schedule : schedules) {
-            List<SeatAvailabilityEntity> availabilities = seatAvailabilityMapper.selectList(
-                    new QueryWrapper<SeatAvailabilityEntity>().eq("schedule_id", schedule.getId())
-            );
-            result.add(EntityConverter.toTrainScheduleDTO(schedule, availabilities, seatTypes));
+        LocalDate endDate = parseDate(endDateStr);
+        if (endDate == null) {
+            endDate = startDate.plusDays(29);
         }
+        trainTemplateService.ensureMaterialized(startDate, endDate);
+        return scheduleCalendarService.getCalendar(departureStation, arrivalStation, startDate, endDate);
+    }
 
-        return result;
+    private static LocalDate parseDate(String dateStr) {
+        if (!StringUtils.hasText(dateStr)) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(dateStr);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("日期格式错误，请使用 YYYY-MM-DD 格式。");
+        }
     }
 
     /**
      * 购买火车票
      */
     @Override
-    @Transactional
     public OrderDTO purchaseTicket(PurchaseRequestDTO request) {
-        // 1. 查询车次信息
+        BatchPurchaseRequestDTO batchRequest = new BatchPurchaseRequestDTO();
+        batchRequest.setUserId(request.getUserId());
+        batchRequest.setScheduleId(request.getScheduleId());
+        batchRequest.setPassengerIds(Collections.singletonList(request.getPassengerId()));
+        batchRequest.setSeatType(request.getSeatType());
+        return purchaseTickets(batchRequest);
+    }
+
+    /**
+     * 为多位乘车人购买同一车次的车票
+     *
+     * 在短事务中一次预占全部余票和座位、写入待支付的订单和车票并提交一笔支付任务后立即返回；
+     * 支付结果由 PaymentCallbackService 确认或释放占座并推送给用户，也可通过订单接口查询。
+     */
+    @Override
+    public OrderDTO purchaseTickets(BatchPurchaseRequestDTO request) {
+        List<String> passengerIds = request.getPassengerIds();
+        if (passengerIds == null || passengerIds.isEmpty()) {
+            throw new IllegalArgumentException("请选择乘车人。");
+        }
+        if (passengerIds.size() > MAX_PASSENGERS_PER_ORDER) {
+            throw new IllegalArgumentException("每个订单最多购买" + MAX_PASSENGERS_PER_ORDER + "张车票。");
+        }
+        if (new HashSet<>(passengerIds).size() != passengerIds.size()) {
+            throw new IllegalArgumentException("同一乘车人不能重复购票。");
+        }
+
+        // 1. 查询车次信息，按模板开行的车次尚未生成时先生成
+        trainTemplateService.ensureMaterialized(request.getScheduleId());
         TrainScheduleEntity schedule = trainScheduleMapper.selectById(request.getScheduleId());
         if (schedule == null) {
             throw new IllegalArgumentException("车次信息未找到：" + request.getScheduleId());
         }
 
         // 2. 查询座位类型
-        SeatTypeEntity seatType = getSeatTypeByName(request.getSeatType());
+        SeatTypeEntity seatType = seatTypeCache.getByName(request.getSeatType());
         if (seatType == null) {
             throw new IllegalArgumentException("无效的座位类型：" + request.getSeatType());
         }
 
-        // 3. 查询座位可用性
-        SeatAvailabilityEntity seatAvailability = getSeatAvailability(request.getScheduleId(), seatType.getId());
-        if (seatAvailability == null || seatAvailability.getAvailableCount() <= 0) {
-            throw new RuntimeException("所选车次座位余票不足。");
+        // 3. 查询票价
+        BigDecimal price = seatInventoryService.getPrice(request.getScheduleId(), seatType.getId());
+        if (price == null) {
+            throw new IllegalArgumentException("该车次不提供座位类型：" + request.getSeatType());
         }
 
         // 4. 查询乘车人信息
-        PassengerEntity passenger = passengerMapper.selectById(request.getPassengerId());
-        if (passenger == null) {
-            throw new IllegalArgumentException("乘车人信息未找到：" + request.getPassengerId());
-        }
-        
-        // 验证乘车人归属
-        if (!passenger.getUserId().equals(request.getUserId())) {
-            throw new RuntimeException("无权使用此乘车人信息。");
+        Map<String, PassengerEntity> passengerMap = passengerMapper.selectList(
+                new LambdaQueryWrapper<PassengerEntity>().in(PassengerEntity::getId, passengerIds)
+        ).stream().collect(Collectors.toMap(PassengerEntity::getId, passenger -> passenger));
+
+        List<PassengerEntity> passengers = new ArrayList<>(passengerIds.size());
+        for (String passengerId : passengerIds) {
+            PassengerEntity passenger = passengerMap.get(passengerId);
+            if (passenger == null) {
+                throw new IllegalArgumentException("乘车人信息未找到：" + passengerId);
+            }
+            // 验证乘车人归属
+            if (!passenger.getUserId().equals(request.getUserId())) {
+                throw new RuntimeException("无权使用此乘车人信息。");
+            }
+            passengers.add(passenger);
         }
-        
-        // 身份信息核验
-        boolean identityVerified = identityVerificationService.verifyIdentity(passenger.getName(), passenger.getIdCard());
-        if (!identityVerified) {
-            throw new RuntimeException("身份信息核验失败。");
+
+        // 身份信息并行核验
+        List<CompletableFuture<Boolean>> verifications = passengers.stream()
+                .map(passenger -> identityVerificationService.verifyIdentityAsync(passenger.getName(), passenger.getIdCard()))
+                .collect(Collectors.toList());
+        for (int i = 0; i < passengers.size(); i++) {
+            if (!verifications.get(i).join()) {
+                throw new RuntimeException("身份信息核验失败：" + passengers.get(i).getName());
+            }
         }
 
         // 5. 创建订单和车票 (初始状态：待支付)
         String orderId = UUID.randomUUID().toString().replace("-", "");
-        String ticketId = UUID.randomUUID().toString().replace("-", "");
+        BigDecimal totalAmount = price.multiply(BigDecimal.valueOf(passengers.size()));
 
         // 创建订单
         OrderEntity order = OrderEntity.builder()
                 .id(orderId)
                 .userId(request.getUserId())
                 .orderType("购票")
-                .totalAmount(seatAvailability.getPrice())
+                .totalAmount(totalAmount)
                 .paymentStatus("未支付")
                 .orderStatus("处理中")
                 .createTime(LocalDateTime.now())
@@ -153,70 +262,44 @@ public class TicketServiceImpl implements TicketService {
                 .build();
 
         // 创建车票
-        TicketEntity ticket = TicketEntity.builder()
-                .id(ticketId)
-                .userId(request.getUserId())
+        List<TicketEntity> tickets = passengers.stream()
+                .map(passenger -> TicketEntity.builder()
+                        .id(UUID.randomUUID().toString().replace("-", ""))
+                        .userId(request.getUserId())
+                        .orderId(orderId)
+                        .scheduleId(request.getScheduleId())
+                        .passengerId(passenger.getId())
+                        .seatTypeId(seatType.getId())
+                        .ticketType("成人票") // 简化处理，实际应根据乘客信息确定票种
+                        .pricePaid(price)
+                        .ticketStatus("待支付")
+                        .createTime(LocalDateTime.now())
+                        .updateTime(LocalDateTime.now())
+                        .build())
+                .collect(Collectors.toList());
+
+        // 6. 一次预占全部余票和座位，保存待支付订单和车票，事务提交后开始支付
+        PaymentJobEntity paymentJob = PaymentJobEntity.builder()
+                .jobType("支付")
                 .orderId(orderId)
-                .scheduleId(request.getScheduleId())
-                .passengerId(request.getPassengerId())
-                .seatTypeId(seatType.getId())
-                .ticketType("成人票") // 简化处理，实际应根据乘客信息确定票种
-                .pricePaid(seatAvailability.getPrice())
-                .seatNumber("待分配") // 简化处理，在支付成功后分配座位号
-                .ticketStatus("待支付")
-                .createTime(LocalDateTime.now())
-                .updateTime(LocalDateTime.now())
+                .userId(request.getUserId())
+                .amount(totalAmount)
                 .build();
+        scheduleSequencer.execute(request.getScheduleId(), new PurchaseCommand(order, tickets, seatType, paymentJob));
+        eventPublisher.publishEvent(new SeatAvailabilityChangedEvent(request.getScheduleId()));
 
-        // 保存订单和车票
-        orderMapper.insert(order);
-        ticketMapper.insert(ticket);
-
-        // 6. 调用支付服务
-        boolean paymentSuccessful = paymentService.processPayment(orderId, seatAvailability.getPrice().doubleValue());
-
-        if (paymentSuccessful) {
-            // 7. 支付成功: 锁定座位，更新状态，生成票号等
-            // 减少座位数量
-            seatAvailability.setAvailableCount(seatAvailability.getAvailableCount() - 1);
-            seatAvailabilityMapper.updateById(seatAvailability);
-
-            // 分配座位号
-            String seatNumber = assignSeat(schedule.getTrainNumber(), seatType.getName());
-            ticket.setSeatNumber(seatNumber);
-            ticket.setTicketStatus("已支付");
-            ticket.setUpdateTime(LocalDateTime.now());
-            ticketMapper.updateById(ticket);
-
-            // 更新订单状态
-            order.setPaymentStatus("支付成功");
-            order.setOrderStatus("已完成");
-            order.setUpdateTime(LocalDateTime.now());
-            orderMapper.updateById(order);
-
-            // 构建返回结果
-            TicketDTO ticketDTO = EntityConverter.toTicketDTO(ticket, schedule, seatType, passenger.getName());
-            return EntityConverter.toOrderDTO(order, Collections.singletonList(ticketDTO), "购票成功");
-        } else {
-            // 8. 支付失败: 更新状态为取消
-            ticket.setTicketStatus("已取消");
-            ticket.setUpdateTime(LocalDateTime.now());
-            ticketMapper.updateById(ticket);
-
-            order.setPaymentStatus("支付失败");
-            order.setOrderStatus("已取消");
-            order.setUpdateTime(LocalDateTime.now());
-            orderMapper.updateById(order);
-
-            throw new RuntimeException("支付失败，订单已取消。");
+        // 7. 构建返回结果，订单处于处理中状态
+        List<TicketDTO> ticketDTOs = new ArrayList<>(tickets.size());
+        for (int i = 0; i < tickets.size(); i++) {
+            ticketDTOs.add(EntityConverter.toTicketDTO(tickets.get(i), schedule, seatType, passengers.get(i).getName()));
         }
+        return EntityConverter.toOrderDTO(order, ticketDTOs, "订单已提交，正在支付");
     }
 
     /**
      * 退票业务流程实现
      */
     @Override
-    @Transactional
     public RefundResponseDTO refundTicket(RefundRequestDTO request) {
         // 1. 查询车票信息
         TicketEntity ticket = ticketMapper.selectById(request.getTicketId());
@@ -235,39 +318,25 @@ public class TicketServiceImpl implements TicketService {
             throw new IllegalStateException("订单不存在：" + ticket.getOrderId());
         }
 
-        // 4. 调用支付服务处理退款
-        boolean refundSuccessful = paymentService.processRefund(ticket.getId(), ticket.getPricePaid().doubleValue());
-        if (!refundSuccessful) {
-            throw new RuntimeException("退款处理失败。");
-        }
-
-        // 5. 更新车票状态
-        ticket.setTicketStatus("已退票");
-        ticket.setUpdateTime(LocalDateTime.now());
-        ticketMapper.updateById(ticket);
-
-        // 6. 更新订单状态
+        // 4. 更新车票和订单状态，提交退款任务并释放座位
         if ("购票".equals(order.getOrderType())) {
             order.setOrderType("退票");
         }
         order.setUpdateTime(LocalDateTime.now());
-        orderMapper.updateById(order);
-
-        // 7. 释放座位资源
-        SeatAvailabilityEntity seatAvailability = getSeatAvailability(ticket.getScheduleId(), ticket.getSeatTypeId());
-        if (seatAvailability != null) {
-            seatAvailability.setAvailableCount(seatAvailability.getAvailableCount() + 1);
-            seatAvailabilityMapper.updateById(seatAvailability);
-        }
+        scheduleSequencer.execute(ticket.getScheduleId(), new RefundCommand(ticket, order));
+        eventPublisher.publishEvent(new SeatAvailabilityChangedEvent(ticket.getScheduleId()));
+        ticket.setTicketStatus("已退票");
 
-        return new RefundResponseDTO(ticket.getId(), "退票成功，款项将原路退回。", "已退票");
+        return new RefundResponseDTO(ticket.getId(), "退票成功，退款处理中，款项将原路退回。", "已退票");
     }
 
     /**
      * 改签车票业务流程实现
+     *
+     * 无需补差价时在一个事务内完成；需要补差价时与购票相同，保存待支付的新车票并提交支付任务，
+     * 支付成功后再确认改签。
      */
     @Override
-    @Transactional
     public ChangeTicketResponseDTO changeTicket(ChangeTicketRequestDTO request) {
         // 1. 查询原车票信息
         TicketEntity oldTicket = ticketMapper.selectById(request.getTicketId());
@@ -281,25 +350,27 @@ public class TicketServiceImpl implements TicketService {
         }
 
         // 3. 查询新车次信息
+        trainTemplateService.ensureMaterialized(request.getNewScheduleId());
         TrainScheduleEntity newSchedule = trainScheduleMapper.selectById(request.getNewScheduleId());
         if (newSchedule == null) {
             throw new IllegalArgumentException("目标车次不存在：" + request.getNewScheduleId());
         }
 
         // 4. 查询座位类型
-        SeatTypeEntity seatType = getSeatTypeByName(request.getSeatType());
+        SeatTypeEntity seatType = seatTypeCache.getByName(request.getSeatType());
         if (seatType == null) {
             throw new IllegalArgumentException("无效的座位类型：" + request.getSeatType());
         }
 
-        // 5. 查询新车次座位可用性
-        SeatAvailabilityEntity newSeatAvailability = getSeatAvailability(request.getNewScheduleId(), seatType.getId());
-        if (newSeatAvailability == null || newSeatAvailability.getAvailableCount() <= 0) {
-            throw new RuntimeException("目标车次座位余票不足。");
+        // 5. 查询新车次票价
+        BigDecimal newPrice = seatInventoryService.getPrice(request.getNewScheduleId(), seatType.getId());
+        if (newPrice == null) {
+            throw new IllegalArgumentException("该车次不提供座位类型：" + request.getSeatType());
         }
 
         // 6. 计算差价
-        BigDecimal priceDifference = newSeatAvailability.getPrice().subtract(oldTicket.getPricePaid());
+        BigDecimal priceDifference = newPrice.subtract(oldTicket.getPricePaid());
+        boolean needPayment = priceDifference.compareTo(BigDecimal.ZERO) > 0;
 
         // 7. 创建新订单和车票
         String newOrderId = UUID.randomUUID().toString().replace("-", "");
@@ -310,9 +381,9 @@ public class TicketServiceImpl implements TicketService {
                 .id(newOrderId)
                 .userId(oldTicket.getUserId())
                 .orderType("改签")
-                .totalAmount(priceDifference.compareTo(BigDecimal.ZERO) > 0 ? priceDifference : BigDecimal.ZERO)
-                .paymentStatus(priceDifference.compareTo(BigDecimal.ZERO) > 0 ? "未支付" : "支付成功")
-                .orderStatus("处理中")
+                .totalAmount(needPayment ? priceDifference : BigDecimal.ZERO)
+                .paymentStatus(needPayment ? "未支付" : "支付成功")
+                .orderStatus(needPayment ? "处理中" : "已完成")
                 .createTime(LocalDateTime.now())
                 .updateTime(LocalDateTime.now())
                 .build();
@@ -326,97 +397,64 @@ public class TicketServiceImpl implements TicketService {
                 .passengerId(oldTicket.getPassengerId())
                 .seatTypeId(seatType.getId())
                 .ticketType(oldTicket.getTicketType())
-                .pricePaid(newSeatAvailability.getPrice())
-                .seatNumber("待分配")
-                .ticketStatus(priceDifference.compareTo(BigDecimal.ZERO) > 0 ? "待支付" : "已支付")
+                .pricePaid(newPrice)
+                .ticketStatus(needPayment ? "待支付" : "已支付")
                 .createTime(LocalDateTime.now())
                 .updateTime(LocalDateTime.now())
                 .build();
 
-        // 保存新订单和车票
-        orderMapper.insert(newOrder);
-        ticketMapper.insert(newTicket);
-
-        // 8. 处理差价支付
-        boolean paymentSuccessful = true;
-        if (priceDifference.compareTo(BigDecimal.ZERO) > 0) {
-            // 需要补差价
-            paymentSuccessful = paymentService.processPayment(newOrderId, priceDifference.doubleValue());
-        }
-
-        if (paymentSuccessful) {
-            // 9. 支付成功或无需支付: 更新状态，分配座位
-            // 更新原车票状态
-            oldTicket.setTicketStatus("已改签");
-            oldTicket.setUpdateTime(LocalDateTime.now());
-            ticketMapper.updateById(oldTicket);
-
-            // 释放原座位
-            SeatAvailabilityEntity oldSeatAvailability = getSeatAvailability(oldTicket.getScheduleId(), oldTicket.getSeatTypeId());
-            if (oldSeatAvailability != null) {
-                oldSeatAvailability.setAvailableCount(oldSeatAvailability.getAvailableCount() + 1);
-                seatAvailabilityMapper.updateById(oldSeatAvailability);
+        // 8. 预占新座位并保存新订单和车票；补差价时原车票在支付成功后转为已改签，否则同时完成改签
+        PaymentJobEntity paymentJob = needPayment ? PaymentJobEntity.builder()
+                .jobType("支付")
+                .orderId(newOrderId)
+                .ticketId(oldTicket.getId())
+                .userId(oldTicket.getUserId())
+                .amount(priceDifference)
+                .build() : null;
+        scheduleSequencer.execute(request.getNewScheduleId(),
+                new ChangeCommand(newOrder, newTicket, seatType, paymentJob, oldTicket));
+        eventPublisher.publishEvent(new SeatAvailabilityChangedEvent(request.getNewScheduleId()));
+        if (paymentJob == null) {
+            // 原车票已转为已改签，原座位在原车次上归还
+            try {
+                scheduleSequencer.execute(oldTicket.getScheduleId(), new ReleaseCommand(oldTicket));
+            } catch (RuntimeException e) {
+                log.error("改签后归还原座位失败: ticketId={}, scheduleId={}",
+                        oldTicket.getId(), oldTicket.getScheduleId(), e);
             }
-
-            // 锁定新座位
-            newSeatAvailability.setAvailableCount(newSeatAvailability.getAvailableCount() - 1);
-            seatAvailabilityMapper.updateById(newSeatAvailability);
-
-            // 分配新座位号
-            String seatNumber = assignSeat(newSchedule.getTrainNumber(), seatType.getName());
-            newTicket.setSeatNumber(seatNumber);
-            newTicket.setTicketStatus("已支付");
-            newTicket.setUpdateTime(LocalDateTime.now());
-            ticketMapper.updateById(newTicket);
-
-            // 更新新订单状态
-            newOrder.setPaymentStatus("支付成功");
-            newOrder.setOrderStatus("已完成");
-            newOrder.setUpdateTime(LocalDateTime.now());
-            orderMapper.updateById(newOrder);
-
-            // 获取乘车人信息
-            PassengerEntity passenger = passengerMapper.selectById(newTicket.getPassengerId());
-            
-            // 构建返回结果
-            TicketDTO newTicketDTO = EntityConverter.toTicketDTO(newTicket, newSchedule, seatType, passenger.getName());
-            return new ChangeTicketResponseDTO(oldTicket.getId(), newTicket.getId(), "改签成功", newTicketDTO);
-        } else {
-            // 10. 支付失败: 取消改签
-            newTicket.setTicketStatus("已取消");
-            newTicket.setUpdateTime(LocalDateTime.now());
-            ticketMapper.updateById(newTicket);
-
-            newOrder.setPaymentStatus("支付失败");
-            newOrder.setOrderStatus("已取消");
-            newOrder.setUpdateTime(LocalDateTime.now());
-            orderMapper.updateById(newOrder);
-
-            throw new RuntimeException("支付差价失败，改签已取消。");
+            eventPublisher.publishEvent(new SeatAvailabilityChangedEvent(oldTicket.getScheduleId()));
         }
+
+        // 9. 获取乘车人信息
+        PassengerEntity passenger = passengerMapper.selectById(newTicket.getPassengerId());
+
+        // 构建返回结果
+        TicketDTO newTicketDTO = EntityConverter.toTicketDTO(newTicket, newSchedule, seatType, passenger.getName());
+        return new ChangeTicketResponseDTO(oldTicket.getId(), newTicket.getId(),
+                needPayment ? "改签已提交，正在支付差价" : "改签成功", newTicketDTO);
     }
 
     /**
-     * 查询用户车票
+     * 查询用户车票，包含已归档的车票
      */
     @Override
     public List<TicketDTO> getUserTickets(String userId) {
         // 查询用户的所有车票
-        List<TicketEntity> tickets = ticketMapper.selectList(
+        List<TicketEntity> tickets = new ArrayList<>(ticketMapper.selectList(
                 new LambdaQueryWrapper<TicketEntity>()
                         .eq(TicketEntity::getUserId, userId)
                         .orderByDesc(TicketEntity::getCreateTime)
-        );
+        ));
+        List<TicketEntity> archived = archiveService.findUserTickets(userId);
+        if (!archived.isEmpty()) {
+            tickets.addAll(archived);
+            tickets.sort(Comparator.comparing(TicketEntity::getCreateTime, Comparator.nullsLast(Comparator.reverseOrder())));
+        }
 
         if (tickets.isEmpty()) {
             return Collections.emptyList();
         }
 
-        // 获取所有座位类型
-        List<SeatTypeEntity> seatTypes = seatTypeMapper.selectList(null);
-        Map<Integer, SeatTypeEntity> seatTypeMap = seatTypes.stream()
-                .collect(Collectors.toMap(SeatTypeEntity::getId, seatType -> seatType));
-
         // 获取所有相关的车次信息
         Set<String> scheduleIds = tickets.stream()
                 .map(TicketEntity::getScheduleId)
@@ -426,6 +464,7 @@ public class TicketServiceImpl implements TicketService {
         );
         Map<String, TrainScheduleEntity> scheduleMap = schedules.stream()
                 .collect(Collectors.toMap(TrainScheduleEntity::getId, schedule -> schedule));
+        archiveService.fillSchedules(scheduleMap, scheduleIds);
 
         // 获取所有相关的乘车人信息
         Set<String> passengerIds = tickets.stream()
@@ -441,7 +480,7 @@ public class TicketServiceImpl implements TicketService {
         return tickets.stream()
                 .map(ticket -> {
                     TrainScheduleEntity schedule = scheduleMap.get(ticket.getScheduleId());
-                    SeatTypeEntity seatType = seatTypeMap.get(ticket.getSeatTypeId());
+                    SeatTypeEntity seatType = seatTypeCache.getById(ticket.getSeatTypeId());
                     PassengerEntity passenger = passengerMap.get(ticket.getPassengerId());
                     if (schedule != null && seatType != null && passenger != null) {
                         return EntityConverter.toTicketDTO(ticket, schedule, seatType, passenger.getName());
@@ -453,35 +492,141 @@ public class TicketServiceImpl implements TicketService {
     }
 
     /**
-     * 根据座位类型名称获取座位类型实体
+     * 购票命令：预占余票和座位，写入订单和车票并提交支付任务
+     *
+     * database 库存模式下余票不在 prepare 中扣减，而是登记到批次，随批次事务一起扣减。
      */
-    private SeatTypeEntity getSeatTypeByName(String seatTypeName) {
-        return seatTypeMapper.selectOne(
-                new QueryWrapper<SeatTypeEntity>().eq("name", seatTypeName)
-        );
+    private class PurchaseCommand extends ScheduleSequencer.Command {
+        protected final OrderEntity order;
+        protected final List<TicketEntity> tickets;
+        protected final SeatTypeEntity seatType;
+        protected final PaymentJobEntity paymentJob;
+        private final List<TicketEntity> allocated = new ArrayList<>();
+        private boolean reserved;
+
+        private PurchaseCommand(OrderEntity order, List<TicketEntity> tickets, SeatTypeEntity seatType,
+                                PaymentJobEntity paymentJob) {
+            this.order = order;
+            this.tickets = tickets;
+            this.seatType = seatType;
+            this.paymentJob = paymentJob;
+        }
+
+        @Override
+        protected void prepare() {
+            TicketEntity first = tickets.get(0);
+            if (!seatInventoryService.reservesInTransaction()) {
+                if (!seatInventoryService.tryReserve(first.getScheduleId(), seatType.getId(), tickets.size())) {
+                    throw new RuntimeException("所选车次座位余票不足。");
+                }
+                reserved = true;
+            }
+            try {
+                for (TicketEntity ticket : tickets) {
+                    seatAllocationService.allocate(ticket, seatType);
+                    allocated.add(ticket);
+                }
+            } catch (RuntimeException e) {
+                undo();
+                throw e;
+            }
+        }
+
+        @Override
+        protected void write(ScheduleSequencer.Batch batch) {
+            if (seatInventoryService.reservesInTransaction()) {
+                batch.reserve(tickets.get(0).getScheduleId(), seatType.getId(), tickets.size());
+            } else {
+                seatInventoryService.confirm(tickets.get(0).getScheduleId(), seatType.getId(), tickets.size());
+            }
+            batch.addOrder(order);
+            batch.addTickets(tickets);
+            if (paymentJob != null) {
+                ticketHoldService.register(order.getId());
+                paymentGateway.submit(paymentJob);
+            }
+        }
+
+        @Override
+        protected void undo() {
+            for (TicketEntity ticket : allocated) {
+                seatAllocationService.release(ticket);
+            }
+            allocated.clear();
+            if (reserved) {
+                seatInventoryService.cancelReserve(tickets.get(0).getScheduleId(), seatType.getId(), tickets.size());
+                reserved = false;
+            }
+        }
     }
 
     /**
-     * 获取座位可用性
+     * 改签命令：在新车次预占座位；无需补差价时同时将原车票转为已改签，原座位由原车次上的 ReleaseCommand 归还
      */
-    private SeatAvailabilityEntity getSeatAvailability(String scheduleId, Integer seatTypeId) {
-        return seatAvailabilityMapper.selectOne(
-                new QueryWrapper<SeatAvailabilityEntity>()
-                        .eq("schedule_id", scheduleId)
-                        .eq("seat_type_id", seatTypeId)
-        );
+    private class ChangeCommand extends PurchaseCommand {
+        private final TicketEntity oldTicket;
+
+        private ChangeCommand(OrderEntity newOrder, TicketEntity newTicket, SeatTypeEntity seatType,
+                              PaymentJobEntity paymentJob, TicketEntity oldTicket) {
+            super(newOrder, Collections.singletonList(newTicket), seatType, paymentJob);
+            this.oldTicket = oldTicket;
+        }
+
+        @Override
+        protected void write(ScheduleSequencer.Batch batch) {
+            super.write(batch);
+            if (paymentJob == null) {
+                if (ticketMapper.updateStatusIfIn(oldTicket.getId(), List.of("已支付", "已出票"), "已改签") == 0) {
+                    throw new RuntimeException("当前车票状态不符合改签条件。");
+                }
+            }
+        }
+    }
+
+    /**
+     * 归还车票的余票和座位，在车票所属车次上执行
+     */
+    private class ReleaseCommand extends ScheduleSequencer.Command {
+        private final TicketEntity ticket;
+
+        private ReleaseCommand(TicketEntity ticket) {
+            this.ticket = ticket;
+        }
+
+        @Override
+        protected void write(ScheduleSequencer.Batch batch) {
+            seatInventoryService.release(ticket.getScheduleId(), ticket.getSeatTypeId(), 1);
+            seatAllocationService.release(ticket);
+        }
     }
 
     /**
-     * 模拟分配座位号
+     * 退票命令：更新车票和订单状态，提交退款任务，事务提交后归还余票和座位
      */
-    private String assignSeat(String trainNumber, String seatType) {
-        // 简化实现，随机生成座位号
-        Random random = new Random();
-        int carriageNumber = random.nextInt(16) + 1; // 1-16号车厢
-        char seatRow = (char) (random.nextInt(26) + 'A'); // A-Z排
-        int seatColumn = random.nextInt(5) + 1; // 1-5号座位
-        
-        return String.format("%02d车%d%c号", carriageNumber, seatColumn, seatRow);
+    private class RefundCommand extends ScheduleSequencer.Command {
+        private final TicketEntity ticket;
+        private final OrderEntity order;
+
+        private RefundCommand(TicketEntity ticket, OrderEntity order) {
+            this.ticket = ticket;
+            this.order = order;
+        }
+
+        @Override
+        protected void write(ScheduleSequencer.Batch batch) {
+            if (ticketMapper.updateStatusIfIn(ticket.getId(), List.of("已支付", "已出票"), "已退票") == 0) {
+                throw new RuntimeException("当前车票状态不符合退票条件。");
+            }
+            orderMapper.updateById(order);
+            paymentGateway.submit(PaymentJobEntity.builder()
+                    .jobType("退款")
+                    .orderId(ticket.getOrderId())
+                    .ticketId(ticket.getId())
+                    .userId(ticket.getUserId())
+                    .amount(ticket.getPricePaid())
+                    .build());
+            seatInventoryService.release(ticket.getScheduleId(), ticket.getSeatTypeId(), 1);
+            seatAllocationService.release(ticket);
+        }
     }
-}
\ No newline at end of file
+}
@@ -1,25 +1,33 @@
 package com.example.backend.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.example.backend.dto.ScheduleFilterDTO;
+import com.example.backend.dto.SchedulePageDTO;
 import com.example.backend.dto.TrainScheduleDTO;
+import com.example.backend.event.ScheduleChangedEvent;
 import com.example.backend.mapper.SeatAvailabilityMapper;
 import com.example.backend.mapper.SeatTypeMapper;
 import com.example.backend.mapper.TrainScheduleMapper;
 import com.example.backend.model.SeatAvailabilityEntity;
 import com.example.backend.model.SeatTypeEntity;
 import com.example.backend.model.TrainScheduleEntity;
+import com.example.backend.service.ScheduleCalendarService;
+import com.example.backend.service.ScheduleSearchService;
+import com.example.backend.service.SeatAllocationService;
+import com.example.backend.service.SeatInventoryService;
+import com.example.backend.service.SeatTypeCache;
+import com.example.backend.service.StationIndexService;
 import com.example.backend.service.TrainScheduleService;
+import com.example.backend.service.TrainTemplateService;
+import com.example.backend.service.TransferSearchService;
 import com.example.backend.util.EntityConverter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.util.StringUtils;
 
-import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 
@@ -38,43 +46,50 @@ public class TrainScheduleServiceImpl implements TrainScheduleService {
     @Autowired
     private SeatAvailabilityMapper seatAvailabilityMapper;
 
+    @Autowired
+    private SeatInventoryService seatInventoryService;
+
+    @Autowired
+    private SeatAllocationService seatAllocationService;
+
+    @Autowired
+    private ScheduleSearchService scheduleSearchService;
+
+    @Autowired
+    private ScheduleCalendarService scheduleCalendarService;
+
+    @Autowired
+    private SeatTypeCache seatTypeCache;
+
+    @Autowired
+    private TransferSearchService transferSearchService;
+
+    @Autowired
+    private StationIndexService stationIndexService;
+
+    @Autowired
+    private TrainTemplateService trainTemplateService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     /**
      * 查询列车时刻表
      */
     @Override
     public List<TrainScheduleDTO> querySchedules(String departureStation, String arrivalStation, LocalDate departureDate) {
-        // 构建查询条件
-        QueryWrapper<TrainScheduleEntity> queryWrapper = new QueryWrapper<>();
-        if (StringUtils.hasText(departureStation)) {
-            queryWrapper.eq("departure_station", departureStation);
-        }
-        if (StringUtils.hasText(arrivalStation)) {
-            queryWrapper.eq("arrival_station", arrivalStation);
-        }
-        if (departureDate != null) {
-            queryWrapper.ge("departure_time", departureDate.atStartOfDay());
-            queryWrapper.lt("departure_time", departureDate.plusDays(1).atStartOfDay());
-        }
-
-        // 查询车次
-        List<TrainScheduleEntity> schedules = trainScheduleMapper.selectList(queryWrapper);
-        if (schedules.isEmpty()) {
-            return Collections.emptyList();
-        }
-
-        // 获取所有座位类型
-        List<SeatTypeEntity> seatTypes = seatTypeMapper.selectList(null);
-
-        // 查询每个车次的座位可用性
-        List<TrainScheduleDTO> result = new ArrayList<>();
-        for (TrainScheduleEntity schedule : schedules) {
-            List<SeatAvailabilityEntity> availabilities = seatAvailabilityMapper.selectList(
-                    new QueryWrapper<SeatAvailabilityEntity>().eq("schedule_id", schedule.getId())
-            );
-            result.add(EntityConverter.toTrainScheduleDTO(schedule, availabilities, seatTypes));
-        }
+        trainTemplateService.ensureMaterialized(departureDate);
+        return scheduleSearchService.search(departureStation, arrivalStation, departureDate);
+    }
 
-        return result;
+    /**
+     * 分页查询列车时刻表
+     */
+    @Override
+    public SchedulePageDTO querySchedulePage(String departureStation, String arrivalStation, LocalDate departureDate,
+                                             ScheduleFilterDTO filter) {
+        trainTemplateService.ensureMaterialized(departureDate);
+        return scheduleSearchService.searchPage(departureStation, arrivalStation, departureDate, filter);
     }
 
     /**
@@ -82,17 +97,8 @@ public class TrainScheduleServiceImpl implements TrainScheduleService {
      */
     @Override
     public TrainScheduleDTO getScheduleById(String scheduleId) {
-        TrainScheduleEntity schedule = trainScheduleMapper.selectById(scheduleId);
-        if (schedule == null) {
-            return null;
-        }
-        
-        List<SeatTypeEntity> seatTypes = seatTypeMapper.selectList(null);
-        List<SeatAvailabilityEntity> availabilities = seatAvailabilityMapper.selectList(
-                new QueryWrapper<SeatAvailabilityEntity>().eq("schedule_id", scheduleId)
-        );
-        
-        return EntityConverter.toTrainScheduleDTO(schedule, availabilities, seatTypes);
+        trainTemplateService.ensureMaterialized(scheduleId);
+        return scheduleSearchService.getById(scheduleId);
     }
 
     /**
@@ -116,43 +122,14 @@ public class TrainScheduleServiceImpl implements TrainScheduleService {
         
         // 保存座位可用性
         for (SeatTypeEntity seatType : seatTypes) {
-            SeatAvailabilityEntity seatAvailability = new SeatAvailabilityEntity();
-            seatAvailability.setScheduleId(scheduleId);
-            seatAvailability.setSeatTypeId(seatType.getId());
-            
-            // 根据座位类型设置默认可用数量和价格
-            switch (seatType.getName()) {
-                case "商务座":
-                    seatAvailability.setAvailableCount(20);
-                    seatAvailability.setPrice(seatType.getBasePrice().multiply(new BigDecimal("1.5")));
-                    break;
-                case "一等座":
-                    seatAvailability.setAvailableCount(60);
-                    seatAvailability.setPrice(seatType.getBasePrice().multiply(new BigDecimal("1.2")));
-                    break;
-                case "二等座":
-                    seatAvailability.setAvailableCount(120);
-                    seatAvailability.setPrice(seatType.getBasePrice());
-                    break;
-                case "硬卧":
-                    seatAvailability.setAvailableCount(90);
-                    seatAvailability.setPrice(seatType.getBasePrice().multiply(new BigDecimal("0.8")));
-                    break;
-                case "硬座":
-                    seatAvailability.setAvailableCount(150);
-                    seatAvailability.setPrice(seatType.getBasePrice().multiply(new BigDecimal("0.6")));
-                    break;
-                default:
-                    seatAvailability.setAvailableCount(100);
-                    seatAvailability.setPrice(seatType.getBasePrice());
-            }
-            
-            seatAvailability.setCreateTime(now);
-            seatAvailability.setUpdateTime(now);
-            
-            seatAvailabilityMapper.insert(seatAvailability);
+            seatAvailabilityMapper.insert(EntityConverter.newSeatAvailability(scheduleId, seatType, now));
         }
-        
+
+        scheduleSearchService.invalidate();
+        scheduleCalendarService.invalidate();
+        transferSearchService.onScheduleChanged(scheduleId);
+        stationIndexService.refreshAfterCommit();
+        eventPublisher.publishEvent(new ScheduleChangedEvent(scheduleId));
         return scheduleId;
     }
 
@@ -172,6 +149,12 @@ public class TrainScheduleServiceImpl implements TrainScheduleService {
         
         // 更新时刻表
         trainScheduleMapper.updateById(schedule);
+        seatInventoryService.reload(schedule.getId());
+        scheduleSearchService.invalidate();
+        scheduleCalendarService.invalidate();
+        transferSearchService.onScheduleChanged(schedule.getId());
+        stationIndexService.refreshAfterCommit();
+        eventPublisher.publishEvent(new ScheduleChangedEvent(schedule.getId()));
         
         return true;
     }
@@ -193,17 +176,57 @@ public class TrainScheduleServiceImpl implements TrainScheduleService {
                 new QueryWrapper<SeatAvailabilityEntity>().eq("schedule_id", scheduleId)
         );
         
-        // 删除时刻表
+        // 删除时刻表，按模板生成的车次记录停开，避免之后再次生成
         trainScheduleMapper.deleteById(scheduleId);
+        trainTemplateService.recordDeletion(scheduleId);
+        
+        // 移除内存库存和座位图
+        seatInventoryService.evict(scheduleId);
+        seatAllocationService.evict(scheduleId);
+        scheduleSearchService.invalidate();
+        scheduleCalendarService.invalidate();
+        transferSearchService.onScheduleChanged(scheduleId);
+        stationIndexService.refreshAfterCommit();
+        eventPublisher.publishEvent(new ScheduleChangedEvent(scheduleId));
         
         return true;
     }
 
+    /**
+     * 重新加载车次的余票和票价，清空缓存的查询结果
+     */
+    @Override
+    public boolean reloadInventory(String scheduleId) {
+        if (trainScheduleMapper.selectById(scheduleId) == null) {
+            return false;
+        }
+        seatInventoryService.reload(scheduleId);
+        scheduleSearchService.invalidate();
+        scheduleCalendarService.invalidate();
+        eventPublisher.publishEvent(new ScheduleChangedEvent(scheduleId));
+        return true;
+    }
+
     /**
      * 获取所有座位类型
      */
     @Override
     public List<SeatTypeEntity> getAllSeatTypes() {
-        return seatTypeMapper.selectList(null);
+        return seatTypeCache.getAll();
+    }
+
+    /**
+     * 添加或修改座位类型，提交后刷新座位类型缓存
+     */
+    @Override
+    @Transactional
+    public Integer saveSeatType(SeatTypeEntity seatType) {
+        if (seatType.getId() == null) {
+            seatTypeMapper.insert(seatType);
+        } else if (seatTypeMapper.updateById(seatType) == 0) {
+            return null;
+        }
+        seatTypeCache.refreshAfterCommit();
+        return seatType.getId();
     }
 }
\ No newline at end of file
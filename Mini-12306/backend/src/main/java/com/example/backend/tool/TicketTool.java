@@ -1,6 +1,7 @@
 package com.example.backend.tool;
 
 import com.example.backend.dto.*;
+import com.example.backend.service.FlashSaleService;
 import com.example.backend.service.TicketService;
 import com.example.backend.service.ChatSessionService;
 import org.springframework.ai.tool.annotation.Tool;
@@ -19,6 +20,9 @@ public class TicketTool {
     @Autowired
     private TicketService ticketService;
 
+    @Autowired
+    private FlashSaleService flashSaleService;
+
     @Autowired
     private ChatSessionService chatSessionService;
 
@@ -70,13 +74,26 @@ public class TicketTool {
     @Tool(description = "购买车票，根据用户提供的乘车人信息和车次信息，向前端发送购票结果.(车次ID是scheduleId)")
     public ApiResponse<?> buyTicket(String sessionId, PurchaseRequestDTO purchaseRequest) {
         try {
-            OrderDTO orderDTO = ticketService.purchaseTicket(purchaseRequest);
+            // 与购票接口相同，热门车次进入排队
+            PurchaseResultDTO result = flashSaleService.purchase(purchaseRequest);
+            if (result.isQueued()) {
+                QueueTicketDTO queueTicket = result.getQueueTicket();
+                Map<String, Object> componentData = new HashMap<>();
+                componentData.put("type", "info");
+                componentData.put("title", "已进入排队");
+                componentData.put("message", "当前车次购票人数较多，已为您排队，前面还有"
+                        + queueTicket.getPosition() + "人，购票结果将稍后通知您。");
+                componentData.put("queueTicket", queueTicket);
+                chatSessionService.sendComponentToSession(sessionId, "notification", componentData);
+                return ApiResponse.success(queueTicket, "已进入排队");
+            }
+            OrderDTO orderDTO = result.getOrder();
             
-            // 发送购票成功通知组件到前端
+            // 发送订单已提交通知组件到前端，支付结果稍后推送
             Map<String, Object> componentData = new HashMap<>();
-            componentData.put("type", "success");
-            componentData.put("title", "购票成功");
-            componentData.put("message", "恭喜您，车票购买成功！请妥善保管您的车票信息。");
+            componentData.put("type", "info");
+            componentData.put("title", "订单已提交");
+            componentData.put("message", "订单已提交，正在支付，支付结果将稍后通知您。");
             
             // 从OrderDTO的tickets列表中提取信息构建订单详情
             if (orderDTO.getTickets() != null && !orderDTO.getTickets().isEmpty()) {
@@ -87,7 +104,7 @@ public class TicketTool {
             
             chatSessionService.sendComponentToSession(sessionId, "notification", componentData);
             
-            return ApiResponse.success(orderDTO, "购票成功");
+            return ApiResponse.success(orderDTO, orderDTO.getMessage());
         } catch (IllegalArgumentException e) {
             // 发送购票失败通知
             Map<String, Object> componentData = new HashMap<>();
@@ -7,10 +7,14 @@ import com.example.backend.dto.TrainScheduleDTO;
 import com.example.backend.model.*;
 import org.springframework.stereotype.Component;
 
+import java.math.BigDecimal;
 import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 
 /**
  * 实体类与DTO之间的转换工具类
@@ -55,6 +59,80 @@ public class EntityConverter {
                 .status(entity.getStatus())
                 .build();
     }
+
+    /**
+     * 将TrainScheduleEntity和SeatAvailability列表转换为TrainScheduleDTO，座位类型按ID直接查找
+     *
+     * 车次查询对每一行结果调用，避免逐行扫描座位类型列表和创建流；
+     * 输出的映射按余票行数预设容量，键使用座位类型快照中共享的名称字符串。
+     */
+    public static TrainScheduleDTO toTrainScheduleDTO(TrainScheduleEntity entity, List<SeatAvailabilityEntity> availabilities,
+                                                      Function<Integer, SeatTypeEntity> seatTypeLookup) {
+        int capacity = mapCapacity(availabilities.size());
+        Map<String, Integer> availabilityMap = new HashMap<>(capacity);
+        Map<String, Double> priceMap = new HashMap<>(capacity);
+        for (int i = 0, size = availabilities.size(); i < size; i++) {
+            SeatAvailabilityEntity availability = availabilities.get(i);
+            SeatTypeEntity seatType = seatTypeLookup.apply(availability.getSeatTypeId());
+            if (seatType != null) {
+                availabilityMap.put(seatType.getName(), availability.getAvailableCount());
+                priceMap.put(seatType.getName(), availability.getPrice().doubleValue());
+            }
+        }
+
+        long durationMinutes = ChronoUnit.MINUTES.between(entity.getDepartureTime(), entity.getArrivalTime());
+
+        return new TrainScheduleDTO(entity.getId(), entity.getTrainNumber(), entity.getDepartureStation(),
+                entity.getArrivalStation(), entity.getDepartureTime(), entity.getArrivalTime(), durationMinutes,
+                availabilityMap, priceMap, entity.getStatus());
+    }
+
+    /**
+     * 容纳 expectedSize 个元素而不扩容的 HashMap 初始容量
+     */
+    private static int mapCapacity(int expectedSize) {
+        return (int) Math.ceil(expectedSize / 0.75);
+    }
+
+    /**
+     * 新车次的座位余票行，按座位类型设置默认可用数量和价格
+     */
+    public static SeatAvailabilityEntity newSeatAvailability(String scheduleId, SeatTypeEntity seatType, LocalDateTime now) {
+        SeatAvailabilityEntity seatAvailability = new SeatAvailabilityEntity();
+        seatAvailability.setScheduleId(scheduleId);
+        seatAvailability.setSeatTypeId(seatType.getId());
+
+        switch (seatType.getName()) {
+            case "商务座":
+                seatAvailability.setAvailableCount(20);
+                seatAvailability.setPrice(seatType.getBasePrice().multiply(new BigDecimal("1.5")));
+                break;
+            case "一等座":
+                seatAvailability.setAvailableCount(60);
+                seatAvailability.setPrice(seatType.getBasePrice().multiply(new BigDecimal("1.2")));
+                break;
+            case "二等座":
+                seatAvailability.setAvailableCount(120);
+                seatAvailability.setPrice(seatType.getBasePrice());
+                break;
+            case "硬卧":
+                seatAvailability.setAvailableCount(90);
+                seatAvailability.setPrice(seatType.getBasePrice().multiply(new BigDecimal("0.8")));
+                break;
+            case "硬座":
+                seatAvailability.setAvailableCount(150);
+                seatAvailability.setPrice(seatType.getBasePrice().multiply(new BigDecimal("0.6")));
+                break;
+            default:
+                seatAvailability.setAvailableCount(100);
+                seatAvailability.setPrice(seatType.getBasePrice());
+        }
+
+        seatAvailability.setTotalCount(seatAvailability.getAvailableCount());
+        seatAvailability.setCreateTime(now);
+        seatAvailability.setUpdateTime(now);
+        return seatAvailability;
+    }
     
     /**
      * 将TrainScheduleEntity转换为TrainSchedule.ScheduleInfoDTO
@@ -78,7 +156,10 @@ public class EntityConverter {
                 .ticketId(ticket.getId())
                 .scheduleInfo(toScheduleInfoDTO(schedule))
                 .passengerName(passengerName)
-                .seatNumber(ticket.getSeatNumber())
+                .carriageNumber(ticket.getCarriageNumber())
+                .seatNumber(ticket.getCarriageNumber() != null
+                        ? ticket.getCarriageNumber() + "车" + ticket.getSeatNumber() + "号"
+                        : ticket.getSeatNumber())
                 .seatType(seatType.getName())
                 .pricePaid(ticket.getPricePaid().doubleValue())
                 .ticketStatus(ticket.getTicketStatus())
@@ -0,0 +1,84 @@
+package com.example.backend.util;
+
+import net.sourceforge.pinyin4j.PinyinHelper;
+import net.sourceforge.pinyin4j.format.HanyuPinyinCaseType;
+import net.sourceforge.pinyin4j.format.HanyuPinyinOutputFormat;
+import net.sourceforge.pinyin4j.format.HanyuPinyinToneType;
+import net.sourceforge.pinyin4j.format.HanyuPinyinVCharType;
+import net.sourceforge.pinyin4j.format.exception.BadHanyuPinyinOutputFormatCombination;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 汉字转拼音
+ */
+public final class PinyinUtils {
+
+    // 多音字组合的上限，避免长名称组合爆炸
+    private static final int MAX_READINGS = 16;
+
+    private static final HanyuPinyinOutputFormat FORMAT = new HanyuPinyinOutputFormat();
+
+    static {
+        FORMAT.setCaseType(HanyuPinyinCaseType.LOWERCASE);
+        FORMAT.setToneType(HanyuPinyinToneType.WITHOUT_TONE);
+        FORMAT.setVCharType(HanyuPinyinVCharType.WITH_V);
+    }
+
+    private PinyinUtils() {
+    }
+
+    /**
+     * 全部读音的全拼，如"重庆北" -> [chongqingbei, zhongqingbei]
+     */
+    public static List<String> fullPinyin(String text) {
+        return combine(text, false);
+    }
+
+    /**
+     * 全部读音的首字母，如"北京南" -> [bjn]
+     */
+    public static List<String> initials(String text) {
+        return combine(text, true);
+    }
+
+    private static List<String> combine(String text, boolean initialsOnly) {
+        List<String> results = new ArrayList<>();
+        results.add("");
+        for (int i = 0; i < text.length(); i++) {
+            Set<String> readings = readings(text.charAt(i), initialsOnly);
+            List<String> next = new ArrayList<>(results.size() * readings.size());
+            for (String prefix : results) {
+                for (String reading : readings) {
+                    if (next.size() < MAX_READINGS) {
+                        next.add(prefix + reading);
+                    }
+                }
+            }
+            results = next;
+        }
+        return new ArrayList<>(new LinkedHashSet<>(results));
+    }
+
+    private static Set<String> readings(char c, boolean initialsOnly) {
+        Set<String> readings = new LinkedHashSet<>();
+        try {
+            String[] pinyins = PinyinHelper.toHanyuPinyinStringArray(c, FORMAT);
+            if (pinyins != null) {
+                for (String pinyin : pinyins) {
+                    readings.add(initialsOnly ? pinyin.substring(0, 1) : pinyin);
+                }
+            }
+        } catch (BadHanyuPinyinOutputFormatCombination e) {
+            throw new IllegalStateException(e);
+        }
+        if (readings.isEmpty()) {
+            // 非汉字原样保留
+            readings.add(String.valueOf(Character.toLowerCase(c)));
+        }
+        return readings;
+    }
+}
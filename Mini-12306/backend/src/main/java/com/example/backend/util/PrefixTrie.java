@@ -0,0 +1,71 @@
+package com.example.backend.util;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 前缀树：按键的前缀查找值
+ *
+ * 构建完成后只读，可在多个线程间共享；同一个值可以挂在多个键下。
+ */
+public class PrefixTrie<V> {
+
+    private final Node<V> root = new Node<>();
+
+    public void put(String key, V value) {
+        Node<V> node = root;
+        for (int i = 0; i < key.length(); i++) {
+            node = node.children.computeIfAbsent(key.charAt(i), k -> new Node<>());
+        }
+        node.values.add(value);
+    }
+
+    /**
+     * 键恰好等于 key 的值
+     */
+    public Set<V> getExact(String key) {
+        Node<V> node = find(key);
+        return node != null ? node.values : Set.of();
+    }
+
+    /**
+     * 键以 prefix 开头的值，较短的键在前，最多返回 limit 个
+     */
+    public Set<V> getByPrefix(String prefix, int limit) {
+        Set<V> result = new LinkedHashSet<>();
+        Node<V> start = find(prefix);
+        if (start == null) {
+            return result;
+        }
+        // 广度优先，键越短越先返回
+        ArrayDeque<Node<V>> queue = new ArrayDeque<>();
+        queue.add(start);
+        while (!queue.isEmpty() && result.size() < limit) {
+            Node<V> node = queue.poll();
+            for (V value : node.values) {
+                result.add(value);
+                if (result.size() >= limit) {
+                    break;
+                }
+            }
+            queue.addAll(node.children.values());
+        }
+        return result;
+    }
+
+    private Node<V> find(String key) {
+        Node<V> node = root;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.children.get(key.charAt(i));
+        }
+        return node;
+    }
+
+    private static final class Node<V> {
+        private final Map<Character, Node<V>> children = new HashMap<>(4);
+        private final Set<V> values = new LinkedHashSet<>(2);
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.backend.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 座位位图
+ *
+ * 每节车厢一个位图，位为1表示空闲。分配时按64位字扫描并用 CAS 清除最低空闲位，
+ * 每节车厢记录空闲数和首个可能有空位的字下标，分配均摊 O(1)。
+ * 座位下标为 carriageIndex * seatsPerCarriage + seatIndex。
+ */
+public class SeatBitmap {
+
+    private final int seatsPerCarriage;
+    private final AtomicLongArray[] carriages;
+    private final AtomicInteger[] freeCounts;
+    // 每节车厢第一个可能存在空位的字下标
+    private final AtomicInteger[] wordHints;
+
+    public SeatBitmap(int carriageCount, int seatsPerCarriage) {
+        this.seatsPerCarriage = seatsPerCarriage;
+        this.carriages = new AtomicLongArray[carriageCount];
+        this.freeCounts = new AtomicInteger[carriageCount];
+        this.wordHints = new AtomicInteger[carriageCount];
+        int words = (seatsPerCarriage + 63) >>> 6;
+        for (int c = 0; c < carriageCount; c++) {
+            AtomicLongArray bits = new AtomicLongArray(words);
+            for (int w = 0; w < words; w++) {
+                int remaining = seatsPerCarriage - (w << 6);
+                bits.set(w, remaining >= 64 ? -1L : (1L << remaining) - 1);
+            }
+            carriages[c] = bits;
+            freeCounts[c] = new AtomicInteger(seatsPerCarriage);
+            wordHints[c] = new AtomicInteger(0);
+        }
+    }
+
+    public int getCarriageCount() {
+        return carriages.length;
+    }
+
+    public int getSeatsPerCarriage() {
+        return seatsPerCarriage;
+    }
+
+    /**
+     * 分配一个空闲座位
+     *
+     * @return 座位下标，无空位时返回-1
+     */
+    public int allocate() {
+        for (int c = 0; c < carriages.length; c++) {
+            if (freeCounts[c].get() <= 0) {
+                continue;
+            }
+            AtomicLongArray bits = carriages[c];
+            int words = bits.length();
+            int start = wordHints[c].get();
+            // 从提示位置开始扫描，回绕一圈保证并发释放的座位不会被漏掉
+            for (int i = 0; i < words; i++) {
+                int w = start + i < words ? start + i : start + i - words;
+                long word = bits.get(w);
+                while (word != 0) {
+                    long lowest = word & -word;
+                    if (bits.compareAndSet(w, word, word & ~lowest)) {
+                        freeCounts[c].decrementAndGet();
+                        wordHints[c].set(w);
+                        return c * seatsPerCarriage + (w << 6) + Long.numberOfTrailingZeros(lowest);
+                    }
+                    word = bits.get(w);
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 占用指定座位（加载已售座位时使用）
+     *
+     * @return 座位原本空闲返回true
+     */
+    public boolean occupy(int seat) {
+        int c = seat / seatsPerCarriage;
+        int offset = seat % seatsPerCarriage;
+        AtomicLongArray bits = carriages[c];
+        int w = offset >>> 6;
+        long mask = 1L << (offset & 63);
+        while (true) {
+            long word = bits.get(w);
+            if ((word & mask) == 0) {
+                return false;
+            }
+            if (bits.compareAndSet(w, word, word & ~mask)) {
+                freeCounts[c].decrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 释放指定座位
+     */
+    public void release(int seat) {
+        int c = seat / seatsPerCarriage;
+        int offset = seat % seatsPerCarriage;
+        AtomicLongArray bits = carriages[c];
+        int w = offset >>> 6;
+        long mask = 1L << (offset & 63);
+        while (true) {
+            long word = bits.get(w);
+            if ((word & mask) != 0) {
+                return;
+            }
+            if (bits.compareAndSet(w, word, word | mask)) {
+                freeCounts[c].incrementAndGet();
+                wordHints[c].accumulateAndGet(w, Math::min);
+                return;
+            }
+        }
+    }
+
+    /**
+     * 当前空闲座位总数
+     */
+    public int getFreeCount() {
+        int total = 0;
+        for (AtomicInteger count : freeCounts) {
+            total += count.get();
+        }
+        return total;
+    }
+}
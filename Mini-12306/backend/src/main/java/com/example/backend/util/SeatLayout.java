@@ -0,0 +1,81 @@
+package com.example.backend.util;
+
+/**
+ * 座位布局：不同座位类型每节车厢的排数和每排座位字母
+ *
+ * 车厢号格式为两位数字（如 "05"），座位号格式为两位排号加字母（如 "08F"）。
+ * 起始车厢由车次各座位类型的座位数决定，按枚举顺序依次排列，见 SeatAllocationService。
+ */
+public enum SeatLayout {
+    BUSINESS_CLASS("商务座", 8, "ACF"),
+    FIRST_CLASS("一等座", 15, "ACDF"),
+    SECOND_CLASS("二等座", 20, "ABCDF"),
+    DEFAULT("", 20, "ABCDF");
+
+    private final String seatTypeName;
+    private final int rowsPerCarriage;
+    private final String letters;
+
+    SeatLayout(String seatTypeName, int rowsPerCarriage, String letters) {
+        this.seatTypeName = seatTypeName;
+        this.rowsPerCarriage = rowsPerCarriage;
+        this.letters = letters;
+    }
+
+    public static SeatLayout forSeatType(String seatTypeName) {
+        for (SeatLayout layout : values()) {
+            if (layout.seatTypeName.equals(seatTypeName)) {
+                return layout;
+            }
+        }
+        return DEFAULT;
+    }
+
+    public int getSeatsPerCarriage() {
+        return rowsPerCarriage * letters.length();
+    }
+
+    /**
+     * 容纳指定座位数所需的车厢数
+     */
+    public int carriagesFor(int capacity) {
+        return Math.max(1, (capacity + getSeatsPerCarriage() - 1) / getSeatsPerCarriage());
+    }
+
+    /**
+     * 座位下标转换为车厢号
+     */
+    public String carriageNumber(int firstCarriage, int seat) {
+        return String.format("%02d", firstCarriage + seat / getSeatsPerCarriage());
+    }
+
+    /**
+     * 座位下标转换为座位号
+     */
+    public String seatNumber(int seat) {
+        int offset = seat % getSeatsPerCarriage();
+        return String.format("%02d%c", offset / letters.length() + 1, letters.charAt(offset % letters.length()));
+    }
+
+    /**
+     * 车厢号和座位号转换为座位下标
+     *
+     * @return 座位下标，格式不符或超出布局范围时返回-1
+     */
+    public int parse(int firstCarriage, String carriageNumber, String seatNumber) {
+        if (carriageNumber == null || seatNumber == null || seatNumber.length() < 2) {
+            return -1;
+        }
+        try {
+            int carriage = Integer.parseInt(carriageNumber) - firstCarriage;
+            int row = Integer.parseInt(seatNumber.substring(0, seatNumber.length() - 1)) - 1;
+            int letter = letters.indexOf(seatNumber.charAt(seatNumber.length() - 1));
+            if (carriage < 0 || row < 0 || row >= rowsPerCarriage || letter < 0) {
+                return -1;
+            }
+            return carriage * getSeatsPerCarriage() + row * letters.length() + letter;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
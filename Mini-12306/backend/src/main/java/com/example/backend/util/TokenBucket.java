@@ -0,0 +1,66 @@
+package com.example.backend.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * 令牌桶限流器
+ *
+ * 按固定速率补充令牌，最多累积 burst 个，每次放行消耗一个令牌。
+ */
+public class TokenBucket {
+
+    private final double capacity;
+    private final double permitsPerNano;
+    private final LongSupplier nanoClock;
+
+    private double tokens;
+    private long lastRefillNanos;
+
+    public TokenBucket(double permitsPerSecond, int burst) {
+        this(permitsPerSecond, burst, System::nanoTime);
+    }
+
+    public TokenBucket(double permitsPerSecond, int burst, LongSupplier nanoClock) {
+        this.capacity = Math.max(1, burst);
+        this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.nanoClock = nanoClock;
+        this.tokens = capacity;
+        this.lastRefillNanos = nanoClock.getAsLong();
+    }
+
+    /**
+     * 尝试获取一个令牌，不等待
+     */
+    public synchronized boolean tryAcquire() {
+        refill();
+        if (tokens >= 1) {
+            tokens -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 获取一个令牌，令牌不足时等待
+     */
+    public void acquire() throws InterruptedException {
+        while (!tryAcquire()) {
+            TimeUnit.NANOSECONDS.sleep(Math.max(nanosUntilAvailable(), TimeUnit.MILLISECONDS.toNanos(1)));
+        }
+    }
+
+    /**
+     * 距离下一个令牌可用的时间
+     */
+    public synchronized long nanosUntilAvailable() {
+        refill();
+        return tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / permitsPerNano);
+    }
+
+    private void refill() {
+        long now = nanoClock.getAsLong();
+        tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * permitsPerNano);
+        lastRefillNanos = now;
+    }
+}
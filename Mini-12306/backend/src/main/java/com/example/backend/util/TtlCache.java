@@ -0,0 +1,95 @@
+package com.example.backend.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * 有容量上限的过期缓存
+ *
+ * 按访问顺序淘汰最久未使用的条目，每个条目单独指定有效期，过期条目在读取时移除。
+ */
+public class TtlCache<K, V> {
+
+    private final int maxSize;
+    private final LongSupplier clock;
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    public TtlCache(int maxSize) {
+        this(maxSize, System::currentTimeMillis);
+    }
+
+    public TtlCache(int maxSize, LongSupplier clock) {
+        this.maxSize = maxSize;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > TtlCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * 获取未过期的值，不存在或已过期时返回null
+     */
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expireAtMillis <= clock.getAsLong()) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.value;
+    }
+
+    public synchronized void put(K key, V value, long ttlMillis) {
+        entries.put(key, new Entry<>(value, clock.getAsLong() + ttlMillis));
+    }
+
+    public synchronized void remove(K key) {
+        entries.remove(key);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * 移除键满足条件的条目
+     */
+    public synchronized void removeIf(Predicate<K> predicate) {
+        entries.keySet().removeIf(predicate);
+    }
+
+    /**
+     * 移除所有已过期的条目
+     */
+    public synchronized void purgeExpired() {
+        long now = clock.getAsLong();
+        Iterator<Entry<V>> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().expireAtMillis <= now) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long expireAtMillis;
+
+        private Entry(V value, long expireAtMillis) {
+            this.value = value;
+            this.expireAtMillis = expireAtMillis;
+        }
+    }
+}
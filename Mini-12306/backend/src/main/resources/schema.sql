@@ -52,6 +52,60 @@ CREATE TABLE IF NOT EXISTS `train_schedule` (
   KEY `idx_stations` (`departure_station`, `arrival_station`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='列车时刻表';
 
+-- 列车开行模板：车次每天按相同时刻开行，某天的车次在首次查询、购票或滚动生成时才写入 train_schedule，
+-- 车次ID为 车次号_yyyyMMdd
+CREATE TABLE IF NOT EXISTS `train_template` (
+  `train_number` varchar(20) NOT NULL COMMENT '车次号',
+  `departure_station` varchar(50) NOT NULL COMMENT '出发站',
+  `arrival_station` varchar(50) NOT NULL COMMENT '到达站',
+  `departure_time` time NOT NULL COMMENT '出发时刻',
+  `arrival_time` time NOT NULL COMMENT '到达时刻',
+  `arrival_days` int NOT NULL DEFAULT 0 COMMENT '到达日相对出发日的天数',
+  `seat_config` varchar(500) DEFAULT NULL COMMENT '座位类型名称 -> 座位数（JSON），为空时提供全部座位类型并使用默认座位数',
+  `start_date` date NOT NULL COMMENT '开行起始日期',
+  `end_date` date DEFAULT NULL COMMENT '开行截止日期，为空表示长期开行',
+  `run_days` char(7) NOT NULL DEFAULT '1111111' COMMENT '周一至周日是否开行，1为开行',
+  `status` varchar(20) NOT NULL DEFAULT '启用' COMMENT '状态：启用、停用',
+  `create_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  `update_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+  PRIMARY KEY (`train_number`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='列车开行模板';
+
+-- 模板车次停开记录：按模板生成的车次被删除后记录在此，滚动生成和按需生成时跳过
+CREATE TABLE IF NOT EXISTS `train_template_exception` (
+  `schedule_id` varchar(36) NOT NULL COMMENT '时刻表ID',
+  `train_number` varchar(20) NOT NULL COMMENT '车次号',
+  `run_date` date NOT NULL COMMENT '停开日期',
+  `create_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  PRIMARY KEY (`schedule_id`),
+  KEY `idx_run_date` (`run_date`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='模板车次停开记录';
+
+-- 车次查询读模型：由车次和余票变化事件增量维护，查询时按 (出发站, 到达站, 出发时间) 范围扫描
+CREATE TABLE IF NOT EXISTS `schedule_read_model` (
+  `schedule_id` varchar(36) NOT NULL COMMENT '时刻表ID',
+  `train_number` varchar(20) NOT NULL COMMENT '车次号',
+  `departure_station` varchar(50) NOT NULL COMMENT '出发站',
+  `arrival_station` varchar(50) NOT NULL COMMENT '到达站',
+  `departure_time` datetime NOT NULL COMMENT '出发时间',
+  `arrival_time` datetime NOT NULL COMMENT '到达时间',
+  `duration_minutes` bigint NOT NULL COMMENT '历时（分钟）',
+  `seat_availability` json NOT NULL COMMENT '各座位类型余票：座位类型名称 -> 余票数',
+  `base_price` json NOT NULL COMMENT '各座位类型票价：座位类型名称 -> 票价',
+  `status` varchar(20) NOT NULL COMMENT '状态',
+  `update_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '更新时间',
+  PRIMARY KEY (`schedule_id`),
+  KEY `idx_route_time` (`departure_station`, `arrival_station`, `departure_time`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='车次查询读模型';
+
+-- 车站所属城市表，未登记的车站按站名去掉方位后缀推断城市
+CREATE TABLE IF NOT EXISTS `station` (
+  `name` varchar(50) NOT NULL COMMENT '站名',
+  `city` varchar(50) NOT NULL COMMENT '所属城市',
+  PRIMARY KEY (`name`),
+  KEY `idx_city` (`city`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='车站所属城市表';
+
 -- 座位类型表
 CREATE TABLE IF NOT EXISTS `seat_type` (
   `id` int NOT NULL AUTO_INCREMENT COMMENT '座位类型ID',
@@ -68,6 +122,7 @@ CREATE TABLE IF NOT EXISTS `seat_availability` (
   `schedule_id` varchar(36) NOT NULL COMMENT '时刻表ID',
   `seat_type_id` int NOT NULL COMMENT '座位类型ID',
   `available_count` int NOT NULL COMMENT '可用座位数',
+  `total_count` int NOT NULL COMMENT '总座位数',
   `price` decimal(10,2) NOT NULL COMMENT '票价',
   `create_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
   `update_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
@@ -79,6 +134,17 @@ CREATE TABLE IF NOT EXISTS `seat_availability` (
   CONSTRAINT `fk_seat_availability_seat_type` FOREIGN KEY (`seat_type_id`) REFERENCES `seat_type` (`id`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='座位余票表';
 
+-- 余票租约表：lease 库存模式下各实例从座位余票表租用、尚未售出的额度
+CREATE TABLE IF NOT EXISTS `inventory_lease` (
+  `node_id` varchar(36) NOT NULL COMMENT '实例ID',
+  `schedule_id` varchar(36) NOT NULL COMMENT '时刻表ID',
+  `seat_type_id` int NOT NULL COMMENT '座位类型ID',
+  `quantity` int NOT NULL COMMENT '尚未售出的额度',
+  `expires_at` datetime(3) NOT NULL COMMENT '过期时间，实例定时续期，过期后额度由任一实例加回余票',
+  PRIMARY KEY (`node_id`, `schedule_id`, `seat_type_id`),
+  KEY `idx_expires_at` (`expires_at`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='余票租约表';
+
 -- 订单表
 CREATE TABLE IF NOT EXISTS `order` (
   `id` varchar(36) NOT NULL COMMENT '订单ID',
@@ -90,7 +156,7 @@ CREATE TABLE IF NOT EXISTS `order` (
   `create_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
   `update_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
   PRIMARY KEY (`id`),
-  KEY `idx_user_id` (`user_id`),
+  KEY `idx_user_create_time` (`user_id`, `create_time`, `id`),
   KEY `idx_create_time` (`create_time`),
   CONSTRAINT `fk_order_user` FOREIGN KEY (`user_id`) REFERENCES `user` (`id`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='订单表';
@@ -122,6 +188,88 @@ CREATE TABLE IF NOT EXISTS `ticket` (
   CONSTRAINT `fk_ticket_passenger` FOREIGN KEY (`passenger_id`) REFERENCES `passenger` (`id`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='车票表';
 
+-- 座位占用表：多个实例共享数据库时以主键保证同一座位只分配给一张车票
+CREATE TABLE IF NOT EXISTS `seat_claim` (
+  `schedule_id` varchar(36) NOT NULL COMMENT '时刻表ID',
+  `seat_type_id` int NOT NULL COMMENT '座位类型ID',
+  `carriage_number` varchar(10) NOT NULL COMMENT '车厢号',
+  `seat_number` varchar(20) NOT NULL COMMENT '座位号',
+  `ticket_id` varchar(36) NOT NULL COMMENT '车票ID',
+  `create_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  PRIMARY KEY (`schedule_id`, `seat_type_id`, `carriage_number`, `seat_number`),
+  KEY `idx_ticket_id` (`ticket_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='座位占用表';
+
+-- 支付任务表
+CREATE TABLE IF NOT EXISTS `payment_job` (
+  `id` varchar(36) NOT NULL COMMENT '任务ID',
+  `job_type` varchar(20) NOT NULL COMMENT '任务类型：支付、退款、退回',
+  `order_id` varchar(36) NOT NULL COMMENT '订单ID',
+  `ticket_id` varchar(36) DEFAULT NULL COMMENT '车票ID：退款的车票，改签支付时为原车票',
+  `user_id` varchar(36) NOT NULL COMMENT '用户ID',
+  `amount` decimal(10,2) NOT NULL COMMENT '金额',
+  `status` varchar(20) NOT NULL COMMENT '任务状态：待处理、处理中、渠道成功、渠道失败、成功、失败',
+  `attempts` int NOT NULL DEFAULT 0 COMMENT '执行次数',
+  `create_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  `update_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+  PRIMARY KEY (`id`),
+  KEY `idx_status_create_time` (`status`, `create_time`),
+  KEY `idx_order_id` (`order_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='支付任务表';
+
+-- 归档表：已发车超过保留天数的车次及其车票、订单由归档任务移入，按车次出发年月 (yyyyMM) 分区，
+-- 归档任务在写入新月份前从 p_max 拆出该月分区，整月数据可直接 DROP PARTITION 清理
+CREATE TABLE IF NOT EXISTS `train_schedule_archive` (
+  `id` varchar(36) NOT NULL COMMENT '时刻表ID',
+  `train_number` varchar(20) NOT NULL COMMENT '车次号',
+  `departure_station` varchar(50) NOT NULL COMMENT '出发站',
+  `arrival_station` varchar(50) NOT NULL COMMENT '到达站',
+  `departure_time` datetime NOT NULL COMMENT '出发时间',
+  `arrival_time` datetime NOT NULL COMMENT '到达时间',
+  `status` varchar(20) NOT NULL COMMENT '状态',
+  `create_time` datetime NOT NULL COMMENT '创建时间',
+  `update_time` datetime NOT NULL COMMENT '更新时间',
+  `archive_month` int NOT NULL COMMENT '归档分区：出发年月 yyyyMM',
+  PRIMARY KEY (`id`, `archive_month`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='列车时刻表归档'
+PARTITION BY RANGE (`archive_month`) (PARTITION p_max VALUES LESS THAN MAXVALUE);
+
+CREATE TABLE IF NOT EXISTS `order_archive` (
+  `id` varchar(36) NOT NULL COMMENT '订单ID',
+  `user_id` varchar(36) NOT NULL COMMENT '用户ID',
+  `order_type` varchar(20) NOT NULL COMMENT '订单类型',
+  `total_amount` decimal(10,2) NOT NULL COMMENT '总金额',
+  `payment_status` varchar(20) NOT NULL COMMENT '支付状态',
+  `order_status` varchar(20) NOT NULL COMMENT '订单状态',
+  `create_time` datetime NOT NULL COMMENT '创建时间',
+  `update_time` datetime NOT NULL COMMENT '更新时间',
+  `archive_month` int NOT NULL COMMENT '归档分区：车次出发年月 yyyyMM',
+  PRIMARY KEY (`id`, `archive_month`),
+  KEY `idx_user_create_time` (`user_id`, `create_time`, `id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='订单归档'
+PARTITION BY RANGE (`archive_month`) (PARTITION p_max VALUES LESS THAN MAXVALUE);
+
+CREATE TABLE IF NOT EXISTS `ticket_archive` (
+  `id` varchar(36) NOT NULL COMMENT '车票ID',
+  `user_id` varchar(36) NOT NULL COMMENT '用户ID',
+  `order_id` varchar(36) NOT NULL COMMENT '订单ID',
+  `schedule_id` varchar(36) NOT NULL COMMENT '时刻表ID',
+  `passenger_id` varchar(36) NOT NULL COMMENT '乘车人ID',
+  `seat_type_id` int NOT NULL COMMENT '座位类型ID',
+  `carriage_number` varchar(10) DEFAULT NULL COMMENT '车厢号',
+  `seat_number` varchar(20) DEFAULT NULL COMMENT '座位号',
+  `ticket_type` varchar(20) NOT NULL COMMENT '票种',
+  `price_paid` decimal(10,2) NOT NULL COMMENT '支付金额',
+  `ticket_status` varchar(20) NOT NULL COMMENT '车票状态',
+  `create_time` datetime NOT NULL COMMENT '创建时间',
+  `update_time` datetime NOT NULL COMMENT '更新时间',
+  `archive_month` int NOT NULL COMMENT '归档分区：车次出发年月 yyyyMM',
+  PRIMARY KEY (`id`, `archive_month`),
+  KEY `idx_user_id` (`user_id`),
+  KEY `idx_order_id` (`order_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='车票归档'
+PARTITION BY RANGE (`archive_month`) (PARTITION p_max VALUES LESS THAN MAXVALUE);
+
 -- 插入初始数据
 
 -- 座位类型数据
@@ -144,6 +292,17 @@ INSERT INTO `passenger` (`id`, `user_id`, `name`, `id_card`, `phone`, `is_defaul
 ('p004', 'u001', '张小明', '110101200001011234', '13800138004', 0),
 ('p005', 'u002', '李小红', '110101200002022345', '13800138005', 0);
 
+-- 车站所属城市数据
+INSERT INTO `station` (`name`, `city`) VALUES
+('北京', '北京'), ('北京南', '北京'), ('北京西', '北京'), ('北京北', '北京'), ('北京朝阳', '北京'), ('北京丰台', '北京'),
+('上海', '上海'), ('上海虹桥', '上海'), ('上海南', '上海'), ('上海西', '上海'),
+('武汉', '武汉'), ('汉口', '武汉'), ('武昌', '武汉'),
+('广州', '广州'), ('广州南', '广州'), ('广州东', '广州'), ('广州白云', '广州'),
+('杭州', '杭州'), ('杭州东', '杭州'), ('杭州西', '杭州'),
+('成都', '成都'), ('成都东', '成都'), ('成都西', '成都'), ('成都南', '成都'),
+('重庆', '重庆'), ('重庆北', '重庆'), ('重庆西', '重庆'),
+('西安', '西安'), ('西安北', '西安');
+
 -- 列车时刻表数据
 INSERT INTO `train_schedule` (`id`, `train_number`, `departure_station`, `arrival_station`, `departure_time`, `arrival_time`, `status`) VALUES
 ('G1234_20250520', 'G1234', '北京南', '上海虹桥', '2025-05-20 09:00:00', '2025-05-20 14:30:00', '正常'),
@@ -155,22 +314,22 @@ INSERT INTO `train_schedule` (`id`, `train_number`, `departure_station`, `arriva
 ('G1235_20250521', 'G1235', '上海虹桥', '北京南', '2025-05-21 09:00:00', '2025-05-21 14:30:00', '正常');
 
 -- 座位余票数据
-INSERT INTO `seat_availability` (`schedule_id`, `seat_type_id`, `available_count`, `price`) VALUES
-('G1234_20250520', 1, 10, 800.00),  -- 北京南-上海虹桥 一等座
-('G1234_20250520', 2, 50, 550.00),  -- 北京南-上海虹桥 二等座
-('G1001_20250520', 2, 25, 480.00),  -- 武汉-广州南 二等座
-('G1001_20250520', 3, 5, 1500.00),  -- 武汉-广州南 商务座
-('G7501_20250521', 1, 20, 117.50),  -- 上海虹桥-杭州东 一等座
-('G7501_20250521', 2, 100, 73.00),  -- 上海虹桥-杭州东 二等座
-('C6002_20250520', 1, 15, 246.00),  -- 成都东-重庆北 一等座
-('C6002_20250520', 2, 80, 154.00),  -- 成都东-重庆北 二等座
-('G87_20250521', 2, 60, 515.50),    -- 北京西-西安北 二等座
-('G87_20250521', 3, 8, 1627.50),    -- 北京西-西安北 商务座
-('G1235_20250520', 1, 15, 800.00),  -- 上海虹桥-北京南 一等座
-('G1235_20250520', 2, 45, 550.00),  -- 上海虹桥-北京南 二等座
-('G1235_20250521', 1, 8, 820.00),   -- 上海虹桥-北京南 一等座
-('G1235_20250521', 2, 35, 570.00),  -- 上海虹桥-北京南 二等座
-('G1235_20250521', 3, 3, 1600.00);  -- 上海虹桥-北京南 商务座
+INSERT INTO `seat_availability` (`schedule_id`, `seat_type_id`, `available_count`, `total_count`, `price`) VALUES
+('G1234_20250520', 1, 10, 10, 800.00),  -- 北京南-上海虹桥 一等座
+('G1234_20250520', 2, 50, 51, 550.00),  -- 北京南-上海虹桥 二等座
+('G1001_20250520', 2, 25, 25, 480.00),  -- 武汉-广州南 二等座
+('G1001_20250520', 3, 5, 5, 1500.00),  -- 武汉-广州南 商务座
+('G7501_20250521', 1, 20, 20, 117.50),  -- 上海虹桥-杭州东 一等座
+('G7501_20250521', 2, 100, 100, 73.00),  -- 上海虹桥-杭州东 二等座
+('C6002_20250520', 1, 15, 15, 246.00),  -- 成都东-重庆北 一等座
+('C6002_20250520', 2, 80, 80, 154.00),  -- 成都东-重庆北 二等座
+('G87_20250521', 2, 60, 60, 515.50),    -- 北京西-西安北 二等座
+('G87_20250521', 3, 8, 8, 1627.50),    -- 北京西-西安北 商务座
+('G1235_20250520', 1, 15, 16, 800.00),  -- 上海虹桥-北京南 一等座
+('G1235_20250520', 2, 45, 45, 550.00),  -- 上海虹桥-北京南 二等座
+('G1235_20250521', 1, 8, 8, 820.00),   -- 上海虹桥-北京南 一等座
+('G1235_20250521', 2, 35, 35, 570.00),  -- 上海虹桥-北京南 二等座
+('G1235_20250521', 3, 3, 3, 1600.00);  -- 上海虹桥-北京南 商务座
 
 -- 订单和车票示例数据
 INSERT INTO `order` (`id`, `user_id`, `order_type`, `total_amount`, `payment_status`, `order_status`, `create_time`) VALUES
@@ -179,6 +338,10 @@ INSERT INTO `order` (`id`, `user_id`, `order_type`, `total_amount`, `payment_sta
 ('o003', 'u001', '退票', 500.00, '支付成功', '已完成', '2025-05-17 09:15:00');
 
 INSERT INTO `ticket` (`id`, `user_id`, `order_id`, `schedule_id`, `passenger_id`, `seat_type_id`, `carriage_number`, `seat_number`, `ticket_type`, `price_paid`, `ticket_status`, `create_time`) VALUES
-('t001', 'u001', 'o001', 'G1234_20250520', 'p001', 2, '05', '05A', '成人票', 550.00, '已出票', '2025-05-15 10:30:00'),
-('t002', 'u002', 'o002', 'G1235_20250520', 'p002', 1, '03', '03F', '成人票', 800.00, '已出票', '2025-05-16 14:20:00'),
-('t003', 'u001', 'o003', 'G1001_20250520', 'p001', 2, '08', '08C', '成人票', 480.00, '已退票', '2025-05-17 09:15:00');
\ No newline at end of file
+('t001', 'u001', 'o001', 'G1234_20250520', 'p001', 2, '02', '05A', '成人票', 550.00, '已出票', '2025-05-15 10:30:00'),
+('t002', 'u002', 'o002', 'G1235_20250520', 'p002', 1, '01', '03F', '成人票', 800.00, '已出票', '2025-05-16 14:20:00'),
+('t003', 'u001', 'o003', 'G1001_20250520', 'p001', 2, '02', '08C', '成人票', 480.00, '已退票', '2025-05-17 09:15:00');
+
+INSERT INTO `seat_claim` (`schedule_id`, `seat_type_id`, `carriage_number`, `seat_number`, `ticket_id`) VALUES
+('G1234_20250520', 2, '02', '05A', 't001'),
+('G1235_20250520', 1, '01', '03F', 't002');
\ No newline at end of file
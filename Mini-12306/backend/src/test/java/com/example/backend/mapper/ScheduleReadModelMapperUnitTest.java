@@ -0,0 +1,104 @@
+package com.example.backend.mapper;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.MybatisSqlSessionFactoryBuilder;
+import com.example.backend.dto.TrainScheduleDTO;
+import com.example.backend.model.ScheduleReadModelEntity;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 在嵌入式数据库（MySQL 兼容模式）上执行读模型的写入和查询语句
+ */
+public class ScheduleReadModelMapperUnitTest {
+
+    private static final LocalDate DATE = LocalDate.of(2025, 5, 20);
+
+    private SqlSession sqlSession;
+    private ScheduleReadModelMapper mapper;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+        new JdbcTemplate(dataSource).execute("CREATE TABLE schedule_read_model (schedule_id VARCHAR(36) PRIMARY KEY, " +
+                "train_number VARCHAR(20), departure_station VARCHAR(50), arrival_station VARCHAR(50), " +
+                "departure_time DATETIME, arrival_time DATETIME, duration_minutes BIGINT, " +
+                "seat_availability VARCHAR(1000), base_price VARCHAR(1000), status VARCHAR(20), update_time DATETIME)");
+
+        MybatisConfiguration configuration = new MybatisConfiguration(
+                new Environment("test", new JdbcTransactionFactory(), dataSource));
+        configuration.setMapUnderscoreToCamelCase(true);
+        configuration.addMapper(ScheduleReadModelMapper.class);
+        sqlSession = new MybatisSqlSessionFactoryBuilder().build(configuration).openSession(true);
+        mapper = sqlSession.getMapper(ScheduleReadModelMapper.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        sqlSession.close();
+    }
+
+    // 一次查询直接得到 DTO，座位余票和票价从同一行读回，按出发时间排序
+    @Test
+    void testSearchReturnsDtoFromSingleRow() {
+        mapper.upsertBatch(List.of(
+                row("G2_20250520", "北京西", DATE.atTime(9, 0), Map.of("二等座", 0), Map.of("二等座", 530.0)),
+                row("G1_20250520", "北京南", DATE.atTime(8, 0),
+                        Map.of("一等座", 5, "二等座", 48), Map.of("一等座", 800.0, "二等座", 550.5)),
+                row("G3_20250521", "北京南", DATE.plusDays(1).atTime(8, 0), Map.of("二等座", 10), Map.of("二等座", 550.0))));
+
+        List<TrainScheduleDTO> schedules = mapper.search(List.of("北京南", "北京西"), List.of("上海虹桥"),
+                DATE.atStartOfDay(), DATE.plusDays(1).atStartOfDay());
+        assertEquals(List.of("G1_20250520", "G2_20250520"),
+                schedules.stream().map(TrainScheduleDTO::getScheduleId).toList());
+        TrainScheduleDTO first = schedules.get(0);
+        assertEquals("G1", first.getTrainNumber());
+        assertEquals(DATE.atTime(8, 0), first.getDepartureDateTime());
+        assertEquals(DATE.atTime(13, 0), first.getArrivalDateTime());
+        assertEquals(300L, first.getDurationMinutes());
+        assertEquals(Map.of("一等座", 5, "二等座", 48), first.getSeatAvailability());
+        assertEquals(Map.of("一等座", 800.0, "二等座", 550.5), first.getBasePrice());
+
+        // 车站和日期为空时不限制
+        assertEquals(3, mapper.search(Collections.emptyList(), Collections.emptyList(), null, null).size());
+    }
+
+    // 已存在的车次整行覆盖，座位类型减少时不保留旧值
+    @Test
+    void testUpsertReplacesSeats() {
+        mapper.upsertBatch(List.of(row("G1_20250520", "北京南", DATE.atTime(8, 0),
+                Map.of("一等座", 5, "二等座", 48), Map.of("一等座", 800.0, "二等座", 550.0))));
+        mapper.upsertBatch(List.of(row("G1_20250520", "北京南", DATE.atTime(8, 0),
+                Map.of("二等座", 47), Map.of("二等座", 550.0))));
+
+        TrainScheduleDTO schedule = mapper.search(List.of("北京南"), List.of("上海虹桥"), null, null).get(0);
+        assertEquals(Map.of("二等座", 47), schedule.getSeatAvailability());
+        assertEquals(Map.of("二等座", 550.0), schedule.getBasePrice());
+    }
+
+    private static ScheduleReadModelEntity row(String scheduleId, String departureStation, LocalDateTime departure,
+                                               Map<String, Integer> seatAvailability, Map<String, Double> basePrice) {
+        return ScheduleReadModelEntity.builder()
+                .scheduleId(scheduleId).trainNumber(scheduleId.substring(0, scheduleId.indexOf('_')))
+                .departureStation(departureStation).arrivalStation("上海虹桥")
+                .departureTime(departure).arrivalTime(departure.plusHours(5)).durationMinutes(300L)
+                .seatAvailability(seatAvailability).basePrice(basePrice).status("正常")
+                .build();
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.backend.mapper;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.MybatisSqlSessionFactoryBuilder;
+import com.example.backend.model.SeatAvailabilityDelta;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 在嵌入式数据库（MySQL 兼容模式）上执行余票的条件扣减和批量回写语句
+ */
+public class SeatAvailabilityMapperUnitTest {
+
+    private static final String SCHEDULE_ID = "G1234_20250520";
+
+    private JdbcTemplate jdbcTemplate;
+    private SqlSession sqlSession;
+    private SeatAvailabilityMapper mapper;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE seat_availability (id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                "schedule_id VARCHAR(36), seat_type_id INT, available_count INT, price DECIMAL(10,2), " +
+                "create_time DATETIME, update_time DATETIME)");
+        jdbcTemplate.update("INSERT INTO seat_availability (schedule_id, seat_type_id, available_count, price) VALUES " +
+                "(?, 1, 10, 100), (?, 2, 2, 200), (?, 3, 0, 300)", SCHEDULE_ID, SCHEDULE_ID, SCHEDULE_ID);
+
+        MybatisConfiguration configuration = new MybatisConfiguration(
+                new Environment("test", new JdbcTransactionFactory(), dataSource));
+        configuration.setMapUnderscoreToCamelCase(true);
+        configuration.addMapper(SeatAvailabilityMapper.class);
+        sqlSession = new MybatisSqlSessionFactoryBuilder().build(configuration).openSession(true);
+        mapper = sqlSession.getMapper(SeatAvailabilityMapper.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        sqlSession.close();
+    }
+
+    // 余票充足时扣减，不足时不更新
+    @Test
+    void testReserveSeatsOnlyWhenEnough() {
+        assertEquals(1, mapper.reserveSeats(SCHEDULE_ID, 2, 2));
+        assertEquals(0, mapper.reserveSeats(SCHEDULE_ID, 2, 1));
+        assertEquals(0, mapper.reserveSeats("G0000_20250520", 1, 1));
+
+        assertEquals(0, availableCount(2));
+        assertEquals(1, mapper.releaseSeats(SCHEDULE_ID, 2, 1));
+        assertEquals(1, availableCount(2));
+    }
+
+    // 批量扣减只更新余票充足的行，返回行数供调用方判断是否全部成功
+    @Test
+    void testReserveSeatsBatchSkipsInsufficientRows() {
+        assertEquals(2, mapper.reserveSeatsBatch(List.of(
+                new SeatAvailabilityDelta(SCHEDULE_ID, 1, 4),
+                new SeatAvailabilityDelta(SCHEDULE_ID, 2, 2))));
+        assertEquals(6, availableCount(1));
+        assertEquals(0, availableCount(2));
+
+        assertEquals(1, mapper.reserveSeatsBatch(List.of(
+                new SeatAvailabilityDelta(SCHEDULE_ID, 1, 1),
+                new SeatAvailabilityDelta(SCHEDULE_ID, 3, 1))));
+        assertEquals(5, availableCount(1));
+        assertEquals(0, availableCount(3));
+    }
+
+    // 一条语句回写多行的正负增量，其他行不变
+    @Test
+    void testApplyAvailabilityDeltas() {
+        assertEquals(2, mapper.applyAvailabilityDeltas(List.of(
+                new SeatAvailabilityDelta(SCHEDULE_ID, 1, -3),
+                new SeatAvailabilityDelta(SCHEDULE_ID, 3, 5))));
+
+        assertEquals(7, availableCount(1));
+        assertEquals(2, availableCount(2));
+        assertEquals(5, availableCount(3));
+    }
+
+    private int availableCount(int seatTypeId) {
+        return jdbcTemplate.queryForObject("SELECT available_count FROM seat_availability " +
+                "WHERE schedule_id = ? AND seat_type_id = ?", Integer.class, SCHEDULE_ID, seatTypeId);
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.backend.mapper;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.MybatisSqlSessionFactoryBuilder;
+import com.example.backend.model.ScheduleCalendarRow;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 在嵌入式数据库（MySQL 兼容模式）上执行余票日历的聚合语句
+ */
+public class TrainScheduleMapperUnitTest {
+
+    private SqlSession sqlSession;
+    private TrainScheduleMapper mapper;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE train_schedule (id VARCHAR(36) PRIMARY KEY, train_number VARCHAR(20), " +
+                "departure_station VARCHAR(50), arrival_station VARCHAR(50), departure_time DATETIME, " +
+                "arrival_time DATETIME, status VARCHAR(20), create_time DATETIME, update_time DATETIME)");
+        jdbcTemplate.execute("CREATE TABLE seat_availability (id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                "schedule_id VARCHAR(36), seat_type_id INT, available_count INT, price DECIMAL(10,2), " +
+                "create_time DATETIME, update_time DATETIME)");
+        // 同一天三趟车：G1 只有一等座，G2 只有二等座，G3 两种都有
+        jdbcTemplate.update("INSERT INTO train_schedule (id, train_number, departure_station, arrival_station, " +
+                "departure_time) VALUES ('G1_20250520', 'G1', '北京南', '上海虹桥', '2025-05-20 08:00:00'), " +
+                "('G2_20250520', 'G2', '北京南', '上海虹桥', '2025-05-20 09:00:00'), " +
+                "('G3_20250520', 'G3', '北京南', '上海虹桥', '2025-05-20 10:00:00'), " +
+                "('G1_20250521', 'G1', '北京南', '上海虹桥', '2025-05-21 08:00:00')");
+        jdbcTemplate.update("INSERT INTO seat_availability (schedule_id, seat_type_id, available_count, price) VALUES " +
+                "('G1_20250520', 1, 5, 800), ('G2_20250520', 2, 0, 550), ('G3_20250520', 1, 0, 820), " +
+                "('G3_20250520', 2, 7, 530), ('G1_20250521', 1, 3, 800)");
+
+        MybatisConfiguration configuration = new MybatisConfiguration(
+                new Environment("test", new JdbcTransactionFactory(), dataSource));
+        configuration.setMapUnderscoreToCamelCase(true);
+        configuration.addMapper(TrainScheduleMapper.class);
+        sqlSession = new MybatisSqlSessionFactoryBuilder().build(configuration).openSession(true);
+        mapper = sqlSession.getMapper(TrainScheduleMapper.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        sqlSession.close();
+    }
+
+    // 按座位类型聚合的行之外，每天一条汇总行给出当天不同车次的总数
+    @Test
+    void testCalendarReturnsDailyTrainCount() {
+        List<ScheduleCalendarRow> rows = mapper.selectCalendar(List.of("北京南"), List.of("上海虹桥"),
+                LocalDate.of(2025, 5, 1).atStartOfDay(), LocalDate.of(2025, 6, 1).atStartOfDay());
+
+        assertEquals(2, row(rows, LocalDate.of(2025, 5, 20), 1).getTrainCount());
+        assertEquals(2, row(rows, LocalDate.of(2025, 5, 20), 2).getTrainCount());
+        assertEquals(7, row(rows, LocalDate.of(2025, 5, 20), 2).getAvailableCount());
+        assertEquals(3, row(rows, LocalDate.of(2025, 5, 20), null).getTrainCount());
+        assertEquals(1, row(rows, LocalDate.of(2025, 5, 21), null).getTrainCount());
+        assertEquals(5, rows.size());
+    }
+
+    private static ScheduleCalendarRow row(List<ScheduleCalendarRow> rows, LocalDate date, Integer seatTypeId) {
+        return rows.stream()
+                .filter(row -> row.getDepartureDate().equals(date) && Objects.equals(row.getSeatTypeId(), seatTypeId))
+                .findFirst()
+                .orElseThrow();
+    }
+}
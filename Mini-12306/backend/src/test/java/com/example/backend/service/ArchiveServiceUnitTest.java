@@ -0,0 +1,94 @@
+package com.example.backend.service;
+
+import com.example.backend.mapper.ArchiveMapper;
+import com.example.backend.model.TrainScheduleEntity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class ArchiveServiceUnitTest {
+
+    private ArchiveMapper archiveMapper;
+    private SeatInventoryService seatInventoryService;
+    private TransferSearchService transferSearchService;
+    private ArchiveService archiveService;
+
+    @BeforeEach
+    void setUp() {
+        archiveMapper = mock(ArchiveMapper.class);
+        seatInventoryService = mock(SeatInventoryService.class);
+        transferSearchService = mock(TransferSearchService.class);
+
+        archiveService = new ArchiveService();
+        ReflectionTestUtils.setField(archiveService, "archiveMapper", archiveMapper);
+        ReflectionTestUtils.setField(archiveService, "transactionTemplate",
+                new TransactionTemplate(mock(PlatformTransactionManager.class)));
+        ReflectionTestUtils.setField(archiveService, "seatInventoryService", seatInventoryService);
+        ReflectionTestUtils.setField(archiveService, "seatAllocationService", mock(SeatAllocationService.class));
+        ReflectionTestUtils.setField(archiveService, "scheduleSearchService", mock(ScheduleSearchService.class));
+        ReflectionTestUtils.setField(archiveService, "scheduleCalendarService", mock(ScheduleCalendarService.class));
+        ReflectionTestUtils.setField(archiveService, "transferSearchService", transferSearchService);
+        ReflectionTestUtils.setField(archiveService, "stationIndexService", mock(StationIndexService.class));
+        ReflectionTestUtils.setField(archiveService, "scheduleReadModelService", mock(ScheduleReadModelService.class));
+        ReflectionTestUtils.setField(archiveService, "enabled", true);
+        ReflectionTestUtils.setField(archiveService, "retainDays", 30);
+        ReflectionTestUtils.setField(archiveService, "batchSize", 2);
+    }
+
+    // 分批归档，先写归档表再按外键顺序删除，新月份先建分区
+    @Test
+    void testArchiveInBatches() {
+        when(archiveMapper.selectArchivableScheduleIds(any(), eq(2)))
+                .thenReturn(List.of("G1_20250430", "G1_20250501"))
+                .thenReturn(List.of("G1_20250502"));
+        when(archiveMapper.selectMonths(any())).thenReturn(List.of(202505, 202504)).thenReturn(List.of(202505));
+        when(archiveMapper.selectPartitionNames(anyString())).thenReturn(List.of("p202504", "p_max"));
+        when(archiveMapper.selectOrderIds(any())).thenReturn(List.of("O1"));
+
+        assertEquals(3, archiveService.archive());
+
+        // 每张归档表只为 202505 建一次分区
+        verify(archiveMapper, times(3)).addPartition(anyString(), eq(202505), eq(202506));
+        verify(archiveMapper, never()).addPartition(anyString(), eq(202504), anyInt());
+
+        InOrder inOrder = inOrder(archiveMapper);
+        inOrder.verify(archiveMapper).archiveSchedules(List.of("G1_20250430", "G1_20250501"));
+        inOrder.verify(archiveMapper).archiveTickets(List.of("G1_20250430", "G1_20250501"));
+        inOrder.verify(archiveMapper).archiveOrders(List.of("O1"));
+        inOrder.verify(archiveMapper).deleteTickets(List.of("G1_20250430", "G1_20250501"));
+        inOrder.verify(archiveMapper).deleteOrders(List.of("O1"));
+        inOrder.verify(archiveMapper).deleteSeatAvailability(List.of("G1_20250430", "G1_20250501"));
+        inOrder.verify(archiveMapper).deleteSchedules(List.of("G1_20250430", "G1_20250501"));
+
+        verify(seatInventoryService).evict("G1_20250502");
+        verify(transferSearchService).onSchedulesRemoved(List.of("G1_20250502"));
+    }
+
+    // 在线表中缺少的车次从归档表补齐
+    @Test
+    void testFillSchedulesFromArchive() {
+        when(archiveMapper.selectSchedulesByIds(List.of("G1_20250401")))
+                .thenReturn(List.of(TrainScheduleEntity.builder().id("G1_20250401").build()));
+        Map<String, TrainScheduleEntity> scheduleMap = new HashMap<>();
+        scheduleMap.put("G1_20250601", TrainScheduleEntity.builder().id("G1_20250601").build());
+
+        archiveService.fillSchedules(scheduleMap, List.of("G1_20250601", "G1_20250401"));
+
+        assertEquals(2, scheduleMap.size());
+        assertTrue(scheduleMap.containsKey("G1_20250401"));
+    }
+}
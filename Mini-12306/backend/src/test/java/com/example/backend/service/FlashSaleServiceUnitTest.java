@@ -0,0 +1,133 @@
+package com.example.backend.service;
+
+import com.example.backend.dto.BatchPurchaseRequestDTO;
+import com.example.backend.dto.OrderDTO;
+import com.example.backend.dto.PurchaseRequestDTO;
+import com.example.backend.dto.PurchaseResultDTO;
+import com.example.backend.model.SeatTypeEntity;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class FlashSaleServiceUnitTest {
+
+    private static final String SCHEDULE_ID = "G1234_20250520";
+
+    private TicketService ticketService;
+    private FlashSaleService flashSaleService;
+    private final CountDownLatch purchaseDone = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        ticketService = mock(TicketService.class);
+        SeatInventoryService seatInventoryService = mock(SeatInventoryService.class);
+        when(seatInventoryService.isOffered(SCHEDULE_ID, 2)).thenReturn(true);
+        when(seatInventoryService.getAvailableCount(SCHEDULE_ID, 2)).thenReturn(2);
+        SeatTypeCache seatTypeCache = mock(SeatTypeCache.class);
+        when(seatTypeCache.getByName("二等座")).thenReturn(SeatTypeEntity.builder().id(2).name("二等座").build());
+
+        flashSaleService = new FlashSaleService();
+        ReflectionTestUtils.setField(flashSaleService, "ticketService", ticketService);
+        ReflectionTestUtils.setField(flashSaleService, "seatInventoryService", seatInventoryService);
+        ReflectionTestUtils.setField(flashSaleService, "seatTypeCache", seatTypeCache);
+        ReflectionTestUtils.setField(flashSaleService, "notificationService", mock(NotificationService.class));
+        ReflectionTestUtils.setField(flashSaleService, "trainTemplateService", mock(TrainTemplateService.class));
+        ReflectionTestUtils.setField(flashSaleService, "initialHotSchedules", SCHEDULE_ID);
+        ReflectionTestUtils.setField(flashSaleService, "permitsPerSecond", 1000.0);
+        ReflectionTestUtils.setField(flashSaleService, "burst", 10);
+        ReflectionTestUtils.setField(flashSaleService, "workers", 2);
+        ReflectionTestUtils.setField(flashSaleService, "resultTtlSeconds", 600L);
+        flashSaleService.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        flashSaleService.stop();
+    }
+
+    // 请求交给工作线程后不再占用排队座位数，后续请求按购票后的余票判断
+    @Test
+    void testQueuedSeatsReleasedOnHandoff() throws InterruptedException {
+        CountDownLatch purchaseStarted = new CountDownLatch(1);
+        when(ticketService.purchaseTickets(any())).thenAnswer(invocation -> {
+            purchaseStarted.countDown();
+            purchaseDone.await();
+            return OrderDTO.builder().orderId("O1").message("订单已提交，正在支付").build();
+        });
+
+        flashSaleService.enqueue(request("P1", "P2"));
+        purchaseStarted.await();
+
+        // 第一个请求仍在执行购票，排队座位数已扣除
+        assertNotNull(flashSaleService.enqueue(request("P3")));
+        purchaseDone.countDown();
+    }
+
+    // 热门车次的单人购票进入排队，由工作线程按批量购票执行，不直接调用单人购票
+    @Test
+    void testHotSchedulePurchaseIsQueued() {
+        when(ticketService.purchaseTickets(any())).thenReturn(OrderDTO.builder().orderId("O1").build());
+
+        PurchaseResultDTO result = flashSaleService.purchase(singleRequest(SCHEDULE_ID));
+        assertTrue(result.isQueued());
+        assertNull(result.getOrder());
+        verify(ticketService, timeout(5000)).purchaseTickets(argThat(request ->
+                request.getPassengerIds().equals(List.of("P1")) && "二等座".equals(request.getSeatType())));
+        verify(ticketService, never()).purchaseTicket(any());
+    }
+
+    // 非热门车次直接购票，返回订单
+    @Test
+    void testNormalSchedulePurchasedDirectly() {
+        OrderDTO order = OrderDTO.builder().orderId("O1").build();
+        when(ticketService.purchaseTicket(any())).thenReturn(order);
+
+        PurchaseResultDTO result = flashSaleService.purchase(singleRequest("G1235_20250520"));
+        assertFalse(result.isQueued());
+        assertSame(order, result.getOrder());
+        verify(ticketService, never()).purchaseTickets(any());
+    }
+
+    // 取消热门标记且队列已排空时移除该车次的队列
+    @Test
+    void testEmptyQueueRemovedAfterUnmarkHot() {
+        when(ticketService.purchaseTickets(any())).thenReturn(OrderDTO.builder().orderId("O1").build());
+        flashSaleService.enqueue(request("P1"));
+        Map<?, ?> queues = (Map<?, ?>) ReflectionTestUtils.getField(flashSaleService, "queues");
+        verify(ticketService, timeout(5000)).purchaseTickets(any());
+
+        flashSaleService.pushPositions();
+        assertTrue(queues.containsKey(SCHEDULE_ID), "热门车次的队列保留");
+
+        flashSaleService.unmarkHot(SCHEDULE_ID);
+        flashSaleService.pushPositions();
+        assertFalse(queues.containsKey(SCHEDULE_ID));
+    }
+
+    private static PurchaseRequestDTO singleRequest(String scheduleId) {
+        PurchaseRequestDTO request = new PurchaseRequestDTO();
+        request.setUserId("U1");
+        request.setScheduleId(scheduleId);
+        request.setPassengerId("P1");
+        request.setSeatType("二等座");
+        return request;
+    }
+
+    private static BatchPurchaseRequestDTO request(String... passengerIds) {
+        BatchPurchaseRequestDTO request = new BatchPurchaseRequestDTO();
+        request.setUserId("U1");
+        request.setScheduleId(SCHEDULE_ID);
+        request.setPassengerIds(List.of(passengerIds));
+        request.setSeatType("二等座");
+        return request;
+    }
+}
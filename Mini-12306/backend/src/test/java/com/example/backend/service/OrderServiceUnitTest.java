@@ -0,0 +1,105 @@
+package com.example.backend.service;
+
+import com.example.backend.dto.OrderDTO;
+import com.example.backend.dto.OrderPageDTO;
+import com.example.backend.mapper.OrderMapper;
+import com.example.backend.mapper.PassengerMapper;
+import com.example.backend.mapper.TicketMapper;
+import com.example.backend.mapper.TrainScheduleMapper;
+import com.example.backend.model.OrderEntity;
+import com.example.backend.service.impl.OrderServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+public class OrderServiceUnitTest {
+
+    private static final LocalDateTime T = LocalDateTime.of(2025, 6, 1, 12, 0);
+
+    private OrderMapper orderMapper;
+    private TicketMapper ticketMapper;
+    private ArchiveService archiveService;
+    private OrderServiceImpl orderService;
+
+    @BeforeEach
+    void setUp() {
+        orderMapper = mock(OrderMapper.class);
+        ticketMapper = mock(TicketMapper.class);
+        archiveService = mock(ArchiveService.class);
+
+        orderService = new OrderServiceImpl();
+        ReflectionTestUtils.setField(orderService, "orderMapper", orderMapper);
+        ReflectionTestUtils.setField(orderService, "ticketMapper", ticketMapper);
+        ReflectionTestUtils.setField(orderService, "trainScheduleMapper", mock(TrainScheduleMapper.class));
+        ReflectionTestUtils.setField(orderService, "passengerMapper", mock(PassengerMapper.class));
+        ReflectionTestUtils.setField(orderService, "seatTypeCache", mock(SeatTypeCache.class));
+        ReflectionTestUtils.setField(orderService, "archiveService", archiveService);
+        ReflectionTestUtils.setField(orderService, "queryWorkers", 2);
+        orderService.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        orderService.stop();
+    }
+
+    // 在线订单和归档订单按下单时间合并分页，游标从上一页最后一个订单继续
+    @Test
+    void testUserOrderPageMergesArchive() {
+        when(orderMapper.selectUserOrderPage(eq("u1"), isNull(), isNull(), eq(3)))
+                .thenReturn(List.of(order("o3", T.plusHours(3)), order("o1", T.plusHours(1))));
+        when(archiveService.findUserOrderPage(eq("u1"), isNull(), isNull(), eq(3)))
+                .thenReturn(List.of(order("a2", T.plusHours(2)), order("a0", T)));
+
+        OrderPageDTO first = orderService.getUserOrderPage("u1", null, 2);
+
+        assertEquals(List.of("o3", "a2"), ids(first.getItems()));
+        assertNotNull(first.getNextCursor());
+        // 车票只查询当前页的订单，多取的一条不参与
+        verify(archiveService).findTicketsByOrderIds(List.of("o3", "a2"));
+
+        when(orderMapper.selectUserOrderPage(eq("u1"), eq(T.plusHours(2)), eq("a2"), anyInt()))
+                .thenReturn(List.of(order("o1", T.plusHours(1))));
+        when(archiveService.findUserOrderPage(eq("u1"), eq(T.plusHours(2)), eq("a2"), anyInt()))
+                .thenReturn(List.of(order("a0", T)));
+
+        OrderPageDTO second = orderService.getUserOrderPage("u1", first.getNextCursor(), 2);
+
+        assertEquals(List.of("o1", "a0"), ids(second.getItems()));
+        assertNull(second.getNextCursor());
+    }
+
+    @Test
+    void testUserOrderPageRejectsInvalidCursor() {
+        assertThrows(IllegalArgumentException.class, () -> orderService.getUserOrderPage("u1", "bm90LWEtY3Vyc29y", 2));
+        verify(orderMapper, never()).selectUserOrderPage(any(), any(), any(), anyInt());
+    }
+
+    private static OrderEntity order(String id, LocalDateTime createTime) {
+        return OrderEntity.builder()
+                .id(id)
+                .userId("u1")
+                .orderType("购票")
+                .totalAmount(BigDecimal.TEN)
+                .orderStatus("已完成")
+                .createTime(createTime)
+                .build();
+    }
+
+    private static List<String> ids(List<OrderDTO> orders) {
+        return orders.stream().map(OrderDTO::getOrderId).collect(Collectors.toList());
+    }
+}
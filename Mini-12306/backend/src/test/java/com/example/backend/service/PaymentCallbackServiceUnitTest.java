@@ -0,0 +1,80 @@
+package com.example.backend.service;
+
+import com.example.backend.mapper.PaymentJobMapper;
+import com.example.backend.model.PaymentJobEntity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class PaymentCallbackServiceUnitTest {
+
+    private TicketHoldService ticketHoldService;
+    private PaymentJobMapper paymentJobMapper;
+    private NotificationService notificationService;
+    private PaymentCallbackService paymentCallbackService;
+
+    @BeforeEach
+    void setUp() {
+        ticketHoldService = mock(TicketHoldService.class);
+        paymentJobMapper = mock(PaymentJobMapper.class);
+        notificationService = mock(NotificationService.class);
+        paymentCallbackService = new PaymentCallbackService();
+        ReflectionTestUtils.setField(paymentCallbackService, "ticketHoldService", ticketHoldService);
+        ReflectionTestUtils.setField(paymentCallbackService, "paymentJobMapper", paymentJobMapper);
+        ReflectionTestUtils.setField(paymentCallbackService, "notificationService", notificationService);
+    }
+
+    // 支付成功：确认占座并通知用户
+    @Test
+    void testPaymentSuccessConfirmsHold() {
+        when(ticketHoldService.confirm("O1", null)).thenReturn(true);
+
+        paymentCallbackService.onCompleted(paymentJob(), true);
+
+        verify(notificationService).notifyUser(eq("U1"), eq("success"), eq("支付成功"), any(), eq("O1"));
+        verify(paymentJobMapper, never()).insert(any(PaymentJobEntity.class));
+    }
+
+    // 支付失败：释放占座
+    @Test
+    void testPaymentFailureCancelsHold() {
+        paymentCallbackService.onCompleted(paymentJob(), false);
+
+        verify(ticketHoldService).cancel("O1");
+        verify(ticketHoldService, never()).confirm(any(), any());
+        verify(notificationService).notifyUser(eq("U1"), eq("error"), eq("支付失败"), any(), eq("O1"));
+    }
+
+    // 支付完成时占座已失效：写入退回任务，任务ID由支付任务ID派生
+    @Test
+    void testExpiredHoldQueuesRefundBack() {
+        when(ticketHoldService.confirm("O1", null)).thenReturn(false);
+
+        paymentCallbackService.onCompleted(paymentJob(), true);
+
+        ArgumentCaptor<PaymentJobEntity> captor = ArgumentCaptor.forClass(PaymentJobEntity.class);
+        verify(paymentJobMapper).insert(captor.capture());
+        assertEquals("RJ1", captor.getValue().getId());
+        assertEquals("退回", captor.getValue().getJobType());
+        assertEquals("待处理", captor.getValue().getStatus());
+    }
+
+    private static PaymentJobEntity paymentJob() {
+        return PaymentJobEntity.builder()
+                .id("J1")
+                .jobType("支付")
+                .orderId("O1")
+                .userId("U1")
+                .amount(new BigDecimal("100.00"))
+                .status("渠道成功")
+                .attempts(1)
+                .build();
+    }
+}
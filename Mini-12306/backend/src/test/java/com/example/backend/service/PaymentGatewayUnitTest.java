@@ -0,0 +1,123 @@
+package com.example.backend.service;
+
+import com.example.backend.mapper.PaymentJobMapper;
+import com.example.backend.model.PaymentJobEntity;
+import com.example.backend.service.impl.PaymentGatewayImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class PaymentGatewayUnitTest {
+
+    private PaymentJobMapper paymentJobMapper;
+    private PaymentService paymentService;
+    private PaymentCallbackService paymentCallbackService;
+    private PaymentGatewayImpl paymentGateway;
+
+    @BeforeEach
+    void setUp() {
+        paymentJobMapper = mock(PaymentJobMapper.class);
+        paymentService = mock(PaymentService.class);
+        paymentCallbackService = mock(PaymentCallbackService.class);
+        when(paymentJobMapper.claim(any())).thenReturn(1);
+        when(paymentJobMapper.claimCallback(any(), anyInt())).thenReturn(1);
+        when(paymentJobMapper.recordChannelResult(any(), any())).thenReturn(1);
+
+        paymentGateway = new PaymentGatewayImpl();
+        ReflectionTestUtils.setField(paymentGateway, "paymentJobMapper", paymentJobMapper);
+        ReflectionTestUtils.setField(paymentGateway, "paymentService", paymentService);
+        ReflectionTestUtils.setField(paymentGateway, "paymentCallbackService", paymentCallbackService);
+        ReflectionTestUtils.setField(paymentGateway, "workers", 1);
+        ReflectionTestUtils.setField(paymentGateway, "queueCapacity", 10);
+        ReflectionTestUtils.setField(paymentGateway, "dispatchBatchSize", 200);
+        paymentGateway.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        paymentGateway.stop();
+    }
+
+    // 支付成功：领取任务、保存渠道结果后执行回调，再记录任务结果
+    @Test
+    void testPaymentSuccessRecordsChannelResultBeforeCallback() throws Exception {
+        when(paymentService.processPayment("O1", 100.0)).thenReturn(true);
+
+        assertTrue(paymentGateway.submit(paymentJob()).get(5, TimeUnit.SECONDS));
+
+        var inOrder = inOrder(paymentJobMapper, paymentService, paymentCallbackService);
+        inOrder.verify(paymentJobMapper).claim(any());
+        inOrder.verify(paymentService).processPayment("O1", 100.0);
+        inOrder.verify(paymentJobMapper).recordChannelResult(any(), eq("渠道成功"));
+        inOrder.verify(paymentCallbackService).onCompleted(any(), eq(true));
+        inOrder.verify(paymentJobMapper).finish(any(), eq("成功"));
+    }
+
+    // 支付渠道失败：回调收到失败结果
+    @Test
+    void testPaymentFailureRunsFailureCallback() throws Exception {
+        when(paymentService.processPayment("O1", 100.0)).thenThrow(new RuntimeException("渠道超时"));
+
+        assertFalse(paymentGateway.submit(paymentJob()).get(5, TimeUnit.SECONDS));
+
+        verify(paymentJobMapper).recordChannelResult(any(), eq("渠道失败"));
+        verify(paymentCallbackService).onCompleted(any(), eq(false));
+        verify(paymentJobMapper).finish(any(), eq("失败"));
+    }
+
+    // 回调失败后任务不结束，重新派发时只重新执行回调，不再调用支付渠道
+    @Test
+    void testRedispatchRunsOnlyCallback() throws Exception {
+        when(paymentService.processPayment("O1", 100.0)).thenReturn(true);
+        doThrow(new RuntimeException("数据库不可用")).doNothing()
+                .when(paymentCallbackService).onCompleted(any(), anyBoolean());
+
+        CompletableFuture<Boolean> future = paymentGateway.submit(paymentJob());
+        assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        verify(paymentJobMapper, never()).finish(any(), any());
+
+        PaymentJobEntity stored = paymentJob();
+        stored.setId("J1");
+        stored.setStatus("渠道成功");
+        stored.setAttempts(1);
+        when(paymentJobMapper.selectPending(200)).thenReturn(List.of(stored));
+        paymentGateway.dispatchPending();
+
+        verify(paymentJobMapper, timeout(5000)).finish("J1", "成功");
+        verify(paymentJobMapper).claimCallback("J1", 1);
+        verify(paymentCallbackService, times(2)).onCompleted(any(), eq(true));
+        verify(paymentService, times(1)).processPayment(any(), anyDouble());
+    }
+
+    // 任务已被其他节点领取时不调用支付渠道
+    @Test
+    void testClaimedJobIsSkipped() {
+        when(paymentJobMapper.claim(any())).thenReturn(0);
+
+        CompletableFuture<Boolean> future = paymentGateway.submit(paymentJob());
+
+        assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        verify(paymentService, never()).processPayment(any(), anyDouble());
+        verify(paymentCallbackService, never()).onCompleted(any(), anyBoolean());
+    }
+
+    private static PaymentJobEntity paymentJob() {
+        return PaymentJobEntity.builder()
+                .jobType("支付")
+                .orderId("O1")
+                .userId("U1")
+                .amount(new BigDecimal("100.00"))
+                .build();
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.backend.service;
+
+import com.example.backend.dto.ScheduleCalendarDayDTO;
+import com.example.backend.mapper.TrainScheduleMapper;
+import com.example.backend.model.ScheduleCalendarRow;
+import com.example.backend.model.SeatTypeEntity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class ScheduleCalendarServiceUnitTest {
+
+    private TrainScheduleMapper trainScheduleMapper;
+    private ScheduleCalendarService scheduleCalendarService;
+
+    @BeforeEach
+    void setUp() {
+        trainScheduleMapper = mock(TrainScheduleMapper.class);
+        SeatTypeCache seatTypeCache = mock(SeatTypeCache.class);
+        when(seatTypeCache.getById(1)).thenReturn(SeatTypeEntity.builder().id(1).name("一等座").build());
+        when(seatTypeCache.getById(2)).thenReturn(SeatTypeEntity.builder().id(2).name("二等座").build());
+        StationIndexService stationIndexService = mock(StationIndexService.class);
+        when(stationIndexService.expand(anyString())).thenAnswer(invocation -> List.of(invocation.<String>getArgument(0)));
+
+        when(trainScheduleMapper.selectCalendar(anyCollection(), anyCollection(), any(), any())).thenReturn(List.of(
+                row(LocalDate.of(2025, 5, 20), 1, 2, 0, "800.00"),
+                row(LocalDate.of(2025, 5, 20), 2, 2, 35, "550.00"),
+                row(LocalDate.of(2025, 5, 20), null, 3, 35, "550.00"),
+                row(LocalDate.of(2025, 6, 1), 2, 1, 10, "500.00"),
+                row(LocalDate.of(2025, 6, 1), null, 1, 10, "500.00")));
+
+        scheduleCalendarService = new ScheduleCalendarService();
+        ReflectionTestUtils.setField(scheduleCalendarService, "trainScheduleMapper", trainScheduleMapper);
+        ReflectionTestUtils.setField(scheduleCalendarService, "seatTypeCache", seatTypeCache);
+        ReflectionTestUtils.setField(scheduleCalendarService, "stationIndexService", stationIndexService);
+        ReflectionTestUtils.setField(scheduleCalendarService, "maxDays", 62);
+        ReflectionTestUtils.setField(scheduleCalendarService, "cacheMaxSize", 100);
+        ReflectionTestUtils.setField(scheduleCalendarService, "cacheTtlSeconds", 60L);
+        scheduleCalendarService.init();
+    }
+
+    // 跨月查询合并为一次查询，每天一条，没有车次的日期也返回
+    @Test
+    void testCalendarAcrossMonthsUsesSingleQuery() {
+        List<ScheduleCalendarDayDTO> days = scheduleCalendarService.getCalendar("北京南", "上海虹桥",
+                LocalDate.of(2025, 5, 20), LocalDate.of(2025, 6, 2));
+
+        assertEquals(14, days.size());
+        ScheduleCalendarDayDTO first = days.get(0);
+        // 车次数取当天汇总行，不是各座位类型车次数的最大值
+        assertEquals(3, first.getTrainCount());
+        assertEquals(2, first.getSeatAvailable().size());
+        assertEquals(550.0, first.getMinPrice());
+        assertFalse(first.getSeatAvailable().get("一等座"));
+        assertTrue(first.getSeatAvailable().get("二等座"));
+        assertEquals(0, days.get(1).getTrainCount());
+        assertNull(days.get(1).getMinPrice());
+        assertEquals(500.0, days.get(12).getMinPrice());
+        verify(trainScheduleMapper, times(1)).selectCalendar(anyCollection(), anyCollection(),
+                eq(LocalDate.of(2025, 5, 1).atStartOfDay()), eq(LocalDate.of(2025, 7, 1).atStartOfDay()));
+    }
+
+    // 同一站对和月份命中缓存，车次变化后重新查询
+    @Test
+    void testCalendarCachedPerMonth() {
+        scheduleCalendarService.getCalendar("北京南", "上海虹桥", LocalDate.of(2025, 5, 1), LocalDate.of(2025, 5, 31));
+        scheduleCalendarService.getCalendar("北京南", "上海虹桥", LocalDate.of(2025, 5, 10), LocalDate.of(2025, 5, 20));
+        verify(trainScheduleMapper, times(1)).selectCalendar(anyCollection(), anyCollection(), any(), any());
+
+        scheduleCalendarService.invalidate();
+        scheduleCalendarService.getCalendar("北京南", "上海虹桥", LocalDate.of(2025, 5, 10), LocalDate.of(2025, 5, 20));
+        verify(trainScheduleMapper, times(2)).selectCalendar(anyCollection(), anyCollection(), any(), any());
+    }
+
+    @Test
+    void testInvalidRange() {
+        assertThrows(IllegalArgumentException.class, () -> scheduleCalendarService.getCalendar("北京南", "上海虹桥",
+                LocalDate.of(2025, 5, 20), LocalDate.of(2025, 5, 19)));
+        assertThrows(IllegalArgumentException.class, () -> scheduleCalendarService.getCalendar("北京南", "上海虹桥",
+                LocalDate.of(2025, 5, 1), LocalDate.of(2025, 8, 1)));
+        assertThrows(IllegalArgumentException.class, () -> scheduleCalendarService.getCalendar("北京南", null,
+                LocalDate.of(2025, 5, 1), LocalDate.of(2025, 5, 2)));
+    }
+
+    private static ScheduleCalendarRow row(LocalDate date, Integer seatTypeId, int trainCount, int available, String price) {
+        return new ScheduleCalendarRow(date, seatTypeId, trainCount, available, new BigDecimal(price));
+    }
+}
@@ -0,0 +1,216 @@
+package com.example.backend.service;
+
+import com.example.backend.dto.ScheduleImportJobDTO;
+import com.example.backend.dto.ScheduleImportRowDTO;
+import com.example.backend.mapper.SeatAvailabilityMapper;
+import com.example.backend.mapper.TrainScheduleMapper;
+import com.example.backend.model.SeatAvailabilityEntity;
+import com.example.backend.model.SeatTypeEntity;
+import com.example.backend.model.TrainScheduleEntity;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+public class ScheduleImportServiceUnitTest {
+
+    private TrainScheduleMapper trainScheduleMapper;
+    private SeatAvailabilityMapper seatAvailabilityMapper;
+    private TransferSearchService transferSearchService;
+    private ScheduleImportService scheduleImportService;
+
+    @BeforeEach
+    void setUp() {
+        trainScheduleMapper = mock(TrainScheduleMapper.class);
+        seatAvailabilityMapper = mock(SeatAvailabilityMapper.class);
+        transferSearchService = mock(TransferSearchService.class);
+        SeatTypeCache seatTypeCache = mock(SeatTypeCache.class);
+        SeatTypeEntity firstClass = SeatTypeEntity.builder().id(1).name("一等座").basePrice(new BigDecimal("500")).build();
+        SeatTypeEntity secondClass = SeatTypeEntity.builder().id(2).name("二等座").basePrice(new BigDecimal("300")).build();
+        when(seatTypeCache.getAll()).thenReturn(List.of(firstClass, secondClass));
+        when(seatTypeCache.getByName("一等座")).thenReturn(firstClass);
+        when(seatTypeCache.getByName("二等座")).thenReturn(secondClass);
+
+        scheduleImportService = new ScheduleImportService();
+        ReflectionTestUtils.setField(scheduleImportService, "trainScheduleMapper", trainScheduleMapper);
+        ReflectionTestUtils.setField(scheduleImportService, "seatAvailabilityMapper", seatAvailabilityMapper);
+        ReflectionTestUtils.setField(scheduleImportService, "seatTypeCache", seatTypeCache);
+        ReflectionTestUtils.setField(scheduleImportService, "transactionTemplate",
+                new TransactionTemplate(mock(PlatformTransactionManager.class)));
+        ReflectionTestUtils.setField(scheduleImportService, "scheduleSearchService", mock(ScheduleSearchService.class));
+        ReflectionTestUtils.setField(scheduleImportService, "scheduleCalendarService", mock(ScheduleCalendarService.class));
+        ReflectionTestUtils.setField(scheduleImportService, "transferSearchService", transferSearchService);
+        ReflectionTestUtils.setField(scheduleImportService, "stationIndexService", mock(StationIndexService.class));
+        ReflectionTestUtils.setField(scheduleImportService, "scheduleReadModelService", mock(ScheduleReadModelService.class));
+        ReflectionTestUtils.setField(scheduleImportService, "workers", 2);
+        ReflectionTestUtils.setField(scheduleImportService, "chunkSize", 4);
+        ReflectionTestUtils.setField(scheduleImportService, "maxDays", 120L);
+        ReflectionTestUtils.setField(scheduleImportService, "maxSchedules", 1000L);
+        ReflectionTestUtils.setField(scheduleImportService, "resultTtlSeconds", 3600L);
+        scheduleImportService.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduleImportService.stop();
+    }
+
+    // 按天展开后分块写入，每块一条车次 INSERT，夜车按次日到达
+    @Test
+    @SuppressWarnings("unchecked")
+    void testImportExpandsDaysIntoChunks() throws Exception {
+        List<ScheduleImportRowDTO> rows = List.of(
+                row("G1", LocalTime.of(8, 0), LocalTime.of(12, 30), 7),
+                row("Z2", LocalTime.of(21, 0), LocalTime.of(7, 0), 3));
+
+        ScheduleImportJobDTO job = await(scheduleImportService.submit(rows).getJobId());
+
+        assertEquals("已完成", job.getStatus());
+        assertEquals(10, job.getTotalSchedules());
+        assertEquals(10, job.getImportedSchedules());
+        assertEquals(20L, job.getSeatRows());
+        ArgumentCaptor<List<TrainScheduleEntity>> captor = ArgumentCaptor.forClass(List.class);
+        verify(trainScheduleMapper, times(3)).insertBatch(captor.capture());
+        List<TrainScheduleEntity> written = captor.getAllValues().stream()
+                .flatMap(List::stream).collect(Collectors.toList());
+        assertEquals(10, written.size());
+        TrainScheduleEntity overnight = written.stream()
+                .filter(s -> s.getTrainNumber().equals("Z2")).findFirst().orElseThrow();
+        assertEquals(overnight.getDepartureTime().toLocalDate().plusDays(1), overnight.getArrivalTime().toLocalDate());
+        assertTrue(written.stream().anyMatch(s -> s.getId().equals("Z2_20250601")));
+        verify(transferSearchService).rebuild();
+    }
+
+    // 车次ID与开行模板相同，已存在的车次跳过，重复导入不生成重复车次
+    @Test
+    @SuppressWarnings("unchecked")
+    void testReimportSkipsExistingSchedules() throws Exception {
+        when(trainScheduleMapper.selectList(any())).thenAnswer(invocation -> List.of(
+                TrainScheduleEntity.builder().id("G1_20250601").build(),
+                TrainScheduleEntity.builder().id("G1_20250602").build()));
+
+        ScheduleImportJobDTO job = await(scheduleImportService.submit(
+                List.of(row("G1", LocalTime.of(8, 0), LocalTime.of(12, 30), 3))).getJobId());
+
+        assertEquals("已完成", job.getStatus());
+        assertEquals(1, job.getImportedSchedules());
+        assertEquals(2, job.getSkippedSchedules());
+        ArgumentCaptor<List<TrainScheduleEntity>> captor = ArgumentCaptor.forClass(List.class);
+        verify(trainScheduleMapper).insertBatch(captor.capture());
+        assertEquals(List.of("G1_20250603"),
+                captor.getValue().stream().map(TrainScheduleEntity::getId).collect(Collectors.toList()));
+    }
+
+    // 按座位配置生成余票行
+    @Test
+    @SuppressWarnings("unchecked")
+    void testSeatConfigLimitsSeatTypes() throws Exception {
+        ScheduleImportRowDTO row = row("G1", LocalTime.of(8, 0), LocalTime.of(12, 30), 1);
+        row.setSeatConfig(Map.of("二等座", 600));
+
+        ScheduleImportJobDTO job = await(scheduleImportService.submit(List.of(row)).getJobId());
+
+        assertEquals(1L, job.getSeatRows());
+        ArgumentCaptor<List<SeatAvailabilityEntity>> captor = ArgumentCaptor.forClass(List.class);
+        verify(seatAvailabilityMapper).insertBatch(captor.capture());
+        assertEquals(2, captor.getValue().get(0).getSeatTypeId());
+        assertEquals(600, captor.getValue().get(0).getAvailableCount());
+    }
+
+    // 同一车次开行日期重叠的行整批拒绝
+    @Test
+    void testOverlappingRowsRejected() {
+        ScheduleImportRowDTO later = row("G1", LocalTime.of(14, 0), LocalTime.of(18, 30), 5);
+        later.setStartDate(LocalDate.of(2025, 6, 3));
+        later.setEndDate(LocalDate.of(2025, 6, 7));
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> scheduleImportService.submit(
+                List.of(row("G1", LocalTime.of(8, 0), LocalTime.of(12, 30), 3), later)));
+        assertTrue(e.getMessage().startsWith("第2行与第1行"));
+    }
+
+    // 一块写入失败只影响该块
+    @Test
+    void testFailedChunkDoesNotStopImport() throws Exception {
+        when(trainScheduleMapper.insertBatch(anyList()))
+                .thenThrow(new RuntimeException("Duplicate entry"))
+                .thenReturn(4);
+
+        ScheduleImportJobDTO job = await(scheduleImportService.submit(
+                List.of(row("G1", LocalTime.of(8, 0), LocalTime.of(12, 30), 8))).getJobId());
+
+        assertEquals("部分失败", job.getStatus());
+        assertEquals(4, job.getImportedSchedules());
+        assertEquals(4, job.getFailedSchedules());
+        assertEquals("Duplicate entry", job.getMessage());
+    }
+
+    // 无效行整批拒绝，不写入
+    @Test
+    void testInvalidRowRejected() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> scheduleImportService.submit(
+                List.of(row("G1", LocalTime.of(8, 0), LocalTime.of(12, 30), 1),
+                        row("G2", LocalTime.of(8, 0), LocalTime.of(12, 30), 200))));
+        assertTrue(e.getMessage().startsWith("第2行"));
+        verifyNoInteractions(trainScheduleMapper);
+    }
+
+    @Test
+    void testParseCsv() throws Exception {
+        String csv = "\uFEFF车次,出发站,到达站,出发时刻,到达时刻,开始日期,结束日期,到达天数\n"
+                + "G1,北京南,上海虹桥,08:00,12:30,2025-06-01,2025-08-29\n"
+                + "\n"
+                + "Z2,北京,上海,21:00,07:00,2025-06-01,2025-06-30,1\n"
+                + "G3,北京南,上海虹桥,09:00,13:30,2025-06-01,2025-06-30,,一等座:50;二等座:500\n";
+        List<ScheduleImportRowDTO> rows = scheduleImportService.parseCsv(new BufferedReader(new StringReader(csv)));
+
+        assertEquals(3, rows.size());
+        assertEquals("北京南", rows.get(0).getDepartureStation());
+        assertNull(rows.get(0).getArrivalDays());
+        assertEquals(LocalDate.of(2025, 8, 29), rows.get(0).getEndDate());
+        assertEquals(1, rows.get(1).getArrivalDays());
+        assertNull(rows.get(1).getSeatConfig());
+        assertNull(rows.get(2).getArrivalDays());
+        assertEquals(Map.of("一等座", 50, "二等座", 500), rows.get(2).getSeatConfig());
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> scheduleImportService.parseCsv(
+                new BufferedReader(new StringReader("G1,北京南,上海虹桥,8点,12:30,2025-06-01,2025-06-02\n"))));
+        assertTrue(e.getMessage().startsWith("第1行"));
+    }
+
+    private ScheduleImportRowDTO row(String trainNumber, LocalTime departure, LocalTime arrival, int days) {
+        LocalDate start = LocalDate.of(2025, 6, 1);
+        return ScheduleImportRowDTO.builder()
+                .trainNumber(trainNumber).departureStation("北京南").arrivalStation("上海虹桥")
+                .departureTime(departure).arrivalTime(arrival)
+                .startDate(start).endDate(start.plusDays(days - 1))
+                .build();
+    }
+
+    private ScheduleImportJobDTO await(String jobId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        ScheduleImportJobDTO job = scheduleImportService.getJob(jobId);
+        while ("导入中".equals(job.getStatus()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            job = scheduleImportService.getJob(jobId);
+        }
+        return job;
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.backend.service;
+
+import com.example.backend.dto.TrainScheduleDTO;
+import com.example.backend.event.SeatAvailabilityChangedEvent;
+import com.example.backend.mapper.ScheduleReadModelMapper;
+import com.example.backend.mapper.SeatAvailabilityMapper;
+import com.example.backend.mapper.TrainScheduleMapper;
+import com.example.backend.model.ScheduleReadModelEntity;
+import com.example.backend.model.SeatAvailabilityEntity;
+import com.example.backend.model.SeatTypeEntity;
+import com.example.backend.model.TrainScheduleEntity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+public class ScheduleReadModelServiceUnitTest {
+
+    private static final LocalDateTime DEPARTURE = LocalDate.of(2025, 5, 20).atTime(9, 0);
+
+    private ScheduleReadModelMapper scheduleReadModelMapper;
+    private TrainScheduleMapper trainScheduleMapper;
+    private ScheduleReadModelService scheduleReadModelService;
+
+    @BeforeEach
+    void setUp() {
+        scheduleReadModelMapper = mock(ScheduleReadModelMapper.class);
+        trainScheduleMapper = mock(TrainScheduleMapper.class);
+        SeatAvailabilityMapper seatAvailabilityMapper = mock(SeatAvailabilityMapper.class);
+        SeatInventoryService seatInventoryService = mock(SeatInventoryService.class);
+        SeatTypeCache seatTypeCache = mock(SeatTypeCache.class);
+        when(seatTypeCache.getById(2)).thenReturn(SeatTypeEntity.builder().id(2).name("二等座").build());
+
+        when(trainScheduleMapper.selectList(any())).thenReturn(List.of(TrainScheduleEntity.builder()
+                .id("G1234_20250520").trainNumber("G1234").departureStation("北京南").arrivalStation("上海虹桥")
+                .departureTime(DEPARTURE).arrivalTime(DEPARTURE.plusMinutes(330)).status("正常").build()));
+        when(seatAvailabilityMapper.selectByScheduleIds(anyCollection())).thenReturn(List.of(SeatAvailabilityEntity.builder()
+                .scheduleId("G1234_20250520").seatTypeId(2).availableCount(50).price(new BigDecimal("550.00")).build()));
+        // 内存库存中的余票比数据库新
+        when(seatInventoryService.getAvailableCounts(anyCollection()))
+                .thenReturn(Map.of("G1234_20250520", Map.of(2, 48)));
+
+        scheduleReadModelService = new ScheduleReadModelService();
+        ReflectionTestUtils.setField(scheduleReadModelService, "scheduleReadModelMapper", scheduleReadModelMapper);
+        ReflectionTestUtils.setField(scheduleReadModelService, "trainScheduleMapper", trainScheduleMapper);
+        ReflectionTestUtils.setField(scheduleReadModelService, "seatAvailabilityMapper", seatAvailabilityMapper);
+        ReflectionTestUtils.setField(scheduleReadModelService, "seatInventoryService", seatInventoryService);
+        ReflectionTestUtils.setField(scheduleReadModelService, "seatTypeCache", seatTypeCache);
+        ReflectionTestUtils.setField(scheduleReadModelService, "enabled", true);
+        ReflectionTestUtils.setField(scheduleReadModelService, "batchSize", 500);
+    }
+
+    // 刷新时把当前余票和票价写入车次行，已删除的车次删除对应行
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRefreshWritesLiveCountsAndDeletesRemoved() {
+        scheduleReadModelService.refresh(List.of("G1234_20250520", "DELETED"));
+
+        ArgumentCaptor<List<ScheduleReadModelEntity>> captor = ArgumentCaptor.forClass(List.class);
+        verify(scheduleReadModelMapper).upsertBatch(captor.capture());
+        ScheduleReadModelEntity row = captor.getValue().get(0);
+        assertEquals("G1234_20250520", row.getScheduleId());
+        assertEquals(330L, row.getDurationMinutes());
+        assertEquals(Map.of("二等座", 48), row.getSeatAvailability());
+        assertEquals(Map.of("二等座", 550.0), row.getBasePrice());
+
+        verify(scheduleReadModelMapper).delete(any());
+    }
+
+    // 余票变化事件合并，定时任务一次刷新
+    @Test
+    void testSeatEventsCoalesced() {
+        for (int i = 0; i < 5; i++) {
+            scheduleReadModelService.onSeatAvailabilityChanged(new SeatAvailabilityChangedEvent("G1234_20250520"));
+        }
+        verifyNoInteractions(scheduleReadModelMapper);
+
+        scheduleReadModelService.refreshDirty();
+        scheduleReadModelService.refreshDirty();
+        verify(scheduleReadModelMapper, times(1)).upsertBatch(anyList());
+    }
+
+    // 查询按日期换算为出发时间范围，一次读模型查询直接返回 DTO
+    @Test
+    void testSearchIsSingleRangeQuery() {
+        TrainScheduleDTO dto = TrainScheduleDTO.builder().scheduleId("G1234_20250520")
+                .seatAvailability(Map.of("二等座", 48)).basePrice(Map.of("二等座", 550.0)).build();
+        when(scheduleReadModelMapper.search(any(), any(), any(), any())).thenReturn(List.of(dto));
+
+        List<TrainScheduleDTO> schedules = scheduleReadModelService.search(
+                List.of("北京南", "北京西"), List.of("上海虹桥"), LocalDate.of(2025, 5, 20));
+
+        assertEquals(List.of(dto), schedules);
+        verify(scheduleReadModelMapper).search(List.of("北京南", "北京西"), List.of("上海虹桥"),
+                LocalDate.of(2025, 5, 20).atStartOfDay(), LocalDate.of(2025, 5, 21).atStartOfDay());
+        verifyNoMoreInteractions(scheduleReadModelMapper);
+        verifyNoInteractions(trainScheduleMapper);
+    }
+}
@@ -0,0 +1,273 @@
+package com.example.backend.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.example.backend.dto.ScheduleFilterDTO;
+import com.example.backend.dto.SchedulePageDTO;
+import com.example.backend.dto.TrainScheduleDTO;
+import com.example.backend.event.ScheduleChangedEvent;
+import com.example.backend.mapper.SeatAvailabilityMapper;
+import com.example.backend.mapper.TrainScheduleMapper;
+import com.example.backend.model.SchedulePageQuery;
+import com.example.backend.model.ScheduleSearchRow;
+import com.example.backend.model.SeatAvailabilityEntity;
+import com.example.backend.model.SeatTypeEntity;
+import com.example.backend.model.TrainScheduleEntity;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class ScheduleSearchServiceUnitTest {
+
+    private static final LocalDate DATE = LocalDate.of(2025, 5, 20);
+
+    private TrainScheduleMapper trainScheduleMapper;
+    private SeatAvailabilityMapper seatAvailabilityMapper;
+    private SeatInventoryService seatInventoryService;
+    private ScheduleReadModelService scheduleReadModelService;
+    private ScheduleSearchService scheduleSearchService;
+
+    @BeforeEach
+    void setUp() {
+        trainScheduleMapper = mock(TrainScheduleMapper.class);
+        seatAvailabilityMapper = mock(SeatAvailabilityMapper.class);
+        seatInventoryService = mock(SeatInventoryService.class);
+        SeatTypeCache seatTypeCache = mock(SeatTypeCache.class);
+        when(seatTypeCache.getById(2)).thenReturn(SeatTypeEntity.builder().id(2).code("SECOND_CLASS").name("二等座").build());
+
+        LocalDateTime departure = DATE.atTime(8, 0);
+        when(trainScheduleMapper.selectList(any())).thenReturn(List.of(TrainScheduleEntity.builder()
+                .id("G1234_20250520").trainNumber("G1234").departureStation("北京南").arrivalStation("上海虹桥")
+                .departureTime(departure).arrivalTime(departure.plusHours(5)).status("正常").build()));
+        when(seatAvailabilityMapper.selectByScheduleIds(anyCollection())).thenReturn(List.of(SeatAvailabilityEntity.builder()
+                .scheduleId("G1234_20250520").seatTypeId(2).availableCount(100).price(new BigDecimal("550.00")).build()));
+
+        StationIndexService stationIndexService = mock(StationIndexService.class);
+        when(stationIndexService.expand(anyString())).thenAnswer(invocation -> List.of(invocation.<String>getArgument(0)));
+        when(stationIndexService.expand("北京")).thenReturn(List.of("北京南", "北京西"));
+
+        scheduleSearchService = new ScheduleSearchService();
+        ReflectionTestUtils.setField(scheduleSearchService, "trainScheduleMapper", trainScheduleMapper);
+        ReflectionTestUtils.setField(scheduleSearchService, "seatAvailabilityMapper", seatAvailabilityMapper);
+        ReflectionTestUtils.setField(scheduleSearchService, "seatInventoryService", seatInventoryService);
+        ReflectionTestUtils.setField(scheduleSearchService, "seatTypeCache", seatTypeCache);
+        ReflectionTestUtils.setField(scheduleSearchService, "stationIndexService", stationIndexService);
+        scheduleReadModelService = mock(ScheduleReadModelService.class);
+        ReflectionTestUtils.setField(scheduleSearchService, "scheduleReadModelService", scheduleReadModelService);
+        ReflectionTestUtils.setField(scheduleSearchService, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(scheduleSearchService, "cacheMaxSize", 100);
+        ReflectionTestUtils.setField(scheduleSearchService, "cacheTtlSeconds", 300L);
+        ReflectionTestUtils.setField(scheduleSearchService, "negativeCacheTtlSeconds", 60L);
+        ReflectionTestUtils.setField(scheduleSearchService, "streamPageSize", 2);
+        scheduleSearchService.init();
+    }
+
+    // 重复查询命中缓存，余票数每次读取当前值
+    @Test
+    void testRepeatedSearchHitsCacheWithLiveCounts() {
+        when(seatInventoryService.getAvailableCounts(anyCollection()))
+                .thenReturn(Map.of("G1234_20250520", Map.of(2, 98)))
+                .thenReturn(Map.of("G1234_20250520", Map.of(2, 97)));
+
+        List<TrainScheduleDTO> first = scheduleSearchService.search("北京南", "上海虹桥", DATE);
+        List<TrainScheduleDTO> second = scheduleSearchService.search("北京南", "上海虹桥", DATE);
+
+        assertEquals(98, first.get(0).getSeatAvailability().get("二等座"));
+        assertEquals(97, second.get(0).getSeatAvailability().get("二等座"));
+        assertEquals(550.0, second.get(0).getBasePrice().get("二等座"));
+        verify(trainScheduleMapper, times(1)).selectList(any());
+        verify(seatAvailabilityMapper, times(1)).selectByScheduleIds(anyCollection());
+    }
+
+    // 读模型构建完成后缓存未命中时查询读模型，结果同样缓存并以当前余票覆盖
+    @Test
+    void testReadModelResultsCachedWithLiveCounts() {
+        LocalDateTime departure = DATE.atTime(8, 0);
+        when(scheduleReadModelService.isReady()).thenReturn(true);
+        // 读模型中的余票滞后
+        when(scheduleReadModelService.search(any(), any(), any())).thenReturn(List.of(TrainScheduleDTO.builder()
+                .scheduleId("G1234_20250520").trainNumber("G1234").departureStation("北京南").arrivalStation("上海虹桥")
+                .departureDateTime(departure).arrivalDateTime(departure.plusHours(5)).durationMinutes(300L)
+                .seatAvailability(Map.of("二等座", 100)).basePrice(Map.of("二等座", 550.0)).status("正常").build()));
+        when(seatInventoryService.getAvailableCounts(anyCollection()))
+                .thenReturn(Map.of("G1234_20250520", Map.of(2, 98)))
+                .thenReturn(Map.of("G1234_20250520", Map.of(2, 97)));
+
+        List<TrainScheduleDTO> first = scheduleSearchService.search("北京南", "上海虹桥", DATE);
+        List<TrainScheduleDTO> second = scheduleSearchService.search("北京南", "上海虹桥", DATE);
+
+        assertEquals(98, first.get(0).getSeatAvailability().get("二等座"));
+        assertEquals(97, second.get(0).getSeatAvailability().get("二等座"));
+        assertEquals(550.0, second.get(0).getBasePrice().get("二等座"));
+        verify(scheduleReadModelService, times(1)).search(any(), any(), any());
+        verify(seatInventoryService, never()).preload(any());
+        verify(trainScheduleMapper, never()).selectList(any());
+    }
+
+    // 车次变更提交后先更新读模型再清空缓存
+    @Test
+    void testScheduleChangeRefreshesReadModelThenClearsCache() {
+        when(seatInventoryService.getAvailableCounts(anyCollection())).thenReturn(Collections.emptyMap());
+        scheduleSearchService.search("北京南", "上海虹桥", DATE);
+
+        scheduleSearchService.onScheduleChanged(new ScheduleChangedEvent("G1234_20250520"));
+        scheduleSearchService.search("北京南", "上海虹桥", DATE);
+
+        verify(scheduleReadModelService).onScheduleChanged("G1234_20250520");
+        verify(trainScheduleMapper, times(2)).selectList(any());
+    }
+
+    // 单个车次新增时只清理包含该线路和日期的条目
+    @Test
+    void testRouteInvalidationKeepsOtherEntries() {
+        when(seatInventoryService.getAvailableCounts(anyCollection())).thenReturn(Collections.emptyMap());
+        scheduleSearchService.search("北京", "上海虹桥", DATE);
+        scheduleSearchService.search("北京南", "南京南", DATE);
+
+        scheduleSearchService.invalidate("北京南", "上海虹桥", DATE);
+        scheduleSearchService.search("北京", "上海虹桥", DATE);
+        scheduleSearchService.search("北京南", "南京南", DATE);
+
+        verify(trainScheduleMapper, times(3)).selectList(any());
+    }
+
+    // 没有车次的组合也被缓存
+    @Test
+    void testEmptyResultIsCached() {
+        when(trainScheduleMapper.selectList(any())).thenReturn(Collections.emptyList());
+
+        assertTrue(scheduleSearchService.search("北京南", "拉萨", DATE).isEmpty());
+        assertTrue(scheduleSearchService.search("北京南", "拉萨", DATE).isEmpty());
+
+        verify(trainScheduleMapper, times(1)).selectList(any());
+        verify(seatAvailabilityMapper, never()).selectByScheduleIds(anyCollection());
+    }
+
+    // 城市名展开为该城市全部车站，单条 IN 查询并按出发时间排序
+    @Test
+    void testCitySearchUsesSingleInQuery() {
+        when(seatInventoryService.getAvailableCounts(anyCollection())).thenReturn(Collections.emptyMap());
+
+        scheduleSearchService.search("北京", "上海虹桥", DATE);
+
+        ArgumentCaptor<QueryWrapper<TrainScheduleEntity>> captor = ArgumentCaptor.forClass(QueryWrapper.class);
+        verify(trainScheduleMapper, times(1)).selectList(captor.capture());
+        String sql = captor.getValue().getTargetSql();
+        assertTrue(sql.contains("departure_station IN"), sql);
+        assertTrue(sql.contains("arrival_station ="), sql);
+        assertTrue(sql.contains("ORDER BY departure_time ASC"), sql);
+    }
+
+    // 分页：多取一条判断下一页，游标带回上一页最后一条的排序键
+    @Test
+    void testSearchPageKeysetCursor() {
+        when(seatInventoryService.getAvailableCounts(anyCollection())).thenReturn(Collections.emptyMap());
+        when(trainScheduleMapper.selectSchedulePage(any())).thenReturn(List.of(
+                row("G1234_20250520", DATE.atTime(8, 0)), row("G1236_20250520", DATE.atTime(9, 0))));
+
+        SchedulePageDTO page = scheduleSearchService.searchPage("北京", "上海虹桥", DATE,
+                ScheduleFilterDTO.builder().limit(1).build());
+
+        assertEquals(1, page.getItems().size());
+        assertNotNull(page.getNextCursor());
+
+        scheduleSearchService.searchPage("北京", "上海虹桥", DATE,
+                ScheduleFilterDTO.builder().limit(1).cursor(page.getNextCursor()).build());
+        ArgumentCaptor<SchedulePageQuery> captor = ArgumentCaptor.forClass(SchedulePageQuery.class);
+        verify(trainScheduleMapper, times(2)).selectSchedulePage(captor.capture());
+        SchedulePageQuery first = captor.getAllValues().get(0);
+        SchedulePageQuery second = captor.getAllValues().get(1);
+        assertEquals(List.of("北京南", "北京西"), first.getDepartureStations());
+        assertEquals(2, first.getFetchSize());
+        assertNull(first.getAfterId());
+        assertEquals("G1234_20250520", second.getAfterId());
+        assertEquals(DATE.atTime(8, 0), second.getAfterDepartureTime());
+    }
+
+    // 游标与排序方式不一致或内容无效时拒绝
+    @Test
+    void testSearchPageRejectsInvalidCursor() {
+        when(trainScheduleMapper.selectSchedulePage(any())).thenReturn(List.of(
+                row("G1234_20250520", DATE.atTime(8, 0)), row("G1236_20250520", DATE.atTime(9, 0))));
+        String cursor = scheduleSearchService.searchPage(null, null, DATE,
+                ScheduleFilterDTO.builder().limit(1).build()).getNextCursor();
+
+        assertThrows(IllegalArgumentException.class, () -> scheduleSearchService.searchPage(null, null, DATE,
+                ScheduleFilterDTO.builder().sortBy("price").cursor(cursor).build()));
+        assertThrows(IllegalArgumentException.class, () -> scheduleSearchService.searchPage(null, null, DATE,
+                ScheduleFilterDTO.builder().cursor("not-a-cursor").build()));
+        assertThrows(IllegalArgumentException.class, () -> scheduleSearchService.searchPage(null, null, DATE,
+                ScheduleFilterDTO.builder().sortBy("name").build()));
+    }
+
+    // 流式查询逐页读取，满页时以最后一条为游标继续，不满一页时结束
+    @Test
+    void testStreamFetchesPagesOnDemand() {
+        when(trainScheduleMapper.selectSchedulePage(any())).thenReturn(
+                List.of(row("G1_20250520", DATE.atTime(7, 0)), row("G2_20250520", DATE.atTime(8, 0))),
+                List.of(row("G3_20250520", DATE.atTime(9, 0))));
+
+        StepVerifier.create(scheduleSearchService.stream("北京南", "上海虹桥", DATE, new ScheduleFilterDTO()), 1)
+                .assertNext(dto -> assertEquals("G1_20250520", dto.getScheduleId()))
+                .then(() -> verify(trainScheduleMapper, times(1)).selectSchedulePage(any()))
+                .thenRequest(10)
+                .assertNext(dto -> assertEquals("G2_20250520", dto.getScheduleId()))
+                .assertNext(dto -> assertEquals("G3_20250520", dto.getScheduleId()))
+                .verifyComplete();
+
+        ArgumentCaptor<SchedulePageQuery> captor = ArgumentCaptor.forClass(SchedulePageQuery.class);
+        verify(trainScheduleMapper, times(2)).selectSchedulePage(captor.capture());
+        assertEquals(2, captor.getAllValues().get(0).getFetchSize());
+        assertEquals("G2_20250520", captor.getAllValues().get(1).getAfterId());
+        assertEquals(DATE.atTime(8, 0), captor.getAllValues().get(1).getAfterDepartureTime());
+    }
+
+    // 参数无效时在订阅前抛出
+    @Test
+    void testStreamRejectsInvalidSort() {
+        assertThrows(IllegalArgumentException.class, () -> scheduleSearchService.stream(null, null, DATE,
+                ScheduleFilterDTO.builder().sortBy("name").build()));
+    }
+
+    private static ScheduleSearchRow row(String id, LocalDateTime departure) {
+        ScheduleSearchRow row = new ScheduleSearchRow();
+        row.setId(id);
+        row.setTrainNumber(id.substring(0, id.indexOf('_')));
+        row.setDepartureStation("北京南");
+        row.setArrivalStation("上海虹桥");
+        row.setDepartureTime(departure);
+        row.setArrivalTime(departure.plusHours(5));
+        row.setStatus("正常");
+        row.setDurationMinutes(300L);
+        row.setMinPrice(new BigDecimal("550.00"));
+        return row;
+    }
+
+    // 车次变化后清空缓存重新查询
+    @Test
+    void testInvalidateReloads() {
+        when(seatInventoryService.getAvailableCounts(anyCollection())).thenReturn(Collections.emptyMap());
+
+        scheduleSearchService.search("北京南", "上海虹桥", DATE);
+        scheduleSearchService.invalidate();
+        List<TrainScheduleDTO> result = scheduleSearchService.search("北京南", "上海虹桥", DATE);
+
+        assertEquals(100, result.get(0).getSeatAvailability().get("二等座"));
+        verify(trainScheduleMapper, times(2)).selectList(any());
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.backend.service;
+
+import com.example.backend.mapper.OrderMapper;
+import com.example.backend.mapper.TicketMapper;
+import com.example.backend.model.OrderEntity;
+import com.example.backend.model.SeatAvailabilityDelta;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+public class ScheduleSequencerUnitTest {
+
+    private static final String SCHEDULE_ID = "G1234_20250520";
+
+    private OrderMapper orderMapper;
+    private SeatInventoryService seatInventoryService;
+    private PlatformTransactionManager transactionManager;
+    private ScheduleSequencer scheduleSequencer;
+
+    @BeforeEach
+    void setUp() {
+        orderMapper = mock(OrderMapper.class);
+        seatInventoryService = mock(SeatInventoryService.class);
+        when(seatInventoryService.tryReserveAll(anyList())).thenReturn(true);
+        transactionManager = mock(PlatformTransactionManager.class);
+        scheduleSequencer = new ScheduleSequencer();
+        ReflectionTestUtils.setField(scheduleSequencer, "orderMapper", orderMapper);
+        ReflectionTestUtils.setField(scheduleSequencer, "ticketMapper", mock(TicketMapper.class));
+        ReflectionTestUtils.setField(scheduleSequencer, "seatInventoryService", seatInventoryService);
+        ReflectionTestUtils.setField(scheduleSequencer, "transactionTemplate", new TransactionTemplate(transactionManager));
+    }
+
+    // 一批命令在一个事务中提交：订单一条语句插入，余票合并为一次预占
+    @Test
+    @SuppressWarnings("unchecked")
+    void testBatchCommitsInOneTransaction() {
+        List<TestCommand> commands = List.of(new TestCommand("O1"), new TestCommand("O2"), new TestCommand("O3"));
+
+        process(commands);
+
+        verify(transactionManager, times(1)).commit(any());
+        ArgumentCaptor<List<OrderEntity>> orders = ArgumentCaptor.forClass(List.class);
+        verify(orderMapper, times(1)).insertBatch(orders.capture());
+        assertEquals(3, orders.getValue().size());
+        ArgumentCaptor<List<SeatAvailabilityDelta>> reservations = ArgumentCaptor.forClass(List.class);
+        verify(seatInventoryService, times(1)).tryReserveAll(reservations.capture());
+        assertEquals(1, reservations.getValue().size());
+        assertEquals(3, reservations.getValue().get(0).getDelta());
+        verify(seatInventoryService).flush(SCHEDULE_ID);
+        commands.forEach(command -> assertDoesNotThrow(() -> future(command).join()));
+    }
+
+    // 批次提交失败时回滚并归还全部预占，再逐条重试，单个命令失败不影响其他命令
+    @Test
+    void testFailedBatchFallsBackToOneByOne() {
+        TestCommand failing = new TestCommand("O2");
+        failing.failWrite = true;
+        List<TestCommand> commands = List.of(new TestCommand("O1"), failing, new TestCommand("O3"));
+
+        process(commands);
+
+        verify(transactionManager, times(2)).rollback(any());
+        verify(orderMapper, times(2)).insertBatch(anyList());
+        assertDoesNotThrow(() -> future(commands.get(0)).join());
+        assertThrows(CompletionException.class, () -> future(failing).join());
+        assertDoesNotThrow(() -> future(commands.get(2)).join());
+        assertEquals(1, commands.get(0).undone);
+        assertEquals(2, failing.undone);
+        assertEquals(1, commands.get(2).undone);
+    }
+
+    // 批次事务中余票不足：回滚后逐条重试，余票不足的命令失败并归还预占
+    @Test
+    void testInsufficientInventoryUndoesOnRollback() {
+        when(seatInventoryService.tryReserveAll(anyList())).thenReturn(false, true, false);
+        List<TestCommand> commands = List.of(new TestCommand("O1"), new TestCommand("O2"));
+
+        process(commands);
+
+        assertDoesNotThrow(() -> future(commands.get(0)).join());
+        CompletionException e = assertThrows(CompletionException.class, () -> future(commands.get(1)).join());
+        assertEquals("所选车次座位余票不足。", e.getCause().getMessage());
+        assertEquals(1, commands.get(0).undone);
+        assertEquals(2, commands.get(1).undone);
+        verify(orderMapper, times(1)).insertBatch(anyList());
+    }
+
+    private void process(List<? extends ScheduleSequencer.Command> commands) {
+        ReflectionTestUtils.invokeMethod(scheduleSequencer, "process", SCHEDULE_ID, commands);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static CompletableFuture<Void> future(ScheduleSequencer.Command command) {
+        return (CompletableFuture<Void>) ReflectionTestUtils.getField(command, "future");
+    }
+
+    private static class TestCommand extends ScheduleSequencer.Command {
+        private final String orderId;
+        private boolean failWrite;
+        private int undone;
+
+        private TestCommand(String orderId) {
+            this.orderId = orderId;
+        }
+
+        @Override
+        protected void write(ScheduleSequencer.Batch batch) {
+            if (failWrite) {
+                throw new RuntimeException("当前车票状态不符合改签条件。");
+            }
+            batch.reserve(SCHEDULE_ID, 2, 1);
+            batch.addOrder(OrderEntity.builder().id(orderId).build());
+        }
+
+        @Override
+        protected void undo() {
+            undone++;
+        }
+    }
+}
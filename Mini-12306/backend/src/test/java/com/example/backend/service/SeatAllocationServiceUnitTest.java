@@ -0,0 +1,189 @@
+package com.example.backend.service;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.MybatisSqlSessionFactoryBuilder;
+import com.example.backend.mapper.SeatAvailabilityMapper;
+import com.example.backend.mapper.SeatClaimMapper;
+import com.example.backend.mapper.TicketMapper;
+import com.example.backend.model.SeatTypeEntity;
+import com.example.backend.model.TicketEntity;
+import org.apache.ibatis.mapping.Environment;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.mybatis.spring.transaction.SpringManagedTransactionFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 多个节点共享同一个嵌入式数据库（MySQL 兼容模式）分配座位
+ */
+public class SeatAllocationServiceUnitTest {
+
+    private static final String SCHEDULE_ID = "G1234_20250520";
+
+    private JdbcTemplate jdbcTemplate;
+    private SqlSessionTemplate sqlSessionTemplate;
+    private SeatTypeCache seatTypeCache;
+    private final SeatTypeEntity firstClass = SeatTypeEntity.builder().id(1).name("一等座").build();
+    private final SeatTypeEntity secondClass = SeatTypeEntity.builder().id(2).name("二等座").build();
+    private final SeatTypeEntity businessClass = SeatTypeEntity.builder().id(3).name("商务座").build();
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE seat_availability (id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                "schedule_id VARCHAR(36), seat_type_id INT, available_count INT, total_count INT, " +
+                "price DECIMAL(10,2), create_time DATETIME, update_time DATETIME)");
+        jdbcTemplate.execute("CREATE TABLE ticket (id VARCHAR(36) PRIMARY KEY, schedule_id VARCHAR(36), " +
+                "seat_type_id INT, carriage_number VARCHAR(10), seat_number VARCHAR(20), ticket_status VARCHAR(20))");
+        jdbcTemplate.execute("CREATE TABLE seat_claim (schedule_id VARCHAR(36), seat_type_id INT, " +
+                "carriage_number VARCHAR(10), seat_number VARCHAR(20), ticket_id VARCHAR(36), " +
+                "create_time DATETIME DEFAULT CURRENT_TIMESTAMP, " +
+                "PRIMARY KEY (schedule_id, seat_type_id, carriage_number, seat_number))");
+
+        MybatisConfiguration configuration = new MybatisConfiguration(
+                new Environment("test", new SpringManagedTransactionFactory(), dataSource));
+        configuration.setMapUnderscoreToCamelCase(true);
+        configuration.addMapper(SeatAvailabilityMapper.class);
+        configuration.addMapper(SeatClaimMapper.class);
+        configuration.addMapper(TicketMapper.class);
+        sqlSessionTemplate = new SqlSessionTemplate(new MybatisSqlSessionFactoryBuilder().build(configuration));
+
+        seatTypeCache = mock(SeatTypeCache.class);
+        for (SeatTypeEntity seatType : List.of(firstClass, secondClass, businessClass)) {
+            when(seatTypeCache.getById(seatType.getId())).thenReturn(seatType);
+        }
+    }
+
+    // 座位图按总座位数构建，与本节点当前持有的余票无关
+    @Test
+    void testCapacityFollowsTotalSeats() {
+        insertAvailability(2, 0, 120);
+        SeatAllocationService node = newNode();
+
+        Set<String> seats = new HashSet<>();
+        for (int i = 0; i < 120; i++) {
+            seats.add(seatOf(allocate(node, secondClass)));
+        }
+        assertEquals(120, seats.size());
+        assertThrows(RuntimeException.class, () -> allocate(node, secondClass));
+    }
+
+    // 各座位类型按总座位数依次占用车厢，车厢范围互不重叠
+    @Test
+    void testCarriageRangesDoNotOverlap() {
+        insertAvailability(3, 5, 5);
+        insertAvailability(1, 61, 61);
+        insertAvailability(2, 120, 120);
+        SeatAllocationService node = newNode();
+
+        assertEquals(Set.of("01"), carriagesOf(node, businessClass, 5));
+        assertEquals(Set.of("02", "03"), carriagesOf(node, firstClass, 61));
+        assertEquals(Set.of("04", "05"), carriagesOf(node, secondClass, 120));
+    }
+
+    // 两个节点各自持有座位图并发分配，同一座位只分配给一张车票
+    @Test
+    void testNodesNeverShareSeat() throws InterruptedException {
+        int total = 200;
+        insertAvailability(2, total, total);
+        List<SeatAllocationService> nodes = List.of(newNode(), newNode());
+
+        Set<String> seats = ConcurrentHashMap.newKeySet();
+        List<String> duplicates = new ArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < total; i++) {
+            SeatAllocationService node = nodes.get(i % nodes.size());
+            executor.submit(() -> {
+                start.await();
+                String seat = seatOf(allocate(node, secondClass));
+                if (!seats.add(seat)) {
+                    synchronized (duplicates) {
+                        duplicates.add(seat);
+                    }
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals(List.of(), duplicates);
+        assertEquals(total, seats.size());
+        assertEquals(total, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM seat_claim", Integer.class));
+        for (SeatAllocationService node : nodes) {
+            assertThrows(RuntimeException.class, () -> allocate(node, secondClass));
+        }
+    }
+
+    // 其他节点释放的座位在本地位图已满时按数据库重建后可再次分配
+    @Test
+    void testSeatReleasedOnOtherNodeIsReused() {
+        insertAvailability(2, 2, 2);
+        SeatAllocationService first = newNode();
+        SeatAllocationService second = newNode();
+
+        TicketEntity a = allocate(first, secondClass);
+        TicketEntity b = allocate(second, secondClass);
+        assertNotEquals(seatOf(a), seatOf(b));
+        assertThrows(RuntimeException.class, () -> allocate(second, secondClass));
+
+        first.release(a);
+        assertEquals(seatOf(a), seatOf(allocate(second, secondClass)));
+    }
+
+    private SeatAllocationService newNode() {
+        SeatAllocationService node = new SeatAllocationService();
+        ReflectionTestUtils.setField(node, "ticketMapper", sqlSessionTemplate.getMapper(TicketMapper.class));
+        ReflectionTestUtils.setField(node, "seatAvailabilityMapper",
+                sqlSessionTemplate.getMapper(SeatAvailabilityMapper.class));
+        ReflectionTestUtils.setField(node, "seatClaimMapper", sqlSessionTemplate.getMapper(SeatClaimMapper.class));
+        ReflectionTestUtils.setField(node, "seatTypeCache", seatTypeCache);
+        ReflectionTestUtils.setField(node, "claimStaleMinutes", 10L);
+        return node;
+    }
+
+    private void insertAvailability(int seatTypeId, int availableCount, int totalCount) {
+        jdbcTemplate.update("INSERT INTO seat_availability (schedule_id, seat_type_id, available_count, total_count, " +
+                "price) VALUES (?, ?, ?, ?, 100)", SCHEDULE_ID, seatTypeId, availableCount, totalCount);
+    }
+
+    private TicketEntity allocate(SeatAllocationService node, SeatTypeEntity seatType) {
+        TicketEntity ticket = TicketEntity.builder().id(UUID.randomUUID().toString())
+                .scheduleId(SCHEDULE_ID).seatTypeId(seatType.getId()).build();
+        node.allocate(ticket, seatType);
+        return ticket;
+    }
+
+    private Set<String> carriagesOf(SeatAllocationService node, SeatTypeEntity seatType, int count) {
+        Set<String> carriages = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            carriages.add(allocate(node, seatType).getCarriageNumber());
+        }
+        return carriages;
+    }
+
+    private static String seatOf(TicketEntity ticket) {
+        return ticket.getCarriageNumber() + "-" + ticket.getSeatNumber();
+    }
+}
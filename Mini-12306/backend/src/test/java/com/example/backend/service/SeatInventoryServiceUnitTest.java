@@ -0,0 +1,152 @@
+package com.example.backend.service;
+
+import com.example.backend.mapper.SeatAvailabilityMapper;
+import com.example.backend.model.SeatAvailabilityDelta;
+import com.example.backend.model.SeatAvailabilityEntity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class SeatInventoryServiceUnitTest {
+
+    private SeatAvailabilityMapper seatAvailabilityMapper;
+    private SeatInventoryService seatInventoryService;
+
+    @BeforeEach
+    void setUp() {
+        seatAvailabilityMapper = mock(SeatAvailabilityMapper.class);
+        when(seatAvailabilityMapper.selectOne(any())).thenReturn(SeatAvailabilityEntity.builder()
+                .scheduleId("G1234_20250520")
+                .seatTypeId(2)
+                .availableCount(50)
+                .price(new BigDecimal("550.00"))
+                .build());
+        seatInventoryService = new SeatInventoryService();
+        ReflectionTestUtils.setField(seatInventoryService, "seatAvailabilityMapper", seatAvailabilityMapper);
+        ReflectionTestUtils.setField(seatInventoryService, "flushBatchSize", 200);
+    }
+
+    // 并发抢票不超卖
+    @Test
+    void testConcurrentReserveNeverOversells() throws InterruptedException {
+        int buyers = 500;
+        AtomicInteger sold = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        for (int i = 0; i < buyers; i++) {
+            executor.submit(() -> {
+                start.await();
+                if (seatInventoryService.tryReserve("G1234_20250520", 2, 1)) {
+                    sold.incrementAndGet();
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(50, sold.get(), "售出数量应等于初始余票");
+        assertEquals(0, seatInventoryService.getAvailableCount("G1234_20250520", 2));
+    }
+
+    // 增量合并后一次回写
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFlushWritesNetDelta() {
+        assertTrue(seatInventoryService.tryReserve("G1234_20250520", 2, 3));
+        seatInventoryService.release("G1234_20250520", 2, 1);
+
+        seatInventoryService.flush();
+
+        ArgumentCaptor<List<SeatAvailabilityDelta>> captor = ArgumentCaptor.forClass(List.class);
+        verify(seatAvailabilityMapper, times(1)).applyAvailabilityDeltas(captor.capture());
+        assertEquals(1, captor.getValue().size());
+        assertEquals(-2, captor.getValue().get(0).getDelta());
+
+        // 无新增量时不再回写
+        seatInventoryService.flush();
+        verify(seatAvailabilityMapper, times(1)).applyAvailabilityDeltas(any());
+    }
+
+    // 重新加载前回写增量，之后读取数据库中修改后的余票和票价
+    @Test
+    @SuppressWarnings("unchecked")
+    void testReloadWritesBackAndPicksUpChanges() {
+        assertTrue(seatInventoryService.tryReserve("G1234_20250520", 2, 3));
+        when(seatAvailabilityMapper.selectOne(any())).thenReturn(SeatAvailabilityEntity.builder()
+                .scheduleId("G1234_20250520")
+                .seatTypeId(2)
+                .availableCount(80)
+                .price(new BigDecimal("600.00"))
+                .build());
+
+        seatInventoryService.reload("G1234_20250520");
+
+        ArgumentCaptor<List<SeatAvailabilityDelta>> captor = ArgumentCaptor.forClass(List.class);
+        verify(seatAvailabilityMapper).applyAvailabilityDeltas(captor.capture());
+        assertEquals(-3, captor.getValue().get(0).getDelta());
+        assertEquals(new BigDecimal("600.00"), seatInventoryService.getPrice("G1234_20250520", 2));
+        assertEquals(80, seatInventoryService.getAvailableCount("G1234_20250520", 2));
+
+        // 已移除的库存桶没有遗留增量
+        seatInventoryService.flush();
+        verify(seatAvailabilityMapper, times(1)).applyAvailabilityDeltas(any());
+    }
+
+    // 批量预占全部成功或全部不预占
+    @Test
+    void testReserveAllIsAllOrNothing() {
+        when(seatAvailabilityMapper.selectOne(any())).thenAnswer(invocation -> SeatAvailabilityEntity.builder()
+                .availableCount(2)
+                .price(new BigDecimal("100.00"))
+                .build());
+
+        assertFalse(seatInventoryService.tryReserveAll(List.of(
+                new SeatAvailabilityDelta("G1_20250520", 1, 2),
+                new SeatAvailabilityDelta("G2_20250520", 1, 3))));
+        assertEquals(2, seatInventoryService.getAvailableCount("G1_20250520", 1));
+
+        assertTrue(seatInventoryService.tryReserveAll(List.of(
+                new SeatAvailabilityDelta("G1_20250520", 1, 2),
+                new SeatAvailabilityDelta("G2_20250520", 1, 1))));
+        assertEquals(0, seatInventoryService.getAvailableCount("G1_20250520", 1));
+        assertEquals(1, seatInventoryService.getAvailableCount("G2_20250520", 1));
+    }
+
+    // database 模式下批量预占依赖外层事务回滚部分扣减，不在事务中时拒绝执行
+    @Test
+    void testDatabaseModeReserveAllRequiresTransaction() {
+        ReflectionTestUtils.setField(seatInventoryService, "mode", "database");
+
+        assertThrows(IllegalStateException.class, () -> seatInventoryService.tryReserveAll(List.of(
+                new SeatAvailabilityDelta("G1234_20250520", 2, 1))));
+        verify(seatAvailabilityMapper, never()).reserveSeatsBatch(any());
+    }
+
+    // database 模式每次从数据库读取票价，不创建库存桶
+    @Test
+    void testDatabaseModeReadsPriceFromDatabase() {
+        ReflectionTestUtils.setField(seatInventoryService, "mode", "database");
+
+        assertEquals(new BigDecimal("550.00"), seatInventoryService.getPrice("G1234_20250520", 2));
+        assertEquals(new BigDecimal("550.00"), seatInventoryService.getPrice("G1234_20250520", 2));
+
+        verify(seatAvailabilityMapper, times(2)).selectOne(any());
+        seatInventoryService.flush();
+        verify(seatAvailabilityMapper, never()).applyAvailabilityDeltas(any());
+    }
+}
@@ -0,0 +1,256 @@
+package com.example.backend.service;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.MybatisSqlSessionFactoryBuilder;
+import com.example.backend.mapper.InventoryLeaseMapper;
+import com.example.backend.mapper.SeatAvailabilityMapper;
+import com.example.backend.service.impl.InventoryLeaseStoreImpl;
+import org.apache.ibatis.mapping.Environment;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.mybatis.spring.transaction.SpringManagedTransactionFactory;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionManager;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 多个节点共享同一个嵌入式数据库（MySQL 兼容模式）租用余票，租约存储和语句使用生产实现
+ */
+public class SeatLeaseServiceUnitTest {
+
+    private static final String SCHEDULE_ID = "G1234_20250520";
+    private static final int SEAT_TYPE_ID = 2;
+
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private InventoryLeaseStore leaseStore;
+    private final AtomicLong now = new AtomicLong(1_000_000L);
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE seat_availability (id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                "schedule_id VARCHAR(36), seat_type_id INT, available_count INT, total_count INT, " +
+                "price DECIMAL(10,2), create_time DATETIME, update_time DATETIME, " +
+                "UNIQUE (schedule_id, seat_type_id))");
+        jdbcTemplate.execute("CREATE TABLE inventory_lease (node_id VARCHAR(36), schedule_id VARCHAR(36), " +
+                "seat_type_id INT, quantity INT, expires_at DATETIME(3), " +
+                "PRIMARY KEY (node_id, schedule_id, seat_type_id))");
+
+        MybatisConfiguration configuration = new MybatisConfiguration(
+                new Environment("test", new SpringManagedTransactionFactory(), dataSource));
+        configuration.setMapUnderscoreToCamelCase(true);
+        configuration.addMapper(SeatAvailabilityMapper.class);
+        configuration.addMapper(InventoryLeaseMapper.class);
+        SqlSessionTemplate sqlSessionTemplate = new SqlSessionTemplate(
+                new MybatisSqlSessionFactoryBuilder().build(configuration));
+
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        InventoryLeaseStoreImpl store = new InventoryLeaseStoreImpl();
+        ReflectionTestUtils.setField(store, "seatAvailabilityMapper",
+                sqlSessionTemplate.getMapper(SeatAvailabilityMapper.class));
+        ReflectionTestUtils.setField(store, "inventoryLeaseMapper",
+                sqlSessionTemplate.getMapper(InventoryLeaseMapper.class));
+        // 按 @Transactional 注解开启事务，与容器中的代理一致
+        ProxyFactory proxyFactory = new ProxyFactory(store);
+        proxyFactory.addAdvice(new TransactionInterceptor((TransactionManager) transactionManager,
+                new AnnotationTransactionAttributeSource()));
+        leaseStore = (InventoryLeaseStore) proxyFactory.getProxy();
+    }
+
+    // 多个节点并发售票，售出总数恰好等于余票，数据库余票不为负，租约表中没有剩余额度
+    @Test
+    void testConcurrentNodesNeverOversell() throws InterruptedException {
+        int total = 1000;
+        insertAvailability(total);
+        List<SeatLeaseService> nodes = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            nodes.add(newNode(System::currentTimeMillis));
+        }
+
+        AtomicInteger sold = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        for (int i = 0; i < 16; i++) {
+            SeatLeaseService node = nodes.get(i % nodes.size());
+            executor.submit(() -> {
+                start.await();
+                while (sell(node, 1)) {
+                    sold.incrementAndGet();
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals(total, sold.get());
+        assertEquals(0, availableCount());
+        assertEquals(0, leasedCount());
+        for (SeatLeaseService node : nodes) {
+            assertEquals(0, node.getLocalQuota(SCHEDULE_ID, SEAT_TYPE_ID));
+        }
+    }
+
+    // 售票速率上升后租约变大，停机时归还未售出的额度
+    @Test
+    void testLeaseSizeFollowsSellRate() {
+        insertAvailability(1000);
+        SeatLeaseService node = newNode(now::get);
+
+        for (int i = 0; i < 11; i++) {
+            assertTrue(sell(node, 1));
+        }
+        // 两次按最小额度租用
+        assertEquals(980, availableCount());
+        assertEquals(9, node.getLocalQuota(SCHEDULE_ID, SEAT_TYPE_ID));
+        assertEquals(9, leasedCount());
+
+        // 1秒内售出11张，平滑后速率5.5张/秒，下一段租约覆盖5秒即28张
+        now.addAndGet(1000);
+        node.renew();
+        for (int i = 0; i < 10; i++) {
+            assertTrue(sell(node, 1));
+        }
+        assertEquals(952, availableCount());
+        assertEquals(27, node.getLocalQuota(SCHEDULE_ID, SEAT_TYPE_ID));
+        assertEquals(27, leasedCount());
+
+        node.returnAll();
+        assertEquals(1000 - 21, availableCount());
+        assertEquals(0, node.getLocalQuota(SCHEDULE_ID, SEAT_TYPE_ID));
+        assertEquals(0, leasedCount());
+    }
+
+    // 租到的额度不够本次预占时立即归还；不再售票的节点在租约到期后归还全部额度，供其他节点租用
+    @Test
+    void testIdleLeaseReturnedOnExpiry() {
+        insertAvailability(15);
+        SeatLeaseService idle = newNode(now::get);
+        SeatLeaseService busy = newNode(now::get);
+
+        assertTrue(sell(idle, 1));
+        assertEquals(5, availableCount());
+        // 剩余5张被租走仍不够6张，租到的5张立即归还
+        assertFalse(sell(busy, 6));
+        assertEquals(0, busy.getLocalQuota(SCHEDULE_ID, SEAT_TYPE_ID));
+        assertEquals(5, availableCount());
+
+        for (int i = 0; i < 40; i++) {
+            now.addAndGet(1000);
+            idle.renew();
+        }
+        assertEquals(0, idle.getLocalQuota(SCHEDULE_ID, SEAT_TYPE_ID));
+        assertEquals(14, availableCount());
+        assertTrue(sell(busy, 14));
+        assertEquals(0, availableCount());
+        assertEquals(0, leasedCount());
+    }
+
+    // 退票随事务退回本节点的租约，提交后加入本地额度
+    @Test
+    void testRestoreReturnsToLease() {
+        insertAvailability(100);
+        SeatLeaseService node = newNode(now::get);
+
+        assertTrue(sell(node, 3));
+        transactionTemplate.executeWithoutResult(status -> node.restore(SCHEDULE_ID, SEAT_TYPE_ID, 3));
+        assertEquals(10, node.getLocalQuota(SCHEDULE_ID, SEAT_TYPE_ID));
+        assertEquals(10, leasedCount());
+        assertEquals(90, availableCount());
+    }
+
+    // 宕机节点的租约过期后由其他节点回收，已售出的座位不会加回余票；租约被回收的节点不能再售出
+    @Test
+    void testExpiredLeaseOfDeadNodeIsReclaimed() {
+        insertAvailability(100);
+        SeatLeaseService dead = newNode(now::get);
+        SeatLeaseService alive = newNode(now::get);
+
+        assertTrue(sell(dead, 3));
+        assertEquals(90, availableCount());
+        assertEquals(7, leasedCount());
+
+        // 未到期时不回收
+        now.addAndGet(10_000);
+        alive.reclaimExpired();
+        assertEquals(90, availableCount());
+
+        now.addAndGet(30_000);
+        alive.reclaimExpired();
+        assertEquals(97, availableCount());
+        assertEquals(0, leasedCount());
+
+        // 本地仍有额度，但表中的租约已回收，售出时事务回滚，之后按表中的租约同步
+        assertFalse(sell(dead, 1));
+        dead.renew();
+        assertEquals(0, dead.getLocalQuota(SCHEDULE_ID, SEAT_TYPE_ID));
+        assertEquals(97, availableCount());
+    }
+
+    private SeatLeaseService newNode(LongSupplier clock) {
+        SeatLeaseService node = new SeatLeaseService();
+        ReflectionTestUtils.setField(node, "leaseStore", leaseStore);
+        ReflectionTestUtils.setField(node, "minLeaseSize", 10);
+        ReflectionTestUtils.setField(node, "maxLeaseSize", 200);
+        ReflectionTestUtils.setField(node, "leaseTtlMillis", 30000L);
+        ReflectionTestUtils.setField(node, "leaseHorizonMillis", 5000L);
+        ReflectionTestUtils.setField(node, "mode", "lease");
+        ReflectionTestUtils.setField(node, "clock", clock);
+        return node;
+    }
+
+    /**
+     * 与购票流程一致：事务外预占本地额度，写入车票的事务中确认售出，确认失败时撤销预占
+     */
+    private boolean sell(SeatLeaseService node, int count) {
+        if (!node.tryReserve(SCHEDULE_ID, SEAT_TYPE_ID, count)) {
+            return false;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> node.confirm(SCHEDULE_ID, SEAT_TYPE_ID, count));
+            return true;
+        } catch (RuntimeException e) {
+            node.release(SCHEDULE_ID, SEAT_TYPE_ID, count);
+            return false;
+        }
+    }
+
+    private void insertAvailability(int count) {
+        jdbcTemplate.update("INSERT INTO seat_availability (schedule_id, seat_type_id, available_count, total_count, " +
+                "price) VALUES (?, ?, ?, ?, 550)", SCHEDULE_ID, SEAT_TYPE_ID, count, count);
+    }
+
+    private int availableCount() {
+        return jdbcTemplate.queryForObject("SELECT available_count FROM seat_availability " +
+                "WHERE schedule_id = ? AND seat_type_id = ?", Integer.class, SCHEDULE_ID, SEAT_TYPE_ID);
+    }
+
+    private int leasedCount() {
+        return jdbcTemplate.queryForObject("SELECT COALESCE(SUM(quantity), 0) FROM inventory_lease", Integer.class);
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.backend.service;
+
+import com.example.backend.mapper.SeatTypeMapper;
+import com.example.backend.model.SeatTypeEntity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class SeatTypeCacheUnitTest {
+
+    private SeatTypeMapper seatTypeMapper;
+    private SeatTypeCache seatTypeCache;
+
+    @BeforeEach
+    void setUp() {
+        seatTypeMapper = mock(SeatTypeMapper.class);
+        when(seatTypeMapper.selectList(any())).thenReturn(List.of(
+                seatType(3, "SECOND_CLASS", "二等座"),
+                seatType(1, "BUSINESS", "商务座")));
+        seatTypeCache = new SeatTypeCache();
+        ReflectionTestUtils.setField(seatTypeCache, "seatTypeMapper", seatTypeMapper);
+        seatTypeCache.refresh();
+    }
+
+    // 按ID、名称、编码查询均命中快照，不再访问数据库
+    @Test
+    void testLookupFromSnapshot() {
+        assertEquals("二等座", seatTypeCache.getById(3).getName());
+        assertEquals(1, seatTypeCache.getByName("商务座").getId());
+        assertEquals(3, seatTypeCache.getByCode("SECOND_CLASS").getId());
+        assertNull(seatTypeCache.getById(2));
+        assertNull(seatTypeCache.getById(99));
+        assertNull(seatTypeCache.getByName("硬卧"));
+        assertEquals(List.of(1, 3), seatTypeCache.getAll().stream().map(SeatTypeEntity::getId).toList());
+        verify(seatTypeMapper, times(1)).selectList(any());
+    }
+
+    // 刷新后替换整个快照
+    @Test
+    void testRefreshReplacesSnapshot() {
+        when(seatTypeMapper.selectList(any())).thenReturn(List.of(seatType(5, "HARD_SLEEPER", "硬卧")));
+        seatTypeCache.refreshAfterCommit();
+
+        assertEquals(5, seatTypeCache.getByName("硬卧").getId());
+        assertNull(seatTypeCache.getByName("二等座"));
+        assertNull(seatTypeCache.getById(3));
+        assertEquals(1, seatTypeCache.getAll().size());
+    }
+
+    private static SeatTypeEntity seatType(int id, String code, String name) {
+        return SeatTypeEntity.builder().id(id).code(code).name(name).basePrice(new BigDecimal("100.00")).build();
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.backend.service;
+
+import com.example.backend.mapper.StationMapper;
+import com.example.backend.mapper.TrainScheduleMapper;
+import com.example.backend.model.StationEntity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class StationIndexServiceUnitTest {
+
+    private StationIndexService stationIndexService;
+
+    @BeforeEach
+    void setUp() {
+        TrainScheduleMapper trainScheduleMapper = mock(TrainScheduleMapper.class);
+        when(trainScheduleMapper.selectDistinctStations())
+                .thenReturn(List.of("北京南", "北京西", "上海虹桥", "济南西", "重庆北"));
+        StationMapper stationMapper = mock(StationMapper.class);
+        when(stationMapper.selectList(any())).thenReturn(List.of(
+                StationEntity.builder().name("上海虹桥").city("上海").build()));
+        stationIndexService = new StationIndexService();
+        ReflectionTestUtils.setField(stationIndexService, "trainScheduleMapper", trainScheduleMapper);
+        ReflectionTestUtils.setField(stationIndexService, "stationMapper", stationMapper);
+        ReflectionTestUtils.setField(stationIndexService, "suggestThreshold", 0.3);
+        ReflectionTestUtils.setField(stationIndexService, "normalizeThreshold", 0.5);
+        stationIndexService.rebuild();
+    }
+
+    // 名称、全拼、首字母前缀联想
+    @Test
+    void testSuggestByPrefix() {
+        assertEquals(List.of("北京南", "北京西"), stationIndexService.suggest("北京", 10));
+        assertEquals(List.of("北京南", "北京西"), stationIndexService.suggest("beijing", 10));
+        assertEquals(List.of("北京南"), stationIndexService.suggest("bjn", 10));
+        assertEquals(List.of("上海虹桥"), stationIndexService.suggest("shh", 10));
+        // 多音字两种读音都能匹配
+        assertTrue(stationIndexService.suggest("cqb", 10).contains("重庆北"));
+        assertTrue(stationIndexService.suggest("zqb", 10).contains("重庆北"));
+    }
+
+    // 错别字通过片段相似度联想
+    @Test
+    void testSuggestFuzzy() {
+        assertEquals("北京南", stationIndexService.suggest("北经南", 10).get(0));
+        assertEquals("上海虹桥", stationIndexService.suggest("海虹桥", 10).get(0));
+    }
+
+    // 查询前规范站名，无法唯一确定时原样返回
+    @Test
+    void testNormalize() {
+        assertEquals("北京南", stationIndexService.normalize("北京南站"));
+        assertEquals("北京南", stationIndexService.normalize(" bjn "));
+        assertEquals("上海虹桥", stationIndexService.normalize("上海虹桥站"));
+        assertEquals("上海虹桥", stationIndexService.normalize("海虹桥"));
+        assertEquals("北京", stationIndexService.normalize("北京"));
+        assertEquals("拉萨", stationIndexService.normalize("拉萨"));
+        assertNull(stationIndexService.normalize(null));
+    }
+
+    // 城市名展开为该城市的车站，所属城市取自车站表或按方位后缀推断
+    @Test
+    void testExpandCity() {
+        assertEquals(List.of("北京南", "北京西"), stationIndexService.expand("北京"));
+        assertEquals(List.of("上海虹桥"), stationIndexService.expand("上海"));
+        assertEquals(List.of("济南西"), stationIndexService.getCityStations("济南"));
+        assertEquals(List.of("北京南"), stationIndexService.expand("北京南站"));
+        assertEquals(List.of("拉萨"), stationIndexService.expand("拉萨"));
+        assertTrue(stationIndexService.expand(" ").isEmpty());
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.backend.service;
+
+import com.example.backend.mapper.OrderMapper;
+import com.example.backend.mapper.TicketMapper;
+import com.example.backend.model.OrderEntity;
+import com.example.backend.model.TicketEntity;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class TicketHoldServiceUnitTest {
+
+    private TicketMapper ticketMapper;
+    private OrderMapper orderMapper;
+    private SeatInventoryService seatInventoryService;
+    private SeatAllocationService seatAllocationService;
+    private TicketHoldService ticketHoldService;
+
+    @BeforeEach
+    void setUp() {
+        ticketMapper = mock(TicketMapper.class);
+        orderMapper = mock(OrderMapper.class);
+        seatInventoryService = mock(SeatInventoryService.class);
+        seatAllocationService = mock(SeatAllocationService.class);
+
+        ticketHoldService = new TicketHoldService();
+        ReflectionTestUtils.setField(ticketHoldService, "ticketMapper", ticketMapper);
+        ReflectionTestUtils.setField(ticketHoldService, "orderMapper", orderMapper);
+        ReflectionTestUtils.setField(ticketHoldService, "seatInventoryService", seatInventoryService);
+        ReflectionTestUtils.setField(ticketHoldService, "seatAllocationService", seatAllocationService);
+        ReflectionTestUtils.setField(ticketHoldService, "transactionTemplate",
+                new TransactionTemplate(mock(PlatformTransactionManager.class)));
+        ReflectionTestUtils.setField(ticketHoldService, "eventPublisher", mock(ApplicationEventPublisher.class));
+        ReflectionTestUtils.setField(ticketHoldService, "holdTtlSeconds", 0L);
+        ReflectionTestUtils.setField(ticketHoldService, "sweepBatchSize", 200);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ticketHoldService.stop();
+    }
+
+    // 超时未支付：车票和订单取消，余票按 (车次, 座位类型) 合并归还，座位释放
+    @Test
+    void testExpiredHoldReleasesSeats() {
+        List<TicketEntity> tickets = List.of(ticket("T1"), ticket("T2"));
+        when(ticketMapper.selectPendingByOrderIdsForUpdate(List.of("O1"))).thenReturn(tickets);
+
+        ticketHoldService.register("O1");
+        ticketHoldService.start();
+
+        verify(seatInventoryService, timeout(2000)).release("G1234_20250520", 2, 2);
+        verify(ticketMapper).updateStatusByIds(List.of("T1", "T2"), "已取消");
+        verify(orderMapper).finishProcessingOrders(List.of("O1"), "已取消", "未支付");
+        verify(seatAllocationService).release(tickets.get(0));
+        verify(seatAllocationService).release(tickets.get(1));
+    }
+
+    // 到期前已确认支付的占座不再取消
+    @Test
+    void testConfirmedHoldIsNotReleased() {
+        when(ticketMapper.updateStatusByOrderId("O1", "待支付", "已支付")).thenReturn(2);
+
+        ticketHoldService.register("O1");
+        assertTrue(ticketHoldService.confirm("O1", null));
+        ticketHoldService.start();
+
+        verify(orderMapper).finishProcessingOrders(List.of("O1"), "已完成", "支付成功");
+        verify(ticketMapper, after(300).never()).selectPendingByOrderIdsForUpdate(anyList());
+        verify(seatInventoryService, never()).release(any(), any(), anyInt());
+    }
+
+    // 占座已被取消后支付完成：确认失败，调用方需退款
+    @Test
+    void testConfirmAfterExpiryFails() {
+        when(ticketMapper.updateStatusByOrderId("O1", "待支付", "已支付")).thenReturn(0);
+        ticketHoldService.start();
+
+        assertFalse(ticketHoldService.confirm("O1", null));
+
+        verify(orderMapper, never()).finishProcessingOrders(anyList(), eq("已完成"), any());
+    }
+
+    // 回调重复执行：订单已在上次确认，再次确认仍视为成功
+    @Test
+    void testRepeatedConfirmSucceeds() {
+        when(ticketMapper.updateStatusByOrderId("O1", "待支付", "已支付")).thenReturn(0);
+        when(orderMapper.selectById("O1")).thenReturn(OrderEntity.builder()
+                .id("O1")
+                .orderStatus("已完成")
+                .paymentStatus("支付成功")
+                .build());
+        ticketHoldService.start();
+
+        assertTrue(ticketHoldService.confirm("O1", null));
+
+        verify(ticketMapper, never()).selectPendingByOrderIdsForUpdate(anyList());
+    }
+
+    private static TicketEntity ticket(String id) {
+        return TicketEntity.builder()
+                .id(id)
+                .orderId("O1")
+                .scheduleId("G1234_20250520")
+                .seatTypeId(2)
+                .ticketStatus("待支付")
+                .build();
+    }
+}
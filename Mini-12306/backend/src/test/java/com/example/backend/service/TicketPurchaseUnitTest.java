@@ -0,0 +1,176 @@
+package com.example.backend.service;
+
+import com.example.backend.dto.BatchPurchaseRequestDTO;
+import com.example.backend.dto.OrderDTO;
+import com.example.backend.mapper.OrderMapper;
+import com.example.backend.mapper.PassengerMapper;
+import com.example.backend.mapper.TicketMapper;
+import com.example.backend.mapper.TrainScheduleMapper;
+import com.example.backend.model.PassengerEntity;
+import com.example.backend.model.SeatAvailabilityDelta;
+import com.example.backend.model.SeatTypeEntity;
+import com.example.backend.model.TicketEntity;
+import com.example.backend.model.TrainScheduleEntity;
+import com.example.backend.service.impl.TicketServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class TicketPurchaseUnitTest {
+
+    private static final String SCHEDULE_ID = "G1234_20250520";
+
+    private TicketMapper ticketMapper;
+    private OrderMapper orderMapper;
+    private SeatInventoryService seatInventoryService;
+    private SeatAllocationService seatAllocationService;
+    private PaymentGateway paymentGateway;
+    private TicketServiceImpl ticketService;
+
+    @BeforeEach
+    void setUp() {
+        ticketMapper = mock(TicketMapper.class);
+        orderMapper = mock(OrderMapper.class);
+        seatInventoryService = mock(SeatInventoryService.class);
+        seatAllocationService = mock(SeatAllocationService.class);
+        paymentGateway = mock(PaymentGateway.class);
+
+        TrainScheduleMapper trainScheduleMapper = mock(TrainScheduleMapper.class);
+        when(trainScheduleMapper.selectById(SCHEDULE_ID)).thenReturn(TrainScheduleEntity.builder()
+                .id(SCHEDULE_ID)
+                .trainNumber("G1234")
+                .departureStation("北京南")
+                .arrivalStation("上海虹桥")
+                .departureTime(LocalDateTime.of(2025, 5, 20, 8, 0))
+                .arrivalTime(LocalDateTime.of(2025, 5, 20, 12, 30))
+                .build());
+        SeatTypeCache seatTypeCache = mock(SeatTypeCache.class);
+        when(seatTypeCache.getByName("二等座")).thenReturn(SeatTypeEntity.builder().id(2).name("二等座").build());
+        when(seatInventoryService.getPrice(SCHEDULE_ID, 2)).thenReturn(new BigDecimal("550.00"));
+        PassengerMapper passengerMapper = mock(PassengerMapper.class);
+        when(passengerMapper.selectList(any())).thenReturn(List.of(passenger("P1"), passenger("P2"), passenger("P3")));
+        IdentityVerificationService identityVerificationService = mock(IdentityVerificationService.class);
+        when(identityVerificationService.verifyIdentityAsync(any(), any()))
+                .thenReturn(CompletableFuture.completedFuture(true));
+
+        ScheduleSequencer scheduleSequencer = new ScheduleSequencer();
+        ReflectionTestUtils.setField(scheduleSequencer, "orderMapper", orderMapper);
+        ReflectionTestUtils.setField(scheduleSequencer, "ticketMapper", ticketMapper);
+        ReflectionTestUtils.setField(scheduleSequencer, "seatInventoryService", seatInventoryService);
+        ReflectionTestUtils.setField(scheduleSequencer, "transactionTemplate",
+                new TransactionTemplate(mock(PlatformTransactionManager.class)));
+        ReflectionTestUtils.setField(scheduleSequencer, "mode", "direct");
+
+        ticketService = new TicketServiceImpl();
+        ReflectionTestUtils.setField(ticketService, "trainScheduleMapper", trainScheduleMapper);
+        ReflectionTestUtils.setField(ticketService, "seatTypeCache", seatTypeCache);
+        ReflectionTestUtils.setField(ticketService, "orderMapper", orderMapper);
+        ReflectionTestUtils.setField(ticketService, "ticketMapper", ticketMapper);
+        ReflectionTestUtils.setField(ticketService, "passengerMapper", passengerMapper);
+        ReflectionTestUtils.setField(ticketService, "paymentGateway", paymentGateway);
+        ReflectionTestUtils.setField(ticketService, "identityVerificationService", identityVerificationService);
+        ReflectionTestUtils.setField(ticketService, "seatInventoryService", seatInventoryService);
+        ReflectionTestUtils.setField(ticketService, "seatAllocationService", seatAllocationService);
+        ReflectionTestUtils.setField(ticketService, "ticketHoldService", mock(TicketHoldService.class));
+        ReflectionTestUtils.setField(ticketService, "scheduleSequencer", scheduleSequencer);
+        ReflectionTestUtils.setField(ticketService, "trainTemplateService", mock(TrainTemplateService.class));
+        ReflectionTestUtils.setField(ticketService, "eventPublisher", mock(ApplicationEventPublisher.class));
+    }
+
+    // 多位乘车人：一次预占全部余票，一条语句插入全部车票，一笔支付任务
+    @Test
+    @SuppressWarnings("unchecked")
+    void testBatchPurchaseReservesOnceAndInsertsOnce() {
+        when(seatInventoryService.tryReserve(SCHEDULE_ID, 2, 3)).thenReturn(true);
+
+        OrderDTO order = ticketService.purchaseTickets(request("P1", "P2", "P3"));
+
+        assertEquals(3, order.getTickets().size());
+        assertEquals(1650.00, order.getTotalAmount());
+        verify(seatInventoryService, times(1)).tryReserve(any(), any(), anyInt());
+        verify(seatInventoryService).confirm(SCHEDULE_ID, 2, 3);
+        verify(seatAllocationService, times(3)).allocate(any(), any());
+        ArgumentCaptor<List<TicketEntity>> captor = ArgumentCaptor.forClass(List.class);
+        verify(ticketMapper, times(1)).insertBatch(captor.capture());
+        assertEquals(3, captor.getValue().size());
+        assertTrue(captor.getValue().stream().allMatch(ticket -> "待支付".equals(ticket.getTicketStatus())));
+        verify(orderMapper, times(1)).insertBatch(anyList());
+        verify(paymentGateway, times(1)).submit(any());
+    }
+
+    // 余票不足以满足全部乘车人时整单失败，不分配座位也不写库
+    @Test
+    void testBatchPurchaseIsAllOrNothing() {
+        when(seatInventoryService.tryReserve(SCHEDULE_ID, 2, 3)).thenReturn(false);
+
+        RuntimeException e = assertThrows(RuntimeException.class,
+                () -> ticketService.purchaseTickets(request("P1", "P2", "P3")));
+
+        assertEquals("所选车次座位余票不足。", e.getMessage());
+        verify(seatAllocationService, never()).allocate(any(), any());
+        verify(ticketMapper, never()).insertBatch(anyList());
+        verify(orderMapper, never()).insertBatch(anyList());
+        verify(paymentGateway, never()).submit(any());
+    }
+
+    // database 库存模式：余票不在事务外扣减，随批次事务一次预占全部乘车人
+    @Test
+    @SuppressWarnings("unchecked")
+    void testDatabaseModeReservesInsideBatchTransaction() {
+        when(seatInventoryService.reservesInTransaction()).thenReturn(true);
+        when(seatInventoryService.tryReserveAll(anyList())).thenReturn(true);
+
+        ticketService.purchaseTickets(request("P1", "P2", "P3"));
+
+        verify(seatInventoryService, never()).tryReserve(any(), any(), anyInt());
+        ArgumentCaptor<List<SeatAvailabilityDelta>> captor = ArgumentCaptor.forClass(List.class);
+        verify(seatInventoryService, times(1)).tryReserveAll(captor.capture());
+        assertEquals(List.of(new SeatAvailabilityDelta(SCHEDULE_ID, 2, 3)), captor.getValue());
+        verify(ticketMapper, times(1)).insertBatch(anyList());
+    }
+
+    // 座位分配中途失败时归还已分配的座位和全部预占的余票
+    @Test
+    void testAllocationFailureReleasesReservation() {
+        when(seatInventoryService.tryReserve(SCHEDULE_ID, 2, 3)).thenReturn(true);
+        doNothing().doNothing().doThrow(new RuntimeException("座位已售完"))
+                .when(seatAllocationService).allocate(any(), any());
+
+        assertThrows(RuntimeException.class, () -> ticketService.purchaseTickets(request("P1", "P2", "P3")));
+
+        verify(seatAllocationService, times(2)).release(any(TicketEntity.class));
+        verify(seatInventoryService).cancelReserve(SCHEDULE_ID, 2, 3);
+        verify(ticketMapper, never()).insertBatch(anyList());
+    }
+
+    private static BatchPurchaseRequestDTO request(String... passengerIds) {
+        BatchPurchaseRequestDTO request = new BatchPurchaseRequestDTO();
+        request.setUserId("U1");
+        request.setScheduleId(SCHEDULE_ID);
+        request.setPassengerIds(List.of(passengerIds));
+        request.setSeatType("二等座");
+        return request;
+    }
+
+    private static PassengerEntity passenger(String id) {
+        PassengerEntity passenger = new PassengerEntity();
+        passenger.setId(id);
+        passenger.setUserId("U1");
+        passenger.setName("乘客" + id);
+        passenger.setIdCard("11010119900101123" + id.charAt(1));
+        return passenger;
+    }
+}
@@ -6,6 +6,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
 import java.util.List;
+import java.util.Objects;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -22,16 +23,19 @@ public class TicketServiceUnitTest {
         request.setScheduleId("G1235_20250530");
         request.setSeatType("二等座");
 
-        // 购票
+        // 购票：先占座返回待支付，异步支付成功后转为已支付
         OrderDTO result = ticketService.purchaseTicket(request);
+        assertEquals("待支付", result.getTickets().get(0).getTicketStatus(), "购票后车票应为待支付");
+        awaitTicketStatus(testUserId, result.getTickets().get(0).getTicketId(), "已支付");
         ChangeTicketRequestDTO changeTicketRequestDTO = new ChangeTicketRequestDTO();
         changeTicketRequestDTO.setUserId(testUserId);
         changeTicketRequestDTO.setTicketId(result.getTickets().get(0).getTicketId());
         changeTicketRequestDTO.setNewScheduleId("G1235_20250531");
         changeTicketRequestDTO.setSeatType("商务座");
 
-        // 改签
+        // 改签：需补差价时支付成功后原车票才转为已改签
         ChangeTicketResponseDTO changeResponse = ticketService.changeTicket(changeTicketRequestDTO);
+        awaitTicketStatus(testUserId, changeResponse.getNewTicketId(), "已支付");
 
         // 查询
         List<TicketDTO> userTickets = ticketService.getUserTickets(testUserId);
@@ -59,8 +63,9 @@ public class TicketServiceUnitTest {
         request.setScheduleId("G1235_20250530");
         request.setSeatType("二等座");
 
-        // 购票
+        // 购票，支付完成后才能改签
         OrderDTO result = ticketService.purchaseTicket(request);
+        awaitTicketStatus(testUserId, result.getTickets().get(0).getTicketId(), "已支付");
         ChangeTicketRequestDTO changeTicketRequestDTO = new ChangeTicketRequestDTO();
         changeTicketRequestDTO.setUserId(testUserId);
         changeTicketRequestDTO.setTicketId(result.getTickets().get(0).getTicketId());
@@ -94,8 +99,9 @@ public class TicketServiceUnitTest {
         request.setScheduleId("G1235_20250530");
         request.setSeatType("二等座");
 
-        // 购票
+        // 购票，支付完成后才能改签
         OrderDTO result = ticketService.purchaseTicket(request);
+        awaitTicketStatus(testUserId, result.getTickets().get(0).getTicketId(), "已支付");
         ChangeTicketRequestDTO changeTicketRequestDTO = new ChangeTicketRequestDTO();
         changeTicketRequestDTO.setUserId(testUserId);
         changeTicketRequestDTO.setTicketId(result.getTickets().get(0).getTicketId());
@@ -128,8 +134,9 @@ public class TicketServiceUnitTest {
         request.setUserId(testUserId);
         request.setScheduleId("G1235_20250530");
         request.setSeatType("二等座");
-        // 购票
+        // 购票，支付完成后才能改签
         OrderDTO result = ticketService.purchaseTicket(request);
+        awaitTicketStatus(testUserId, result.getTickets().get(0).getTicketId(), "已支付");
         String originalTicketId = result.getTickets().get(0).getTicketId();
         
         ChangeTicketRequestDTO changeTicketRequestDTO = new ChangeTicketRequestDTO();
@@ -151,4 +158,28 @@ public class TicketServiceUnitTest {
         assertFalse(ticket.getTicketStatus().contains("已改签"), "票状态不应为已改签");
         assertEquals("二等座", ticket.getSeatType(), "座位类型应保持不变");
     }
+
+    /**
+     * 等待异步支付完成，车票转为指定状态
+     */
+    private void awaitTicketStatus(String userId, String ticketId, String status) {
+        long deadline = System.currentTimeMillis() + 10_000;
+        String current = null;
+        while (System.currentTimeMillis() < deadline) {
+            current = ticketService.getUserTickets(userId).stream()
+                    .filter(ticket -> ticket.getTicketId().equals(ticketId))
+                    .map(TicketDTO::getTicketStatus)
+                    .findFirst().orElse(null);
+            if (Objects.equals(status, current)) {
+                return;
+            }
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        fail("车票 " + ticketId + " 应转为" + status + "，实际为" + current);
+    }
 }
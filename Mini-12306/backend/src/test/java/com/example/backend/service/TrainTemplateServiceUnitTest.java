@@ -0,0 +1,199 @@
+package com.example.backend.service;
+
+import com.example.backend.mapper.SeatAvailabilityMapper;
+import com.example.backend.mapper.TrainScheduleMapper;
+import com.example.backend.mapper.TrainTemplateExceptionMapper;
+import com.example.backend.mapper.TrainTemplateMapper;
+import com.example.backend.model.SeatAvailabilityEntity;
+import com.example.backend.model.SeatTypeEntity;
+import com.example.backend.model.TrainScheduleEntity;
+import com.example.backend.model.TrainTemplateEntity;
+import com.example.backend.model.TrainTemplateExceptionEntity;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.temporal.TemporalAdjusters;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class TrainTemplateServiceUnitTest {
+
+    // 下周一起的一周，都在预售期内
+    private static final LocalDate MONDAY = LocalDate.now().with(TemporalAdjusters.next(DayOfWeek.MONDAY));
+
+    private TrainTemplateMapper trainTemplateMapper;
+    private TrainTemplateExceptionMapper trainTemplateExceptionMapper;
+    private TrainScheduleMapper trainScheduleMapper;
+    private SeatAvailabilityMapper seatAvailabilityMapper;
+    private ScheduleSearchService scheduleSearchService;
+    private StationIndexService stationIndexService;
+    private ScheduleReadModelService scheduleReadModelService;
+    private TrainTemplateService trainTemplateService;
+
+    @BeforeEach
+    void setUp() {
+        trainTemplateMapper = mock(TrainTemplateMapper.class);
+        trainTemplateExceptionMapper = mock(TrainTemplateExceptionMapper.class);
+        trainScheduleMapper = mock(TrainScheduleMapper.class);
+        seatAvailabilityMapper = mock(SeatAvailabilityMapper.class);
+        SeatTypeCache seatTypeCache = mock(SeatTypeCache.class);
+        SeatTypeEntity first = SeatTypeEntity.builder().id(1).name("一等座").basePrice(new BigDecimal("500")).build();
+        SeatTypeEntity second = SeatTypeEntity.builder().id(2).name("二等座").basePrice(new BigDecimal("300")).build();
+        when(seatTypeCache.getAll()).thenReturn(List.of(first, second));
+        when(seatTypeCache.getByName("二等座")).thenReturn(second);
+
+        trainTemplateService = new TrainTemplateService();
+        ReflectionTestUtils.setField(trainTemplateService, "trainTemplateMapper", trainTemplateMapper);
+        ReflectionTestUtils.setField(trainTemplateService, "trainTemplateExceptionMapper", trainTemplateExceptionMapper);
+        ReflectionTestUtils.setField(trainTemplateService, "trainScheduleMapper", trainScheduleMapper);
+        ReflectionTestUtils.setField(trainTemplateService, "seatAvailabilityMapper", seatAvailabilityMapper);
+        ReflectionTestUtils.setField(trainTemplateService, "seatTypeCache", seatTypeCache);
+        ReflectionTestUtils.setField(trainTemplateService, "transactionTemplate",
+                new TransactionTemplate(mock(PlatformTransactionManager.class)));
+        ReflectionTestUtils.setField(trainTemplateService, "objectMapper", new ObjectMapper());
+        scheduleSearchService = mock(ScheduleSearchService.class);
+        stationIndexService = mock(StationIndexService.class);
+        when(stationIndexService.isStation(anyString())).thenReturn(true);
+        scheduleReadModelService = mock(ScheduleReadModelService.class);
+        ReflectionTestUtils.setField(trainTemplateService, "scheduleSearchService", scheduleSearchService);
+        ReflectionTestUtils.setField(trainTemplateService, "scheduleCalendarService", mock(ScheduleCalendarService.class));
+        ReflectionTestUtils.setField(trainTemplateService, "transferSearchService", mock(TransferSearchService.class));
+        ReflectionTestUtils.setField(trainTemplateService, "stationIndexService", stationIndexService);
+        ReflectionTestUtils.setField(trainTemplateService, "scheduleReadModelService", scheduleReadModelService);
+        ReflectionTestUtils.setField(trainTemplateService, "enabled", true);
+        ReflectionTestUtils.setField(trainTemplateService, "daysAhead", 7);
+        ReflectionTestUtils.setField(trainTemplateService, "maxDaysAhead", 30);
+        ReflectionTestUtils.setField(trainTemplateService, "batchSize", 500);
+
+        when(trainTemplateMapper.selectList(any())).thenReturn(List.of(
+                template("G1234", "1111111", null),
+                // 只在周末开行，只提供二等座
+                template("D5678", "0000011", "{\"二等座\":200}")));
+        trainTemplateService.reload();
+    }
+
+    // 生成当天开行的车次，已存在的跳过，同一天只生成一次
+    @Test
+    @SuppressWarnings("unchecked")
+    void testMaterializeDaySkipsExisting() {
+        LocalDate saturday = MONDAY.plusDays(5);
+        when(trainScheduleMapper.selectList(any())).thenReturn(List.of(
+                TrainScheduleEntity.builder().id(TrainTemplateService.scheduleId("G1234", saturday)).build()));
+
+        assertEquals(1, trainTemplateService.materialize(saturday));
+        assertEquals(0, trainTemplateService.materialize(saturday));
+
+        ArgumentCaptor<List<TrainScheduleEntity>> schedules = ArgumentCaptor.forClass(List.class);
+        verify(trainScheduleMapper).insertBatch(schedules.capture());
+        TrainScheduleEntity schedule = schedules.getValue().get(0);
+        assertEquals("D5678_" + saturday.toString().replace("-", ""), schedule.getId());
+        assertEquals(saturday.atTime(8, 0), schedule.getDepartureTime());
+
+        ArgumentCaptor<List<SeatAvailabilityEntity>> seats = ArgumentCaptor.forClass(List.class);
+        verify(seatAvailabilityMapper).insertBatch(seats.capture());
+        assertEquals(1, seats.getValue().size());
+        assertEquals(200, seats.getValue().get(0).getAvailableCount());
+    }
+
+    // 按车次ID购票时只生成该车次，不开行的日期不生成
+    @Test
+    @SuppressWarnings("unchecked")
+    void testEnsureMaterializedByScheduleId() {
+        trainTemplateService.ensureMaterialized(TrainTemplateService.scheduleId("D5678", MONDAY));
+        verify(trainScheduleMapper, never()).insertBatch(anyList());
+
+        trainTemplateService.ensureMaterialized(TrainTemplateService.scheduleId("G1234", MONDAY));
+        ArgumentCaptor<List<TrainScheduleEntity>> schedules = ArgumentCaptor.forClass(List.class);
+        verify(trainScheduleMapper).insertBatch(schedules.capture());
+        assertEquals(1, schedules.getValue().size());
+        assertEquals(MONDAY.atTime(12, 30), schedules.getValue().get(0).getArrivalTime());
+
+        // 非模板车次不处理
+        trainTemplateService.ensureMaterialized("X_20250520");
+        trainTemplateService.ensureMaterialized("G1234_bad");
+        verify(trainScheduleMapper, times(1)).insertBatch(anyList());
+    }
+
+    // 单个车次生成后只清理该线路、该日期的缓存，已知车站不重建索引，读模型等待定时刷新；再次购票不再查询
+    @Test
+    void testEnsureMaterializedByScheduleIdIsIncremental() {
+        String scheduleId = TrainTemplateService.scheduleId("G1234", MONDAY);
+
+        trainTemplateService.ensureMaterialized(scheduleId);
+        trainTemplateService.ensureMaterialized(scheduleId);
+
+        verify(trainScheduleMapper, times(1)).selectList(any());
+        verify(scheduleSearchService).invalidate("北京南", "上海虹桥", MONDAY);
+        verify(scheduleSearchService, never()).invalidate();
+        verify(stationIndexService, never()).refreshAfterCommit();
+        verify(scheduleReadModelService).markDirty(List.of(scheduleId));
+        verify(scheduleReadModelService, never()).refresh(anyCollection());
+
+        // 之后生成整天时一并同步更新读模型
+        when(scheduleReadModelService.isReady()).thenReturn(true);
+        when(trainScheduleMapper.selectList(any())).thenReturn(List.of(TrainScheduleEntity.builder().id(scheduleId).build()));
+        assertEquals(0, trainTemplateService.materialize(MONDAY));
+        verify(scheduleReadModelService).refresh(List.of(scheduleId));
+    }
+
+    // 删除的模板车次记录停开，之后生成整天或按车次ID生成时都跳过；非模板车次不记录
+    @Test
+    @SuppressWarnings("unchecked")
+    void testDeletedScheduleNotRegenerated() {
+        LocalDate saturday = MONDAY.plusDays(5);
+        String deleted = TrainTemplateService.scheduleId("G1234", saturday);
+        trainTemplateService.recordDeletion(deleted);
+        trainTemplateService.recordDeletion("X_20250520");
+        trainTemplateService.recordDeletion("abc123");
+        ArgumentCaptor<TrainTemplateExceptionEntity> exception = ArgumentCaptor.forClass(TrainTemplateExceptionEntity.class);
+        verify(trainTemplateExceptionMapper).insertIgnore(exception.capture());
+        assertEquals(deleted, exception.getValue().getScheduleId());
+        assertEquals(saturday, exception.getValue().getRunDate());
+
+        when(trainTemplateExceptionMapper.selectList(any())).thenReturn(List.of(
+                TrainTemplateExceptionEntity.builder().scheduleId(deleted).build()));
+        trainTemplateService.ensureMaterialized(deleted);
+        verify(trainScheduleMapper, never()).insertBatch(anyList());
+
+        assertEquals(1, trainTemplateService.materialize(saturday));
+        ArgumentCaptor<List<TrainScheduleEntity>> schedules = ArgumentCaptor.forClass(List.class);
+        verify(trainScheduleMapper).insertBatch(schedules.capture());
+        assertEquals(List.of(TrainTemplateService.scheduleId("D5678", saturday)),
+                schedules.getValue().stream().map(TrainScheduleEntity::getId).toList());
+    }
+
+    @Test
+    void testInvalidTemplateRejected() {
+        TrainTemplateEntity template = template("G9", "1111111", null);
+        template.setRunDays("11");
+        assertThrows(IllegalArgumentException.class, () -> trainTemplateService.create(template));
+
+        TrainTemplateEntity unknownSeat = template("G9", "1111111", "{\"软卧\":10}");
+        assertThrows(IllegalArgumentException.class, () -> trainTemplateService.create(unknownSeat));
+        verify(trainTemplateMapper, never()).insert(any(TrainTemplateEntity.class));
+    }
+
+    private TrainTemplateEntity template(String trainNumber, String runDays, String seatConfig) {
+        return TrainTemplateEntity.builder()
+                .trainNumber(trainNumber).departureStation("北京南").arrivalStation("上海虹桥")
+                .departureTime(LocalTime.of(8, 0)).arrivalTime(LocalTime.of(12, 30)).arrivalDays(0)
+                .seatConfig(seatConfig).startDate(MONDAY.minusDays(7)).runDays(runDays)
+                .status(TrainTemplateService.STATUS_ENABLED)
+                .build();
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.backend.service;
+
+import com.example.backend.dto.TrainScheduleDTO;
+import com.example.backend.dto.TransferItineraryDTO;
+import com.example.backend.mapper.SeatAvailabilityMapper;
+import com.example.backend.mapper.TrainScheduleMapper;
+import com.example.backend.model.SeatAvailabilityEntity;
+import com.example.backend.model.TrainScheduleEntity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class TransferSearchServiceUnitTest {
+
+    private static final LocalDate DATE = LocalDate.of(2025, 5, 20);
+
+    private TrainScheduleMapper trainScheduleMapper;
+    private TransferSearchService transferSearchService;
+
+    @BeforeEach
+    void setUp() {
+        trainScheduleMapper = mock(TrainScheduleMapper.class);
+        SeatAvailabilityMapper seatAvailabilityMapper = mock(SeatAvailabilityMapper.class);
+        ScheduleSearchService scheduleSearchService = mock(ScheduleSearchService.class);
+
+        List<TrainScheduleEntity> schedules = List.of(
+                schedule("A_B", "北京南", "济南西", 8, 0, 10, 0),
+                schedule("B_C_TIGHT", "济南西", "上海虹桥", 10, 10, 12, 0),
+                schedule("B_C", "济南西", "上海虹桥", 10, 30, 13, 0),
+                schedule("A_C", "北京南", "上海虹桥", 9, 0, 13, 30),
+                schedule("A_D", "北京南", "天津南", 7, 0, 7, 40),
+                schedule("D_B", "天津南", "济南西", 8, 0, 9, 30),
+                schedule("B_C_LATE", "济南西", "上海虹桥", 19, 0, 22, 0));
+        when(trainScheduleMapper.selectList(any())).thenReturn(schedules);
+        List<SeatAvailabilityEntity> prices = new ArrayList<>();
+        for (TrainScheduleEntity schedule : schedules) {
+            prices.add(SeatAvailabilityEntity.builder().scheduleId(schedule.getId()).seatTypeId(2)
+                    .availableCount(100).price(new BigDecimal(schedule.getId().startsWith("A_D") ? "50" : "200")).build());
+        }
+        when(seatAvailabilityMapper.selectList(any())).thenReturn(prices);
+        when(scheduleSearchService.findByIds(anyList())).thenAnswer(invocation -> {
+            List<String> ids = invocation.getArgument(0);
+            return ids.stream().map(id -> TrainScheduleDTO.builder().scheduleId(id).build()).collect(Collectors.toList());
+        });
+
+        StationIndexService stationIndexService = mock(StationIndexService.class);
+        when(stationIndexService.normalize(anyString())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        transferSearchService = new TransferSearchService();
+        ReflectionTestUtils.setField(transferSearchService, "trainScheduleMapper", trainScheduleMapper);
+        ReflectionTestUtils.setField(transferSearchService, "seatAvailabilityMapper", seatAvailabilityMapper);
+        ReflectionTestUtils.setField(transferSearchService, "scheduleSearchService", scheduleSearchService);
+        ReflectionTestUtils.setField(transferSearchService, "stationIndexService", stationIndexService);
+        ReflectionTestUtils.setField(transferSearchService, "minConnectionMinutes", 20L);
+        ReflectionTestUtils.setField(transferSearchService, "maxWaitMinutes", 360L);
+        ReflectionTestUtils.setField(transferSearchService, "maxResults", 20);
+        transferSearchService.rebuild();
+    }
+
+    // 一次换乘：跳过换乘时间不足和等待过久的车次，不返回直达车次
+    @Test
+    void testOneTransferRespectsConnectionWindow() {
+        List<TransferItineraryDTO> result = transferSearchService.search("北京南", "上海虹桥", DATE, 1, "duration");
+
+        assertEquals(1, result.size());
+        assertEquals(List.of("A_B", "B_C"), legIds(result.get(0)));
+        assertEquals(List.of("济南西"), result.get(0).getTransferStations());
+        assertEquals(300L, result.get(0).getTotalDurationMinutes());
+        assertEquals(30L, result.get(0).getWaitMinutes());
+    }
+
+    // 两次换乘按总票价排序
+    @Test
+    void testTwoTransfersSortedByPrice() {
+        List<TransferItineraryDTO> result = transferSearchService.search("北京南", "上海虹桥", DATE, 2, "price");
+
+        assertEquals(3, result.size());
+        assertEquals(List.of("A_B", "B_C"), legIds(result.get(0)));
+        assertEquals(400.0, result.get(0).getTotalPrice());
+        // 经天津南到达济南西较早，可赶上 10:10 的车次；票价相同时按总时长排序
+        assertEquals(List.of("A_D", "D_B", "B_C_TIGHT"), legIds(result.get(1)));
+        assertEquals(450.0, result.get(1).getTotalPrice());
+        assertEquals(2, result.get(1).getTransfers());
+        assertEquals(List.of("A_D", "D_B", "B_C"), legIds(result.get(2)));
+    }
+
+    // 删除车次后只移除对应的边
+    @Test
+    void testScheduleRemovedIncrementally() {
+        when(trainScheduleMapper.selectById("B_C")).thenReturn(null);
+        transferSearchService.onScheduleChanged("B_C");
+
+        assertTrue(transferSearchService.search("北京南", "上海虹桥", DATE, 1, "duration").isEmpty());
+        verify(trainScheduleMapper, times(1)).selectList(any());
+    }
+
+    private static List<String> legIds(TransferItineraryDTO itinerary) {
+        return itinerary.getLegs().stream().map(TrainScheduleDTO::getScheduleId).collect(Collectors.toList());
+    }
+
+    private static TrainScheduleEntity schedule(String id, String from, String to,
+                                                int departHour, int departMinute, int arriveHour, int arriveMinute) {
+        LocalDateTime departure = DATE.atTime(departHour, departMinute);
+        return TrainScheduleEntity.builder().id(id).trainNumber(id).departureStation(from).arrivalStation(to)
+                .departureTime(departure).arrivalTime(DATE.atTime(arriveHour, arriveMinute)).status("正常").build();
+    }
+}
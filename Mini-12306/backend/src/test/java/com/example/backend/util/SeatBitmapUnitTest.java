@@ -0,0 +1,69 @@
+package com.example.backend.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SeatBitmapUnitTest {
+
+    // 16节车厢并发分配，座位不重复且恰好分配完
+    @Test
+    void testConcurrentAllocateIsUnique() throws InterruptedException {
+        SeatLayout layout = SeatLayout.SECOND_CLASS;
+        SeatBitmap bitmap = new SeatBitmap(16, layout.getSeatsPerCarriage());
+        int capacity = 16 * layout.getSeatsPerCarriage();
+        Set<Integer> seats = ConcurrentHashMap.newKeySet();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        for (int i = 0; i < capacity + 100; i++) {
+            executor.submit(() -> {
+                start.await();
+                int seat = bitmap.allocate();
+                if (seat >= 0) {
+                    assertTrue(seats.add(seat), "座位不应重复分配");
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(capacity, seats.size());
+        assertEquals(0, bitmap.getFreeCount());
+        assertEquals(-1, bitmap.allocate());
+    }
+
+    // 释放的座位可再次分配
+    @Test
+    void testReleaseMakesSeatAvailableAgain() {
+        SeatBitmap bitmap = new SeatBitmap(2, 70);
+        for (int i = 0; i < 140; i++) {
+            assertEquals(i, bitmap.allocate());
+        }
+        bitmap.release(65);
+        assertEquals(1, bitmap.getFreeCount());
+        assertEquals(65, bitmap.allocate());
+    }
+
+    // 车厢号和座位号与座位下标互相转换
+    @Test
+    void testLayoutRoundTrip() {
+        SeatLayout layout = SeatLayout.FIRST_CLASS;
+        int seat = layout.getSeatsPerCarriage() + 7;
+        String carriage = layout.carriageNumber(2, seat);
+        String seatNumber = layout.seatNumber(seat);
+        assertEquals("03", carriage);
+        assertEquals("02F", seatNumber);
+        assertEquals(seat, layout.parse(2, carriage, seatNumber));
+        assertEquals(-1, layout.parse(2, "01", seatNumber));
+        assertEquals(-1, layout.parse(2, "03", "待分配"));
+    }
+}
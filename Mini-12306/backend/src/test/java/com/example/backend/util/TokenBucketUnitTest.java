@@ -0,0 +1,31 @@
+package com.example.backend.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TokenBucketUnitTest {
+
+    // 令牌用完后按速率补充，且不超过桶容量
+    @Test
+    void testRefillAtConfiguredRate() {
+        AtomicLong now = new AtomicLong();
+        TokenBucket bucket = new TokenBucket(10, 2, now::get);
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), bucket.nanosUntilAvailable());
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+    }
+}
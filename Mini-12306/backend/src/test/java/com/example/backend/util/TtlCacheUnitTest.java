@@ -0,0 +1,51 @@
+package com.example.backend.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TtlCacheUnitTest {
+
+    // 条目到期后不再返回
+    @Test
+    void testEntryExpires() {
+        AtomicLong now = new AtomicLong(1000);
+        TtlCache<String, Boolean> cache = new TtlCache<>(10, now::get);
+        cache.put("张三:110101199001011234", true, 500);
+
+        now.set(1499);
+        assertEquals(Boolean.TRUE, cache.get("张三:110101199001011234"));
+        now.set(1500);
+        assertNull(cache.get("张三:110101199001011234"));
+        assertEquals(0, cache.size());
+    }
+
+    // 超出容量时淘汰最久未访问的条目
+    @Test
+    void testEvictsLeastRecentlyUsed() {
+        TtlCache<String, Integer> cache = new TtlCache<>(2);
+        cache.put("a", 1, 60_000);
+        cache.put("b", 2, 60_000);
+        cache.get("a");
+        cache.put("c", 3, 60_000);
+
+        assertEquals(1, cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals(3, cache.get("c"));
+    }
+
+    // 按键条件移除，其余条目保留
+    @Test
+    void testRemoveIf() {
+        TtlCache<String, Integer> cache = new TtlCache<>(10);
+        cache.put("北京南|上海虹桥", 1, 60_000);
+        cache.put("北京南|南京南", 2, 60_000);
+
+        cache.removeIf(key -> key.endsWith("|上海虹桥"));
+
+        assertNull(cache.get("北京南|上海虹桥"));
+        assertEquals(2, cache.get("北京南|南京南"));
+    }
+}